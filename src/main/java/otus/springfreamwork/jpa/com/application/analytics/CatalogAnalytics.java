@@ -0,0 +1,268 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+import org.springframework.stereotype.Component;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region;
+import otus.springfreamwork.jpa.com.application.invalidation.InvalidationBatch;
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.AUTHOR_COUNTRY;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.AUTHOR_WIDTH;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.BOOK_GENRE;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.BOOK_WIDTH;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.BOOK_YEAR;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.COMMENT_USER;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.COMMENT_WIDTH;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.NO_COUNTRY;
+import static otus.springfreamwork.jpa.com.application.analytics.CatalogColumns.NO_YEAR;
+
+/**
+ * Catalog reports computed from a columnar copy of books, authors and comments: genre names and usernames are
+ * dictionary-encoded, years and countries are plain ints, and a report is one parallel scan over a few arrays.
+ * The copy is built on the first report. Committed changes mark rows stale, and the next report reads only those
+ * rows again and merges them into a new copy.
+ */
+@Component
+public class CatalogAnalytics {
+
+    private static final int MAX_IN = 1000;
+
+    private static final String BOOKS =
+            "SELECT b.id, g.name, b.publishedDate FROM Book b JOIN b.genre g WHERE g.deleted = false";
+    private static final String AUTHORS = "SELECT a.id, a.conutry FROM Author a WHERE a.deleted = false";
+    private static final String COMMENTS = "SELECT c.id, u.name FROM Comment c LEFT JOIN c.user u";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Dictionary genreNames = new Dictionary();
+    private final Dictionary usernames = new Dictionary();
+    private CatalogColumns columns;
+
+    private final Object pendingLock = new Object();
+    private final Set<Integer> staleBooks = new HashSet<>();
+    private final Set<Integer> staleAuthors = new HashSet<>();
+    private final Set<Integer> staleComments = new HashSet<>();
+    private boolean booksReloadNeeded;
+    private boolean authorsReloadNeeded;
+    private boolean commentsReloadNeeded;
+
+    public CatalogAnalytics(EntityManagerFactory entityManagerFactory, CacheInvalidator cacheInvalidator) {
+        this.entityManagerFactory = entityManagerFactory;
+        cacheInvalidator.addListener(this::invalidated);
+    }
+
+    /**
+     * @param genre only this genre, or all when {@code null}
+     * @param fromYear first year counted, or {@code null}; books without a date are counted only without bounds
+     * @return counts by genre name and year, ordered by both
+     */
+    public List<GenreYearCount> countBooksByGenreAndYear(String genre, Integer fromYear, Integer toYear) {
+        CatalogColumns current = current();
+        if (current.books.size() == 0) {
+            return new ArrayList<>();
+        }
+        int genreFilter = -1;
+        if (genre != null) {
+            genreFilter = indexOf(current.genreNames, genre);
+            if (genreFilter < 0) {
+                return new ArrayList<>();
+            }
+        }
+        int minYear = Math.max(current.minYear, fromYear == null ? Integer.MIN_VALUE : fromYear);
+        int maxYear = Math.min(current.maxYear, toYear == null ? Integer.MAX_VALUE : toYear);
+        boolean withoutDate = fromYear == null && toYear == null;
+        // Year slot 0 holds books without a date, slots 1.. the years from minYear on.
+        int years = minYear > maxYear ? 1 : maxYear - minYear + 2;
+        int onlyGenre = genreFilter;
+        long[] counts = ColumnScan.count(current.books, current.genreNames.length * years, (table, row) -> {
+            int genreCode = table.column(BOOK_GENRE, row);
+            if (onlyGenre >= 0 && genreCode != onlyGenre) {
+                return -1;
+            }
+            int year = table.column(BOOK_YEAR, row);
+            if (year == NO_YEAR) {
+                return withoutDate ? genreCode * years : -1;
+            }
+            return year < minYear || year > maxYear ? -1 : genreCode * years + year - minYear + 1;
+        });
+
+        TreeMap<String, Integer> genresByName = new TreeMap<>();
+        for (int code = 0; code < current.genreNames.length; code++) {
+            genresByName.put(current.genreNames[code], code);
+        }
+        List<GenreYearCount> result = new ArrayList<>();
+        genresByName.forEach((name, code) -> {
+            for (int slot = 0; slot < years; slot++) {
+                long count = counts[code * years + slot];
+                if (count > 0) {
+                    result.add(new GenreYearCount(name, slot == 0 ? null : minYear + slot - 1, count));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return counts of authors by country; authors without a country are not counted
+     */
+    public Map<Conutry, Long> countAuthorsByCountry() {
+        CatalogColumns current = current();
+        Conutry[] countries = Conutry.values();
+        long[] counts = ColumnScan.count(current.authors, countries.length, (table, row) -> table.column(AUTHOR_COUNTRY, row));
+        Map<Conutry, Long> result = new EnumMap<>(Conutry.class);
+        for (Conutry country : countries) {
+            if (counts[country.ordinal()] > 0) {
+                result.put(country, counts[country.ordinal()]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return usernames with most comments first, ties by username
+     */
+    public Map<String, Long> countCommentsByUser(int limit) {
+        CatalogColumns current = current();
+        long[] counts = ColumnScan.count(current.comments, current.usernames.length, (table, row) -> table.column(COMMENT_USER, row));
+        List<Integer> users = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                users.add(code);
+            }
+        }
+        users.sort((left, right) -> counts[left] != counts[right]
+                ? Long.compare(counts[right], counts[left])
+                : current.usernames[left].compareTo(current.usernames[right]));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Integer code : users.subList(0, Math.min(Math.max(limit, 0), users.size()))) {
+            result.put(current.usernames[code], counts[code]);
+        }
+        return result;
+    }
+
+    private void invalidated(InvalidationBatch batch, boolean remote) {
+        synchronized (pendingLock) {
+            booksReloadNeeded |= batch.isWholeRegion(Region.BOOK) || batch.getRegions().contains(Region.GENRE);
+            authorsReloadNeeded |= batch.isWholeRegion(Region.AUTHOR);
+            commentsReloadNeeded |= batch.isWholeRegion(Region.COMMENT);
+            batch.getKeys(Region.BOOK).forEach(key -> staleBooks.add(Integer.valueOf(key)));
+            batch.getKeys(Region.AUTHOR).forEach(key -> staleAuthors.add(Integer.valueOf(key)));
+            batch.getKeys(Region.COMMENT).forEach(key -> staleComments.add(Integer.valueOf(key)));
+        }
+    }
+
+    private synchronized CatalogColumns current() {
+        Set<Integer> books;
+        Set<Integer> authors;
+        Set<Integer> comments;
+        synchronized (pendingLock) {
+            books = columns == null || booksReloadNeeded ? null : new HashSet<>(staleBooks);
+            authors = columns == null || authorsReloadNeeded ? null : new HashSet<>(staleAuthors);
+            comments = columns == null || commentsReloadNeeded ? null : new HashSet<>(staleComments);
+            booksReloadNeeded = false;
+            authorsReloadNeeded = false;
+            commentsReloadNeeded = false;
+            staleBooks.clear();
+            staleAuthors.clear();
+            staleComments.clear();
+        }
+        if (isEmpty(books) && isEmpty(authors) && isEmpty(comments)) {
+            return columns;
+        }
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            columns = new CatalogColumns(
+                    refresh(columns == null ? null : columns.books, books, BOOK_WIDTH,
+                            select(entityManager, BOOKS, "b.id", books), this::bookRow),
+                    refresh(columns == null ? null : columns.authors, authors, AUTHOR_WIDTH,
+                            select(entityManager, AUTHORS, "a.id", authors), CatalogAnalytics::authorRow),
+                    refresh(columns == null ? null : columns.comments, comments, COMMENT_WIDTH,
+                            select(entityManager, COMMENTS, "c.id", comments), this::commentRow),
+                    genreNames.values(),
+                    usernames.values()
+            );
+            return columns;
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * @param ids stale rows, or {@code null} to replace the whole table
+     */
+    private static ColumnTable refresh(
+            ColumnTable table,
+            Set<Integer> ids,
+            int width,
+            List<Object[]> rows,
+            Function<Object[], int[]> columns
+    ) {
+        SortedMap<Integer, int[]> changed = new TreeMap<>();
+        if (ids != null) {
+            ids.forEach(id -> changed.put(id, null));
+        }
+        rows.forEach(row -> changed.put((Integer) row[0], columns.apply(row)));
+        return ids == null ? ColumnTable.of(changed, width) : table.merge(changed, width);
+    }
+
+    private int[] bookRow(Object[] row) {
+        Date publishedDate = (Date) row[2];
+        return new int[]{
+                genreNames.code((String) row[1]),
+                publishedDate == null ? NO_YEAR : new java.sql.Date(publishedDate.getTime()).toLocalDate().getYear()
+        };
+    }
+
+    private static int[] authorRow(Object[] row) {
+        return new int[]{row[1] == null ? NO_COUNTRY : ((Conutry) row[1]).ordinal()};
+    }
+
+    private int[] commentRow(Object[] row) {
+        return new int[]{usernames.code((String) row[1])};
+    }
+
+    /**
+     * @param ids rows to read, or {@code null} for all of them
+     */
+    private static List<Object[]> select(EntityManager entityManager, String jpql, String idAttribute, Collection<Integer> ids) {
+        if (ids == null) {
+            return entityManager.createQuery(jpql, Object[].class).getResultList();
+        }
+        List<Integer> idList = new ArrayList<>(ids);
+        List<Object[]> rows = new ArrayList<>();
+        for (int from = 0; from < idList.size(); from += MAX_IN) {
+            String byIds = (jpql.contains(" WHERE ") ? " AND " : " WHERE ") + idAttribute + " IN :ids";
+            rows.addAll(entityManager.createQuery(jpql + byIds, Object[].class)
+                    .setParameter("ids", idList.subList(from, Math.min(from + MAX_IN, idList.size())))
+                    .getResultList());
+        }
+        return rows;
+    }
+
+    private static boolean isEmpty(Set<Integer> ids) {
+        return ids != null && ids.isEmpty();
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,44 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+/**
+ * One consistent state of the columnar catalog. Hidden genres and authors are not in it.
+ */
+final class CatalogColumns {
+
+    static final int BOOK_GENRE = 0;
+    static final int BOOK_YEAR = 1;
+    static final int BOOK_WIDTH = 2;
+    static final int AUTHOR_COUNTRY = 0;
+    static final int AUTHOR_WIDTH = 1;
+    static final int COMMENT_USER = 0;
+    static final int COMMENT_WIDTH = 1;
+
+    static final int NO_YEAR = Integer.MIN_VALUE;
+    static final int NO_COUNTRY = -1;
+
+    final ColumnTable books;
+    final ColumnTable authors;
+    final ColumnTable comments;
+    final String[] genreNames;
+    final String[] usernames;
+    final int minYear;
+    final int maxYear;
+
+    CatalogColumns(ColumnTable books, ColumnTable authors, ColumnTable comments, String[] genreNames, String[] usernames) {
+        this.books = books;
+        this.authors = authors;
+        this.comments = comments;
+        this.genreNames = genreNames;
+        this.usernames = usernames;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int year : books.size() == 0 ? new int[0] : books.columns[BOOK_YEAR]) {
+            if (year != NO_YEAR) {
+                min = Math.min(min, year);
+                max = Math.max(max, year);
+            }
+        }
+        this.minYear = min;
+        this.maxYear = max;
+    }
+}
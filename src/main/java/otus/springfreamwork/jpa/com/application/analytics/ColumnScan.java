@@ -0,0 +1,71 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Group-by counts over the rows of a {@link ColumnTable}, split into fork-join tasks that each count a range
+ * of rows into their own array; the arrays are summed on the way back up.
+ */
+final class ColumnScan {
+
+    private static final int ROWS_PER_TASK = 16_384;
+
+    @FunctionalInterface
+    interface GroupKey {
+
+        /**
+         * @return group of the row in {@code [0, groups)}, or a negative value to skip the row
+         */
+        int of(ColumnTable table, int row);
+    }
+
+    private ColumnScan() {
+    }
+
+    static long[] count(ColumnTable table, int groups, GroupKey key) {
+        return ForkJoinPool.commonPool().invoke(new CountTask(table, groups, key, 0, table.size()));
+    }
+
+    private static final class CountTask extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ColumnTable table;
+        private final int groups;
+        private final GroupKey key;
+        private final int from;
+        private final int to;
+
+        CountTask(ColumnTable table, int groups, GroupKey key, int from, int to) {
+            this.table = table;
+            this.groups = groups;
+            this.key = key;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= ROWS_PER_TASK) {
+                long[] counts = new long[groups];
+                for (int row = from; row < to; row++) {
+                    int group = key.of(table, row);
+                    if (group >= 0) {
+                        counts[group]++;
+                    }
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(table, groups, key, from, middle);
+            left.fork();
+            long[] counts = new CountTask(table, groups, key, middle, to).compute();
+            long[] leftCounts = left.join();
+            for (int group = 0; group < groups; group++) {
+                counts[group] += leftCounts[group];
+            }
+            return counts;
+        }
+    }
+}
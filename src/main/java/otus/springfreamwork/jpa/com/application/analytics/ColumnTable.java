@@ -0,0 +1,82 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Rows of one entity as parallel int columns, ordered by id. Never changed once built: a refresh merges the
+ * changed rows into a new table, which costs an in-memory copy instead of reading unchanged rows again.
+ */
+final class ColumnTable {
+
+    static final ColumnTable EMPTY = new ColumnTable(new int[0], new int[0][]);
+
+    final int[] ids;
+    final int[][] columns;
+
+    private ColumnTable(int[] ids, int[][] columns) {
+        this.ids = ids;
+        this.columns = columns;
+    }
+
+    /**
+     * @param rows column values by id, each array {@code width} long
+     */
+    static ColumnTable of(SortedMap<Integer, int[]> rows, int width) {
+        return EMPTY.merge(rows, width);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    int column(int column, int row) {
+        return columns[column][row];
+    }
+
+    /**
+     * @param changed new column values by id; a {@code null} value removes the row
+     */
+    ColumnTable merge(SortedMap<Integer, int[]> changed, int width) {
+        int added = 0;
+        for (Map.Entry<Integer, int[]> entry : changed.entrySet()) {
+            boolean present = Arrays.binarySearch(ids, entry.getKey()) >= 0;
+            if (entry.getValue() != null && !present) {
+                added++;
+            } else if (entry.getValue() == null && present) {
+                added--;
+            }
+        }
+        int size = ids.length + added;
+        int[] newIds = new int[size];
+        int[][] newColumns = new int[width][size];
+
+        Iterator<Map.Entry<Integer, int[]>> changes = changed.entrySet().iterator();
+        Map.Entry<Integer, int[]> change = changes.hasNext() ? changes.next() : null;
+        int row = 0;
+        int position = 0;
+        while (row < ids.length || change != null) {
+            if (change == null || row < ids.length && ids[row] < change.getKey()) {
+                for (int column = 0; column < width; column++) {
+                    newColumns[column][position] = columns[column][row];
+                }
+                newIds[position++] = ids[row++];
+                continue;
+            }
+            if (row < ids.length && ids[row] == change.getKey()) {
+                row++;
+            }
+            int[] values = change.getValue();
+            if (values != null) {
+                for (int column = 0; column < width; column++) {
+                    newColumns[column][position] = values[column];
+                }
+                newIds[position++] = change.getKey();
+            }
+            change = changes.hasNext() ? changes.next() : null;
+        }
+        return new ColumnTable(newIds, newColumns);
+    }
+}
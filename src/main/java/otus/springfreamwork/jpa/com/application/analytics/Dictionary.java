@@ -0,0 +1,31 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense codes for repeated strings such as genre names and usernames. Codes are only added, so a code
+ * stored in an older table still means the same string.
+ */
+final class Dictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    int code(String value) {
+        return codes.computeIfAbsent(value, v -> {
+            values.add(v);
+            return values.size() - 1;
+        });
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    String[] values() {
+        return values.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,29 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+public final class GenreYearCount {
+
+    private final String genre;
+    private final Integer year;
+    private final long count;
+
+    GenreYearCount(String genre, Integer year, long count) {
+        this.genre = genre;
+        this.year = year;
+        this.count = count;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    /**
+     * @return publication year, {@code null} for books without a date
+     */
+    public Integer getYear() {
+        return year;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -7,8 +7,22 @@ import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
 import otus.springfreamwork.jpa.domain.application.services.AuthorService;
 import otus.springfreamwork.jpa.domain.application.services.BookService;
+import otus.springfreamwork.jpa.domain.application.services.CatalogGraphService;
+import otus.springfreamwork.jpa.domain.application.services.CatalogStatisticsService;
 import otus.springfreamwork.jpa.domain.application.services.CommentService;
 import otus.springfreamwork.jpa.domain.application.services.GenreService;
+import otus.springfreamwork.jpa.domain.application.services.PurgeService;
+import otus.springfreamwork.jpa.domain.application.services.ReportService;
+import otus.springfreamwork.jpa.domain.application.services.TrendService;
+import otus.springfreamwork.jpa.domain.dao.BookSearch;
+import otus.springfreamwork.jpa.domain.dao.StaleEntityException;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @ShellComponent
 public class ShellCommands {
@@ -17,18 +31,33 @@ public class ShellCommands {
     private final GenreService genreService;
     private final BookService bookService;
     private final CommentService commentService;
+    private final CatalogStatisticsService statisticsService;
+    private final PurgeService purgeService;
+    private final CatalogGraphService graphService;
+    private final ReportService reportService;
+    private final TrendService trendService;
 
     @Autowired
     public ShellCommands(
             AuthorService authorService,
             GenreService genreService,
             BookService bookService,
-            CommentService commentService
+            CommentService commentService,
+            CatalogStatisticsService statisticsService,
+            PurgeService purgeService,
+            CatalogGraphService graphService,
+            ReportService reportService,
+            TrendService trendService
     ) {
         this.authorService = authorService;
         this.genreService = genreService;
         this.bookService = bookService;
         this.commentService = commentService;
+        this.statisticsService = statisticsService;
+        this.purgeService = purgeService;
+        this.graphService = graphService;
+        this.reportService = reportService;
+        this.trendService = trendService;
     }
 
     @ShellMethod("listBooks")
@@ -71,11 +100,118 @@ public class ShellCommands {
         return commentService.countComments();
     }
 
+    @ShellMethod("bookStats")
+    public String bookStats(@ShellOption String name) {
+        return statisticsService.getBookStatistics(name);
+    }
+
+    @ShellMethod("authorStats")
+    public String authorStats(
+            @ShellOption String name,
+            @ShellOption String surname
+    ) {
+        return statisticsService.getAuthorStatistics(name, surname);
+    }
+
+    @ShellMethod("genreStats")
+    public String genreStats(@ShellOption String name) {
+        return statisticsService.getGenreStatistics(name);
+    }
+
+    @ShellMethod("topBooks")
+    public String topBooks(@ShellOption(defaultValue = "100") int limit) {
+        return statisticsService.getTopBooks(limit);
+    }
+
+    @ShellMethod("topAuthors")
+    public String topAuthors(@ShellOption(defaultValue = "100") int limit) {
+        return statisticsService.getTopAuthors(limit);
+    }
+
+    @ShellMethod("checkAggregates")
+    public String checkAggregates(@ShellOption(defaultValue = "false") boolean rebuild) {
+        return statisticsService.checkAggregates(rebuild);
+    }
+
+    @ShellMethod("coAuthors")
+    public String coAuthors(
+            @ShellOption String name,
+            @ShellOption String surname
+    ) {
+        return graphService.getCoAuthors(name, surname);
+    }
+
+    @ShellMethod("authorDistance")
+    public String authorDistance(
+            @ShellOption String name,
+            @ShellOption String surname,
+            @ShellOption String otherName,
+            @ShellOption String otherSurname,
+            @ShellOption(defaultValue = "6") int maxDepth
+    ) {
+        return graphService.getAuthorDistance(name, surname, otherName, otherSurname, maxDepth);
+    }
+
+    @ShellMethod("relatedBooks")
+    public String relatedBooks(@ShellOption String name) {
+        return graphService.getBooksSharingAuthors(name);
+    }
+
+    @ShellMethod("alsoCommented")
+    public String alsoCommented(
+            @ShellOption String name,
+            @ShellOption(defaultValue = "10") int limit
+    ) {
+        return graphService.getAlsoCommented(name, limit);
+    }
+
+    @ShellMethod(value = "reportGenres", key = "report genres")
+    public String reportGenres(
+            @ShellOption(defaultValue = ShellOption.NULL) String genre,
+            @ShellOption(defaultValue = ShellOption.NULL) Integer fromYear,
+            @ShellOption(defaultValue = ShellOption.NULL) Integer toYear
+    ) {
+        return reportService.getBooksByGenreAndYear(genre, fromYear, toYear);
+    }
+
+    @ShellMethod(value = "reportCountries", key = "report countries")
+    public String reportCountries() {
+        return reportService.getAuthorsByCountry();
+    }
+
+    @ShellMethod(value = "reportCommenters", key = "report commenters")
+    public String reportCommenters(@ShellOption(defaultValue = "10") int limit) {
+        return reportService.getTopCommenters(limit);
+    }
+
+    @ShellMethod("trendingBooks")
+    public String trendingBooks(
+            @ShellOption(defaultValue = "60") int minutes,
+            @ShellOption(defaultValue = "10") int limit
+    ) {
+        return trendService.getTrendingBooks(minutes, limit);
+    }
+
+    @ShellMethod("distinctCommenters")
+    public String distinctCommenters(@ShellOption String name) {
+        return trendService.getDistinctCommenters(name);
+    }
+
     @ShellMethod("getBook")
     public String getBook(@ShellOption String name) {
         return bookService.getBook(name);
     }
 
+    @ShellMethod("getBooks")
+    public String getBooks(@ShellOption(help = "comma separated book ids") String ids) {
+        List<Integer> bookIds = Arrays.stream(ids.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .map(Integer::valueOf)
+                .collect(Collectors.toList());
+        return bookService.getBooksByIds(bookIds);
+    }
+
     @ShellMethod("geAuthorBooks")
     public String getAuthorBooks(
             @ShellOption String name,
@@ -98,6 +234,32 @@ public class ShellCommands {
         return bookService.getCommentsOnBook(name);
     }
 
+    @ShellMethod("searchBooks")
+    public String searchBooks(
+            @ShellOption(defaultValue = ShellOption.NULL) String genre,
+            @ShellOption(defaultValue = ShellOption.NULL) String authorName,
+            @ShellOption(defaultValue = ShellOption.NULL) String authorSurname,
+            @ShellOption(defaultValue = ShellOption.NULL) String namePrefix,
+            @ShellOption(defaultValue = ShellOption.NULL, help = "yyyy-MM-dd") String publishedFrom,
+            @ShellOption(defaultValue = ShellOption.NULL, help = "yyyy-MM-dd") String publishedTo,
+            @ShellOption(defaultValue = ShellOption.NULL, arity = 1) Boolean hasComments,
+            @ShellOption(defaultValue = "NAME") BookSearch.SortBy sortBy,
+            @ShellOption(defaultValue = "false") boolean desc,
+            @ShellOption(defaultValue = "100") int limit,
+            @ShellOption(defaultValue = "false") boolean facets
+    ) {
+        BookSearch search = new BookSearch()
+                .genre(genre)
+                .author(authorName, authorSurname)
+                .namePrefix(namePrefix)
+                .publishedBetween(parseDate(publishedFrom), parseDate(publishedTo))
+                .hasComments(hasComments)
+                .sortBy(sortBy, desc)
+                .limit(limit)
+                .withFacets(facets);
+        return bookService.searchBooks(search);
+    }
+
     @ShellMethod("getAuthor")
     public String getAuthor(
             @ShellOption String name,
@@ -149,6 +311,81 @@ public class ShellCommands {
         return commentService.createComment(username, commentText, bookName);
     }
 
+    @ShellMethod("dedupeComments")
+    public String dedupeComments(@ShellOption(defaultValue = "false") boolean delete) {
+        return commentService.dedupeComments(delete);
+    }
+
+    @ShellMethod("renameBook")
+    public String renameBook(
+            @ShellOption String name,
+            @ShellOption String newName,
+            @ShellOption(help = "version shown by getBook") long version
+    ) {
+        try {
+            return bookService.renameBook(name, newName, version);
+        } catch (StaleEntityException e) {
+            return staleMessage(e);
+        }
+    }
+
+    @ShellMethod("patchBook")
+    public String patchBook(
+            @ShellOption int id,
+            @ShellOption(defaultValue = ShellOption.NULL) String name,
+            @ShellOption(defaultValue = ShellOption.NULL, help = "yyyy-MM-dd") String publishedDate,
+            @ShellOption(defaultValue = ShellOption.NULL, help = "apply only at this version") Long version
+    ) {
+        try {
+            return bookService.patchBook(id, name, parseDate(publishedDate), version);
+        } catch (StaleEntityException e) {
+            return staleMessage(e);
+        }
+    }
+
+    @ShellMethod("patchAuthor")
+    public String patchAuthor(
+            @ShellOption int id,
+            @ShellOption(defaultValue = ShellOption.NULL) String name,
+            @ShellOption(defaultValue = ShellOption.NULL) String surname,
+            @ShellOption(defaultValue = ShellOption.NULL, help = "apply only at this version") Long version
+    ) {
+        try {
+            return authorService.patchAuthor(id, name, surname, version);
+        } catch (StaleEntityException e) {
+            return staleMessage(e);
+        }
+    }
+
+    @ShellMethod("editComment")
+    public String editComment(
+            @ShellOption int id,
+            @ShellOption(help = "version shown by getComment") long version,
+            @ShellOption String commentText
+    ) {
+        try {
+            return commentService.editComment(id, version, commentText);
+        } catch (StaleEntityException e) {
+            return staleMessage(e);
+        }
+    }
+
+    @ShellMethod("mergeGenres")
+    public String mergeGenres(
+            @ShellOption String from,
+            @ShellOption String into
+    ) {
+        return genreService.mergeGenres(from, into);
+    }
+
+    @ShellMethod("renameUser")
+    public String renameUser(
+            @ShellOption String username,
+            @ShellOption String newUsername
+    ) {
+        return commentService.renameUsername(username, newUsername);
+    }
+
     @ShellMethod("deleteAuthor")
     public String deleteAuthor(
             @ShellOption String name,
@@ -170,4 +407,25 @@ public class ShellCommands {
     ) {
         return bookService.deleteBook(name);
     }
+
+    @ShellMethod("purgeStatus")
+    public String purgeStatus() {
+        return purgeService.getPurgeProgress();
+    }
+
+    private static String staleMessage(StaleEntityException e) {
+        return "Запись изменена другим пользователем после версии " + e.getExpectedVersion()
+                + ", перечитайте её и повторите изменение";
+    }
+
+    private static Date parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").parse(date);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Дата должна быть в формате yyyy-MM-dd: " + date, e);
+        }
+    }
 }
@@ -0,0 +1,22 @@
+package otus.springfreamwork.jpa.com.application.dedupe;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+@EnableConfigurationProperties(CommentDedupeProperties.class)
+public class CommentDedupeConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CommentDuplicateIndex commentDuplicateIndex(
+            EntityManagerFactory entityManagerFactory,
+            CacheInvalidator cacheInvalidator,
+            CommentDedupeProperties properties
+    ) {
+        return new CommentDuplicateIndex(entityManagerFactory, cacheInvalidator, properties);
+    }
+}
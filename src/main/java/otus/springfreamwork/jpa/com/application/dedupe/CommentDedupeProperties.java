@@ -0,0 +1,83 @@
+package otus.springfreamwork.jpa.com.application.dedupe;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "comments.dedupe")
+public class CommentDedupeProperties {
+
+    public enum Action {
+        /**
+         * Create the comment and report which one it resembles.
+         */
+        FLAG,
+        REJECT
+    }
+
+    private Action action = Action.FLAG;
+    /**
+     * Estimated Jaccard similarity of shingle sets from which two comments are near-duplicates.
+     */
+    private double threshold = 0.8;
+    /**
+     * Characters per shingle.
+     */
+    private int shingleSize = 5;
+    /**
+     * LSH bands and rows per band; the signature has {@code bands * rows} hashes, and pairs become candidates
+     * from a similarity of about {@code (1 / bands)^(1 / rows)}.
+     */
+    private int bands = 16;
+    private int rows = 8;
+    /**
+     * Shorter comments, after normalization, are never checked: short texts like "great book" repeat honestly.
+     */
+    private int minLength = 20;
+
+    public Action getAction() {
+        return action;
+    }
+
+    public void setAction(Action action) {
+        this.action = action;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getShingleSize() {
+        return shingleSize;
+    }
+
+    public void setShingleSize(int shingleSize) {
+        this.shingleSize = shingleSize;
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public void setBands(int bands) {
+        this.bands = bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(int minLength) {
+        this.minLength = minLength;
+    }
+}
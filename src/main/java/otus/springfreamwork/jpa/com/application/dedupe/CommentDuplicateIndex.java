@@ -0,0 +1,195 @@
+package otus.springfreamwork.jpa.com.application.dedupe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region;
+import otus.springfreamwork.jpa.com.application.invalidation.InvalidationBatch;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds near-duplicate comments through {@link MinHash} signatures in an {@link LshIndex}, so a new comment is
+ * compared only with the few comments sharing a bucket with it. The index is loaded on a background thread at
+ * start; until then lookups see only what is loaded so far. Comments created here are indexed at once, and
+ * committed changes of this and other nodes are read again on the same background thread.
+ */
+public class CommentDuplicateIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommentDuplicateIndex.class);
+
+    private static final int MAX_IN = 1000;
+    private static final int LOAD_CHUNK = 1000;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheInvalidator cacheInvalidator;
+    private final CommentDedupeProperties properties;
+    private final MinHash minHash;
+
+    private volatile LshIndex index;
+    private volatile boolean loaded;
+    private ExecutorService feed;
+
+    public CommentDuplicateIndex(
+            EntityManagerFactory entityManagerFactory,
+            CacheInvalidator cacheInvalidator,
+            CommentDedupeProperties properties
+    ) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.cacheInvalidator = cacheInvalidator;
+        this.properties = properties;
+        this.minHash = new MinHash(properties.getBands() * properties.getRows(), properties.getShingleSize());
+        this.index = new LshIndex(properties.getBands(), properties.getRows());
+    }
+
+    public void start() {
+        feed = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "comment-dedupe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        feed.execute(this::loadAll);
+        cacheInvalidator.addListener(this::invalidated);
+    }
+
+    public void stop() {
+        feed.shutdownNow();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean rejectsDuplicates() {
+        return properties.getAction() == CommentDedupeProperties.Action.REJECT;
+    }
+
+    /**
+     * @return id of an indexed comment the text is a near-duplicate of, or {@code null}
+     */
+    public Integer findDuplicate(String text) {
+        int[] signature = minHash.signature(text, properties.getMinLength());
+        return signature == null ? null : index.find(signature, properties.getThreshold());
+    }
+
+    /**
+     * Indexes a comment inserted in the current transaction, so that copies sent right after it are caught
+     * before it commits; it is dropped again if the transaction rolls back.
+     */
+    public void add(int id, String text) {
+        int[] signature = minHash.signature(text, properties.getMinLength());
+        if (signature == null) {
+            return;
+        }
+        LshIndex current = index;
+        current.put(id, signature);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        current.remove(id);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return id of each indexed near-duplicate to the id of the earliest comment it copies, by duplicate id
+     */
+    public Map<Integer, Integer> findAllDuplicates() {
+        return index.duplicates(properties.getThreshold());
+    }
+
+    private void invalidated(InvalidationBatch batch, boolean remote) {
+        if (batch.isWholeRegion(Region.COMMENT)) {
+            feed.execute(this::loadAll);
+            return;
+        }
+        Set<String> keys = batch.getKeys(Region.COMMENT);
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(keys.size());
+        keys.forEach(key -> ids.add(Integer.valueOf(key)));
+        feed.execute(() -> {
+            try {
+                refresh(ids);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Comments of {} are not reindexed for duplicates", batch, e);
+            }
+        });
+    }
+
+    /**
+     * Builds a new index aside and swaps it in. Comments added meanwhile are in the old one only, but their
+     * commits queue a refresh behind this load.
+     */
+    private void loadAll() {
+        LshIndex loading = new LshIndex(properties.getBands(), properties.getRows());
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            int after = 0;
+            List<Object[]> rows;
+            do {
+                rows = entityManager.createQuery(
+                        "SELECT c.id, c.comment FROM Comment c WHERE c.id > :after ORDER BY c.id", Object[].class)
+                        .setParameter("after", after)
+                        .setMaxResults(LOAD_CHUNK)
+                        .getResultList();
+                for (Object[] row : rows) {
+                    after = (Integer) row[0];
+                    put(loading, after, (String) row[1]);
+                }
+                entityManager.clear();
+            } while (rows.size() == LOAD_CHUNK);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Comment duplicate index is not loaded", e);
+            return;
+        } finally {
+            entityManager.close();
+        }
+        index = loading;
+        loaded = true;
+    }
+
+    private void refresh(List<Integer> ids) {
+        Set<Integer> missing = new HashSet<>(ids);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            for (int from = 0; from < ids.size(); from += MAX_IN) {
+                List<Object[]> rows = entityManager.createQuery(
+                        "SELECT c.id, c.comment FROM Comment c WHERE c.id IN :ids", Object[].class)
+                        .setParameter("ids", ids.subList(from, Math.min(from + MAX_IN, ids.size())))
+                        .getResultList();
+                for (Object[] row : rows) {
+                    missing.remove(row[0]);
+                    put(index, (Integer) row[0], (String) row[1]);
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+        missing.forEach(index::remove);
+    }
+
+    private void put(LshIndex target, int id, String text) {
+        int[] signature = text == null ? null : minHash.signature(text, properties.getMinLength());
+        if (signature == null) {
+            target.remove(id);
+        } else {
+            target.put(id, signature);
+        }
+    }
+}
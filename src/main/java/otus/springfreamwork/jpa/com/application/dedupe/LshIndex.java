@@ -0,0 +1,119 @@
+package otus.springfreamwork.jpa.com.application.dedupe;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality-sensitive index over MinHash signatures. A signature is cut into bands of rows, and each band is a
+ * bucket key; texts sharing any bucket are candidates and only those are compared, so a lookup touches a few
+ * buckets instead of every text. With {@code b} bands of {@code r} rows, pairs of similarity {@code s} share a
+ * bucket with probability {@code 1 - (1 - s^r)^b}.
+ */
+final class LshIndex {
+
+    private final int bands;
+    private final int rows;
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final Map<Long, Set<Integer>> buckets = new HashMap<>();
+
+    LshIndex(int bands, int rows) {
+        this.bands = bands;
+        this.rows = rows;
+    }
+
+    synchronized void put(int id, int[] signature) {
+        remove(id);
+        signatures.put(id, signature);
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(bucket(signature, band), key -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    synchronized void remove(int id) {
+        int[] signature = signatures.remove(id);
+        if (signature == null) {
+            return;
+        }
+        for (int band = 0; band < bands; band++) {
+            long key = bucket(signature, band);
+            Set<Integer> ids = buckets.get(key);
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        signatures.clear();
+        buckets.clear();
+    }
+
+    synchronized int[] get(int id) {
+        return signatures.get(id);
+    }
+
+    /**
+     * @return sorted ids of all indexed texts
+     */
+    synchronized int[] ids() {
+        return signatures.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * @return the first candidate at least {@code threshold} similar, or {@code null}
+     */
+    synchronized Integer find(int[] signature, double threshold) {
+        Set<Integer> compared = new HashSet<>();
+        for (int band = 0; band < bands; band++) {
+            Set<Integer> ids = buckets.get(bucket(signature, band));
+            if (ids == null) {
+                continue;
+            }
+            for (Integer id : ids) {
+                if (compared.add(id) && MinHash.similarity(signature, signatures.get(id)) >= threshold) {
+                    return id;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Band number in the high half, hash of its rows in the low half, so that equal rows in different bands
+     * never share a bucket.
+     */
+    private long bucket(int[] signature, int band) {
+        int from = band * rows;
+        return (long) band << 32 | Arrays.hashCode(Arrays.copyOfRange(signature, from, from + rows)) & 0xffffffffL;
+    }
+
+    /**
+     * Groups the given texts by the earliest one each is a near-duplicate of, comparing every text only with
+     * the earlier texts that are not duplicates themselves, so a flood of copies costs one comparison each.
+     *
+     * @return duplicate id to original id, in order of duplicate id
+     */
+    Map<Integer, Integer> duplicates(double threshold) {
+        LshIndex originals = new LshIndex(bands, rows);
+        Map<Integer, Integer> duplicates = new LinkedHashMap<>();
+        for (int id : ids()) {
+            int[] signature = get(id);
+            if (signature == null) {
+                continue;
+            }
+            Integer original = originals.find(signature, threshold);
+            if (original == null) {
+                originals.put(id, signature);
+            } else {
+                duplicates.put(id, original);
+            }
+        }
+        return duplicates;
+    }
+}
@@ -0,0 +1,99 @@
+package otus.springfreamwork.jpa.com.application.dedupe;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MinHash signatures of comment texts: the text is normalized, cut into overlapping character shingles, and
+ * each of the hash functions keeps its minimum over the shingles. The share of equal positions in two
+ * signatures estimates the Jaccard similarity of their shingle sets.
+ */
+final class MinHash {
+
+    private final int shingleSize;
+    private final long[] multipliers;
+    private final long[] increments;
+
+    MinHash(int hashes, int shingleSize) {
+        this.shingleSize = shingleSize;
+        this.multipliers = new long[hashes];
+        this.increments = new long[hashes];
+        // Fixed seed: signatures computed on different nodes or runs must be comparable.
+        Random random = new Random(0x5eed);
+        for (int i = 0; i < hashes; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            increments[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * @return signature, or {@code null} if the normalized text is shorter than {@code minLength}
+     */
+    int[] signature(String text, int minLength) {
+        String normalized = normalize(text);
+        if (normalized.length() < Math.max(minLength, shingleSize)) {
+            return null;
+        }
+        int[] signature = new int[multipliers.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int start = 0; start + shingleSize <= normalized.length(); start++) {
+            long shingle = hash(normalized, start, start + shingleSize);
+            for (int i = 0; i < signature.length; i++) {
+                int value = (int) ((multipliers[i] * shingle + increments[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * @return estimated Jaccard similarity, from 0 to 1
+     */
+    static double similarity(int[] left, int[] right) {
+        int equal = 0;
+        for (int i = 0; i < left.length; i++) {
+            if (left[i] == right[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / left.length;
+    }
+
+    /**
+     * Lower case, with every run of characters other than letters and digits turned into one space, so that
+     * case, punctuation and spacing tricks do not change the shingles.
+     */
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                normalized.append(' ');
+                space = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    private static long hash(String text, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,29 @@
+package otus.springfreamwork.jpa.com.application.faststart;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.shell.Shell;
+
+@Configuration
+@Profile("fast-start")
+@EnableConfigurationProperties(FastStartProperties.class)
+public class FastStartConfiguration {
+
+    @Bean
+    public static LazyApplicationBeans lazyApplicationBeans() {
+        return new LazyApplicationBeans();
+    }
+
+    @Bean
+    public static FastStartPostProcessor fastStartPostProcessor(FastStartProperties properties) {
+        return new FastStartPostProcessor(properties);
+    }
+
+    @Bean
+    public SingleCommandRunner singleCommandRunner(Shell shell, ConfigurableEnvironment environment) {
+        return new SingleCommandRunner(shell, environment);
+    }
+}
@@ -0,0 +1,108 @@
+package otus.springfreamwork.jpa.com.application.faststart;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import otus.springfreamwork.jpa.JpaOtusSpringfreamworkApplication;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Skips Liquibase and Hibernate schema validation while the {@link SchemaStamp} of the last full start still
+ * matches, and then hands Hibernate the entity classes that start found instead of scanning for them.
+ * Otherwise the start runs both as usual and saves a new stamp once the context is up, that is once the
+ * schema has been migrated and validated.
+ */
+public class FastStartPostProcessor implements BeanPostProcessor, ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastStartPostProcessor.class);
+
+    private final Path stampFile;
+
+    /**
+     * Saved stamp that matches the database, when this start skips the checks.
+     */
+    private SchemaStamp unchanged;
+    /**
+     * Stamp read after Liquibase ran, saved once the schema is validated.
+     */
+    private SchemaStamp checked;
+    private List<String> managedClassNames;
+
+    public FastStartPostProcessor(FastStartProperties properties) {
+        this.stampFile = Paths.get(properties.getStamp());
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof SpringLiquibase) {
+            SpringLiquibase liquibase = (SpringLiquibase) bean;
+            try {
+                SchemaStamp saved = SchemaStamp.load(stampFile);
+                if (saved != null && !saved.getManagedClassNames().isEmpty() && saved.sameSchema(read(liquibase))) {
+                    unchanged = saved;
+                    liquibase.setShouldRun(false);
+                    LOGGER.info("Schema unchanged since the last start, Liquibase and schema validation skipped");
+                }
+            } catch (IOException | SQLException | RuntimeException e) {
+                LOGGER.warn("Schema stamp {} is not read, the schema is checked in full", stampFile, e);
+            }
+        } else if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+            LocalContainerEntityManagerFactoryBean entityManagerFactory = (LocalContainerEntityManagerFactoryBean) bean;
+            if (unchanged != null) {
+                List<String> classNames = unchanged.getManagedClassNames();
+                entityManagerFactory.getJpaPropertyMap().put("hibernate.hbm2ddl.auto", "none");
+                entityManagerFactory.setPackagesToScan();
+                entityManagerFactory.setPersistenceUnitPostProcessors(unit -> classNames.forEach(unit::addManagedClassName));
+            } else {
+                entityManagerFactory.setPersistenceUnitPostProcessors(
+                        unit -> managedClassNames = new ArrayList<>(unit.getManagedClassNames()));
+            }
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof SpringLiquibase && unchanged == null) {
+            try {
+                checked = read((SpringLiquibase) bean);
+            } catch (IOException | SQLException | RuntimeException e) {
+                LOGGER.warn("Schema stamp is not read, the next start checks the schema in full", e);
+            }
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (checked == null || managedClassNames == null || managedClassNames.isEmpty()) {
+            return;
+        }
+        try {
+            checked.withManagedClassNames(managedClassNames).save(stampFile);
+            LOGGER.info("Schema stamp saved to {}", stampFile);
+        } catch (IOException e) {
+            LOGGER.warn("Schema stamp {} is not saved", stampFile, e);
+        }
+        checked = null;
+    }
+
+    private static SchemaStamp read(SpringLiquibase liquibase) throws IOException, SQLException {
+        return SchemaStamp.read(
+                liquibase.getDataSource(),
+                liquibase.getResourceLoader().getResource(liquibase.getChangeLog()),
+                liquibase.getDefaultSchema(),
+                JpaOtusSpringfreamworkApplication.class
+        );
+    }
+}
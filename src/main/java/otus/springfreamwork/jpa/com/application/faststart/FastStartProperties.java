@@ -0,0 +1,21 @@
+package otus.springfreamwork.jpa.com.application.faststart;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "fast-start")
+public class FastStartProperties {
+
+    /**
+     * File with the schema stamp of the last start that ran Liquibase and validated the schema;
+     * while the stamp still matches, the next start skips both.
+     */
+    private String stamp = "./data/fast-start.stamp";
+
+    public String getStamp() {
+        return stamp;
+    }
+
+    public void setStamp(String stamp) {
+        this.stamp = stamp;
+    }
+}
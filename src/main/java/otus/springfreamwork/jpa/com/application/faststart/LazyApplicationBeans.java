@@ -0,0 +1,65 @@
+package otus.springfreamwork.jpa.com.application.faststart;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.context.annotation.ContextAnnotationAutowireCandidateResolver;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.shell.standard.ShellComponent;
+import otus.springfreamwork.jpa.JpaOtusSpringfreamworkApplication;
+
+/**
+ * Creates the application's own beans on first use: their definitions are lazy, and shell commands get lazy
+ * proxies of the services they call, so a command starts only the services, repositories and background
+ * subsystems it needs. Framework beans stay eager, so the schema is still migrated and checked on start.
+ * With a single command to run, JLine is also told to use a dumb terminal instead of probing the system one.
+ */
+public class LazyApplicationBeans implements BeanFactoryPostProcessor {
+
+    private static final String APPLICATION_PACKAGE = JpaOtusSpringfreamworkApplication.class.getPackage().getName() + ".";
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (definition.getRole() == BeanDefinition.ROLE_APPLICATION && isApplicationBean(beanFactory, definition)) {
+                definition.setLazyInit(true);
+            }
+        }
+        if (beanFactory instanceof DefaultListableBeanFactory) {
+            ((DefaultListableBeanFactory) beanFactory).setAutowireCandidateResolver(new ShellCommandsResolver());
+        }
+        for (String name : beanFactory.getBeanNamesForType(ApplicationArguments.class, false, false)) {
+            if (!SingleCommandRunner.command(beanFactory.getBean(name, ApplicationArguments.class)).isEmpty()) {
+                System.setProperty("org.jline.terminal.jna", "false");
+                System.setProperty("org.jline.terminal.jansi", "false");
+                System.setProperty("org.jline.terminal.exec", "false");
+                System.setProperty("org.jline.terminal.dumb", "true");
+            }
+        }
+    }
+
+    /**
+     * Beans of application classes, and beans made by factory methods of application configurations.
+     */
+    private static boolean isApplicationBean(ConfigurableListableBeanFactory beanFactory, BeanDefinition definition) {
+        String className = definition.getBeanClassName();
+        if (className == null && definition.getFactoryBeanName() != null
+                && beanFactory.containsBeanDefinition(definition.getFactoryBeanName())) {
+            className = beanFactory.getBeanDefinition(definition.getFactoryBeanName()).getBeanClassName();
+        }
+        return className != null && className.startsWith(APPLICATION_PACKAGE);
+    }
+
+    private static final class ShellCommandsResolver extends ContextAnnotationAutowireCandidateResolver {
+
+        @Override
+        protected boolean isLazy(DependencyDescriptor descriptor) {
+            return super.isLazy(descriptor) || AnnotatedElementUtils.hasAnnotation(
+                    descriptor.getMember().getDeclaringClass(), ShellComponent.class);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package otus.springfreamwork.jpa.com.application.faststart;
+
+import org.springframework.core.io.Resource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * What a successful start checked the schema against: the database, the changelog, the changesets applied to
+ * the database and the application classes. Two stamps with the same values mean the schema needs neither
+ * migrating nor validating again. Also carries the entity classes the start found, so the next one need not
+ * scan for them.
+ */
+final class SchemaStamp {
+
+    private static final String URL = "url";
+    private static final String CHANGELOG = "changelog";
+    private static final String CHANGESETS = "changesets";
+    private static final String CODE = "code";
+    private static final String MANAGED_CLASSES = "managed-classes";
+
+    private final Properties values;
+
+    private SchemaStamp(Properties values) {
+        this.values = values;
+    }
+
+    /**
+     * @param code class that locates the application code, a jar or a classes directory
+     */
+    static SchemaStamp read(DataSource dataSource, Resource changeLog, String defaultSchema, Class<?> code) throws SQLException, IOException {
+        Properties values = new Properties();
+        try (Connection connection = dataSource.getConnection()) {
+            values.setProperty(URL, connection.getMetaData().getURL());
+            values.setProperty(CHANGESETS, changeSets(connection, defaultSchema));
+        }
+        try (InputStream changeLogStream = changeLog.getInputStream()) {
+            values.setProperty(CHANGELOG, digest(changeLogStream));
+        }
+        values.setProperty(CODE, codeFingerprint(code));
+        return new SchemaStamp(values);
+    }
+
+    /**
+     * @return the saved stamp, or {@code null} if there is none
+     */
+    static SchemaStamp load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties values = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            values.load(in);
+        }
+        return new SchemaStamp(values);
+    }
+
+    void save(Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        Path written = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(written)) {
+            values.store(out, "Schema checked by a fast start");
+        }
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    boolean sameSchema(SchemaStamp other) {
+        return other != null
+                && Objects.equals(values.getProperty(URL), other.values.getProperty(URL))
+                && Objects.equals(values.getProperty(CHANGELOG), other.values.getProperty(CHANGELOG))
+                && Objects.equals(values.getProperty(CHANGESETS), other.values.getProperty(CHANGESETS))
+                && Objects.equals(values.getProperty(CODE), other.values.getProperty(CODE));
+    }
+
+    /**
+     * @return entity classes found when the stamp was saved, empty if it has none
+     */
+    List<String> getManagedClassNames() {
+        String names = values.getProperty(MANAGED_CLASSES, "");
+        return names.isEmpty() ? Collections.emptyList() : Arrays.asList(names.split(","));
+    }
+
+    SchemaStamp withManagedClassNames(List<String> names) {
+        Properties copy = new Properties();
+        copy.putAll(values);
+        copy.setProperty(MANAGED_CLASSES, String.join(",", names));
+        return new SchemaStamp(copy);
+    }
+
+    /**
+     * Liquibase adds a row for every changeset it runs, so the count and the last execution time change
+     * with each migration. A database without the table reads as never migrated.
+     */
+    private static String changeSets(Connection connection, String defaultSchema) {
+        String table = defaultSchema == null || defaultSchema.isEmpty() ? "databasechangelog" : defaultSchema + ".databasechangelog";
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT COUNT(*), MAX(dateexecuted) FROM " + table)) {
+            result.next();
+            return result.getLong(1) + "/" + result.getTimestamp(2);
+        } catch (SQLException e) {
+            return "none";
+        }
+    }
+
+    /**
+     * Length and modification time of the jar, or of every class file when running from a classes directory.
+     */
+    private static String codeFingerprint(Class<?> code) throws IOException {
+        CodeSource source = code.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return "unknown";
+        }
+        Path location;
+        try {
+            location = Paths.get(source.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return source.getLocation().toString();
+        }
+        if (!Files.isDirectory(location)) {
+            return location + ":" + Files.size(location) + ":" + Files.getLastModifiedTime(location).toMillis();
+        }
+        List<String> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(location)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile).sorted()::iterator) {
+                files.add(location.relativize(path) + ":" + Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis());
+            }
+        }
+        return digest(String.join("\n", files));
+    }
+
+    private static String digest(InputStream in) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            digest.update(buffer, 0, read);
+        }
+        return hex(digest.digest());
+    }
+
+    private static String digest(String value) {
+        return hex(sha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package otus.springfreamwork.jpa.com.application.faststart;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.shell.Input;
+import org.springframework.shell.Shell;
+import org.springframework.shell.jline.InteractiveShellApplicationRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the command given on the command line and exits instead of starting the interactive shell, e.g.
+ * {@code java -jar app.jar --spring.profiles.active=fast-start getAllBooks}. The command starts at the first
+ * argument that is not a {@code --} option; the words stay as the operating system split them, so quoted
+ * values keep their spaces.
+ */
+@Order(InteractiveShellApplicationRunner.PRECEDENCE - 50)
+public class SingleCommandRunner implements ApplicationRunner {
+
+    private final Shell shell;
+    private final ConfigurableEnvironment environment;
+
+    public SingleCommandRunner(Shell shell, ConfigurableEnvironment environment) {
+        this.shell = shell;
+        this.environment = environment;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> words = command(args);
+        if (words.isEmpty()) {
+            return;
+        }
+        InteractiveShellApplicationRunner.disable(environment);
+        Input input = new Input() {
+            @Override
+            public String rawText() {
+                return String.join(" ", words);
+            }
+
+            @Override
+            public List<String> words() {
+                return words;
+            }
+        };
+        boolean[] read = {false};
+        shell.run(() -> {
+            if (read[0]) {
+                return null;
+            }
+            read[0] = true;
+            return input;
+        });
+    }
+
+    /**
+     * @return words of the command, empty if none is given; a script argument ({@code @file}) is not a command
+     */
+    static List<String> command(ApplicationArguments args) {
+        String[] sourceArgs = args.getSourceArgs();
+        for (int i = 0; i < sourceArgs.length; i++) {
+            if (sourceArgs[i].startsWith("@")) {
+                return Collections.emptyList();
+            }
+            if (!sourceArgs[i].startsWith("--")) {
+                return Arrays.asList(sourceArgs).subList(i, sourceArgs.length);
+            }
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,35 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@EnableConfigurationProperties(CacheInvalidationProperties.class)
+public class CacheInvalidationConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "cache.invalidation", name = "bus", havingValue = "postgres")
+    public PostgresInvalidationBus postgresInvalidationBus(
+            DataSourceProperties dataSourceProperties,
+            JdbcTemplate jdbcTemplate,
+            CacheInvalidationProperties properties
+    ) {
+        return new PostgresInvalidationBus(dataSourceProperties, jdbcTemplate, properties);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(InvalidationBus.class)
+    public LoopbackInvalidationBus loopbackInvalidationBus() {
+        return new LoopbackInvalidationBus();
+    }
+
+    @Bean
+    public CacheInvalidator cacheInvalidator(InvalidationBus invalidationBus, CacheInvalidationProperties properties) {
+        return new CacheInvalidator(invalidationBus, properties.getMaxKeysPerRegion());
+    }
+}
@@ -0,0 +1,85 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "cache.invalidation")
+public class CacheInvalidationProperties {
+
+    public enum Transport {
+        LOOPBACK,
+        POSTGRES
+    }
+
+    /**
+     * How invalidations reach other nodes: LOOPBACK for a single JVM, POSTGRES for LISTEN/NOTIFY.
+     */
+    private Transport bus = Transport.LOOPBACK;
+    /**
+     * Notification channel shared by all nodes.
+     */
+    private String channel = "catalog_invalidation";
+    /**
+     * Keys of one region in a batch above which the whole region is invalidated instead.
+     */
+    private int maxKeysPerRegion = 256;
+    /**
+     * How long received notifications are collected before they are applied together.
+     */
+    private long coalesceMs = 50;
+    /**
+     * Longest wait for notifications in one poll; also bounds shutdown time.
+     */
+    private long pollMs = 500;
+    /**
+     * Pause before listening again after the connection was lost.
+     */
+    private long reconnectDelayMs = 5_000;
+
+    public Transport getBus() {
+        return bus;
+    }
+
+    public void setBus(Transport bus) {
+        this.bus = bus;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public int getMaxKeysPerRegion() {
+        return maxKeysPerRegion;
+    }
+
+    public void setMaxKeysPerRegion(int maxKeysPerRegion) {
+        this.maxKeysPerRegion = maxKeysPerRegion;
+    }
+
+    public long getCoalesceMs() {
+        return coalesceMs;
+    }
+
+    public void setCoalesceMs(long coalesceMs) {
+        this.coalesceMs = coalesceMs;
+    }
+
+    public long getPollMs() {
+        return pollMs;
+    }
+
+    public void setPollMs(long pollMs) {
+        this.pollMs = pollMs;
+    }
+
+    public long getReconnectDelayMs() {
+        return reconnectDelayMs;
+    }
+
+    public void setReconnectDelayMs(long reconnectDelayMs) {
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+}
@@ -0,0 +1,123 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects invalidations of the current transaction and hands them out once it commits: to local listeners
+ * directly and to other nodes through the {@link InvalidationBus}. Batches arriving from other nodes are
+ * passed to the same listeners, flagged as remote. The listeners are the in-process copies of catalog rows:
+ * aggregates and leaderboards, the link index, the read model, report columns, comment sketches and the
+ * duplicate index. Hibernate's second-level cache is not enabled, so there is nothing to evict there.
+ */
+public class CacheInvalidator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final InvalidationBus bus;
+    private final int maxKeysPerRegion;
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object pendingKey = new Object();
+
+    public CacheInvalidator(InvalidationBus bus, int maxKeysPerRegion) {
+        this.bus = bus;
+        this.maxKeysPerRegion = maxKeysPerRegion;
+        bus.subscribe(this::received);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getMaxKeysPerRegion() {
+        return maxKeysPerRegion;
+    }
+
+    public void addListener(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void invalidate(Invalidation... invalidations) {
+        invalidate(Arrays.asList(invalidations));
+    }
+
+    /**
+     * Outside a transaction the invalidations are dispatched at once; inside one they wait for the commit
+     * and are dropped on rollback.
+     */
+    @SuppressWarnings("unchecked")
+    public void invalidate(Collection<Invalidation> invalidations) {
+        if (invalidations.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            InvalidationBatch batch = InvalidationBatch.of(nodeId, invalidations, maxKeysPerRegion);
+            bus.prepare(batch);
+            committed(batch);
+            return;
+        }
+        List<Invalidation> pending = (List<Invalidation>) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending == null) {
+            List<Invalidation> newPending = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(pendingKey, newPending);
+            TransactionSynchronizationManager.registerSynchronization(new PendingInvalidations(newPending));
+            pending = newPending;
+        }
+        pending.addAll(invalidations);
+    }
+
+    private void committed(InvalidationBatch batch) {
+        dispatch(batch, false);
+        bus.publish(batch);
+    }
+
+    private void received(InvalidationBatch batch) {
+        if (!nodeId.equals(batch.getOrigin())) {
+            dispatch(batch, true);
+        }
+    }
+
+    private void dispatch(InvalidationBatch batch, boolean remote) {
+        for (InvalidationListener listener : listeners) {
+            try {
+                listener.invalidate(batch, remote);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Invalidation listener failed on {}", batch, e);
+            }
+        }
+    }
+
+    private class PendingInvalidations extends TransactionSynchronizationAdapter {
+
+        private final List<Invalidation> pending;
+        private InvalidationBatch batch;
+
+        PendingInvalidations(List<Invalidation> pending) {
+            this.pending = pending;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            batch = InvalidationBatch.of(nodeId, pending, maxKeysPerRegion);
+            bus.prepare(batch);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+            if (status == STATUS_COMMITTED && batch != null) {
+                committed(batch);
+            }
+        }
+    }
+}
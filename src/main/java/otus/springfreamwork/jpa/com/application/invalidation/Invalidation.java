@@ -0,0 +1,90 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import java.util.Objects;
+
+/**
+ * One cached thing that went stale: an entity by id, a natural key, or a whole region when the key is {@code null}.
+ */
+public final class Invalidation {
+
+    public enum Region {
+        BOOK,
+        BOOK_NAME,
+        AUTHOR,
+        AUTHOR_NAME,
+        GENRE,
+        GENRE_NAME,
+        COMMENT,
+        /**
+         * Comments that were inserted; nothing is cached under it, it tells inserts apart for the sketches.
+         */
+        COMMENT_INSERTED,
+        CATALOG_AGGREGATE
+    }
+
+    private static final char KEY_SEPARATOR = '\u001f';
+
+    private final Region region;
+    private final String key;
+
+    private Invalidation(Region region, String key) {
+        this.region = Objects.requireNonNull(region);
+        this.key = key;
+    }
+
+    public static Invalidation entity(Region region, int id) {
+        return new Invalidation(region, Integer.toString(id));
+    }
+
+    /**
+     * Natural keys of several parts, e.g. author name and surname, are joined with a unit separator.
+     */
+    public static Invalidation naturalKey(Region region, String... parts) {
+        StringBuilder key = new StringBuilder();
+        for (String part : parts) {
+            if (key.length() > 0) {
+                key.append(KEY_SEPARATOR);
+            }
+            key.append(part == null ? "" : part);
+        }
+        return new Invalidation(region, key.toString());
+    }
+
+    public static Invalidation all(Region region) {
+        return new Invalidation(region, null);
+    }
+
+    static Invalidation of(Region region, String key) {
+        return new Invalidation(region, key);
+    }
+
+    public Region getRegion() {
+        return region;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isWholeRegion() {
+        return key == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Invalidation)) return false;
+        Invalidation that = (Invalidation) o;
+        return region == that.region && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(region, key);
+    }
+
+    @Override
+    public String toString() {
+        return region + (key == null ? "" : ":" + key);
+    }
+}
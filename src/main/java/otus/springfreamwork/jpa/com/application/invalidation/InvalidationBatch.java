@@ -0,0 +1,100 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Invalidations of one committed transaction, or of several merged ones. Keys of a region collapse into a
+ * whole-region invalidation once the region is invalidated as a whole or has more keys than the limit,
+ * so a bulk change costs receivers one eviction instead of thousands.
+ */
+public final class InvalidationBatch {
+
+    private final String origin;
+    private final Set<Region> wholeRegions = EnumSet.noneOf(Region.class);
+    private final Map<Region, Set<String>> keys = new EnumMap<>(Region.class);
+
+    private InvalidationBatch(String origin) {
+        this.origin = origin;
+    }
+
+    public static InvalidationBatch of(String origin, Collection<Invalidation> invalidations, int maxKeysPerRegion) {
+        InvalidationBatch batch = new InvalidationBatch(origin);
+        invalidations.forEach(invalidation -> batch.add(invalidation, maxKeysPerRegion));
+        return batch;
+    }
+
+    /**
+     * @return a batch holding the invalidations of both, attributed to the origin of this one
+     */
+    public InvalidationBatch merge(InvalidationBatch other, int maxKeysPerRegion) {
+        List<Invalidation> invalidations = toInvalidations();
+        invalidations.addAll(other.toInvalidations());
+        return of(origin, invalidations, maxKeysPerRegion);
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public boolean isEmpty() {
+        return wholeRegions.isEmpty() && keys.isEmpty();
+    }
+
+    public Set<Region> getRegions() {
+        Set<Region> regions = EnumSet.noneOf(Region.class);
+        regions.addAll(wholeRegions);
+        regions.addAll(keys.keySet());
+        return regions;
+    }
+
+    public boolean isWholeRegion(Region region) {
+        return wholeRegions.contains(region);
+    }
+
+    /**
+     * @return keys of a region that is not invalidated as a whole
+     */
+    public Set<String> getKeys(Region region) {
+        return Collections.unmodifiableSet(keys.getOrDefault(region, Collections.emptySet()));
+    }
+
+    public List<Invalidation> toInvalidations() {
+        List<Invalidation> invalidations = new ArrayList<>();
+        wholeRegions.forEach(region -> invalidations.add(Invalidation.all(region)));
+        keys.forEach((region, regionKeys) -> regionKeys.forEach(key -> invalidations.add(Invalidation.of(region, key))));
+        return invalidations;
+    }
+
+    private void add(Invalidation invalidation, int maxKeysPerRegion) {
+        Region region = invalidation.getRegion();
+        if (wholeRegions.contains(region)) {
+            return;
+        }
+        if (invalidation.isWholeRegion()) {
+            wholeRegions.add(region);
+            keys.remove(region);
+            return;
+        }
+        Set<String> regionKeys = keys.computeIfAbsent(region, r -> new LinkedHashSet<>());
+        regionKeys.add(invalidation.getKey());
+        if (regionKeys.size() > maxKeysPerRegion) {
+            wholeRegions.add(region);
+            keys.remove(region);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationBatch{origin=" + origin + ", invalidations=" + toInvalidations() + '}';
+    }
+}
@@ -0,0 +1,27 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation batches between application nodes sharing one database.
+ */
+public interface InvalidationBus {
+
+    /**
+     * Called inside the committing transaction, right before commit. A transactional transport sends the batch
+     * here, so other nodes hear about exactly the changes that commit.
+     */
+    default void prepare(InvalidationBatch batch) {
+    }
+
+    /**
+     * Called after the transaction committed.
+     */
+    default void publish(InvalidationBatch batch) {
+    }
+
+    /**
+     * Registers a consumer of batches coming from other nodes.
+     */
+    void subscribe(Consumer<InvalidationBatch> consumer);
+}
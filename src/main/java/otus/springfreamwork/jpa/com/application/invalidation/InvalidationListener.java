@@ -0,0 +1,10 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+@FunctionalInterface
+public interface InvalidationListener {
+
+    /**
+     * @param remote {@code true} for changes committed by another node, which local caches have not seen yet
+     */
+    void invalidate(InvalidationBatch batch, boolean remote);
+}
@@ -0,0 +1,52 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM bus: every bus attached to the same {@link Hub} acts as a node and receives the batches the others
+ * publish after commit. Application contexts started in one JVM share the default hub, which lets tests
+ * check cross-node behaviour without PostgreSQL.
+ */
+public class LoopbackInvalidationBus implements InvalidationBus {
+
+    private static final Hub SHARED_HUB = new Hub();
+
+    private final Hub hub;
+    private final List<Consumer<InvalidationBatch>> consumers = new CopyOnWriteArrayList<>();
+
+    public LoopbackInvalidationBus() {
+        this(SHARED_HUB);
+    }
+
+    public LoopbackInvalidationBus(Hub hub) {
+        this.hub = hub;
+        hub.nodes.add(this);
+    }
+
+    @Override
+    public void publish(InvalidationBatch batch) {
+        for (LoopbackInvalidationBus node : hub.nodes) {
+            if (node != this) {
+                node.consumers.forEach(consumer -> consumer.accept(batch));
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationBatch> consumer) {
+        consumers.add(consumer);
+    }
+
+    public void close() {
+        hub.nodes.remove(this);
+    }
+
+    public static class Hub {
+
+        private final Set<LoopbackInvalidationBus> nodes = new CopyOnWriteArraySet<>();
+    }
+}
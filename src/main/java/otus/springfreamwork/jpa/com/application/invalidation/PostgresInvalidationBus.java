@@ -0,0 +1,221 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Bus over PostgreSQL LISTEN/NOTIFY. Batches are sent with {@code pg_notify} on the committing transaction's
+ * own connection, so PostgreSQL delivers them only if that transaction commits. One connection opened from the
+ * datasource URL, outside the pool, listens on the channel, so it never holds a pooled connection; notifications arriving within the coalescing window are merged before delivery.
+ * After the listening connection is lost, every region is invalidated once, since notifications sent while
+ * it was down are gone. A notification that cannot be read, e.g. from a newer node naming an unknown region,
+ * is logged and skipped.
+ */
+public class PostgresInvalidationBus implements InvalidationBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresInvalidationBus.class);
+
+    /**
+     * PostgreSQL rejects payloads of 8000 bytes and more.
+     */
+    static final int MAX_PAYLOAD_BYTES = 7_900;
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final String LINE_SEPARATOR = "\n";
+    private static final String KEY_SEPARATOR = "\t";
+
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidationProperties properties;
+    private final List<Consumer<InvalidationBatch>> consumers = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private Thread listener;
+
+    public PostgresInvalidationBus(
+            DataSourceProperties dataSourceProperties,
+            JdbcTemplate jdbcTemplate,
+            CacheInvalidationProperties properties
+    ) {
+        if (!CHANNEL.matcher(properties.getChannel()).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel: " + properties.getChannel());
+        }
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        listener.join(properties.getPollMs() * 2);
+    }
+
+    @Override
+    public void prepare(InvalidationBatch batch) {
+        for (String payload : encode(batch, MAX_PAYLOAD_BYTES)) {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null, properties.getChannel(), payload);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<InvalidationBatch> consumer) {
+        consumers.add(consumer);
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + properties.getChannel());
+                }
+                if (reconnecting) {
+                    LOGGER.info("Listening on {} again, invalidating all caches", properties.getChannel());
+                    deliver(everything());
+                    reconnecting = false;
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    receive(pgConnection);
+                }
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.warn("Lost invalidation channel {}, reconnecting", properties.getChannel(), e);
+                reconnecting = true;
+                sleep(properties.getReconnectDelayMs());
+            }
+        }
+    }
+
+    private void receive(PGConnection connection) throws SQLException {
+        PGNotification[] notifications = connection.getNotifications((int) properties.getPollMs());
+        if (notifications == null || notifications.length == 0) {
+            return;
+        }
+        Map<String, InvalidationBatch> batches = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getCoalesceMs());
+        while (notifications != null) {
+            for (PGNotification notification : notifications) {
+                InvalidationBatch batch = decodeOrSkip(notification.getParameter(), properties.getMaxKeysPerRegion());
+                if (batch == null) {
+                    continue;
+                }
+                batches.merge(batch.getOrigin(), batch,
+                        (merged, next) -> merged.merge(next, properties.getMaxKeysPerRegion()));
+            }
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            notifications = remainingMs > 0 ? connection.getNotifications((int) remainingMs) : null;
+        }
+        batches.values().forEach(this::deliver);
+    }
+
+    private void deliver(InvalidationBatch batch) {
+        for (Consumer<InvalidationBatch> consumer : consumers) {
+            try {
+                consumer.accept(batch);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to apply {}", batch, e);
+            }
+        }
+    }
+
+    private InvalidationBatch everything() {
+        List<Invalidation> invalidations = new ArrayList<>();
+        for (Region region : Region.values()) {
+            invalidations.add(Invalidation.all(region));
+        }
+        return InvalidationBatch.of("", invalidations, properties.getMaxKeysPerRegion());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Payload is the origin line followed by one line per invalidation: the region, then a tab and the
+     * Base64 key unless the whole region is invalidated. Batches over the size limit are split; a key too
+     * long for any payload is sent as its whole region.
+     */
+    static List<String> encode(InvalidationBatch batch, int maxPayloadBytes) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(batch.getOrigin());
+        for (Invalidation invalidation : batch.toInvalidations()) {
+            String line = LINE_SEPARATOR + encode(invalidation);
+            if (batch.getOrigin().length() + line.length() > maxPayloadBytes) {
+                line = LINE_SEPARATOR + invalidation.getRegion().name();
+            }
+            if (payload.length() + line.length() > maxPayloadBytes) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder(batch.getOrigin());
+            }
+            payload.append(line);
+        }
+        if (payload.length() > batch.getOrigin().length()) {
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+
+    /**
+     * @return the batch, or {@code null} when the payload cannot be read
+     */
+    static InvalidationBatch decodeOrSkip(String payload, int maxKeysPerRegion) {
+        try {
+            return decode(payload, maxKeysPerRegion);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Skipped unreadable invalidation payload: {}", payload, e);
+            return null;
+        }
+    }
+
+    static InvalidationBatch decode(String payload, int maxKeysPerRegion) {
+        String[] lines = payload.split(LINE_SEPARATOR);
+        List<Invalidation> invalidations = new ArrayList<>(lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            String[] parts = lines[i].split(KEY_SEPARATOR, 2);
+            Region region = Region.valueOf(parts[0]);
+            invalidations.add(parts.length == 1
+                    ? Invalidation.all(region)
+                    : Invalidation.of(region, new String(Base64.getDecoder().decode(parts[1]), StandardCharsets.UTF_8)));
+        }
+        return InvalidationBatch.of(lines[0], invalidations, maxKeysPerRegion);
+    }
+
+    private static String encode(Invalidation invalidation) {
+        if (invalidation.isWholeRegion()) {
+            return invalidation.getRegion().name();
+        }
+        return invalidation.getRegion().name() + KEY_SEPARATOR
+                + Base64.getEncoder().encodeToString(invalidation.getKey().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,65 @@
+package otus.springfreamwork.jpa.com.application.purge;
+
+/**
+ * Progress of removing the dependents of one hidden entity. Updated by the purge thread only.
+ */
+public final class PurgeProgress {
+
+    public enum Kind {
+        GENRE,
+        AUTHOR
+    }
+
+    private final Kind kind;
+    private final int id;
+    private final long total;
+    private final long startedAt;
+    private volatile long removed;
+    private volatile long finishedAt;
+
+    PurgeProgress(Kind kind, int id, long total, long startedAt) {
+        this.kind = kind;
+        this.id = id;
+        this.total = total;
+        this.startedAt = startedAt;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return dependents counted when the purge started
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getRemoved() {
+        return removed;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != 0;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    void removed(int count) {
+        removed += count;
+    }
+
+    void finished(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,30 @@
+package otus.springfreamwork.jpa.com.application.purge;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.dao.TombstoneRepository;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(TombstonePurgeProperties.class)
+public class TombstonePurgeConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public TombstonePurger tombstonePurger(
+            GenreRepository genreRepository,
+            AuthorRepository authorRepository,
+            PlatformTransactionManager transactionManager,
+            TombstonePurgeProperties properties
+    ) {
+        Map<PurgeProgress.Kind, TombstoneRepository> repositories = new EnumMap<>(PurgeProgress.Kind.class);
+        repositories.put(PurgeProgress.Kind.GENRE, genreRepository);
+        repositories.put(PurgeProgress.Kind.AUTHOR, authorRepository);
+        return new TombstonePurger(repositories, transactionManager, properties);
+    }
+}
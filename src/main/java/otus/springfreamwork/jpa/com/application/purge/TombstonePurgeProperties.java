@@ -0,0 +1,56 @@
+package otus.springfreamwork.jpa.com.application.purge;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "catalog.purge")
+public class TombstonePurgeProperties {
+
+    /**
+     * Number of dependent rows removed in one transaction.
+     */
+    private int chunkSize = 500;
+    /**
+     * Pause after each chunk, leaving the database to other work.
+     */
+    private long pauseMs = 100;
+    /**
+     * How often tombstones are looked up, e.g. ones left by a restart or by another node.
+     */
+    private long pollIntervalMs = 60_000;
+    /**
+     * Number of finished purges kept for the progress report.
+     */
+    private int keepFinished = 20;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public long getPauseMs() {
+        return pauseMs;
+    }
+
+    public void setPauseMs(long pauseMs) {
+        this.pauseMs = pauseMs;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public int getKeepFinished() {
+        return keepFinished;
+    }
+
+    public void setKeepFinished(int keepFinished) {
+        this.keepFinished = keepFinished;
+    }
+}
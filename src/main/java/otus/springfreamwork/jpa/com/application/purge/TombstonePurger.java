@@ -0,0 +1,152 @@
+package otus.springfreamwork.jpa.com.application.purge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import otus.springfreamwork.jpa.domain.dao.TombstoneRepository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes the dependents of hidden genres and authors in the background, one chunk per transaction with a pause
+ * between chunks, so a large subtree neither holds locks for long nor writes one huge transaction to the WAL.
+ * Runs on a single thread: after a deletion is requested, and periodically for tombstones left by a restart or
+ * by another node. A failed chunk is rolled back and retried on the next run.
+ */
+public class TombstonePurger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TombstonePurger.class);
+
+    private final Map<PurgeProgress.Kind, TombstoneRepository> repositories;
+    private final TransactionTemplate transactionTemplate;
+    private final TombstonePurgeProperties properties;
+
+    /**
+     * Purges in order of start; written by the purge thread, read by progress reports.
+     */
+    private final Map<String, PurgeProgress> progress = new LinkedHashMap<>();
+    private final AtomicBoolean runScheduled = new AtomicBoolean();
+    private volatile boolean stopped;
+    private ScheduledExecutorService worker;
+
+    public TombstonePurger(
+            Map<PurgeProgress.Kind, TombstoneRepository> repositories,
+            PlatformTransactionManager transactionManager,
+            TombstonePurgeProperties properties
+    ) {
+        this.repositories = repositories;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    public void start() {
+        worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tombstone-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.scheduleWithFixedDelay(this::purgeAll, 0, properties.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts purging soon, e.g. right after a tombstone is committed.
+     */
+    public void wakeUp() {
+        if (runScheduled.compareAndSet(false, true)) {
+            worker.execute(this::purgeAll);
+        }
+    }
+
+    public List<PurgeProgress> getProgress() {
+        synchronized (progress) {
+            return new ArrayList<>(progress.values());
+        }
+    }
+
+    /**
+     * Stops between chunks; an unfinished purge continues after the next start.
+     */
+    public void stop() {
+        stopped = true;
+        worker.shutdown();
+        try {
+            worker.awaitTermination(properties.getPauseMs() + 30_000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void purgeAll() {
+        runScheduled.set(false);
+        try {
+            for (Map.Entry<PurgeProgress.Kind, TombstoneRepository> entry : repositories.entrySet()) {
+                for (Integer id : entry.getValue().getTombstonedIds()) {
+                    if (stopped) {
+                        return;
+                    }
+                    purge(entry.getKey(), entry.getValue(), id);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Purge of deleted entities failed, will retry", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void purge(PurgeProgress.Kind kind, TombstoneRepository repository, int id) throws InterruptedException {
+        PurgeProgress purge = started(kind, repository, id);
+        while (!stopped) {
+            Integer removed = transactionTemplate.execute(status -> repository.purgeChunk(id, properties.getChunkSize()));
+            if (removed == null || removed == 0) {
+                purge.finished(System.currentTimeMillis());
+                LOGGER.info("Purged deleted {} {}: {} dependents removed", kind, id, purge.getRemoved());
+                trimFinished();
+                return;
+            }
+            purge.removed(removed);
+            LOGGER.debug("Purging deleted {} {}: {} of {} dependents removed",
+                    kind, id, purge.getRemoved(), purge.getTotal());
+            TimeUnit.MILLISECONDS.sleep(properties.getPauseMs());
+        }
+    }
+
+    private PurgeProgress started(PurgeProgress.Kind kind, TombstoneRepository repository, int id) {
+        String key = kind + ":" + id;
+        synchronized (progress) {
+            PurgeProgress purge = progress.get(key);
+            if (purge != null && !purge.isFinished()) {
+                return purge;
+            }
+        }
+        PurgeProgress purge = new PurgeProgress(kind, id, repository.countDependents(id), System.currentTimeMillis());
+        LOGGER.info("Purging deleted {} {}: {} dependents", kind, id, purge.getTotal());
+        synchronized (progress) {
+            progress.remove(key);
+            progress.put(key, purge);
+        }
+        return purge;
+    }
+
+    private void trimFinished() {
+        synchronized (progress) {
+            long finished = progress.values().stream().filter(PurgeProgress::isFinished).count();
+            Iterator<PurgeProgress> purges = progress.values().iterator();
+            while (finished > properties.getKeepFinished() && purges.hasNext()) {
+                if (purges.next().isFinished()) {
+                    purges.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+}
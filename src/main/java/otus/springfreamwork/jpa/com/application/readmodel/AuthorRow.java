@@ -0,0 +1,33 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+/**
+ * Author as the read model keeps it.
+ */
+final class AuthorRow {
+
+    final int id;
+    final long version;
+    final String name;
+    final String surname;
+    final Conutry conutry;
+    final boolean deleted;
+
+    AuthorRow(int id, long version, String name, String surname, Conutry conutry, boolean deleted) {
+        this.id = id;
+        this.version = version;
+        this.name = name;
+        this.surname = surname;
+        this.conutry = conutry;
+        this.deleted = deleted;
+    }
+
+    String nameKey() {
+        return nameKey(name, surname);
+    }
+
+    static String nameKey(String name, String surname) {
+        return name + '\u001f' + surname;
+    }
+}
@@ -0,0 +1,27 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+/**
+ * Book as the read model keeps it: the genre and authors are referenced by id, parts stay encoded.
+ */
+final class BookRow {
+
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    final int id;
+    final long version;
+    final String name;
+    final long publishedDate;
+    final String encodedParts;
+    final int genreId;
+    final int[] authorIds;
+
+    BookRow(int id, long version, String name, long publishedDate, String encodedParts, int genreId, int[] authorIds) {
+        this.id = id;
+        this.version = version;
+        this.name = name;
+        this.publishedDate = publishedDate;
+        this.encodedParts = encodedParts;
+        this.genreId = genreId;
+        this.authorIds = authorIds;
+    }
+}
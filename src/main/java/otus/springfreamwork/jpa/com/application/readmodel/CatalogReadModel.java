@@ -0,0 +1,736 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.InvalidationBatch;
+import otus.springfreamwork.jpa.com.application.invalidation.InvalidationListener;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.BookParts;
+import otus.springfreamwork.jpa.domain.model.Comment;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import static otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region.AUTHOR;
+import static otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region.AUTHOR_NAME;
+import static otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region.BOOK;
+import static otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region.BOOK_NAME;
+import static otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region.COMMENT;
+import static otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region.GENRE;
+import static otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region.GENRE_NAME;
+
+/**
+ * Books, authors, genres and comment links held in memory, indexed by id and by natural key.
+ * Loaded in full at start and then kept current from committed invalidations: the rows named by a batch are
+ * read again and swapped in under a write lock, so readers see either all of a batch or none of it. Batches are
+ * applied on a background thread, never on the committing one; those arriving while one is applied are merged.
+ * Hidden genres and authors stay in the model and are filtered out on read, like the repositories do.
+ * If a batch cannot be applied, the next one reloads everything.
+ * A full load reads the tables in parallel. With a snapshot file configured, the model is written to it on
+ * shutdown and read back on start instead of the tables, as long as the catalog stamp still matches.
+ */
+public class CatalogReadModel implements InvalidationListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogReadModel.class);
+    private static final char KEY_SEPARATOR = '\u001f';
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheInvalidator cacheInvalidator;
+    private final CatalogReadModelProperties properties;
+    private final CatalogRowLoader loader = new CatalogRowLoader();
+
+    /**
+     * Serializes loads, so a batch is never overwritten by rows read before it was committed.
+     */
+    private final Lock updateLock = new ReentrantLock();
+    private final ReentrantReadWriteLock rowsLock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, GenreRow> genres = new HashMap<>();
+    private final Map<Integer, AuthorRow> authors = new HashMap<>();
+    private final Map<Integer, BookRow> books = new HashMap<>();
+    private final Map<Integer, CommentRow> comments = new HashMap<>();
+
+    private final Map<String, int[]> genresByName = new HashMap<>();
+    private final Map<String, int[]> authorsByName = new HashMap<>();
+    private final Map<String, int[]> booksByName = new HashMap<>();
+    private final Map<Integer, int[]> booksByGenre = new HashMap<>();
+    private final Map<Integer, int[]> booksByAuthor = new HashMap<>();
+    private final Map<Integer, int[]> commentsByBook = new HashMap<>();
+
+    private volatile boolean rebuildNeeded;
+
+    private final Object pendingLock = new Object();
+    private InvalidationBatch pending;
+    private ExecutorService updater;
+
+    public CatalogReadModel(
+            EntityManagerFactory entityManagerFactory,
+            CacheInvalidator cacheInvalidator,
+            CatalogReadModelProperties properties
+    ) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.cacheInvalidator = cacheInvalidator;
+        this.properties = properties;
+    }
+
+    /**
+     * Subscribes before loading, so changes committed during the load are applied after it.
+     */
+    public void start() {
+        updater = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-model-update");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cacheInvalidator.addListener(this);
+        updateLock.lock();
+        try {
+            if (!restore()) {
+                rebuild();
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the snapshot if one is configured and the model matches the catalog; a stale file is removed.
+     */
+    public void stop() {
+        updater.shutdown();
+        try {
+            if (!updater.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                updater.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Path file = snapshotFile();
+        if (file == null) {
+            return;
+        }
+        updateLock.lock();
+        try {
+            long[] stamp = stamp();
+            long[] modelStamp = ReadModelSnapshot.stamp(genres.values(), authors.values(), books.values(), comments.values());
+            if (rebuildNeeded || !Arrays.equals(stamp, modelStamp)) {
+                Files.deleteIfExists(file);
+                LOGGER.info("Read model is behind the catalog, no snapshot written");
+                return;
+            }
+            new ReadModelSnapshot(
+                    stamp,
+                    new ArrayList<>(genres.values()),
+                    new ArrayList<>(authors.values()),
+                    new ArrayList<>(books.values()),
+                    new ArrayList<>(comments.values())
+            ).write(file);
+            LOGGER.info("Read model written to {}", file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Read model snapshot {} is not written", file, e);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(InvalidationBatch batch, boolean remote) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        synchronized (pendingLock) {
+            if (pending != null) {
+                pending = pending.merge(batch, cacheInvalidator.getMaxKeysPerRegion());
+                return;
+            }
+            pending = batch;
+        }
+        try {
+            updater.execute(this::applyPending);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Read model is stopped, {} not applied", batch);
+        }
+    }
+
+    /**
+     * Waits until the changes committed so far are applied.
+     */
+    public void awaitUpdates() {
+        try {
+            updater.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Read model update failed", e.getCause());
+        }
+    }
+
+    private void applyPending() {
+        InvalidationBatch batch;
+        synchronized (pendingLock) {
+            batch = pending;
+            pending = null;
+        }
+        updateLock.lock();
+        try {
+            if (rebuildNeeded) {
+                rebuild();
+            } else {
+                apply(batch);
+            }
+        } catch (RuntimeException e) {
+            rebuildNeeded = true;
+            LOGGER.error("Read model update failed, will reload it on the next change", e);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    public List<Book> getAllBooks() {
+        return read(() -> {
+            List<Book> result = new ArrayList<>();
+            new TreeMap<>(books).values().stream()
+                    .filter(this::isVisible)
+                    .forEach(row -> result.add(toBook(row)));
+            return result;
+        });
+    }
+
+    public long countBooks() {
+        return read(() -> books.values().stream().filter(this::isVisible).count());
+    }
+
+    /**
+     * @return the visible book with the lowest id among those with the name, or {@code null}
+     */
+    public Book getBookByName(String name) {
+        return read(() -> {
+            for (int id : booksByName.getOrDefault(name, IdArrays.EMPTY)) {
+                BookRow row = books.get(id);
+                if (isVisible(row)) {
+                    return toBook(row);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return visible books in the order of the ids, missing ones skipped
+     */
+    public List<Book> getBooksByIds(List<Integer> ids) {
+        return read(() -> {
+            List<Book> result = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                BookRow row = books.get(id);
+                if (row != null && isVisible(row)) {
+                    result.add(toBook(row));
+                }
+            }
+            return result;
+        });
+    }
+
+    public List<Book> getBooksByAuthor(String name, String surname) {
+        return read(() -> {
+            List<int[]> bookIds = new ArrayList<>();
+            for (int id : authorsByName.getOrDefault(AuthorRow.nameKey(name, surname), IdArrays.EMPTY)) {
+                if (!authors.get(id).deleted) {
+                    bookIds.add(booksByAuthor.getOrDefault(id, IdArrays.EMPTY));
+                }
+            }
+            return visibleBooks(IdArrays.union(bookIds.toArray(new int[0][])));
+        });
+    }
+
+    public List<Book> getBooksByGenreName(String name) {
+        return read(() -> {
+            List<int[]> bookIds = new ArrayList<>();
+            for (int id : genresByName.getOrDefault(name, IdArrays.EMPTY)) {
+                if (!genres.get(id).deleted) {
+                    bookIds.add(booksByGenre.getOrDefault(id, IdArrays.EMPTY));
+                }
+            }
+            return visibleBooks(IdArrays.union(bookIds.toArray(new int[0][])));
+        });
+    }
+
+    /**
+     * @return comments linked to any visible book with the name, in id order
+     */
+    public List<Comment> getCommentsOnBook(String bookName) {
+        return read(() -> {
+            List<int[]> commentIds = new ArrayList<>();
+            for (int id : booksByName.getOrDefault(bookName, IdArrays.EMPTY)) {
+                if (isVisible(books.get(id))) {
+                    commentIds.add(commentsByBook.getOrDefault(id, IdArrays.EMPTY));
+                }
+            }
+            List<Comment> result = new ArrayList<>();
+            for (int id : IdArrays.union(commentIds.toArray(new int[0][]))) {
+                result.add(toComment(comments.get(id)));
+            }
+            return result;
+        });
+    }
+
+    public Author getAuthor(String name, String surname) {
+        return read(() -> {
+            for (int id : authorsByName.getOrDefault(AuthorRow.nameKey(name, surname), IdArrays.EMPTY)) {
+                AuthorRow row = authors.get(id);
+                if (!row.deleted) {
+                    return toAuthor(row);
+                }
+            }
+            return null;
+        });
+    }
+
+    public List<Author> getAllAuthors() {
+        return read(() -> {
+            List<Author> result = new ArrayList<>();
+            new TreeMap<>(authors).values().stream()
+                    .filter(row -> !row.deleted)
+                    .forEach(row -> result.add(toAuthor(row)));
+            return result;
+        });
+    }
+
+    public long countAuthors() {
+        return read(() -> authors.values().stream().filter(row -> !row.deleted).count());
+    }
+
+    public Genre getGenreByName(String name) {
+        return read(() -> {
+            for (int id : genresByName.getOrDefault(name, IdArrays.EMPTY)) {
+                GenreRow row = genres.get(id);
+                if (!row.deleted) {
+                    return toGenre(row);
+                }
+            }
+            return null;
+        });
+    }
+
+    public List<Genre> getAllGenres() {
+        return read(() -> {
+            List<Genre> result = new ArrayList<>();
+            new TreeMap<>(genres).values().stream()
+                    .filter(row -> !row.deleted)
+                    .forEach(row -> result.add(toGenre(row)));
+            return result;
+        });
+    }
+
+    public long countGenres() {
+        return read(() -> genres.values().stream().filter(row -> !row.deleted).count());
+    }
+
+    private <R> R read(Supplier<R> reader) {
+        rowsLock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            rowsLock.readLock().unlock();
+        }
+    }
+
+    private List<Book> visibleBooks(int[] ids) {
+        List<Book> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            BookRow row = books.get(id);
+            if (isVisible(row)) {
+                result.add(toBook(row));
+            }
+        }
+        return result;
+    }
+
+    private boolean isVisible(BookRow row) {
+        GenreRow genre = genres.get(row.genreId);
+        return genre != null && !genre.deleted;
+    }
+
+    private Genre toGenre(GenreRow row) {
+        Genre genre = new Genre(row.id, row.name);
+        genre.setVersion(row.version);
+        genre.setDeleted(row.deleted);
+        return genre;
+    }
+
+    private Author toAuthor(AuthorRow row) {
+        Author author = new Author(row.id, row.name, row.surname, row.conutry);
+        author.setVersion(row.version);
+        author.setDeleted(row.deleted);
+        return author;
+    }
+
+    private Book toBook(BookRow row) {
+        Set<Author> bookAuthors = new LinkedHashSet<>();
+        for (int authorId : row.authorIds) {
+            AuthorRow author = authors.get(authorId);
+            if (author != null && !author.deleted) {
+                bookAuthors.add(toAuthor(author));
+            }
+        }
+        BookParts parts = BookParts.fromEncoded(row.encodedParts);
+        Book book = new Book(
+                row.name,
+                row.publishedDate == BookRow.NO_DATE ? null : new java.sql.Date(row.publishedDate),
+                parts == null ? null : parts.asMap(),
+                bookAuthors,
+                toGenre(genres.get(row.genreId))
+        );
+        book.setId(row.id);
+        book.setVersion(row.version);
+        return book;
+    }
+
+    private Comment toComment(CommentRow row) {
+        Comment comment = new Comment(row.id, row.username, row.comment);
+        comment.setVersion(row.version);
+        Set<Book> commentBooks = new LinkedHashSet<>();
+        for (int bookId : row.bookIds) {
+            BookRow book = books.get(bookId);
+            if (book != null && isVisible(book)) {
+                commentBooks.add(toBook(book));
+            }
+        }
+        comment.setBooks(commentBooks);
+        return comment;
+    }
+
+    /**
+     * @return whether the model was installed from a snapshot of the current catalog
+     */
+    private boolean restore() {
+        Path file = snapshotFile();
+        if (file == null || !Files.exists(file)) {
+            return false;
+        }
+        try {
+            ReadModelSnapshot snapshot = ReadModelSnapshot.read(file);
+            if (!Arrays.equals(snapshot.stamp, stamp())) {
+                LOGGER.info("Read model snapshot {} is out of date", file);
+                return false;
+            }
+            install(snapshot.genres, snapshot.authors, snapshot.books, snapshot.comments);
+            LOGGER.info("Read model restored from {}: {} books, {} authors, {} genres, {} comments", file,
+                    snapshot.books.size(), snapshot.authors.size(), snapshot.genres.size(), snapshot.comments.size());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Read model snapshot {} is not used", file, e);
+            return false;
+        }
+    }
+
+    private void rebuild() {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, properties.getLoadThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "read-model-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<Map<Integer, CommentRow>> loadedComments = pool.submit(() -> loadTable(loader::comments));
+            Future<Map<Integer, BookRow>> loadedBooks = pool.submit(() -> loadTable(loader::books));
+            Future<Map<Integer, AuthorRow>> loadedAuthors = pool.submit(() -> loadTable(loader::authors));
+            Future<Map<Integer, GenreRow>> loadedGenres = pool.submit(() -> loadTable(loader::genres));
+            install(get(loadedGenres).values(), get(loadedAuthors).values(), get(loadedBooks).values(), get(loadedComments).values());
+            LOGGER.info("Read model loaded: {} books, {} authors, {} genres, {} comments",
+                    books.size(), authors.size(), genres.size(), comments.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private <R> Map<Integer, R> loadTable(BiFunction<EntityManager, Collection<Integer>, Map<Integer, R>> reader) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return reader.apply(entityManager, null);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static <R> R get(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Read model load interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Read model load failed", e.getCause());
+        }
+    }
+
+    private void install(
+            Collection<GenreRow> loadedGenres,
+            Collection<AuthorRow> loadedAuthors,
+            Collection<BookRow> loadedBooks,
+            Collection<CommentRow> loadedComments
+    ) {
+        rowsLock.writeLock().lock();
+        try {
+            genres.clear();
+            authors.clear();
+            books.clear();
+            comments.clear();
+            genresByName.clear();
+            authorsByName.clear();
+            booksByName.clear();
+            booksByGenre.clear();
+            booksByAuthor.clear();
+            commentsByBook.clear();
+            loadedGenres.forEach(this::putGenre);
+            loadedAuthors.forEach(this::putAuthor);
+            loadedBooks.forEach(this::putBook);
+            loadedComments.forEach(this::putComment);
+        } finally {
+            rowsLock.writeLock().unlock();
+        }
+        rebuildNeeded = false;
+    }
+
+    private long[] stamp() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return loader.stamp(entityManager);
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private Path snapshotFile() {
+        String snapshot = properties.getSnapshot();
+        return snapshot == null || snapshot.trim().isEmpty() ? null : Paths.get(snapshot.trim());
+    }
+
+    /**
+     * Only the updating thread changes the maps, so it reads them here without the read lock.
+     */
+    private void apply(InvalidationBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Set<Integer> commentIds = batch.isWholeRegion(COMMENT) ? null : ids(batch.getKeys(COMMENT));
+            Set<Integer> bookIds = batch.isWholeRegion(BOOK) ? null : ids(batch.getKeys(BOOK));
+            Set<Integer> authorIds = batch.isWholeRegion(AUTHOR) ? null : ids(batch.getKeys(AUTHOR));
+            Set<Integer> genreIds = batch.isWholeRegion(GENRE) ? null : ids(batch.getKeys(GENRE));
+
+            if (bookIds != null) {
+                for (String name : batch.getKeys(BOOK_NAME)) {
+                    addAll(bookIds, booksByName.get(name));
+                    bookIds.addAll(loader.bookIdsByName(entityManager, name));
+                }
+            }
+            if (authorIds != null) {
+                for (String key : batch.getKeys(AUTHOR_NAME)) {
+                    int separator = key.indexOf(KEY_SEPARATOR);
+                    addAll(authorIds, authorsByName.get(key));
+                    authorIds.addAll(loader.authorIdsByName(entityManager,
+                            separator < 0 ? key : key.substring(0, separator),
+                            separator < 0 ? "" : key.substring(separator + 1)));
+                }
+            }
+            if (genreIds != null) {
+                for (String name : batch.getKeys(GENRE_NAME)) {
+                    addAll(genreIds, genresByName.get(name));
+                    genreIds.addAll(loader.genreIdsByName(entityManager, name));
+                }
+            }
+
+            // Rows inserted by cascade come without invalidations of their own, so referenced rows the model
+            // has not seen are loaded along with the ones that refer to them.
+            Map<Integer, CommentRow> loadedComments = load(commentIds, ids -> loader.comments(entityManager, ids));
+            if (bookIds != null) {
+                loadedComments.values().forEach(row -> addMissing(bookIds, row.bookIds, books.keySet()));
+            }
+            Map<Integer, BookRow> loadedBooks = load(bookIds, ids -> loader.books(entityManager, ids));
+            for (BookRow row : loadedBooks.values()) {
+                if (authorIds != null) {
+                    addMissing(authorIds, row.authorIds, authors.keySet());
+                }
+                if (genreIds != null && !genres.containsKey(row.genreId)) {
+                    genreIds.add(row.genreId);
+                }
+            }
+            Map<Integer, AuthorRow> loadedAuthors = load(authorIds, ids -> loader.authors(entityManager, ids));
+            Map<Integer, GenreRow> loadedGenres = load(genreIds, ids -> loader.genres(entityManager, ids));
+
+            rowsLock.writeLock().lock();
+            try {
+                replace(genres, genreIds, loadedGenres, this::putGenre, this::removeGenre);
+                replace(authors, authorIds, loadedAuthors, this::putAuthor, this::removeAuthor);
+                replace(books, bookIds, loadedBooks, this::putBook, this::removeBook);
+                replace(comments, commentIds, loadedComments, this::putComment, this::removeComment);
+            } finally {
+                rowsLock.writeLock().unlock();
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static <R> Map<Integer, R> load(
+            Set<Integer> ids,
+            Function<Set<Integer>, Map<Integer, R>> reader
+    ) {
+        if (ids != null && ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        return reader.apply(ids);
+    }
+
+    /**
+     * Puts the loaded rows and removes the requested ones that are gone; {@code null} ids stand for the whole table.
+     */
+    private static <R> void replace(
+            Map<Integer, R> rows,
+            Set<Integer> ids,
+            Map<Integer, R> loaded,
+            Consumer<R> put,
+            IntConsumer remove
+    ) {
+        Collection<Integer> requested = ids == null ? new ArrayList<>(rows.keySet()) : ids;
+        for (Integer id : requested) {
+            if (!loaded.containsKey(id) && rows.containsKey(id)) {
+                remove.accept(id);
+            }
+        }
+        loaded.values().forEach(put);
+    }
+
+    private void putGenre(GenreRow row) {
+        removeGenre(row.id);
+        genres.put(row.id, row);
+        link(genresByName, row.name, row.id);
+    }
+
+    private void removeGenre(int id) {
+        GenreRow old = genres.remove(id);
+        if (old != null) {
+            unlink(genresByName, old.name, id);
+        }
+    }
+
+    private void putAuthor(AuthorRow row) {
+        removeAuthor(row.id);
+        authors.put(row.id, row);
+        link(authorsByName, row.nameKey(), row.id);
+    }
+
+    private void removeAuthor(int id) {
+        AuthorRow old = authors.remove(id);
+        if (old != null) {
+            unlink(authorsByName, old.nameKey(), id);
+        }
+    }
+
+    private void putBook(BookRow row) {
+        removeBook(row.id);
+        books.put(row.id, row);
+        link(booksByName, row.name, row.id);
+        link(booksByGenre, row.genreId, row.id);
+        for (int authorId : row.authorIds) {
+            link(booksByAuthor, authorId, row.id);
+        }
+    }
+
+    private void removeBook(int id) {
+        BookRow old = books.remove(id);
+        if (old != null) {
+            unlink(booksByName, old.name, id);
+            unlink(booksByGenre, old.genreId, id);
+            for (int authorId : old.authorIds) {
+                unlink(booksByAuthor, authorId, id);
+            }
+        }
+    }
+
+    private void putComment(CommentRow row) {
+        removeComment(row.id);
+        comments.put(row.id, row);
+        for (int bookId : row.bookIds) {
+            link(commentsByBook, bookId, row.id);
+        }
+    }
+
+    private void removeComment(int id) {
+        CommentRow old = comments.remove(id);
+        if (old != null) {
+            for (int bookId : old.bookIds) {
+                unlink(commentsByBook, bookId, id);
+            }
+        }
+    }
+
+    private static <K> void link(Map<K, int[]> index, K key, int id) {
+        index.merge(key, new int[]{id}, (ids, added) -> IdArrays.with(ids, id));
+    }
+
+    private static <K> void unlink(Map<K, int[]> index, K key, int id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            int[] rest = IdArrays.without(ids, id);
+            return rest.length == 0 ? null : rest;
+        });
+    }
+
+    private static Set<Integer> ids(Set<String> keys) {
+        Set<Integer> ids = new HashSet<>();
+        keys.forEach(key -> ids.add(Integer.valueOf(key)));
+        return ids;
+    }
+
+    private static void addAll(Set<Integer> ids, int[] added) {
+        if (added != null) {
+            for (int id : added) {
+                ids.add(id);
+            }
+        }
+    }
+
+    private static void addMissing(Set<Integer> ids, int[] referenced, Set<Integer> known) {
+        for (int id : referenced) {
+            if (!known.contains(id)) {
+                ids.add(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.services.ReadModelAuthorService;
+import otus.springfreamwork.jpa.com.application.services.ReadModelBookService;
+import otus.springfreamwork.jpa.com.application.services.ReadModelGenreService;
+import otus.springfreamwork.jpa.domain.application.services.AuthorService;
+import otus.springfreamwork.jpa.domain.application.services.BookService;
+import otus.springfreamwork.jpa.domain.application.services.GenreService;
+
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+@ConditionalOnProperty(prefix = "catalog.read-model", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(CatalogReadModelProperties.class)
+public class CatalogReadModelConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CatalogReadModel catalogReadModel(
+            EntityManagerFactory entityManagerFactory,
+            CacheInvalidator cacheInvalidator,
+            CatalogReadModelProperties properties
+    ) {
+        return new CatalogReadModel(entityManagerFactory, cacheInvalidator, properties);
+    }
+
+    @Bean
+    @Primary
+    public BookService readModelBookService(
+            @Qualifier("bookServiceImpl") BookService bookService,
+            CatalogReadModel catalogReadModel
+    ) {
+        return new ReadModelBookService(bookService, catalogReadModel);
+    }
+
+    @Bean
+    @Primary
+    public AuthorService readModelAuthorService(
+            @Qualifier("authorServiceImpl") AuthorService authorService,
+            CatalogReadModel catalogReadModel
+    ) {
+        return new ReadModelAuthorService(authorService, catalogReadModel);
+    }
+
+    @Bean
+    @Primary
+    public GenreService readModelGenreService(
+            @Qualifier("genreServiceImpl") GenreService genreService,
+            CatalogReadModel catalogReadModel
+    ) {
+        return new ReadModelGenreService(genreService, catalogReadModel);
+    }
+}
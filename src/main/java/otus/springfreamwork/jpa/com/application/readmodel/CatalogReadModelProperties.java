@@ -0,0 +1,45 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "catalog.read-model")
+public class CatalogReadModelProperties {
+
+    /**
+     * Serve catalog reads from the read model instead of the database.
+     */
+    private boolean enabled;
+    /**
+     * Threads reading genres, authors, books and comments at the same time on a full load.
+     */
+    private int loadThreads = 4;
+    /**
+     * File the model is written to on shutdown and restored from on start while the catalog has not changed
+     * in between; empty to always load from the database.
+     */
+    private String snapshot = "";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(String snapshot) {
+        this.snapshot = snapshot;
+    }
+}
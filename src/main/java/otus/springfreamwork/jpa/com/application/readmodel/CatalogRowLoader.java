@@ -0,0 +1,146 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import otus.springfreamwork.jpa.domain.model.BookParts;
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads rows for the read model with projections, so no entities end up in the persistence context.
+ * A {@code null} id collection reads the whole table.
+ */
+final class CatalogRowLoader {
+
+    /**
+     * Count, sum of ids and sum of versions of genres, authors, books and comments, then the numbers of
+     * book-author and comment-book links.
+     */
+    static final int STAMP_LENGTH = 14;
+
+    private static final int MAX_IN = 1000;
+    private static final int[] NO_IDS = new int[0];
+
+    Map<Integer, GenreRow> genres(EntityManager entityManager, Collection<Integer> ids) {
+        Map<Integer, GenreRow> genres = new HashMap<>();
+        for (Object[] row : select(entityManager, "SELECT g.id, g.version, g.name, g.deleted FROM Genre g", "g.id", ids)) {
+            genres.put((Integer) row[0], new GenreRow((Integer) row[0], (Long) row[1], (String) row[2], (Boolean) row[3]));
+        }
+        return genres;
+    }
+
+    Map<Integer, AuthorRow> authors(EntityManager entityManager, Collection<Integer> ids) {
+        Map<Integer, AuthorRow> authors = new HashMap<>();
+        String jpql = "SELECT a.id, a.version, a.name, a.surname, a.conutry, a.deleted FROM Author a";
+        for (Object[] row : select(entityManager, jpql, "a.id", ids)) {
+            authors.put((Integer) row[0], new AuthorRow(
+                    (Integer) row[0], (Long) row[1], (String) row[2], (String) row[3], (Conutry) row[4], (Boolean) row[5]
+            ));
+        }
+        return authors;
+    }
+
+    Map<Integer, BookRow> books(EntityManager entityManager, Collection<Integer> ids) {
+        Map<Integer, int[]> authorIds = links(entityManager, "SELECT b.id, a.id FROM Book b JOIN b.authors a", "b.id", ids);
+        Map<Integer, BookRow> books = new HashMap<>();
+        String jpql = "SELECT b.id, b.version, b.name, b.publishedDate, b.compactParts, b.genre.id FROM Book b";
+        for (Object[] row : select(entityManager, jpql, "b.id", ids)) {
+            Date publishedDate = (Date) row[3];
+            BookParts parts = (BookParts) row[4];
+            books.put((Integer) row[0], new BookRow(
+                    (Integer) row[0],
+                    (Long) row[1],
+                    (String) row[2],
+                    publishedDate == null ? BookRow.NO_DATE : publishedDate.getTime(),
+                    parts == null ? null : parts.getEncoded(),
+                    (Integer) row[5],
+                    authorIds.getOrDefault(row[0], NO_IDS)
+            ));
+        }
+        return books;
+    }
+
+    Map<Integer, CommentRow> comments(EntityManager entityManager, Collection<Integer> ids) {
+        Map<Integer, int[]> bookIds = links(entityManager, "SELECT c.id, b.id FROM Comment c JOIN c.books b", "c.id", ids);
+        Map<Integer, CommentRow> comments = new HashMap<>();
+        String jpql = "SELECT c.id, c.version, u.name, c.comment FROM Comment c LEFT JOIN c.user u";
+        for (Object[] row : select(entityManager, jpql, "c.id", ids)) {
+            comments.put((Integer) row[0], new CommentRow(
+                    (Integer) row[0], (Long) row[1], (String) row[2], (String) row[3],
+                    bookIds.getOrDefault(row[0], NO_IDS)
+            ));
+        }
+        return comments;
+    }
+
+    /**
+     * Every write bumps the version of the rows it changes and link changes bump the version of their owner,
+     * so the stamp changes with any committed change to the rows the read model keeps.
+     */
+    long[] stamp(EntityManager entityManager) {
+        long[] stamp = new long[STAMP_LENGTH];
+        String[] entities = {"Genre", "Author", "Book", "Comment"};
+        for (int i = 0; i < entities.length; i++) {
+            Object[] row = entityManager.createQuery(
+                    "SELECT COUNT(e), COALESCE(SUM(e.id), 0), COALESCE(SUM(e.version), 0) FROM " + entities[i] + " e",
+                    Object[].class).getSingleResult();
+            for (int column = 0; column < row.length; column++) {
+                stamp[i * 3 + column] = ((Number) row[column]).longValue();
+            }
+        }
+        stamp[12] = entityManager.createQuery("SELECT COUNT(a) FROM Book b JOIN b.authors a", Long.class)
+                .getSingleResult();
+        stamp[13] = entityManager.createQuery("SELECT COUNT(b) FROM Comment c JOIN c.books b", Long.class)
+                .getSingleResult();
+        return stamp;
+    }
+
+    List<Integer> bookIdsByName(EntityManager entityManager, String name) {
+        return entityManager.createQuery("SELECT b.id FROM Book b WHERE b.name = :name", Integer.class)
+                .setParameter("name", name)
+                .getResultList();
+    }
+
+    List<Integer> authorIdsByName(EntityManager entityManager, String name, String surname) {
+        return entityManager.createQuery(
+                "SELECT a.id FROM Author a WHERE a.name = :name AND a.surname = :surname", Integer.class)
+                .setParameter("name", name)
+                .setParameter("surname", surname)
+                .getResultList();
+    }
+
+    List<Integer> genreIdsByName(EntityManager entityManager, String name) {
+        return entityManager.createQuery("SELECT g.id FROM Genre g WHERE g.name = :name", Integer.class)
+                .setParameter("name", name)
+                .getResultList();
+    }
+
+    private static Map<Integer, int[]> links(EntityManager entityManager, String jpql, String idAttribute, Collection<Integer> ids) {
+        Map<Integer, List<Integer>> targets = new HashMap<>();
+        for (Object[] row : select(entityManager, jpql, idAttribute, ids)) {
+            targets.computeIfAbsent((Integer) row[0], id -> new ArrayList<>(1)).add((Integer) row[1]);
+        }
+        Map<Integer, int[]> links = new HashMap<>(targets.size() * 2);
+        targets.forEach((id, linked) -> links.put(id, linked.stream().mapToInt(Integer::intValue).sorted().toArray()));
+        return links;
+    }
+
+    private static List<Object[]> select(EntityManager entityManager, String jpql, String idAttribute, Collection<Integer> ids) {
+        if (ids == null) {
+            return entityManager.createQuery(jpql, Object[].class).getResultList();
+        }
+        List<Integer> idList = new ArrayList<>(ids);
+        List<Object[]> rows = new ArrayList<>();
+        for (int from = 0; from < idList.size(); from += MAX_IN) {
+            rows.addAll(entityManager.createQuery(jpql + " WHERE " + idAttribute + " IN :ids", Object[].class)
+                    .setParameter("ids", idList.subList(from, Math.min(from + MAX_IN, idList.size())))
+                    .getResultList());
+        }
+        return rows;
+    }
+}
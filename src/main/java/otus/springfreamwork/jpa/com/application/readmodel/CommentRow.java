@@ -0,0 +1,21 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+/**
+ * Comment as the read model keeps it, with the ids of the books it is linked to.
+ */
+final class CommentRow {
+
+    final int id;
+    final long version;
+    final String username;
+    final String comment;
+    final int[] bookIds;
+
+    CommentRow(int id, long version, String username, String comment, int[] bookIds) {
+        this.id = id;
+        this.version = version;
+        this.username = username;
+        this.comment = comment;
+        this.bookIds = bookIds;
+    }
+}
@@ -0,0 +1,19 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+/**
+ * Genre as the read model keeps it.
+ */
+final class GenreRow {
+
+    final int id;
+    final long version;
+    final String name;
+    final boolean deleted;
+
+    GenreRow(int id, long version, String name, boolean deleted) {
+        this.id = id;
+        this.version = version;
+        this.name = name;
+        this.deleted = deleted;
+    }
+}
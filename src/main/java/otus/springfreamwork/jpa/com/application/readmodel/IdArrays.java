@@ -0,0 +1,46 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import java.util.Arrays;
+
+/**
+ * Sorted, duplicate-free id arrays used as index entries. Arrays are never changed in place,
+ * so an entry handed to a reader stays valid while the index moves on.
+ */
+final class IdArrays {
+
+    static final int[] EMPTY = new int[0];
+
+    private IdArrays() {
+    }
+
+    static int[] with(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertAt = -position - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    static int[] without(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    /**
+     * @return ids present in any of the arrays, sorted
+     */
+    static int[] union(int[]... arrays) {
+        return Arrays.stream(arrays).flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+    }
+}
@@ -0,0 +1,264 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import otus.springfreamwork.jpa.com.repositories.converters.EnumCodes;
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read model rows in a binary file, written and read through a memory mapping. The file carries the
+ * {@link CatalogRowLoader#stamp catalog stamp} of the rows it holds, so it is only trusted while the database
+ * still has the same stamp. The file is written aside and moved in place, so a crash never leaves half of one.
+ */
+final class ReadModelSnapshot {
+
+    private static final int MAGIC = 0x524d534e;
+    private static final int FORMAT = 1;
+    private static final short NO_COUNTRY = -1;
+    private static final EnumCodes<Conutry> COUNTRIES = new EnumCodes<>(Conutry.class);
+
+    final long[] stamp;
+    final List<GenreRow> genres;
+    final List<AuthorRow> authors;
+    final List<BookRow> books;
+    final List<CommentRow> comments;
+
+    ReadModelSnapshot(
+            long[] stamp,
+            List<GenreRow> genres,
+            List<AuthorRow> authors,
+            List<BookRow> books,
+            List<CommentRow> comments
+    ) {
+        this.stamp = stamp;
+        this.genres = genres;
+        this.authors = authors;
+        this.books = books;
+        this.comments = comments;
+    }
+
+    void write(Path file) throws IOException {
+        long size = 4 + 4 + 4 + 8L * stamp.length + 4 * 4 + 4;
+        for (GenreRow row : genres) {
+            size += 4 + 8 + size(row.name) + 1;
+        }
+        for (AuthorRow row : authors) {
+            size += 4 + 8 + size(row.name) + size(row.surname) + 2 + 1;
+        }
+        for (BookRow row : books) {
+            size += 4 + 8 + size(row.name) + 8 + size(row.encodedParts) + 4 + 4 + 4L * row.authorIds.length;
+        }
+        for (CommentRow row : comments) {
+            size += 4 + 8 + size(row.username) + size(row.comment) + 4 + 4L * row.bookIds.length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Read model of " + size + " bytes is too large for a snapshot");
+        }
+
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        Path written = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(written, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+            buffer.putInt(MAGIC).putInt(FORMAT).putInt(stamp.length);
+            for (long value : stamp) {
+                buffer.putLong(value);
+            }
+            buffer.putInt(genres.size());
+            for (GenreRow row : genres) {
+                buffer.putInt(row.id).putLong(row.version);
+                put(buffer, encoder, row.name);
+                buffer.put((byte) (row.deleted ? 1 : 0));
+            }
+            buffer.putInt(authors.size());
+            for (AuthorRow row : authors) {
+                buffer.putInt(row.id).putLong(row.version);
+                put(buffer, encoder, row.name);
+                put(buffer, encoder, row.surname);
+                buffer.putShort(row.conutry == null ? NO_COUNTRY : row.conutry.getCode());
+                buffer.put((byte) (row.deleted ? 1 : 0));
+            }
+            buffer.putInt(books.size());
+            for (BookRow row : books) {
+                buffer.putInt(row.id).putLong(row.version);
+                put(buffer, encoder, row.name);
+                buffer.putLong(row.publishedDate);
+                put(buffer, encoder, row.encodedParts);
+                buffer.putInt(row.genreId);
+                put(buffer, row.authorIds);
+            }
+            buffer.putInt(comments.size());
+            for (CommentRow row : comments) {
+                buffer.putInt(row.id).putLong(row.version);
+                put(buffer, encoder, row.username);
+                put(buffer, encoder, row.comment);
+                put(buffer, row.bookIds);
+            }
+            buffer.putInt(MAGIC);
+            buffer.force();
+        }
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @throws IOException if the file cannot be read or is not a complete snapshot of this format
+     */
+    static ReadModelSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is too large");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new IOException("Snapshot " + file + " has another format");
+            }
+            long[] stamp = new long[count(buffer)];
+            for (int i = 0; i < stamp.length; i++) {
+                stamp[i] = buffer.getLong();
+            }
+            List<GenreRow> genres = new ArrayList<>();
+            for (int i = count(buffer); i > 0; i--) {
+                genres.add(new GenreRow(buffer.getInt(), buffer.getLong(), string(buffer), buffer.get() != 0));
+            }
+            List<AuthorRow> authors = new ArrayList<>();
+            for (int i = count(buffer); i > 0; i--) {
+                int id = buffer.getInt();
+                long version = buffer.getLong();
+                String name = string(buffer);
+                String surname = string(buffer);
+                short country = buffer.getShort();
+                authors.add(new AuthorRow(id, version, name, surname,
+                        country == NO_COUNTRY ? null : COUNTRIES.byCode(country), buffer.get() != 0));
+            }
+            List<BookRow> books = new ArrayList<>();
+            for (int i = count(buffer); i > 0; i--) {
+                books.add(new BookRow(buffer.getInt(), buffer.getLong(), string(buffer), buffer.getLong(),
+                        string(buffer), buffer.getInt(), ids(buffer)));
+            }
+            List<CommentRow> comments = new ArrayList<>();
+            for (int i = count(buffer); i > 0; i--) {
+                comments.add(new CommentRow(buffer.getInt(), buffer.getLong(), string(buffer), string(buffer), ids(buffer)));
+            }
+            if (buffer.getInt() != MAGIC || buffer.hasRemaining()) {
+                throw new IOException("Snapshot " + file + " is damaged");
+            }
+            return new ReadModelSnapshot(stamp, genres, authors, books, comments);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Snapshot " + file + " is damaged", e);
+        }
+    }
+
+    /**
+     * Stamp of the rows, comparable with the one {@link CatalogRowLoader#stamp} reads from the database.
+     */
+    static long[] stamp(
+            Collection<GenreRow> genres,
+            Collection<AuthorRow> authors,
+            Collection<BookRow> books,
+            Collection<CommentRow> comments
+    ) {
+        long[] stamp = new long[CatalogRowLoader.STAMP_LENGTH];
+        genres.forEach(row -> add(stamp, 0, row.id, row.version));
+        authors.forEach(row -> add(stamp, 3, row.id, row.version));
+        books.forEach(row -> {
+            add(stamp, 6, row.id, row.version);
+            stamp[12] += row.authorIds.length;
+        });
+        comments.forEach(row -> {
+            add(stamp, 9, row.id, row.version);
+            stamp[13] += row.bookIds.length;
+        });
+        return stamp;
+    }
+
+    private static void add(long[] stamp, int from, int id, long version) {
+        stamp[from]++;
+        stamp[from + 1] += id;
+        stamp[from + 2] += version;
+    }
+
+    private static int count(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad row count " + count);
+        }
+        return count;
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private static int[] ids(ByteBuffer buffer) {
+        int[] ids = new int[count(buffer)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.getInt();
+        }
+        return ids;
+    }
+
+    private static long size(String value) {
+        return 4 + (value == null ? 0 : utf8Length(value));
+    }
+
+    private static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void put(ByteBuffer buffer, CharsetEncoder encoder, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        int lengthAt = buffer.position();
+        buffer.putInt(0);
+        encoder.reset().encode(CharBuffer.wrap(value), buffer, true);
+        encoder.flush(buffer);
+        buffer.putInt(lengthAt, buffer.position() - lengthAt - 4);
+    }
+
+    private static void put(ByteBuffer buffer, int[] ids) {
+        buffer.putInt(ids.length);
+        for (int id : ids) {
+            buffer.putInt(id);
+        }
+    }
+}
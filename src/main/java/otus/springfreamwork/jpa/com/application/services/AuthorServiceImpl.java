@@ -2,7 +2,9 @@ package otus.springfreamwork.jpa.com.application.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.com.application.purge.TombstonePurger;
 import otus.springfreamwork.jpa.domain.application.services.AuthorService;
+import otus.springfreamwork.jpa.domain.dao.AuthorPatch;
 import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
 import otus.springfreamwork.jpa.domain.model.Author;
 
@@ -14,10 +16,12 @@ import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
 public class AuthorServiceImpl implements AuthorService {
 
     private final AuthorRepository authorRepository;
+    private final TombstonePurger tombstonePurger;
 
     @Autowired
-    public AuthorServiceImpl(AuthorRepository authorRepository) {
+    public AuthorServiceImpl(AuthorRepository authorRepository, TombstonePurger tombstonePurger) {
         this.authorRepository = authorRepository;
+        this.tombstonePurger = tombstonePurger;
     }
 
     @Override
@@ -64,16 +68,33 @@ public class AuthorServiceImpl implements AuthorService {
         return result;
     }
 
+    /**
+     * The author is hidden at once; links to books are removed by the background purge.
+     */
     @Override
     public String deleteAuthor(String name, String surname) {
-        Author author = authorRepository.getByNameAndSurname(name, surname);
         String result;
-        if (author != null) {
-            authorRepository.deleteByNameAndSurname(name, surname);
+        if (authorRepository.tombstoneByNameAndSurname(name, surname)) {
+            tombstonePurger.wakeUp();
             result = "Автор успешно удален";
         } else {
             result = "Не найдено автора в базе для удаления";
         }
         return result;
     }
+
+    @Override
+    public String patchAuthor(int id, String name, String surname, Long version) {
+        AuthorPatch patch = new AuthorPatch().expectedVersion(version);
+        if (name != null) {
+            patch.name(name);
+        }
+        if (surname != null) {
+            patch.surname(surname);
+        }
+        if (patch.isEmpty()) {
+            return "Не указано, что изменить";
+        }
+        return authorRepository.patch(id, patch) ? "Автор изменён" : "Не найдено автора в базе";
+    }
 }
@@ -4,7 +4,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import otus.springfreamwork.jpa.domain.application.services.BookService;
 import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookCatalogKeys;
+import otus.springfreamwork.jpa.domain.dao.BookPatch;
 import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.BookSearch;
+import otus.springfreamwork.jpa.domain.dao.BookSearchResult;
 import otus.springfreamwork.jpa.domain.dao.CommentRepository;
 import otus.springfreamwork.jpa.domain.dao.GenreRepository;
 import otus.springfreamwork.jpa.domain.model.Author;
@@ -44,26 +48,30 @@ public class BookServiceImpl implements BookService {
     @Override
     public String createBookByNameAndAuthorAndGenre(String bookName, String name, String surname, String genreName) {
 
-        Book book = bookRepository.getByName(bookName);
-        if (book != null) {
+        BookCatalogKeys keys = bookRepository.resolveKeys(bookName, name, surname, genreName);
+        if (keys.getBookId() != null) {
             return "Книга уже в базе";
         }
 
         StringBuilder result = new StringBuilder();
-        Author author = authorRepository.getByNameAndSurname(name, surname);
-        if (author == null) {
+        Author author;
+        if (keys.getAuthorId() == null) {
             author = new Author(name, surname, RUSSIA);
             result.append("Создан автор").append("\n");
+        } else {
+            author = authorRepository.getReference(keys.getAuthorId());
         }
 
-        Genre genre = genreRepository.getByName(genreName);
-        if (genre == null) {
+        Genre genre;
+        if (keys.getGenreId() == null) {
             genre = new Genre(genreName);
             result.append("Создан жанр").append("\n");
+        } else {
+            genre = genreRepository.getReference(keys.getGenreId());
         }
 
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
-        book = new Book(bookName, new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
+        Book book = new Book(bookName, new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
         bookRepository.insert(book);
         return result.append("Книга успешно создана").toString();
     }
@@ -99,6 +107,34 @@ public class BookServiceImpl implements BookService {
         return result;
     }
 
+    @Override
+    public String renameBook(String name, String newName, long version) {
+        Integer bookId = bookRepository.getIdByName(name);
+        if (bookId == null) {
+            return "Не найдено книги в базе";
+        }
+        if (bookRepository.getIdByName(newName) != null) {
+            return "Книга с таким названием уже в базе";
+        }
+        Book book = bookRepository.update(bookId, version, changed -> changed.setName(newName));
+        return "Книга переименована, версия: " + book.getVersion();
+    }
+
+    @Override
+    public String patchBook(int id, String name, Date publishedDate, Long version) {
+        BookPatch patch = new BookPatch().expectedVersion(version);
+        if (name != null) {
+            patch.name(name);
+        }
+        if (publishedDate != null) {
+            patch.publishedDate(publishedDate);
+        }
+        if (patch.isEmpty()) {
+            return "Не указано, что изменить";
+        }
+        return bookRepository.patch(id, patch) ? "Книга изменена" : "Не найдено книги в базе";
+    }
+
     @Override
     public String getBook(String name) {
         Book book = bookRepository.getByName(name);
@@ -111,20 +147,30 @@ public class BookServiceImpl implements BookService {
         return result;
     }
 
+    @Override
+    public String getBooksByIds(List<Integer> ids) {
+        List<Book> books = bookRepository.getAllByIds(ids);
+        StringBuilder stringBuilder = new StringBuilder();
+        if (books.isEmpty()) {
+            stringBuilder.append("Не найдено книг в базе");
+        } else {
+            stringBuilder.append("Список книг:");
+            books.forEach(book -> stringBuilder.append("\n").append(book));
+        }
+        return stringBuilder.toString();
+    }
+
     @Override
     public String getBooksByAuthorNameAndSurname(String name, String surname) {
         StringBuilder stringBuilder = new StringBuilder();
-        Author author = authorRepository.getByNameAndSurname(name, surname);
-        if (author == null) {
+        List<Book> books = bookRepository.getByAuthorNameAndSurname(name, surname);
+        if (!books.isEmpty()) {
+            stringBuilder.append("Список книг для автора:");
+            books.forEach(book -> stringBuilder.append("\n").append(book));
+        } else if (authorRepository.getByNameAndSurname(name, surname) == null) {
             stringBuilder.append("В базе нет такого автора");
         } else {
-            List<Book> books = bookRepository.getByAuthorId(author.getId());
-            if (books.isEmpty()) {
-                stringBuilder.append("Список книг для выбранного автора пуст");
-            } else {
-                stringBuilder.append("Список книг для автора:");
-                books.forEach(book -> stringBuilder.append("\n").append(book));
-            }
+            stringBuilder.append("Список книг для выбранного автора пуст");
         }
         return stringBuilder.toString();
     }
@@ -132,17 +178,14 @@ public class BookServiceImpl implements BookService {
     @Override
     public String getBooksByGenreName(String name) {
         StringBuilder stringBuilder = new StringBuilder();
-        Genre genre = genreRepository.getByName(name);
-        if (genre == null) {
+        List<Book> books = bookRepository.getByGenreName(name);
+        if (!books.isEmpty()) {
+            stringBuilder.append("Список книг для жанра:");
+            books.forEach(book -> stringBuilder.append("\n").append(book));
+        } else if (genreRepository.getByName(name) == null) {
             stringBuilder.append("В базе нет такого жанра");
         } else {
-            List<Book> books = bookRepository.getByGenreId(genre.getId());
-            if (books.isEmpty()) {
-                stringBuilder.append("Список книг для выбранного жанра пуст");
-            } else {
-                stringBuilder.append("Список книг для жанра:");
-                books.forEach(book -> stringBuilder.append("\n").append(book));
-            }
+            stringBuilder.append("Список книг для выбранного жанра пуст");
         }
         return stringBuilder.toString();
     }
@@ -159,4 +202,25 @@ public class BookServiceImpl implements BookService {
         }
         return stringBuilder.toString();
     }
+
+    @Override
+    public String searchBooks(BookSearch search) {
+        BookSearchResult searchResult = bookRepository.search(search);
+        StringBuilder stringBuilder = new StringBuilder();
+        if (searchResult.getBooks().isEmpty()) {
+            stringBuilder.append("Не найдено книг по заданным критериям");
+        } else {
+            stringBuilder.append("Найденные книги:");
+            searchResult.getBooks().forEach(book -> stringBuilder.append("\n").append(book));
+        }
+        if (search.isWithFacets()) {
+            stringBuilder.append("\nПо жанрам:");
+            searchResult.getGenreFacets().forEach((genre, count) ->
+                    stringBuilder.append("\n").append(genre).append(": ").append(count));
+            stringBuilder.append("\nПо авторам:");
+            searchResult.getAuthorFacets().forEach((author, count) ->
+                    stringBuilder.append("\n").append(author).append(": ").append(count));
+        }
+        return stringBuilder.toString();
+    }
 }
@@ -0,0 +1,103 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.domain.application.services.CatalogGraphService;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CatalogGraphRepository;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Transactional
+public class CatalogGraphServiceImpl implements CatalogGraphService {
+
+    private final CatalogGraphRepository graphRepository;
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+
+    @Autowired
+    public CatalogGraphServiceImpl(
+            CatalogGraphRepository graphRepository,
+            BookRepository bookRepository,
+            AuthorRepository authorRepository
+    ) {
+        this.graphRepository = graphRepository;
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+    }
+
+    @Override
+    public String getCoAuthors(String name, String surname) {
+        Author author = authorRepository.getByNameAndSurname(name, surname);
+        if (author == null) {
+            return "В базе нет такого автора";
+        }
+        List<Author> coAuthors = authorRepository.getAllByIds(graphRepository.getCoAuthorIds(author.getId()));
+        if (coAuthors.isEmpty()) {
+            return "У автора нет соавторов";
+        }
+        StringBuilder stringBuilder = new StringBuilder("Соавторы:");
+        coAuthors.forEach(coAuthor -> stringBuilder.append("\n")
+                .append(coAuthor.getName()).append(" ").append(coAuthor.getSurname()));
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getAuthorDistance(String name, String surname, String otherName, String otherSurname, int maxDepth) {
+        Author author = authorRepository.getByNameAndSurname(name, surname);
+        Author other = authorRepository.getByNameAndSurname(otherName, otherSurname);
+        if (author == null || other == null) {
+            return "В базе нет такого автора";
+        }
+        int distance = graphRepository.getAuthorDistance(author.getId(), other.getId(), maxDepth);
+        return distance < 0
+                ? "Авторы не связаны общими книгами"
+                : "Расстояние между авторами: " + distance;
+    }
+
+    @Override
+    public String getBooksSharingAuthors(String bookName) {
+        Integer bookId = bookRepository.getIdByName(bookName);
+        if (bookId == null) {
+            return "Не найдено книги в базе";
+        }
+        List<Book> books = bookRepository.getAllByIds(graphRepository.getBookIdsSharingAuthors(bookId));
+        if (books.isEmpty()) {
+            return "Нет других книг этих авторов";
+        }
+        StringBuilder stringBuilder = new StringBuilder("Книги тех же авторов:");
+        books.forEach(book -> stringBuilder.append("\n").append(book.getName()));
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getAlsoCommented(String bookName, int limit) {
+        Integer bookId = bookRepository.getIdByName(bookName);
+        if (bookId == null) {
+            return "Не найдено книги в базе";
+        }
+        Map<Integer, Integer> sharedReaders = graphRepository.getAlsoCommentedBookIds(bookId, limit);
+        if (sharedReaders.isEmpty()) {
+            return "Комментаторы книги не комментировали другие книги";
+        }
+        Map<Integer, Book> books = bookRepository.getAllByIds(new ArrayList<>(sharedReaders.keySet())).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        StringBuilder stringBuilder = new StringBuilder("Комментаторы книги также комментировали:");
+        sharedReaders.forEach((id, readers) -> {
+            Book book = books.get(id);
+            if (book != null) {
+                stringBuilder.append("\n").append(book.getName()).append(": ").append(readers);
+            }
+        });
+        return stringBuilder.toString();
+    }
+}
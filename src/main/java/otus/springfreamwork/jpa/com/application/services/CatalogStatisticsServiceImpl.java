@@ -0,0 +1,135 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.domain.application.services.CatalogStatisticsService;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CatalogAggregateRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.AUTHOR;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.BOOK;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.GENRE;
+
+@Service
+@Transactional
+public class CatalogStatisticsServiceImpl implements CatalogStatisticsService {
+
+    private final CatalogAggregateRepository aggregateRepository;
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final GenreRepository genreRepository;
+
+    @Autowired
+    public CatalogStatisticsServiceImpl(
+            CatalogAggregateRepository aggregateRepository,
+            BookRepository bookRepository,
+            AuthorRepository authorRepository,
+            GenreRepository genreRepository
+    ) {
+        this.aggregateRepository = aggregateRepository;
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.genreRepository = genreRepository;
+    }
+
+    @Override
+    public String getBookStatistics(String bookName) {
+        Integer bookId = bookRepository.getIdByName(bookName);
+        if (bookId == null) {
+            return "Не найдено книги в базе";
+        }
+        CatalogAggregate aggregate = aggregateRepository.get(BOOK, bookId);
+        String result = "Количество комментариев к книге: " + aggregate.getItemCount();
+        if (aggregate.getLastCommentId() != null) {
+            result += ", последний комментарий: " + aggregate.getLastCommentId();
+        }
+        return result;
+    }
+
+    @Override
+    public String getAuthorStatistics(String name, String surname) {
+        Author author = authorRepository.getByNameAndSurname(name, surname);
+        if (author == null) {
+            return "Не найдено автора в базе";
+        }
+        return "Количество книг автора: " + aggregateRepository.get(AUTHOR, author.getId()).getItemCount();
+    }
+
+    @Override
+    public String getGenreStatistics(String name) {
+        Genre genre = genreRepository.getByName(name);
+        if (genre == null) {
+            return "Не найдено жанра в базе";
+        }
+        return "Количество книг жанра: " + aggregateRepository.get(GENRE, genre.getId()).getItemCount();
+    }
+
+    @Override
+    public String getTopBooks(int limit) {
+        List<CatalogAggregate> top = aggregateRepository.getTop(BOOK, limit);
+        if (top.isEmpty()) {
+            return "Нет книг с комментариями";
+        }
+        Map<Integer, Book> books = bookRepository.getAllByIds(entityIds(top)).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        StringBuilder stringBuilder = new StringBuilder("Книги с наибольшим числом комментариев:");
+        int place = 0;
+        for (CatalogAggregate aggregate : top) {
+            Book book = books.get(aggregate.getEntityId());
+            if (book != null) {
+                stringBuilder.append("\n").append(++place).append(". ").append(book.getName())
+                        .append(": ").append(aggregate.getItemCount());
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getTopAuthors(int limit) {
+        List<CatalogAggregate> top = aggregateRepository.getTop(AUTHOR, limit);
+        if (top.isEmpty()) {
+            return "Нет авторов с книгами";
+        }
+        Map<Integer, Author> authors = authorRepository.getAllByIds(entityIds(top)).stream()
+                .collect(Collectors.toMap(Author::getId, Function.identity()));
+        StringBuilder stringBuilder = new StringBuilder("Авторы с наибольшим числом книг:");
+        int place = 0;
+        for (CatalogAggregate aggregate : top) {
+            Author author = authors.get(aggregate.getEntityId());
+            if (author != null) {
+                stringBuilder.append("\n").append(++place).append(". ").append(author.getName())
+                        .append(" ").append(author.getSurname()).append(": ").append(aggregate.getItemCount());
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String checkAggregates(boolean rebuild) {
+        int mismatches = aggregateRepository.check();
+        if (mismatches == 0) {
+            return "Агрегаты согласованы с каталогом";
+        }
+        if (!rebuild) {
+            return "Расхождений в агрегатах: " + mismatches;
+        }
+        aggregateRepository.rebuild();
+        return "Расхождений в агрегатах: " + mismatches + ", агрегаты перестроены";
+    }
+
+    private static List<Integer> entityIds(List<CatalogAggregate> aggregates) {
+        return aggregates.stream().map(CatalogAggregate::getEntityId).collect(Collectors.toList());
+    }
+}
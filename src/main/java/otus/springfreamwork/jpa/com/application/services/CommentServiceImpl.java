@@ -2,41 +2,48 @@ package otus.springfreamwork.jpa.com.application.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.com.application.dedupe.CommentDuplicateIndex;
 import otus.springfreamwork.jpa.domain.application.services.CommentService;
 import otus.springfreamwork.jpa.domain.dao.BookRepository;
 import otus.springfreamwork.jpa.domain.dao.CommentRepository;
-import otus.springfreamwork.jpa.domain.model.Book;
 import otus.springfreamwork.jpa.domain.model.Comment;
 
 import javax.transaction.Transactional;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Transactional
 public class CommentServiceImpl implements CommentService {
     private final CommentRepository commentRepository;
     private final BookRepository bookRepository;
+    private final CommentDuplicateIndex duplicateIndex;
 
     @Autowired
-    public CommentServiceImpl(CommentRepository commentRepository, BookRepository bookRepository) {
+    public CommentServiceImpl(
+            CommentRepository commentRepository,
+            BookRepository bookRepository,
+            CommentDuplicateIndex duplicateIndex
+    ) {
         this.commentRepository = commentRepository;
         this.bookRepository = bookRepository;
+        this.duplicateIndex = duplicateIndex;
     }
 
     @Override
     public String createComment(String username, String commentText, String bookName) {
-        Book book = bookRepository.getByName(bookName);
-        String result;
-        if (book == null) {
-            result = "Не найдено книги, комментарий не создан";
-        } else {
-            Comment comment = new Comment(username, commentText);
-            comment.setBooks(Collections.singleton(book));
-            commentRepository.insert(comment);
-            result = "Комментарий создан";
+        Integer bookId = bookRepository.getIdByName(bookName);
+        if (bookId == null) {
+            return "Не найдено книги, комментарий не создан";
         }
-        return result;
+        Integer duplicateId = duplicateIndex.findDuplicate(commentText);
+        if (duplicateId != null && duplicateIndex.rejectsDuplicates()) {
+            return "Похожий комментарий уже есть, комментарий не создан";
+        }
+        Comment comment = new Comment(username, commentText);
+        commentRepository.insertForBook(comment, bookId);
+        duplicateIndex.add(comment.getId(), commentText);
+        return duplicateId == null ? "Комментарий создан" : "Комментарий создан, похож на комментарий " + duplicateId;
     }
 
     @Override
@@ -70,6 +77,39 @@ public class CommentServiceImpl implements CommentService {
         return result;
     }
 
+    @Override
+    public String editComment(int id, long version, String commentText) {
+        Comment comment = commentRepository.update(id, version, changed -> changed.setComment(commentText));
+        if (comment == null) {
+            return "Не найдено комментария в базе";
+        }
+        return "Комментарий изменён, версия: " + comment.getVersion();
+    }
+
+    @Override
+    public String renameUsername(String username, String newUsername) {
+        int renamed = commentRepository.renameUsername(username, newUsername);
+        return renamed == 0 ? "Не найдено комментариев юзера" : "Переименовано комментариев: " + renamed;
+    }
+
+    @Override
+    public String dedupeComments(boolean delete) {
+        if (!duplicateIndex.isLoaded()) {
+            return "Индекс комментариев ещё загружается, повторите позже";
+        }
+        Map<Integer, Integer> duplicates = duplicateIndex.findAllDuplicates();
+        if (duplicates.isEmpty()) {
+            return "Похожих комментариев не найдено";
+        }
+        if (delete) {
+            return "Удалено похожих комментариев: " + commentRepository.deleteByIds(duplicates.keySet());
+        }
+        StringBuilder stringBuilder = new StringBuilder("Похожие комментарии:");
+        duplicates.forEach((duplicateId, originalId) ->
+                stringBuilder.append("\n").append(duplicateId).append(" похож на ").append(originalId));
+        return stringBuilder.toString();
+    }
+
     @Override
     public String getUsernameComments(String username) {
         List<Comment> comments = commentRepository.getByUsername(username);
@@ -2,20 +2,31 @@ package otus.springfreamwork.jpa.com.application.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.com.application.purge.TombstonePurger;
 import otus.springfreamwork.jpa.domain.application.services.GenreService;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
 import otus.springfreamwork.jpa.domain.dao.GenreRepository;
 import otus.springfreamwork.jpa.domain.model.Genre;
 
+import javax.transaction.Transactional;
 import java.util.List;
 
 @Service
 public class GenreServiceImpl implements GenreService {
 
     private final GenreRepository genreRepository;
+    private final BookRepository bookRepository;
+    private final TombstonePurger tombstonePurger;
 
     @Autowired
-    public GenreServiceImpl(GenreRepository genreRepository) {
+    public GenreServiceImpl(
+            GenreRepository genreRepository,
+            BookRepository bookRepository,
+            TombstonePurger tombstonePurger
+    ) {
         this.genreRepository = genreRepository;
+        this.bookRepository = bookRepository;
+        this.tombstonePurger = tombstonePurger;
     }
 
     @Override
@@ -50,12 +61,14 @@ public class GenreServiceImpl implements GenreService {
         return "Количество жанров в базе: " + genreRepository.count();
     }
 
+    /**
+     * The genre and its books are hidden at once; the rows are removed by the background purge.
+     */
     @Override
     public String deleteGenre(String name) {
-        Genre genre = genreRepository.getByName(name);
         String result;
-        if (genre != null) {
-            genreRepository.deleteByName(name);
+        if (genreRepository.tombstoneByName(name)) {
+            tombstonePurger.wakeUp();
             result = "Жанр успешно удален";
         } else {
             result = "Не найдено жанра в базе для удаления";
@@ -74,4 +87,20 @@ public class GenreServiceImpl implements GenreService {
         }
         return result;
     }
+
+    @Override
+    @Transactional
+    public String mergeGenres(String fromName, String intoName) {
+        Genre from = genreRepository.getByName(fromName);
+        Genre into = genreRepository.getByName(intoName);
+        if (from == null || into == null) {
+            return "Не найдено жанра в базе";
+        }
+        if (from.getId() == into.getId()) {
+            return "Жанры совпадают";
+        }
+        int moved = bookRepository.moveToGenre(from.getId(), into.getId());
+        genreRepository.deleteById(from.getId());
+        return "Перенесено книг: " + moved + ", жанр " + fromName + " удален";
+    }
 }
@@ -0,0 +1,38 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.com.application.purge.PurgeProgress;
+import otus.springfreamwork.jpa.com.application.purge.TombstonePurger;
+import otus.springfreamwork.jpa.domain.application.services.PurgeService;
+
+import java.util.List;
+
+@Service
+public class PurgeServiceImpl implements PurgeService {
+
+    private final TombstonePurger tombstonePurger;
+
+    @Autowired
+    public PurgeServiceImpl(TombstonePurger tombstonePurger) {
+        this.tombstonePurger = tombstonePurger;
+    }
+
+    @Override
+    public String getPurgeProgress() {
+        List<PurgeProgress> purges = tombstonePurger.getProgress();
+        if (purges.isEmpty()) {
+            return "Нет фоновых удалений";
+        }
+        StringBuilder stringBuilder = new StringBuilder("Фоновые удаления:");
+        for (PurgeProgress purge : purges) {
+            stringBuilder.append("\n")
+                    .append(purge.getKind() == PurgeProgress.Kind.GENRE ? "жанр " : "автор ")
+                    .append(purge.getId())
+                    .append(": удалено ").append(purge.getRemoved())
+                    .append(" из ").append(purge.getTotal())
+                    .append(purge.isFinished() ? ", завершено" : "");
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import otus.springfreamwork.jpa.com.application.readmodel.CatalogReadModel;
+import otus.springfreamwork.jpa.domain.application.services.AuthorService;
+import otus.springfreamwork.jpa.domain.model.Author;
+
+import java.util.List;
+
+/**
+ * Answers author lookups from the in-memory read model; changes go to the database and are waited for in the model.
+ */
+public class ReadModelAuthorService implements AuthorService {
+
+    private final AuthorService authorService;
+    private final CatalogReadModel readModel;
+
+    public ReadModelAuthorService(AuthorService authorService, CatalogReadModel readModel) {
+        this.authorService = authorService;
+        this.readModel = readModel;
+    }
+
+    @Override
+    public String createAuthorByNameAndSurname(String name, String surname) {
+        return applied(authorService.createAuthorByNameAndSurname(name, surname));
+    }
+
+    @Override
+    public String getAllAuthors() {
+        List<Author> authors = readModel.getAllAuthors();
+        StringBuilder stringBuilder = new StringBuilder();
+        if (authors.isEmpty()) {
+            stringBuilder.append("Нет авторов в базе");
+        } else {
+            stringBuilder.append("Список авторов:");
+            authors.forEach(author -> stringBuilder.append("\n").append(author));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String countAuthors() {
+        return "Количество авторов в базе: " + readModel.countAuthors();
+    }
+
+    @Override
+    public String getAuthor(String name, String surname) {
+        Author author = readModel.getAuthor(name, surname);
+        return author == null ? "Не найдено автора в базе" : "Найден автор: " + author;
+    }
+
+    @Override
+    public String deleteAuthor(String name, String surname) {
+        return applied(authorService.deleteAuthor(name, surname));
+    }
+
+    @Override
+    public String patchAuthor(int id, String name, String surname, Long version) {
+        return applied(authorService.patchAuthor(id, name, surname, version));
+    }
+
+    private String applied(String result) {
+        readModel.awaitUpdates();
+        return result;
+    }
+}
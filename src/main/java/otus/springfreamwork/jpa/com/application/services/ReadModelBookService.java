@@ -0,0 +1,136 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import otus.springfreamwork.jpa.com.application.readmodel.CatalogReadModel;
+import otus.springfreamwork.jpa.domain.application.services.BookService;
+import otus.springfreamwork.jpa.domain.dao.BookSearch;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.Comment;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Answers book lookups from the in-memory read model; changes and searches go to the database.
+ * A change returns once the model has applied it, so the next lookup sees it; changes made on other nodes
+ * show up a little later.
+ */
+public class ReadModelBookService implements BookService {
+
+    private final BookService bookService;
+    private final CatalogReadModel readModel;
+
+    public ReadModelBookService(BookService bookService, CatalogReadModel readModel) {
+        this.bookService = bookService;
+        this.readModel = readModel;
+    }
+
+    @Override
+    public String createBookByNameAndAuthorAndGenre(String bookName, String name, String surname, String genreName) {
+        return applied(bookService.createBookByNameAndAuthorAndGenre(bookName, name, surname, genreName));
+    }
+
+    @Override
+    public String getAllBooks() {
+        List<Book> books = readModel.getAllBooks();
+        StringBuilder stringBuilder = new StringBuilder();
+        if (books.isEmpty()) {
+            stringBuilder.append("Нет книг в базе");
+        } else {
+            stringBuilder.append("Список книг:");
+            books.forEach(book -> stringBuilder.append("\n").append(book));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String countBooks() {
+        return "Количество книг в базе: " + readModel.countBooks();
+    }
+
+    @Override
+    public String deleteBook(String name) {
+        return applied(bookService.deleteBook(name));
+    }
+
+    @Override
+    public String renameBook(String name, String newName, long version) {
+        return applied(bookService.renameBook(name, newName, version));
+    }
+
+    @Override
+    public String patchBook(int id, String name, Date publishedDate, Long version) {
+        return applied(bookService.patchBook(id, name, publishedDate, version));
+    }
+
+    @Override
+    public String getBook(String name) {
+        Book book = readModel.getBookByName(name);
+        return book == null ? "Не найдено книги в базе" : "Найдена книга: " + book;
+    }
+
+    @Override
+    public String getBooksByIds(List<Integer> ids) {
+        List<Book> books = readModel.getBooksByIds(ids);
+        StringBuilder stringBuilder = new StringBuilder();
+        if (books.isEmpty()) {
+            stringBuilder.append("Не найдено книг в базе");
+        } else {
+            stringBuilder.append("Список книг:");
+            books.forEach(book -> stringBuilder.append("\n").append(book));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getBooksByAuthorNameAndSurname(String name, String surname) {
+        StringBuilder stringBuilder = new StringBuilder();
+        List<Book> books = readModel.getBooksByAuthor(name, surname);
+        if (!books.isEmpty()) {
+            stringBuilder.append("Список книг для автора:");
+            books.forEach(book -> stringBuilder.append("\n").append(book));
+        } else if (readModel.getAuthor(name, surname) == null) {
+            stringBuilder.append("В базе нет такого автора");
+        } else {
+            stringBuilder.append("Список книг для выбранного автора пуст");
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getBooksByGenreName(String name) {
+        StringBuilder stringBuilder = new StringBuilder();
+        List<Book> books = readModel.getBooksByGenreName(name);
+        if (!books.isEmpty()) {
+            stringBuilder.append("Список книг для жанра:");
+            books.forEach(book -> stringBuilder.append("\n").append(book));
+        } else if (readModel.getGenreByName(name) == null) {
+            stringBuilder.append("В базе нет такого жанра");
+        } else {
+            stringBuilder.append("Список книг для выбранного жанра пуст");
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getCommentsOnBook(String name) {
+        List<Comment> comments = readModel.getCommentsOnBook(name);
+        StringBuilder stringBuilder = new StringBuilder();
+        if (comments.isEmpty()) {
+            stringBuilder.append("Нет комментариев на книгу");
+        } else {
+            stringBuilder.append("Список комментариев для книги:");
+            comments.forEach(comment -> stringBuilder.append("\n").append(comment));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String searchBooks(BookSearch search) {
+        return bookService.searchBooks(search);
+    }
+
+    private String applied(String result) {
+        readModel.awaitUpdates();
+        return result;
+    }
+}
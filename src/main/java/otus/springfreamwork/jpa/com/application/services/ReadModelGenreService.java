@@ -0,0 +1,65 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import otus.springfreamwork.jpa.com.application.readmodel.CatalogReadModel;
+import otus.springfreamwork.jpa.domain.application.services.GenreService;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import java.util.List;
+
+/**
+ * Answers genre lookups from the in-memory read model; changes go to the database and are waited for in the model.
+ */
+public class ReadModelGenreService implements GenreService {
+
+    private final GenreService genreService;
+    private final CatalogReadModel readModel;
+
+    public ReadModelGenreService(GenreService genreService, CatalogReadModel readModel) {
+        this.genreService = genreService;
+        this.readModel = readModel;
+    }
+
+    @Override
+    public String createGenreByName(String name) {
+        return applied(genreService.createGenreByName(name));
+    }
+
+    @Override
+    public String getAllGenres() {
+        List<Genre> genres = readModel.getAllGenres();
+        StringBuilder stringBuilder = new StringBuilder();
+        if (genres.isEmpty()) {
+            stringBuilder.append("Нет жанров в базе");
+        } else {
+            stringBuilder.append("Список жанров:");
+            genres.forEach(genre -> stringBuilder.append("\n").append(genre));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String countGenres() {
+        return "Количество жанров в базе: " + readModel.countGenres();
+    }
+
+    @Override
+    public String deleteGenre(String name) {
+        return applied(genreService.deleteGenre(name));
+    }
+
+    @Override
+    public String mergeGenres(String fromName, String intoName) {
+        return applied(genreService.mergeGenres(fromName, intoName));
+    }
+
+    @Override
+    public String getGenre(String name) {
+        Genre genre = readModel.getGenreByName(name);
+        return genre == null ? "Не найдено жанра в базе" : "Найден жанр: " + genre;
+    }
+
+    private String applied(String result) {
+        readModel.awaitUpdates();
+        return result;
+    }
+}
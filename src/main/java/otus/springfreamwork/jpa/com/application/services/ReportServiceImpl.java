@@ -0,0 +1,63 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.com.application.analytics.CatalogAnalytics;
+import otus.springfreamwork.jpa.com.application.analytics.GenreYearCount;
+import otus.springfreamwork.jpa.domain.application.services.ReportService;
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class ReportServiceImpl implements ReportService {
+
+    private final CatalogAnalytics analytics;
+
+    @Autowired
+    public ReportServiceImpl(CatalogAnalytics analytics) {
+        this.analytics = analytics;
+    }
+
+    @Override
+    public String getBooksByGenreAndYear(String genre, Integer fromYear, Integer toYear) {
+        List<GenreYearCount> counts = analytics.countBooksByGenreAndYear(genre, fromYear, toYear);
+        if (counts.isEmpty()) {
+            return "Не найдено книг в базе";
+        }
+        StringBuilder stringBuilder = new StringBuilder("Книги по жанрам и годам:");
+        for (GenreYearCount count : counts) {
+            stringBuilder.append("\n").append(count.getGenre()).append(", ")
+                    .append(count.getYear() == null ? "без даты" : count.getYear().toString())
+                    .append(": ").append(count.getCount());
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getAuthorsByCountry() {
+        Map<Conutry, Long> counts = analytics.countAuthorsByCountry();
+        if (counts.isEmpty()) {
+            return "Нет авторов в базе";
+        }
+        StringBuilder stringBuilder = new StringBuilder("Авторы по странам:");
+        counts.forEach((country, count) -> stringBuilder.append("\n").append(country).append(": ").append(count));
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getTopCommenters(int limit) {
+        Map<String, Long> counts = analytics.countCommentsByUser(limit);
+        if (counts.isEmpty()) {
+            return "Нет комментариев в базе";
+        }
+        StringBuilder stringBuilder = new StringBuilder("Пользователи с наибольшим числом комментариев:");
+        int place = 0;
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            stringBuilder.append("\n").append(++place).append(". ").append(count.getKey())
+                    .append(": ").append(count.getValue());
+        }
+        return stringBuilder.toString();
+    }
+}
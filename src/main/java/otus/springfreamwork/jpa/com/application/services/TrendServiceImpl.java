@@ -0,0 +1,56 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import otus.springfreamwork.jpa.com.application.sketches.CommentSketches;
+import otus.springfreamwork.jpa.domain.application.services.TrendService;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.model.Book;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class TrendServiceImpl implements TrendService {
+
+    private final CommentSketches commentSketches;
+    private final BookRepository bookRepository;
+
+    @Autowired
+    public TrendServiceImpl(CommentSketches commentSketches, BookRepository bookRepository) {
+        this.commentSketches = commentSketches;
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public String getTrendingBooks(int minutes, int limit) {
+        List<long[]> trending = commentSketches.getTrendingBooks(minutes, limit);
+        if (trending.isEmpty()) {
+            return "Нет новых комментариев";
+        }
+        List<Integer> ids = trending.stream().map(book -> (int) book[0]).collect(Collectors.toList());
+        Map<Integer, Book> books = bookRepository.getAllByIds(ids).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        StringBuilder stringBuilder = new StringBuilder("Книги с наибольшим числом новых комментариев:");
+        int place = 0;
+        for (long[] count : trending) {
+            Book book = books.get((int) count[0]);
+            if (book != null) {
+                stringBuilder.append("\n").append(++place).append(". ").append(book.getName())
+                        .append(": ~").append(count[1]);
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public String getDistinctCommenters(String bookName) {
+        Integer bookId = bookRepository.getIdByName(bookName);
+        if (bookId == null) {
+            return "Не найдено книги в базе";
+        }
+        return "Различных комментаторов книги: ~" + commentSketches.getDistinctCommenters(bookId);
+    }
+}
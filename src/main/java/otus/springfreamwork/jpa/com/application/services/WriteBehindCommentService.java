@@ -0,0 +1,79 @@
+package otus.springfreamwork.jpa.com.application.services;
+
+import otus.springfreamwork.jpa.com.application.dedupe.CommentDuplicateIndex;
+import otus.springfreamwork.jpa.com.application.writebehind.CommentWriteBehindBuffer;
+import otus.springfreamwork.jpa.domain.application.services.CommentService;
+
+/**
+ * Accepts new comments into the write-behind buffer; everything else goes straight to the database.
+ * Reads may not see comments that are still in the buffer.
+ */
+public class WriteBehindCommentService implements CommentService {
+
+    private final CommentService commentService;
+    private final CommentWriteBehindBuffer buffer;
+    private final CommentDuplicateIndex duplicateIndex;
+
+    public WriteBehindCommentService(
+            CommentService commentService,
+            CommentWriteBehindBuffer buffer,
+            CommentDuplicateIndex duplicateIndex
+    ) {
+        this.commentService = commentService;
+        this.buffer = buffer;
+        this.duplicateIndex = duplicateIndex;
+    }
+
+    /**
+     * Buffered comments are indexed only once written, so copies sent within one flush are not caught here.
+     */
+    @Override
+    public String createComment(String username, String commentText, String bookName) {
+        Integer duplicateId = duplicateIndex.findDuplicate(commentText);
+        if (duplicateId != null && duplicateIndex.rejectsDuplicates()) {
+            return "Похожий комментарий уже есть, комментарий не создан";
+        }
+        if (!buffer.submit(username, commentText, bookName)) {
+            return "Очередь комментариев переполнена, комментарий не создан";
+        }
+        return duplicateId == null ? "Комментарий принят" : "Комментарий принят, похож на комментарий " + duplicateId;
+    }
+
+    @Override
+    public String getAllComments() {
+        return commentService.getAllComments();
+    }
+
+    @Override
+    public String countComments() {
+        return commentService.countComments();
+    }
+
+    @Override
+    public String deleteUsernameComments(String usernanme) {
+        buffer.flush();
+        return commentService.deleteUsernameComments(usernanme);
+    }
+
+    @Override
+    public String editComment(int id, long version, String commentText) {
+        return commentService.editComment(id, version, commentText);
+    }
+
+    @Override
+    public String renameUsername(String username, String newUsername) {
+        buffer.flush();
+        return commentService.renameUsername(username, newUsername);
+    }
+
+    @Override
+    public String getUsernameComments(String username) {
+        return commentService.getUsernameComments(username);
+    }
+
+    @Override
+    public String dedupeComments(boolean delete) {
+        buffer.flush();
+        return commentService.dedupeComments(delete);
+    }
+}
@@ -0,0 +1,22 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+@EnableConfigurationProperties(CommentSketchProperties.class)
+public class CommentSketchConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CommentSketches commentSketches(
+            EntityManagerFactory entityManagerFactory,
+            CacheInvalidator cacheInvalidator,
+            CommentSketchProperties properties
+    ) {
+        return new CommentSketches(entityManagerFactory, cacheInvalidator, properties);
+    }
+}
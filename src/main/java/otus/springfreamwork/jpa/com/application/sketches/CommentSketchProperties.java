@@ -0,0 +1,87 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "catalog.sketches")
+public class CommentSketchProperties {
+
+    /**
+     * Length of one window bucket; trending periods are rounded up to whole buckets.
+     */
+    private long bucketMs = 60_000;
+    /**
+     * Number of buckets kept, so the longest trending period is {@code bucketMs * buckets}.
+     */
+    private int buckets = 60;
+    /**
+     * Books tracked per bucket by the heavy-hitter summary.
+     */
+    private int heavyHitters = 200;
+    private int countMinDepth = 4;
+    private int countMinWidth = 2048;
+    /**
+     * HyperLogLog precision: {@code 2^precision} bytes per book, standard error {@code 1.04 / sqrt(2^precision)}.
+     */
+    private int distinctPrecision = 10;
+    /**
+     * Books with a distinct-commenter sketch in memory; the least recently used one is dropped beyond that
+     * and rebuilt from the database when asked for again.
+     */
+    private int maxDistinctBooks = 10_000;
+
+    public long getBucketMs() {
+        return bucketMs;
+    }
+
+    public void setBucketMs(long bucketMs) {
+        this.bucketMs = bucketMs;
+    }
+
+    public int getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(int buckets) {
+        this.buckets = buckets;
+    }
+
+    public int getHeavyHitters() {
+        return heavyHitters;
+    }
+
+    public void setHeavyHitters(int heavyHitters) {
+        this.heavyHitters = heavyHitters;
+    }
+
+    public int getCountMinDepth() {
+        return countMinDepth;
+    }
+
+    public void setCountMinDepth(int countMinDepth) {
+        this.countMinDepth = countMinDepth;
+    }
+
+    public int getCountMinWidth() {
+        return countMinWidth;
+    }
+
+    public void setCountMinWidth(int countMinWidth) {
+        this.countMinWidth = countMinWidth;
+    }
+
+    public int getDistinctPrecision() {
+        return distinctPrecision;
+    }
+
+    public void setDistinctPrecision(int distinctPrecision) {
+        this.distinctPrecision = distinctPrecision;
+    }
+
+    public int getMaxDistinctBooks() {
+        return maxDistinctBooks;
+    }
+
+    public void setMaxDistinctBooks(int maxDistinctBooks) {
+        this.maxDistinctBooks = maxDistinctBooks;
+    }
+}
@@ -0,0 +1,209 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region;
+import otus.springfreamwork.jpa.com.application.invalidation.InvalidationBatch;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online comment statistics: books commented most over a recent period, and distinct commenters per book.
+ * Fed from committed comment inserts of this and other nodes, so every node sketches the whole cluster; edits,
+ * relinks and deletes of books also invalidate comments and are not counted. The rows are read on a single
+ * background thread, never on the committing one. Comments committed before the start are not in the
+ * trending window; distinct-commenter sketches are seeded from the database on first use.
+ */
+public class CommentSketches {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommentSketches.class);
+
+    private static final int MAX_IN = 1000;
+    private static final String NEW_COMMENTS =
+            "SELECT c.id, c.user.id, b.id FROM Comment c JOIN c.books b WHERE ";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheInvalidator cacheInvalidator;
+    private final CommentSketchProperties properties;
+    private final CommentWindow window;
+
+    /**
+     * Least recently used first.
+     */
+    private final LinkedHashMap<Integer, HyperLogLog> distinctCommenters;
+    /**
+     * Comments fed while a book is being seeded from the database, which the seed query may have missed.
+     */
+    private final Map<Integer, HyperLogLog> seeding = new HashMap<>();
+
+    /**
+     * Highest comment id seen, used when a batch names no ids because too many comments changed at once.
+     * Written by the feed thread only.
+     */
+    private int highestCommentId;
+    private ExecutorService feed;
+
+    public CommentSketches(
+            EntityManagerFactory entityManagerFactory,
+            CacheInvalidator cacheInvalidator,
+            CommentSketchProperties properties
+    ) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.cacheInvalidator = cacheInvalidator;
+        this.properties = properties;
+        this.window = new CommentWindow(
+                properties.getBucketMs(),
+                properties.getBuckets(),
+                properties.getHeavyHitters(),
+                properties.getCountMinDepth(),
+                properties.getCountMinWidth()
+        );
+        this.distinctCommenters = new LinkedHashMap<Integer, HyperLogLog>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, HyperLogLog> eldest) {
+                return size() > properties.getMaxDistinctBooks();
+            }
+        };
+    }
+
+    public void start() {
+        feed = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "comment-sketches");
+            thread.setDaemon(true);
+            return thread;
+        });
+        feed.execute(() -> {
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            try {
+                Integer highest = entityManager.createQuery("SELECT MAX(c.id) FROM Comment c", Integer.class)
+                        .getSingleResult();
+                highestCommentId = highest == null ? 0 : highest;
+            } finally {
+                entityManager.close();
+            }
+        });
+        cacheInvalidator.addListener(this::invalidated);
+    }
+
+    public void stop() {
+        feed.shutdownNow();
+    }
+
+    /**
+     * @return {bookId, estimated comment count} for the most commented books over the last {@code minutes},
+     * largest first; the period is capped at the window the sketches keep
+     */
+    public List<long[]> getTrendingBooks(int minutes, int limit) {
+        long millis = Math.min(TimeUnit.MINUTES.toMillis(minutes), window.getSpanMillis());
+        return window.top(System.currentTimeMillis(), millis, limit);
+    }
+
+    /**
+     * @return estimated number of distinct users that commented on the book
+     */
+    public long getDistinctCommenters(int bookId) {
+        synchronized (distinctCommenters) {
+            HyperLogLog sketch = distinctCommenters.get(bookId);
+            if (sketch != null) {
+                return sketch.estimate();
+            }
+            seeding.putIfAbsent(bookId, new HyperLogLog(properties.getDistinctPrecision()));
+        }
+        HyperLogLog seeded = new HyperLogLog(properties.getDistinctPrecision());
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.createQuery(
+                    "SELECT DISTINCT c.user.id FROM Comment c JOIN c.books b WHERE b.id = :id AND c.user IS NOT NULL",
+                    Integer.class)
+                    .setParameter("id", bookId)
+                    .getResultList()
+                    .forEach(userId -> seeded.add(String.valueOf(userId)));
+        } finally {
+            entityManager.close();
+        }
+        // Comments fed while seeding may be in both; adding a username twice does not change the sketch.
+        synchronized (distinctCommenters) {
+            HyperLogLog fed = seeding.remove(bookId);
+            if (fed != null) {
+                seeded.merge(fed);
+            }
+            HyperLogLog concurrentlySeeded = distinctCommenters.get(bookId);
+            if (concurrentlySeeded != null) {
+                seeded.merge(concurrentlySeeded);
+            }
+            distinctCommenters.put(bookId, seeded);
+            return seeded.estimate();
+        }
+    }
+
+    private void invalidated(InvalidationBatch batch, boolean remote) {
+        boolean wholeRegion = batch.isWholeRegion(Region.COMMENT_INSERTED);
+        Set<String> keys = batch.getKeys(Region.COMMENT_INSERTED);
+        if (!wholeRegion && keys.isEmpty()) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(keys.size());
+        keys.forEach(key -> ids.add(Integer.valueOf(key)));
+        feed.execute(() -> {
+            try {
+                record(wholeRegion ? null : ids, System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                LOGGER.warn("Comments of {} are not in the sketches", batch, e);
+            }
+        });
+    }
+
+    /**
+     * @param ids inserted comments, or {@code null} for all comments above the highest id seen
+     */
+    private void record(List<Integer> ids, long timestamp) {
+        List<Object[]> rows = new ArrayList<>();
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            if (ids == null) {
+                rows.addAll(entityManager.createQuery(NEW_COMMENTS + "c.id > :after", Object[].class)
+                        .setParameter("after", highestCommentId)
+                        .getResultList());
+            } else {
+                for (int from = 0; from < ids.size(); from += MAX_IN) {
+                    rows.addAll(entityManager.createQuery(NEW_COMMENTS + "c.id IN :ids", Object[].class)
+                            .setParameter("ids", ids.subList(from, Math.min(from + MAX_IN, ids.size())))
+                            .getResultList());
+                }
+            }
+        } finally {
+            entityManager.close();
+        }
+        for (Object[] row : rows) {
+            int commentId = (Integer) row[0];
+            int bookId = (Integer) row[2];
+            highestCommentId = Math.max(highestCommentId, commentId);
+            window.add(bookId, timestamp);
+            if (row[1] == null) {
+                continue;
+            }
+            String userId = String.valueOf(row[1]);
+            synchronized (distinctCommenters) {
+                HyperLogLog sketch = distinctCommenters.get(bookId);
+                if (sketch != null) {
+                    sketch.add(userId);
+                }
+                HyperLogLog seedingSketch = seeding.get(bookId);
+                if (seedingSketch != null) {
+                    seedingSketch.add(userId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comment counts per book over a sliding time window, as a ring of fixed-length buckets each holding a
+ * Space-Saving summary and a count-min sketch. A query merges the buckets it covers; old buckets are reused,
+ * so memory does not grow with traffic.
+ */
+final class CommentWindow {
+
+    private final long bucketMillis;
+    private final int heavyHitters;
+    private final int sketchDepth;
+    private final int sketchWidth;
+    private final Bucket[] buckets;
+
+    CommentWindow(long bucketMillis, int bucketCount, int heavyHitters, int sketchDepth, int sketchWidth) {
+        this.bucketMillis = bucketMillis;
+        this.heavyHitters = heavyHitters;
+        this.sketchDepth = sketchDepth;
+        this.sketchWidth = sketchWidth;
+        this.buckets = new Bucket[bucketCount];
+    }
+
+    synchronized void add(int bookId, long timestamp) {
+        long slot = timestamp / bucketMillis;
+        int index = (int) Math.floorMod(slot, (long) buckets.length);
+        Bucket bucket = buckets[index];
+        if (bucket == null || bucket.slot != slot) {
+            bucket = new Bucket(slot);
+            buckets[index] = bucket;
+        }
+        bucket.books.offer(bookId, 1);
+        bucket.counts.add(bookId, 1);
+    }
+
+    /**
+     * @return {bookId, estimated count} of the most commented books over the last {@code millis}, largest first
+     */
+    synchronized List<long[]> top(long now, long millis, int limit) {
+        SpaceSaving books = new SpaceSaving(heavyHitters);
+        CountMinSketch counts = new CountMinSketch(sketchDepth, sketchWidth);
+        long currentSlot = now / bucketMillis;
+        long oldestSlot = currentSlot - Math.min(buckets.length, (millis + bucketMillis - 1) / bucketMillis) + 1;
+        for (Bucket bucket : buckets) {
+            if (bucket != null && bucket.slot >= oldestSlot && bucket.slot <= currentSlot) {
+                books.merge(bucket.books);
+                counts.merge(bucket.counts);
+            }
+        }
+        // Both structures only overcount, so the smaller of their estimates is the better one.
+        List<long[]> top = new ArrayList<>();
+        for (long[] book : books.top(heavyHitters)) {
+            top.add(new long[]{book[0], Math.min(book[1], counts.estimate((int) book[0]))});
+        }
+        top.sort((left, right) -> left[1] != right[1] ? Long.compare(right[1], left[1]) : Long.compare(left[0], right[0]));
+        return top.size() > limit ? new ArrayList<>(top.subList(0, Math.max(limit, 0))) : top;
+    }
+
+    /**
+     * @return the longest period a query can cover
+     */
+    long getSpanMillis() {
+        return bucketMillis * buckets.length;
+    }
+
+    private final class Bucket {
+
+        final long slot;
+        final SpaceSaving books = new SpaceSaving(heavyHitters);
+        final CountMinSketch counts = new CountMinSketch(sketchDepth, sketchWidth);
+
+        Bucket(long slot) {
+            this.slot = slot;
+        }
+    }
+}
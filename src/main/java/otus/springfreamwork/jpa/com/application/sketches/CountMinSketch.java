@@ -0,0 +1,50 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+/**
+ * Approximate counts of int keys in {@code depth x width} counters. An estimate never undercounts; it
+ * overcounts by at most {@code 2N / width} with probability {@code 1 - 2^-depth}, N being the total count.
+ * Sketches of the same shape merge by adding counters.
+ */
+final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+
+    CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    void add(int key, long count) {
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + column(key, row)] += count;
+        }
+    }
+
+    long estimate(int key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + column(key, row)]);
+        }
+        return estimate;
+    }
+
+    void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge count-min sketches of different shapes");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+    }
+
+    private int column(int key, int row) {
+        long hash = (key + 1L) * 0x9e3779b97f4a7c15L + row * 0xbf58476d1ce4e5b9L;
+        hash ^= hash >>> 31;
+        hash *= 0x94d049bb133111ebL;
+        hash ^= hash >>> 29;
+        return (int) Math.floorMod(hash, (long) width);
+    }
+}
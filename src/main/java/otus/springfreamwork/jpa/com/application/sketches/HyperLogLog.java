@@ -0,0 +1,76 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimates the number of distinct strings in {@code 2^precision} bytes, with a standard error of about
+ * {@code 1.04 / sqrt(2^precision)}. Two sketches of the same precision merge by taking register maxima.
+ */
+final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be within 4..18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    void add(String value) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    long estimate() {
+        int count = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = count == 16 ? 0.673 : count == 32 ? 0.697 : count == 64 ? 0.709 : 0.7213 / (1 + 1.079 / count);
+        double estimate = alpha * count * count / sum;
+        if (estimate <= 2.5 * count && zeros > 0) {
+            estimate = count * Math.log((double) count / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog of precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that all 64 bits are usable.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,74 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving summary of the most frequent int keys in a fixed number of counters. A key missing from a
+ * full summary takes over the smallest counter and inherits its count as possible overcount, so every key with
+ * more than {@code N / capacity} occurrences is guaranteed to be kept.
+ */
+final class SpaceSaving {
+
+    private final int capacity;
+    /**
+     * Key to {count, overcount}.
+     */
+    private final Map<Integer, long[]> counters = new HashMap<>();
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void offer(int key, long count) {
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0] += count;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{count, 0});
+            return;
+        }
+        Map.Entry<Integer, long[]> smallest = null;
+        for (Map.Entry<Integer, long[]> entry : counters.entrySet()) {
+            if (smallest == null || entry.getValue()[0] < smallest.getValue()[0]) {
+                smallest = entry;
+            }
+        }
+        long[] evicted = counters.remove(smallest.getKey());
+        counters.put(key, new long[]{evicted[0] + count, evicted[0]});
+    }
+
+    /**
+     * Adds the counters of another summary, then keeps the {@code capacity} largest.
+     */
+    void merge(SpaceSaving other) {
+        other.counters.forEach((key, counter) -> {
+            long[] own = counters.get(key);
+            if (own == null) {
+                counters.put(key, counter.clone());
+            } else {
+                own[0] += counter[0];
+                own[1] += counter[1];
+            }
+        });
+        if (counters.size() > capacity) {
+            List<Map.Entry<Integer, long[]>> entries = new ArrayList<>(counters.entrySet());
+            entries.sort((left, right) -> Long.compare(right.getValue()[0], left.getValue()[0]));
+            entries.subList(capacity, entries.size()).forEach(entry -> counters.remove(entry.getKey()));
+        }
+    }
+
+    /**
+     * @return keys with their counts, largest first, ties by key; counts may overestimate
+     */
+    List<long[]> top(int limit) {
+        List<long[]> top = new ArrayList<>(counters.size());
+        counters.forEach((key, counter) -> top.add(new long[]{key, counter[0]}));
+        top.sort((left, right) -> left[1] != right[1] ? Long.compare(right[1], left[1]) : Long.compare(left[0], right[0]));
+        return top.size() > limit ? new ArrayList<>(top.subList(0, Math.max(limit, 0))) : top;
+    }
+}
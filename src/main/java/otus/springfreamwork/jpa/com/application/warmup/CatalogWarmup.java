@@ -0,0 +1,165 @@
+package otus.springfreamwork.jpa.com.application.warmup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.shell.jline.InteractiveShellApplicationRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the repository finders with arguments that match nothing before the shell accepts commands, so the first
+ * real lookup finds open pool connections, statements prepared on them, Hibernate query plans cached and the
+ * query path compiled. Each thread holds one transaction, and with it one connection, until all threads hold
+ * theirs; the transactions are rolled back. Logs the latency of the same lookup before and after.
+ * A failed warm-up is logged and the start goes on.
+ */
+@Order(InteractiveShellApplicationRunner.PRECEDENCE - 200)
+public class CatalogWarmup implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogWarmup.class);
+
+    private static final int NO_ID = -1;
+    private static final String NO_NAME = "";
+    private static final long OPEN_TIMEOUT_SECONDS = 30;
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final GenreRepository genreRepository;
+    private final CommentRepository commentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final WarmupProperties properties;
+
+    public CatalogWarmup(
+            BookRepository bookRepository,
+            AuthorRepository authorRepository,
+            GenreRepository genreRepository,
+            CommentRepository commentRepository,
+            PlatformTransactionManager transactionManager,
+            WarmupProperties properties
+    ) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.genreRepository = genreRepository;
+        this.commentRepository = commentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.nanoTime();
+        try {
+            long before = timeLookup();
+            warmUp();
+            long after = timeLookup();
+            LOGGER.info("Warm-up done in {} ms on {} connections: first lookup took {} us, now {} us",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), properties.getConnections(),
+                    TimeUnit.NANOSECONDS.toMicros(before), TimeUnit.NANOSECONDS.toMicros(after));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Warm-up failed, the first commands run cold", e);
+        }
+    }
+
+    private long timeLookup() {
+        long started = System.nanoTime();
+        bookRepository.getByName(NO_NAME);
+        return System.nanoTime() - started;
+    }
+
+    private void warmUp() {
+        int connections = Math.max(1, properties.getConnections());
+        CyclicBarrier allOpen = new CyclicBarrier(connections);
+        ExecutorService pool = Executors.newFixedThreadPool(connections, runnable -> {
+            Thread thread = new Thread(runnable, "catalog-warmup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> threads = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                threads.add(pool.submit(() -> transactionTemplate.execute(status -> {
+                    status.setRollbackOnly();
+                    lookups();
+                    awaitOthers(allOpen);
+                    for (int round = 1; round < properties.getRounds(); round++) {
+                        lookups();
+                    }
+                    return null;
+                })));
+            }
+            for (Future<?> thread : threads) {
+                thread.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Warm-up interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Warm-up failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Once a connection is open, waits for the others, so the pool hands out a different one to every thread.
+     * A thread that fails to open one breaks the barrier, and the rest go on with what they have.
+     */
+    private static void awaitOthers(CyclicBarrier allOpen) {
+        try {
+            allOpen.await(OPEN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (BrokenBarrierException | TimeoutException e) {
+            LOGGER.debug("Warm-up goes on with the connections open so far");
+        }
+    }
+
+    private void lookups() {
+        bookRepository.getById(NO_ID);
+        bookRepository.getAllByIds(Collections.singletonList(NO_ID));
+        bookRepository.getByName(NO_NAME);
+        bookRepository.getIdByName(NO_NAME);
+        bookRepository.getIdsByNames(Collections.singletonList(NO_NAME));
+        bookRepository.getByAuthorId(NO_ID);
+        bookRepository.getByGenreId(NO_ID);
+        bookRepository.getByAuthorNameAndSurname(NO_NAME, NO_NAME);
+        bookRepository.getByGenreName(NO_NAME);
+        bookRepository.count();
+
+        authorRepository.getById(NO_ID);
+        authorRepository.getAllByIds(Collections.singletonList(NO_ID));
+        authorRepository.getByNameAndSurname(NO_NAME, NO_NAME);
+        authorRepository.count();
+
+        genreRepository.getById(NO_ID);
+        genreRepository.getAllByIds(Collections.singletonList(NO_ID));
+        genreRepository.getByName(NO_NAME);
+        genreRepository.count();
+
+        commentRepository.getById(NO_ID);
+        commentRepository.getAllByIds(Collections.singletonList(NO_ID));
+        commentRepository.getByUsername(NO_NAME);
+        commentRepository.getByUserId(NO_ID);
+        commentRepository.getByBookName(NO_NAME);
+        commentRepository.count();
+    }
+}
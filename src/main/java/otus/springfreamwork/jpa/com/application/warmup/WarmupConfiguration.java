@@ -0,0 +1,30 @@
+package otus.springfreamwork.jpa.com.application.warmup;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+
+@Configuration
+@ConditionalOnProperty(prefix = "catalog.warmup", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(WarmupProperties.class)
+public class WarmupConfiguration {
+
+    @Bean
+    public CatalogWarmup catalogWarmup(
+            BookRepository bookRepository,
+            AuthorRepository authorRepository,
+            GenreRepository genreRepository,
+            CommentRepository commentRepository,
+            PlatformTransactionManager transactionManager,
+            WarmupProperties properties
+    ) {
+        return new CatalogWarmup(bookRepository, authorRepository, genreRepository, commentRepository,
+                transactionManager, properties);
+    }
+}
@@ -0,0 +1,46 @@
+package otus.springfreamwork.jpa.com.application.warmup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "catalog.warmup")
+public class WarmupProperties {
+
+    /**
+     * Run the warm-up before the shell accepts commands.
+     */
+    private boolean enabled;
+    /**
+     * Pool connections opened and held at once, each by its own thread; every one of them gets the finder
+     * statements prepared.
+     */
+    private int connections = 4;
+    /**
+     * Times each thread runs every finder; PostgreSQL prepares a statement on the server from the fifth
+     * execution on a connection, and more rounds give the JIT compiler more of the query path.
+     */
+    private int rounds = 200;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
+}
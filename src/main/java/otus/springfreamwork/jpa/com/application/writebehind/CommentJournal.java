@@ -0,0 +1,150 @@
+package otus.springfreamwork.jpa.com.application.writebehind;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only log of accepted comments.
+ * An {@code E} line records an accepted comment, a {@code C} line marks every comment up to its sequence as written.
+ * Once everything appended is committed the file is truncated, so it only grows while the database lags behind.
+ * Comments that cannot be written at all are appended to a {@code .rejected} file next to it, in the same format,
+ * and never replayed.
+ */
+class CommentJournal implements Closeable {
+
+    private static final String ENTRY = "E";
+    private static final String COMMIT = "C";
+    private static final String NULL = "-";
+
+    private final Path path;
+    private final Path rejectedPath;
+    private final boolean sync;
+    private FileChannel channel;
+    private long lastAppended;
+
+    CommentJournal(Path path, boolean sync) {
+        this.path = path;
+        this.rejectedPath = path.resolveSibling(path.getFileName() + ".rejected");
+        this.sync = sync;
+    }
+
+    /**
+     * Reads comments that were accepted but never committed and rewrites the journal with just those.
+     */
+    synchronized List<PendingComment> open() {
+        try {
+            Map<Long, PendingComment> pending = new LinkedHashMap<>();
+            if (Files.exists(path)) {
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    String[] fields = line.split("\t", -1);
+                    if (ENTRY.equals(fields[0]) && fields.length == 5) {
+                        long sequence = Long.parseLong(fields[1]);
+                        pending.put(sequence, new PendingComment(sequence, decode(fields[2]), decode(fields[3]), decode(fields[4])));
+                    } else if (COMMIT.equals(fields[0]) && fields.length == 2) {
+                        long committed = Long.parseLong(fields[1]);
+                        pending.keySet().removeIf(sequence -> sequence <= committed);
+                    }
+                }
+            } else if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+            List<PendingComment> replayed = new ArrayList<>(pending.values());
+            for (PendingComment comment : replayed) {
+                write(entryLine(comment));
+                lastAppended = comment.getSequence();
+            }
+            channel.force(false);
+            return replayed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open comment journal " + path, e);
+        }
+    }
+
+    synchronized void append(PendingComment comment) {
+        try {
+            write(entryLine(comment));
+            lastAppended = comment.getSequence();
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to comment journal " + path, e);
+        }
+    }
+
+    synchronized void commit(long sequence) {
+        try {
+            if (sequence >= lastAppended) {
+                channel.truncate(0);
+                channel.position(0);
+            } else {
+                write(COMMIT + "\t" + sequence + "\n");
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot commit comment journal " + path, e);
+        }
+    }
+
+    synchronized void reject(PendingComment comment) {
+        try (FileChannel rejected = FileChannel.open(rejectedPath, CREATE, WRITE, APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(entryLine(comment).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                rejected.write(buffer);
+            }
+            if (sync) {
+                rejected.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to rejected comments " + rejectedPath, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void write(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String entryLine(PendingComment comment) {
+        return ENTRY + "\t" + comment.getSequence()
+                + "\t" + encode(comment.getUsername())
+                + "\t" + encode(comment.getComment())
+                + "\t" + encode(comment.getBookName()) + "\n";
+    }
+
+    private static String encode(String value) {
+        return value == null ? NULL : Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value) {
+        return NULL.equals(value) ? null : new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,262 @@
+package otus.springfreamwork.jpa.com.application.writebehind;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.model.Comment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded in-memory queue of accepted comments, written to the database in batched transactions.
+ * A batch is flushed when the queue reaches the batch size or when the flush interval passes.
+ * All flushes run on a single thread, so batches are committed in the order comments were accepted.
+ * A failed batch is retried alone, without new comments; after the last retry its comments are written one by one,
+ * and those that still fail are dropped, kept in the rejected journal when there is one.
+ */
+public class CommentWriteBehindBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommentWriteBehindBuffer.class);
+
+    private final CommentRepository commentRepository;
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CommentWriteBehindProperties properties;
+
+    private final ConcurrentLinkedQueue<PendingComment> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Comments of a batch whose transaction failed; retried first. Touched by the flusher thread only.
+     */
+    private final List<PendingComment> failed = new ArrayList<>();
+    private int failedAttempts;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object appendLock = new Object();
+    private ScheduledExecutorService flusher;
+    private Semaphore freeSlots;
+    private CommentJournal journal;
+    private long sequence;
+
+    public CommentWriteBehindBuffer(
+            CommentRepository commentRepository,
+            BookRepository bookRepository,
+            PlatformTransactionManager transactionManager,
+            CommentWriteBehindProperties properties
+    ) {
+        this.commentRepository = commentRepository;
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    public void start() {
+        List<PendingComment> replayed = Collections.emptyList();
+        if (!properties.getJournal().isEmpty()) {
+            journal = new CommentJournal(Paths.get(properties.getJournal()), properties.isJournalSync());
+            replayed = journal.open();
+        }
+        queue.addAll(replayed);
+        sequence = replayed.isEmpty() ? 0 : replayed.get(replayed.size() - 1).getSequence();
+        freeSlots = new Semaphore(properties.getCapacity() - replayed.size());
+        if (!replayed.isEmpty()) {
+            LOGGER.info("Replaying {} comments from journal {}", replayed.size(), properties.getJournal());
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "comment-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(
+                this::flushPending, 0, properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Accepts a comment for writing. Waits up to the offer timeout for free space.
+     *
+     * @return {@code false} when the queue stays full, the comment is not accepted then
+     */
+    public boolean submit(String username, String comment, String bookName) {
+        try {
+            if (!freeSlots.tryAcquire(properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        synchronized (appendLock) {
+            PendingComment pending = new PendingComment(++sequence, username, comment, bookName);
+            if (journal != null) {
+                journal.append(pending);
+            }
+            queue.add(pending);
+        }
+        if (queue.size() >= properties.getBatchSize() && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushPending);
+        }
+        return true;
+    }
+
+    /**
+     * Writes everything accepted so far and waits until it is committed.
+     *
+     * @throws IllegalStateException if a failed batch is still waiting for its retry, so callers about to change
+     *                               existing comments do not run before those comments are written
+     */
+    public void flush() {
+        int stillFailed;
+        try {
+            stillFailed = flusher.submit(() -> {
+                flushPending();
+                return failed.size();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing pending comments", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot flush pending comments", e.getCause());
+        }
+        if (stillFailed > 0) {
+            throw new IllegalStateException(stillFailed + " pending comments cannot be written yet, retry later");
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    public void stop() {
+        try {
+            flush();
+        } catch (IllegalStateException e) {
+            LOGGER.warn("Stopping with unwritten comments, they stay in the journal if there is one", e);
+        }
+        flusher.shutdown();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOGGER.warn("Cannot close comment journal", e);
+            }
+        }
+    }
+
+    private void flushPending() {
+        flushScheduled.set(false);
+        if (!failed.isEmpty() && !retryFailed()) {
+            return;
+        }
+        List<PendingComment> batch = new ArrayList<>();
+        try {
+            PendingComment next;
+            while ((next = queue.poll()) != null) {
+                batch.add(next);
+                if (batch.size() >= properties.getBatchSize()) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Cannot write {} pending comments, will retry", batch.size(), e);
+            failed.addAll(batch);
+            failedAttempts = 1;
+        }
+    }
+
+    /**
+     * @return {@code true} once the failed batch is written or dropped
+     */
+    private boolean retryFailed() {
+        try {
+            write(failed);
+            failed.clear();
+            return true;
+        } catch (RuntimeException e) {
+            if (++failedAttempts < properties.getMaxAttempts()) {
+                LOGGER.error("Cannot write {} pending comments, attempt {}, will retry", failed.size(), failedAttempts, e);
+                return false;
+            }
+            LOGGER.error("Cannot write {} pending comments after {} attempts, writing them one by one",
+                    failed.size(), failedAttempts, e);
+        }
+        for (PendingComment pending : failed) {
+            try {
+                write(Collections.singletonList(pending));
+            } catch (RuntimeException e) {
+                reject(pending, e);
+            }
+        }
+        failed.clear();
+        return true;
+    }
+
+    private void reject(PendingComment pending, RuntimeException e) {
+        LOGGER.error("Comment {} of {} on '{}' cannot be written, dropped",
+                pending.getSequence(), pending.getUsername(), pending.getBookName(), e);
+        if (journal != null) {
+            try {
+                journal.reject(pending);
+                journal.commit(pending.getSequence());
+            } catch (UncheckedIOException journalError) {
+                LOGGER.error("Dropped comment {} is not journaled: {}", pending.getSequence(), pending.getComment(), journalError);
+            }
+        }
+        freeSlots.release();
+    }
+
+    private void write(List<PendingComment> batch) {
+        transactionTemplate.execute(status -> {
+            Set<String> bookNames = batch.stream().map(PendingComment::getBookName).collect(Collectors.toSet());
+            Map<String, Integer> bookIds = bookRepository.getIdsByNames(bookNames);
+            for (PendingComment pending : batch) {
+                Integer bookId = bookIds.get(pending.getBookName());
+                if (bookId == null) {
+                    LOGGER.warn("Book '{}' not found, comment of {} dropped", pending.getBookName(), pending.getUsername());
+                    continue;
+                }
+                commentRepository.insertForBook(new Comment(pending.getUsername(), pending.getComment()), bookId);
+            }
+            return null;
+        });
+        committed(batch);
+    }
+
+    /**
+     * The batch is in the database now: a journal that cannot record it only means the batch is replayed after a
+     * restart, so the error is logged and never taken for a failed write.
+     */
+    private void committed(List<PendingComment> batch) {
+        try {
+            if (journal != null) {
+                journal.commit(batch.get(batch.size() - 1).getSequence());
+            }
+        } catch (UncheckedIOException e) {
+            LOGGER.error("Written comments up to {} are not marked in the journal",
+                    batch.get(batch.size() - 1).getSequence(), e);
+        } finally {
+            freeSlots.release(batch.size());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package otus.springfreamwork.jpa.com.application.writebehind;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+import otus.springfreamwork.jpa.com.application.dedupe.CommentDuplicateIndex;
+import otus.springfreamwork.jpa.com.application.services.WriteBehindCommentService;
+import otus.springfreamwork.jpa.domain.application.services.CommentService;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+
+@Configuration
+@ConditionalOnProperty(prefix = "comments.write-behind", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(CommentWriteBehindProperties.class)
+public class CommentWriteBehindConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CommentWriteBehindBuffer commentWriteBehindBuffer(
+            CommentRepository commentRepository,
+            BookRepository bookRepository,
+            PlatformTransactionManager transactionManager,
+            CommentWriteBehindProperties properties
+    ) {
+        return new CommentWriteBehindBuffer(commentRepository, bookRepository, transactionManager, properties);
+    }
+
+    @Bean
+    @Primary
+    public CommentService writeBehindCommentService(
+            @Qualifier("commentServiceImpl") CommentService commentService,
+            CommentWriteBehindBuffer commentWriteBehindBuffer,
+            CommentDuplicateIndex commentDuplicateIndex
+    ) {
+        return new WriteBehindCommentService(commentService, commentWriteBehindBuffer, commentDuplicateIndex);
+    }
+}
@@ -0,0 +1,106 @@
+package otus.springfreamwork.jpa.com.application.writebehind;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "comments.write-behind")
+public class CommentWriteBehindProperties {
+
+    /**
+     * Accept comments into an in-memory queue and write them in batches.
+     */
+    private boolean enabled;
+    /**
+     * Maximum number of accepted comments that are not written yet.
+     */
+    private int capacity = 10_000;
+    /**
+     * Number of comments written in one transaction; reaching it triggers a flush.
+     */
+    private int batchSize = 500;
+    /**
+     * Maximum time a comment waits in the queue.
+     */
+    private long flushIntervalMs = 1_000;
+    /**
+     * How long a caller waits for free space before the comment is rejected.
+     */
+    private long offerTimeoutMs = 200;
+    /**
+     * Attempts to write a failed batch before its comments are written one by one; a comment that fails alone is
+     * dropped.
+     */
+    private int maxAttempts = 5;
+    /**
+     * Append-only journal of accepted comments, replayed on restart. Dropped comments are kept next to it, in a file
+     * with the {@code .rejected} suffix. Empty disables the journal.
+     */
+    private String journal = "";
+    /**
+     * Force every journal append to disk before the comment is acknowledged.
+     */
+    private boolean journalSync = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public long getOfferTimeoutMs() {
+        return offerTimeoutMs;
+    }
+
+    public void setOfferTimeoutMs(long offerTimeoutMs) {
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public String getJournal() {
+        return journal;
+    }
+
+    public void setJournal(String journal) {
+        this.journal = journal;
+    }
+
+    public boolean isJournalSync() {
+        return journalSync;
+    }
+
+    public void setJournalSync(boolean journalSync) {
+        this.journalSync = journalSync;
+    }
+}
@@ -0,0 +1,35 @@
+package otus.springfreamwork.jpa.com.application.writebehind;
+
+/**
+ * A comment accepted by the write-behind buffer but not yet written to the database.
+ */
+final class PendingComment {
+
+    private final long sequence;
+    private final String username;
+    private final String comment;
+    private final String bookName;
+
+    PendingComment(long sequence, String username, String comment, String bookName) {
+        this.sequence = sequence;
+        this.username = username;
+        this.comment = comment;
+        this.bookName = bookName;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    String getComment() {
+        return comment;
+    }
+
+    String getBookName() {
+        return bookName;
+    }
+}
@@ -1,49 +1,291 @@
 package otus.springfreamwork.jpa.com.repositories;
 
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation;
+import otus.springfreamwork.jpa.domain.dao.EntityPatch;
+import otus.springfreamwork.jpa.domain.dao.StaleEntityException;
+import otus.springfreamwork.jpa.domain.model.Versioned;
+
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.util.Collections.singletonList;
 
 @Transactional
-abstract class AbstractDataRepository<T> {
+abstract class AbstractDataRepository<T extends Versioned> {
+
+    /**
+     * Largest IN list of a multi-get; smaller batches are padded to a power of two,
+     * so only a handful of distinct statements is ever prepared.
+     */
+    private static final int MAX_IN_BATCH = 64;
 
     @PersistenceContext
     private EntityManager entityManager;
     private Class<T> entityClass;
+    private final Invalidation.Region region;
+    private final CacheInvalidator cacheInvalidator;
 
-    AbstractDataRepository(Class<T> entityClass) {
+    AbstractDataRepository(Class<T> entityClass, Invalidation.Region region, CacheInvalidator cacheInvalidator) {
         this.entityClass = entityClass;
+        this.region = region;
+        this.cacheInvalidator = cacheInvalidator;
     }
 
     public T getById(int id) {
-        return entityManager.find(entityClass, id);
+        T entity = entityManager.find(entityClass, id);
+        return entity != null && isVisible(entity) ? entity : null;
+    }
+
+    /**
+     * Loads entities by ids in the order of the given ids; ids without a row are skipped.
+     * Entities already in the persistence context or the second-level cache are not queried again.
+     */
+    public List<T> getAllByIds(Collection<Integer> ids) {
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        Map<Integer, T> loaded = new HashMap<>(distinctIds.size() * 2);
+        List<Integer> missing = new ArrayList<>();
+
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(entityClass);
+        Cache secondLevelCache = entityManager.getEntityManagerFactory().getCache();
+        for (Integer id : distinctIds) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                loaded.put(id, entityClass.cast(managed));
+            } else if (secondLevelCache.contains(entityClass, id)) {
+                loaded.put(id, entityManager.find(entityClass, id));
+            } else {
+                missing.add(id);
+            }
+        }
+
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        String jpql = "SELECT e FROM " + entityManager.getMetamodel().entity(entityClass).getName()
+                + " e WHERE e.id IN :ids";
+        for (int from = 0; from < missing.size(); from += MAX_IN_BATCH) {
+            List<Integer> batch = missing.subList(from, Math.min(from + MAX_IN_BATCH, missing.size()));
+            TypedQuery<T> query = entityManager.createQuery(jpql, entityClass);
+            query.setParameter("ids", padded(batch));
+            for (T entity : query.getResultList()) {
+                loaded.put((Integer) persistenceUnitUtil.getIdentifier(entity), entity);
+            }
+        }
+
+        List<T> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            T entity = loaded.get(id);
+            if (entity != null && isVisible(entity)) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    private static List<Integer> padded(List<Integer> batch) {
+        int size = Integer.highestOneBit(batch.size());
+        if (size < batch.size()) {
+            size <<= 1;
+        }
+        if (size == batch.size()) {
+            return batch;
+        }
+        Integer[] padded = batch.toArray(new Integer[size]);
+        Arrays.fill(padded, batch.size(), size, batch.get(batch.size() - 1));
+        return Arrays.asList(padded);
+    }
+
+    public T getReference(int id) {
+        return entityManager.getReference(entityClass, id);
     }
 
     public List<T> getAll() {
         CriteriaQuery<T> query = entityManager.getCriteriaBuilder().createQuery(entityClass);
-        query.select(query.from(entityClass));
+        Root<T> root = query.from(entityClass);
+        query.select(root);
+        if (visible() != null) {
+            query.where(visible().toPredicate(root, entityManager.getCriteriaBuilder()));
+        }
         return entityManager.createQuery(query).getResultList();
     }
 
     public long count() {
         CriteriaQuery<Long> query = entityManager.getCriteriaBuilder().createQuery(Long.class);
-        query.select(entityManager.getCriteriaBuilder().count(query.from(entityClass)));
+        Root<T> root = query.from(entityClass);
+        query.select(entityManager.getCriteriaBuilder().count(root));
+        if (visible() != null) {
+            query.where(visible().toPredicate(root, entityManager.getCriteriaBuilder()));
+        }
         return entityManager.createQuery(query).getSingleResult();
     }
 
     public void insert(T entity) {
         entityManager.persist(entity);
+        cacheInvalidator.invalidate(insertInvalidations(entity));
     }
 
+    /**
+     * Natural keys of the stored state are invalidated too, as the update may have changed them.
+     *
+     * @throws StaleEntityException if the entity was updated by someone else since its version was read
+     */
     public T update(T entity) {
-        T mergedEntity = entityManager.merge(entity);
+        T stored = entityManager.find(entityClass, entity.getId());
+        List<Invalidation> invalidations = new ArrayList<>();
+        if (stored != null) {
+            invalidations.addAll(invalidations(stored));
+        }
+        T mergedEntity;
+        try {
+            mergedEntity = entityManager.merge(entity);
+            entityManager.flush();
+        } catch (OptimisticLockException e) {
+            throw stale(entity.getId(), entity.getVersion(), e);
+        }
+        invalidations.addAll(invalidations(mergedEntity));
         entityManager.detach(mergedEntity);
+        cacheInvalidator.invalidate(invalidations);
         return mergedEntity;
     }
 
+    /**
+     * Applies {@code changes} to the stored entity if it is still at {@code expectedVersion}. Only the changed
+     * state is written, and the write itself is guarded by the version, so no lock is held while editing.
+     *
+     * @return the updated entity, or {@code null} if there is none with this id
+     * @throws StaleEntityException if the entity has another version, or gets one before this update is flushed
+     */
+    public T update(int id, long expectedVersion, Consumer<T> changes) {
+        T entity = getById(id);
+        if (entity == null) {
+            return null;
+        }
+        if (entity.getVersion() != expectedVersion) {
+            throw stale(id, expectedVersion, null);
+        }
+        List<Invalidation> invalidations = new ArrayList<>(invalidations(entity));
+        changes.accept(entity);
+        try {
+            entityManager.flush();
+        } catch (OptimisticLockException e) {
+            throw stale(id, expectedVersion, e);
+        }
+        invalidations.addAll(invalidations(entity));
+        cacheInvalidator.invalidate(invalidations);
+        return entity;
+    }
+
+    /**
+     * Writes the patched attributes and the next version with a single UPDATE, skipping the SELECT a merge
+     * needs. A copy of the entity already managed by this persistence context is refreshed afterwards.
+     */
+    boolean applyPatch(int id, EntityPatch<?> patch) {
+        if (patch.isEmpty()) {
+            throw new IllegalArgumentException("Patch of " + entityClass.getSimpleName() + " " + id + " is empty");
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<T> update = builder.createCriteriaUpdate(entityClass);
+        Root<T> root = update.from(entityClass);
+        patch.getChanges().forEach(update::set);
+        Path<Long> version = root.get("version");
+        update.set(version, builder.sum(version, 1L));
+        List<Predicate> where = new ArrayList<>();
+        where.add(builder.equal(root.get("id"), id));
+        if (patch.getExpectedVersion() != null) {
+            where.add(builder.equal(version, patch.getExpectedVersion()));
+        }
+        if (visible() != null) {
+            where.add(visible().toPredicate(root, builder));
+        }
+        update.where(where.toArray(new Predicate[0]));
+
+        if (entityManager.createQuery(update).executeUpdate() == 0) {
+            if (patch.getExpectedVersion() != null && exists(id)) {
+                throw stale(id, patch.getExpectedVersion(), null);
+            }
+            return false;
+        }
+        T managed = managed(id);
+        if (managed != null) {
+            entityManager.refresh(managed);
+        }
+        cacheInvalidator.invalidate(patchInvalidations(id, patch));
+        return true;
+    }
+
+    /**
+     * Assigns values to every row matching the filter with one UPDATE and increments their versions.
+     * The entity region is invalidated as a whole, and managed copies of the matching rows are refreshed.
+     *
+     * @return number of updated rows
+     */
+    int updateAll(EntityFilter<T> filter, Map<String, Object> assignments) {
+        if (assignments.isEmpty()) {
+            throw new IllegalArgumentException("Bulk update of " + entityClass.getSimpleName() + " assigns nothing");
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<T> update = builder.createCriteriaUpdate(entityClass);
+        Root<T> root = update.from(entityClass);
+        assignments.forEach(update::set);
+        Path<Long> version = root.get("version");
+        update.set(version, builder.sum(version, 1L));
+        update.where(filter.toPredicate(root, builder));
+
+        List<T> affected = managedMatching(filter);
+        int updated = entityManager.createQuery(update).executeUpdate();
+        if (updated > 0) {
+            affected.forEach(entityManager::refresh);
+            cacheInvalidator.invalidate(bulkInvalidations(assignments.keySet()));
+        }
+        return updated;
+    }
+
+    /**
+     * Deletes every row matching the filter with one DELETE. Repositories keeping aggregates must release
+     * them before calling this. Managed copies of the matching rows are detached.
+     *
+     * @return number of deleted rows
+     */
+    int deleteAll(EntityFilter<T> filter) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaDelete<T> delete = builder.createCriteriaDelete(entityClass);
+        delete.where(filter.toPredicate(delete.from(entityClass), builder));
+
+        List<T> affected = managedMatching(filter);
+        int deleted = entityManager.createQuery(delete).executeUpdate();
+        if (deleted > 0) {
+            affected.forEach(entityManager::detach);
+            cacheInvalidator.invalidate(bulkInvalidations(null));
+        }
+        return deleted;
+    }
+
     public void delete(T entity) {
+        cacheInvalidator.invalidate(invalidations(entity));
         entityManager.remove(entity);
     }
 
@@ -54,4 +296,111 @@ abstract class AbstractDataRepository<T> {
     EntityManager getEntityManager() {
         return entityManager;
     }
+
+    CacheInvalidator getCacheInvalidator() {
+        return cacheInvalidator;
+    }
+
+    /**
+     * Rows the finders may return, or {@code null} when all rows are visible. Repositories of entities
+     * with tombstones leave out the hidden ones.
+     */
+    EntityFilter<T> visible() {
+        return null;
+    }
+
+    /**
+     * Same condition as {@link #visible()}, checked on an entity that is already loaded.
+     */
+    boolean isVisible(T entity) {
+        return true;
+    }
+
+    /**
+     * Cache entries to drop when the entity changes; repositories add the natural keys of their entity.
+     */
+    List<Invalidation> invalidations(T entity) {
+        return singletonList(Invalidation.entity(region, entity.getId()));
+    }
+
+    /**
+     * Cache entries to drop when the entity is inserted; same as {@link #invalidations(Versioned)} unless
+     * listeners need to tell inserts apart.
+     */
+    List<Invalidation> insertInvalidations(T entity) {
+        return invalidations(entity);
+    }
+
+    /**
+     * Cache entries to drop after a patch. The old values are not loaded, so repositories drop natural keys
+     * of a patched attribute region-wide.
+     */
+    List<Invalidation> patchInvalidations(int id, EntityPatch<?> patch) {
+        return singletonList(Invalidation.entity(region, id));
+    }
+
+    /**
+     * Cache entries to drop after a bulk change of the given attributes, or after a bulk delete when
+     * {@code attributes} is {@code null}. Repositories add natural-key regions touched by the change.
+     */
+    List<Invalidation> bulkInvalidations(Set<String> attributes) {
+        return singletonList(Invalidation.all(region));
+    }
+
+    /**
+     * Copies managed by this persistence context that a bulk statement with the filter is about to change.
+     * Bulk statements bypass the persistence context, so only these need a refresh or detach afterwards;
+     * they are found before the statement, as an update may change the very attributes it filters on.
+     */
+    private List<T> managedMatching(EntityFilter<T> filter) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        String entityName = session.getFactory().getMetamodel().entityPersister(entityClass).getEntityName();
+        @SuppressWarnings("unchecked")
+        Map<EntityKey, Object> entitiesByKey = session.getPersistenceContext().getEntitiesByKey();
+        Map<Integer, T> managed = new HashMap<>();
+        entitiesByKey.forEach((key, entity) -> {
+            if (key.getEntityName().equals(entityName)) {
+                T typed = entityClass.cast(entity);
+                managed.put(typed.getId(), typed);
+            }
+        });
+        List<T> matching = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>(managed.keySet());
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        for (int from = 0; from < ids.size(); from += MAX_IN_BATCH) {
+            CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+            Root<T> root = query.from(entityClass);
+            Path<Integer> id = root.get("id");
+            query.select(id).where(
+                    id.in(ids.subList(from, Math.min(ids.size(), from + MAX_IN_BATCH))),
+                    filter.toPredicate(root, builder));
+            for (Integer matchingId : entityManager.createQuery(query).getResultList()) {
+                matching.add(managed.get(matchingId));
+            }
+        }
+        return matching;
+    }
+
+    private boolean exists(int id) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<T> root = query.from(entityClass);
+        query.select(builder.count(root));
+        if (visible() == null) {
+            query.where(builder.equal(root.get("id"), id));
+        } else {
+            query.where(builder.equal(root.get("id"), id), visible().toPredicate(root, builder));
+        }
+        return entityManager.createQuery(query).getSingleResult() > 0;
+    }
+
+    private T managed(int id) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(entityClass);
+        return entityClass.cast(session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister)));
+    }
+
+    private StaleEntityException stale(int id, long expectedVersion, Throwable cause) {
+        return new StaleEntityException(entityClass.getSimpleName(), id, expectedVersion, cause);
+    }
 }
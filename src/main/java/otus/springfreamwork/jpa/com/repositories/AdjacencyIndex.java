@@ -0,0 +1,166 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Edges between int ids, e.g. books and their authors, kept in both directions as compressed sparse rows:
+ * the targets of all sources in one sorted int array, cut into rows by an offsets array indexed by source id.
+ * Rows replaced since the last compaction live in a small map over the arrays; once it grows past a fraction
+ * of the rows, the arrays are rebuilt with the replacements folded in.
+ */
+public class AdjacencyIndex {
+
+    static final int[] NO_IDS = new int[0];
+
+    private static final int MIN_REPLACED_BEFORE_COMPACTION = 64;
+
+    private final Rows forward = new Rows();
+    private final Rows backward = new Rows();
+
+    /**
+     * Replaces all edges; {@code sources[i]} is linked to {@code targets[i]}, pairs are expected to be distinct.
+     */
+    public synchronized void load(int[] sources, int[] targets) {
+        forward.load(sources, targets);
+        backward.load(targets, sources);
+    }
+
+    /**
+     * @return sorted ids the source is linked to
+     */
+    public synchronized int[] targets(int source) {
+        return forward.get(source);
+    }
+
+    /**
+     * @return sorted ids linked to the target
+     */
+    public synchronized int[] sources(int target) {
+        return backward.get(target);
+    }
+
+    /**
+     * Links the source to exactly the given targets; an empty array removes the source.
+     */
+    public synchronized void replace(int source, int[] targets) {
+        int[] oldTargets = forward.get(source);
+        int[] newTargets = Arrays.stream(targets).sorted().distinct().toArray();
+        forward.set(source, newTargets);
+        for (int target : oldTargets) {
+            if (Arrays.binarySearch(newTargets, target) < 0) {
+                backward.set(target, without(backward.get(target), source));
+            }
+        }
+        for (int target : newTargets) {
+            if (Arrays.binarySearch(oldTargets, target) < 0) {
+                backward.set(target, with(backward.get(target), source));
+            }
+        }
+        forward.compactIfNeeded();
+        backward.compactIfNeeded();
+    }
+
+    private static int[] with(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertAt = -position - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    private static int[] without(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    private static final class Rows {
+
+        /**
+         * Row of id {@code i} is {@code targets[offsets[i]] .. targets[offsets[i + 1] - 1]}.
+         */
+        private int[] offsets = {0};
+        private int[] targets = NO_IDS;
+        private final Map<Integer, int[]> replaced = new HashMap<>();
+
+        int[] get(int id) {
+            int[] row = replaced.get(id);
+            if (row != null) {
+                return row;
+            }
+            if (id < 0 || id >= offsets.length - 1) {
+                return NO_IDS;
+            }
+            return Arrays.copyOfRange(targets, offsets[id], offsets[id + 1]);
+        }
+
+        void set(int id, int[] row) {
+            replaced.put(id, row);
+        }
+
+        void load(int[] sources, int[] edgeTargets) {
+            int rowCount = 0;
+            for (int source : sources) {
+                rowCount = Math.max(rowCount, source + 1);
+            }
+            int[] newOffsets = new int[rowCount + 1];
+            for (int source : sources) {
+                newOffsets[source + 1]++;
+            }
+            for (int i = 0; i < rowCount; i++) {
+                newOffsets[i + 1] += newOffsets[i];
+            }
+            int[] newTargets = new int[sources.length];
+            int[] next = Arrays.copyOf(newOffsets, rowCount);
+            for (int i = 0; i < sources.length; i++) {
+                newTargets[next[sources[i]]++] = edgeTargets[i];
+            }
+            for (int i = 0; i < rowCount; i++) {
+                Arrays.sort(newTargets, newOffsets[i], newOffsets[i + 1]);
+            }
+            offsets = newOffsets;
+            targets = newTargets;
+            replaced.clear();
+        }
+
+        void compactIfNeeded() {
+            if (replaced.size() < Math.max(MIN_REPLACED_BEFORE_COMPACTION, (offsets.length - 1) / 8)) {
+                return;
+            }
+            int rowCount = offsets.length - 1;
+            for (int id : replaced.keySet()) {
+                rowCount = Math.max(rowCount, id + 1);
+            }
+            int[] newOffsets = new int[rowCount + 1];
+            for (int id = 0; id < rowCount; id++) {
+                int[] row = replaced.get(id);
+                int length = row != null ? row.length : id < offsets.length - 1 ? offsets[id + 1] - offsets[id] : 0;
+                newOffsets[id + 1] = newOffsets[id] + length;
+            }
+            int[] newTargets = new int[newOffsets[rowCount]];
+            for (int id = 0; id < rowCount; id++) {
+                int[] row = replaced.get(id);
+                if (row != null) {
+                    System.arraycopy(row, 0, newTargets, newOffsets[id], row.length);
+                } else if (id < offsets.length - 1) {
+                    System.arraycopy(targets, offsets[id], newTargets, newOffsets[id], offsets[id + 1] - offsets[id]);
+                }
+            }
+            offsets = newOffsets;
+            targets = newTargets;
+            replaced.clear();
+        }
+    }
+}
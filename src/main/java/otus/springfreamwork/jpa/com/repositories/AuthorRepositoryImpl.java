@@ -1,26 +1,42 @@
 package otus.springfreamwork.jpa.com.repositories;
 
 import org.springframework.stereotype.Repository;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation;
+import otus.springfreamwork.jpa.domain.dao.AuthorPatch;
 import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.CatalogAggregateRepository;
+import otus.springfreamwork.jpa.domain.dao.EntityPatch;
 import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
 
+import javax.persistence.LockModeType;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 
 @Repository
 @Transactional
 public class AuthorRepositoryImpl extends AbstractDataRepository<Author> implements AuthorRepository {
 
-    public AuthorRepositoryImpl() {
-        super(Author.class);
+    private final CatalogAggregateRepository aggregateRepository;
+
+    public AuthorRepositoryImpl(CatalogAggregateRepository aggregateRepository, CacheInvalidator cacheInvalidator) {
+        super(Author.class, Invalidation.Region.AUTHOR, cacheInvalidator);
+        this.aggregateRepository = aggregateRepository;
+    }
+
+    @Override
+    public boolean patch(int id, AuthorPatch patch) {
+        return applyPatch(id, patch);
     }
 
     @Override
     public Author getByNameAndSurname(String name, String surname) {
         TypedQuery<Author> query = getEntityManager().createQuery(
-                "SELECT a FROM Author a WHERE a.name = :name AND a.surname = :surname"
+                "SELECT a FROM Author a WHERE a.name = :name AND a.surname = :surname AND a.deleted = false"
                 , Author.class);
         query.setParameter("name", name);
         query.setParameter("surname", surname);
@@ -31,15 +47,115 @@ public class AuthorRepositoryImpl extends AbstractDataRepository<Author> impleme
     @Override
     public void deleteById(int id) {
         Author author = getById(id);
+        aggregateRepository.entityDeleting(CatalogAggregate.Kind.AUTHOR, id);
+        invalidateBooksOf(id);
         delete(author);
     }
 
     @Override
     public void deleteByNameAndSurname(String name, String surname) {
+        Author author = getByNameAndSurname(name, surname);
+        if (author != null) {
+            aggregateRepository.entityDeleting(CatalogAggregate.Kind.AUTHOR, author.getId());
+            invalidateBooksOf(author.getId());
+            getCacheInvalidator().invalidate(invalidations(author));
+        }
         Query query = getEntityManager().createQuery(
                 "DELETE FROM Author a WHERE a.name = :name AND a.surname = :surname");
         query.setParameter("name", name);
         query.setParameter("surname", surname);
         query.executeUpdate();
     }
+
+    @Override
+    public boolean tombstoneByNameAndSurname(String name, String surname) {
+        Author author = getByNameAndSurname(name, surname);
+        if (author == null) {
+            return false;
+        }
+        aggregateRepository.entityDeleting(CatalogAggregate.Kind.AUTHOR, author.getId());
+        author.setDeleted(true);
+        getCacheInvalidator().invalidate(invalidations(author));
+        return true;
+    }
+
+    @Override
+    public List<Integer> getTombstonedIds() {
+        return getEntityManager()
+                .createQuery("SELECT a.id FROM Author a WHERE a.deleted = true ORDER BY a.id", Integer.class)
+                .getResultList();
+    }
+
+    @Override
+    public long countDependents(int id) {
+        return getEntityManager()
+                .createQuery("SELECT COUNT(b) FROM Book b JOIN b.authors a WHERE a.id = :id", Long.class)
+                .setParameter("id", id)
+                .getSingleResult();
+    }
+
+    /**
+     * Books stay; a chunk of their links to the author is deleted.
+     */
+    @Override
+    public int purgeChunk(int id, int limit) {
+        Author author = getEntityManager().find(Author.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (author == null || !author.isDeleted()) {
+            return 0;
+        }
+        TypedQuery<Integer> query = getEntityManager().createQuery(
+                "SELECT b.id FROM Book b JOIN b.authors a WHERE a.id = :id ORDER BY b.id", Integer.class);
+        query.setParameter("id", id);
+        List<Integer> bookIds = query.setMaxResults(limit).getResultList();
+        if (bookIds.isEmpty()) {
+            delete(author);
+            return 0;
+        }
+        getEntityManager().createNativeQuery("DELETE FROM book_author WHERE author_id = :id AND book_id IN (:ids)")
+                .setParameter("id", id)
+                .setParameter("ids", bookIds)
+                .executeUpdate();
+        List<Invalidation> invalidations = new ArrayList<>();
+        bookIds.forEach(bookId -> invalidations.add(Invalidation.entity(Invalidation.Region.BOOK, bookId)));
+        getCacheInvalidator().invalidate(invalidations);
+        return bookIds.size();
+    }
+
+    @Override
+    EntityFilter<Author> visible() {
+        return EntityFilter.equal("deleted", false);
+    }
+
+    @Override
+    boolean isVisible(Author author) {
+        return !author.isDeleted();
+    }
+
+    @Override
+    List<Invalidation> invalidations(Author author) {
+        List<Invalidation> invalidations = new ArrayList<>(super.invalidations(author));
+        invalidations.add(Invalidation.naturalKey(Invalidation.Region.AUTHOR_NAME, author.getName(), author.getSurname()));
+        return invalidations;
+    }
+
+    @Override
+    List<Invalidation> patchInvalidations(int id, EntityPatch<?> patch) {
+        List<Invalidation> invalidations = new ArrayList<>(super.patchInvalidations(id, patch));
+        if (patch.changes(AuthorPatch.NAME) || patch.changes(AuthorPatch.SURNAME)) {
+            invalidations.add(Invalidation.all(Invalidation.Region.AUTHOR_NAME));
+        }
+        return invalidations;
+    }
+
+    /**
+     * Books keep their author lists, which lose the author along with it.
+     */
+    private void invalidateBooksOf(int authorId) {
+        TypedQuery<Integer> query = getEntityManager().createQuery(
+                "SELECT b.id FROM Book b JOIN b.authors a WHERE a.id = :id", Integer.class);
+        query.setParameter("id", authorId);
+        List<Invalidation> invalidations = new ArrayList<>();
+        query.getResultList().forEach(id -> invalidations.add(Invalidation.entity(Invalidation.Region.BOOK, id)));
+        getCacheInvalidator().invalidate(invalidations);
+    }
 }
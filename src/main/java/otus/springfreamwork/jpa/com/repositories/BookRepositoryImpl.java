@@ -1,26 +1,107 @@
 package otus.springfreamwork.jpa.com.repositories;
 
 import org.springframework.stereotype.Repository;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation;
+import otus.springfreamwork.jpa.domain.dao.BookCatalogKeys;
+import otus.springfreamwork.jpa.domain.dao.BookPatch;
 import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.BookSearch;
+import otus.springfreamwork.jpa.domain.dao.BookSearchResult;
+import otus.springfreamwork.jpa.domain.dao.CatalogAggregateRepository;
+import otus.springfreamwork.jpa.domain.dao.EntityPatch;
+import otus.springfreamwork.jpa.domain.dao.PublishedDateKeyset;
+import otus.springfreamwork.jpa.domain.model.Author;
 import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+import otus.springfreamwork.jpa.domain.model.Comment;
+import otus.springfreamwork.jpa.domain.model.Genre;
+import otus.springfreamwork.jpa.domain.model.PublicationAge;
 
 import javax.persistence.Query;
+import javax.persistence.TemporalType;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Repository
 @Transactional
 public class BookRepositoryImpl extends AbstractDataRepository<Book> implements BookRepository {
 
-    public BookRepositoryImpl() {
-        super(Book.class);
+    private static final String GENRE_IDS = "SELECT b.genre.id FROM Book b WHERE b.id = :id";
+    private static final String AUTHOR_IDS = "SELECT a.id FROM Book b JOIN b.authors a WHERE b.id = :id";
+    private static final int SEARCH_FETCH_BATCH = 500;
+
+    private final CatalogAggregateRepository aggregateRepository;
+
+    public BookRepositoryImpl(CatalogAggregateRepository aggregateRepository, CacheInvalidator cacheInvalidator) {
+        super(Book.class, Invalidation.Region.BOOK, cacheInvalidator);
+        this.aggregateRepository = aggregateRepository;
+    }
+
+    @Override
+    public void insert(Book book) {
+        super.insert(book);
+        aggregateRepository.bookInserted(book);
+    }
+
+    /**
+     * The aggregates count the book for its genre and authors, so changing them moves the counts.
+     */
+    @Override
+    public Book update(Book book) {
+        List<Integer> genreIds = linkedIds(GENRE_IDS, book.getId());
+        List<Integer> authorIds = linkedIds(AUTHOR_IDS, book.getId());
+        Book updated = super.update(book);
+        linksChanged(book.getId(), genreIds, authorIds);
+        return updated;
+    }
+
+    @Override
+    public Book update(int id, long expectedVersion, Consumer<Book> changes) {
+        List<Integer> genreIds = linkedIds(GENRE_IDS, id);
+        List<Integer> authorIds = linkedIds(AUTHOR_IDS, id);
+        Book updated = super.update(id, expectedVersion, changes);
+        if (updated != null) {
+            linksChanged(id, genreIds, authorIds);
+        }
+        return updated;
+    }
+
+    private void linksChanged(int id, List<Integer> oldGenreIds, List<Integer> oldAuthorIds) {
+        aggregateRepository.bookLinksChanged(oldGenreIds, oldAuthorIds, linkedIds(GENRE_IDS, id), linkedIds(AUTHOR_IDS, id));
+    }
+
+    private List<Integer> linkedIds(String jpql, int id) {
+        return getEntityManager().createQuery(jpql, Integer.class).setParameter("id", id).getResultList();
+    }
+
+    @Override
+    public boolean patch(int id, BookPatch patch) {
+        return applyPatch(id, patch);
     }
 
     @Override
     public Book getByName(String name) {
         TypedQuery<Book> query = getEntityManager()
-                .createQuery("SELECT b FROM Book b WHERE b.name = :name"
+                .createQuery("SELECT b FROM Book b WHERE b.name = :name AND b.genre.deleted = false"
                         , Book.class
                 );
         query.setParameter("name", name);
@@ -28,19 +109,105 @@ public class BookRepositoryImpl extends AbstractDataRepository<Book> implements
         return books.isEmpty() ? null : books.get(0);
     }
 
+    @Override
+    public Integer getIdByName(String name) {
+        TypedQuery<Integer> query = getEntityManager()
+                .createQuery("SELECT b.id FROM Book b WHERE b.name = :name AND b.genre.deleted = false", Integer.class);
+        query.setParameter("name", name);
+        List<Integer> ids = query.setMaxResults(1).getResultList();
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    @Override
+    public Map<String, Integer> getIdsByNames(Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        if (names.isEmpty()) {
+            return ids;
+        }
+        TypedQuery<Object[]> query = getEntityManager()
+                .createQuery("SELECT b.name, b.id FROM Book b WHERE b.name IN :names AND b.genre.deleted = false " +
+                        "ORDER BY b.id", Object[].class);
+        query.setParameter("names", names);
+        query.getResultList().forEach(row -> ids.putIfAbsent((String) row[0], (Integer) row[1]));
+        return ids;
+    }
+
     @Override
     public void deleteById(int id) {
         Book book = getById(id);
+        aggregateRepository.booksDeleting(Collections.singleton(id));
+        invalidateCommentsOf(Collections.singleton(id));
         delete(book);
     }
 
     @Override
     public void deleteByName(String name) {
+        TypedQuery<Integer> idsQuery = getEntityManager()
+                .createQuery("SELECT b.id FROM Book b WHERE b.name = :name", Integer.class);
+        idsQuery.setParameter("name", name);
+        List<Integer> ids = idsQuery.getResultList();
+        aggregateRepository.booksDeleting(ids);
+        invalidateCommentsOf(ids);
+        List<Invalidation> invalidations = new ArrayList<>();
+        ids.forEach(id -> invalidations.add(Invalidation.entity(Invalidation.Region.BOOK, id)));
+        invalidations.add(Invalidation.naturalKey(Invalidation.Region.BOOK_NAME, name));
+        getCacheInvalidator().invalidate(invalidations);
         Query query = getEntityManager().createQuery("DELETE FROM Book b WHERE b.name = :name");
         query.setParameter("name", name);
         query.executeUpdate();
     }
 
+    @Override
+    EntityFilter<Book> visible() {
+        return EntityFilter.equal("genre.deleted", false);
+    }
+
+    @Override
+    boolean isVisible(Book book) {
+        return book.getGenre() == null || !book.getGenre().isDeleted();
+    }
+
+    @Override
+    List<Invalidation> invalidations(Book book) {
+        List<Invalidation> invalidations = new ArrayList<>(super.invalidations(book));
+        invalidations.add(Invalidation.naturalKey(Invalidation.Region.BOOK_NAME, book.getName()));
+        return invalidations;
+    }
+
+    @Override
+    List<Invalidation> patchInvalidations(int id, EntityPatch<?> patch) {
+        List<Invalidation> invalidations = new ArrayList<>(super.patchInvalidations(id, patch));
+        if (patch.changes(BookPatch.NAME)) {
+            invalidations.add(Invalidation.all(Invalidation.Region.BOOK_NAME));
+        }
+        return invalidations;
+    }
+
+    /**
+     * Comments keep their links to books, and those links go away with the book.
+     */
+    private void invalidateCommentsOf(Collection<Integer> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        TypedQuery<Integer> query = getEntityManager().createQuery(
+                "SELECT DISTINCT c.id FROM Comment c JOIN c.books b WHERE b.id IN :ids", Integer.class);
+        query.setParameter("ids", bookIds);
+        List<Invalidation> invalidations = new ArrayList<>();
+        query.getResultList().forEach(id -> invalidations.add(Invalidation.entity(Invalidation.Region.COMMENT, id)));
+        getCacheInvalidator().invalidate(invalidations);
+    }
+
+    @Override
+    public int moveToGenre(int fromGenreId, int toGenreId) {
+        int moved = updateAll(
+                EntityFilter.equal("genre.id", fromGenreId),
+                Collections.singletonMap("genre", getEntityManager().getReference(Genre.class, toGenreId))
+        );
+        aggregateRepository.itemsMoved(CatalogAggregate.Kind.GENRE, fromGenreId, toGenreId, moved);
+        return moved;
+    }
+
     @Override
     public List<Book> getByAuthorId(int authorId) {
         TypedQuery<Book> namedQuery = getEntityManager().createNamedQuery(Book.GET_BY_AUTHOR_ID, Book.class);
@@ -54,4 +221,209 @@ public class BookRepositoryImpl extends AbstractDataRepository<Book> implements
         namedQuery.setParameter("id", genreId);
         return namedQuery.getResultList();
     }
+
+    @Override
+    public List<Book> getByAuthorNameAndSurname(String name, String surname) {
+        TypedQuery<Book> namedQuery = getEntityManager()
+                .createNamedQuery(Book.GET_BY_AUTHOR_NAME_AND_SURNAME, Book.class);
+        namedQuery.setParameter("name", name);
+        namedQuery.setParameter("surname", surname);
+        return namedQuery.getResultList();
+    }
+
+    @Override
+    public List<Book> getByGenreName(String genreName) {
+        TypedQuery<Book> namedQuery = getEntityManager().createNamedQuery(Book.GET_BY_GENRE_NAME, Book.class);
+        namedQuery.setParameter("name", genreName);
+        return namedQuery.getResultList();
+    }
+
+    @Override
+    public BookCatalogKeys resolveKeys(String bookName, String authorName, String authorSurname, String genreName) {
+        Query query = getEntityManager().createNativeQuery(
+                "SELECT (SELECT b.book_id FROM books b JOIN genres g ON g.genre_id = b.genre_id" +
+                        " WHERE b.book_name = ?1 AND g.deleted = false LIMIT 1)," +
+                        " (SELECT author_id FROM authors WHERE author_name = ?2 AND author_surname = ?3 AND deleted = false)," +
+                        " (SELECT genre_id FROM genres WHERE genre_name = ?4 AND deleted = false LIMIT 1)"
+        );
+        query.setParameter(1, bookName);
+        query.setParameter(2, authorName);
+        query.setParameter(3, authorSurname);
+        query.setParameter(4, genreName);
+        Object[] ids = (Object[]) query.getSingleResult();
+        return new BookCatalogKeys(toId(ids[0]), toId(ids[1]), toId(ids[2]));
+    }
+
+    private static Integer toId(Object id) {
+        return id == null ? null : ((Number) id).intValue();
+    }
+
+    @Override
+    public List<Book> getPublishedBetween(Date from, Date to, PublishedDateKeyset after, int limit) {
+        return getByPublishedDate(from, to, true, after, limit);
+    }
+
+    @Override
+    public List<Book> getOlderThan(int years, PublishedDateKeyset after, int limit) {
+        return getByPublishedDate(null, PublicationAge.publishedYearsAgo(years), true, after, limit);
+    }
+
+    @Override
+    public List<Book> getNewerThan(int years, PublishedDateKeyset after, int limit) {
+        return getByPublishedDate(PublicationAge.publishedYearsAgo(years), null, false, after, limit);
+    }
+
+    private List<Book> getByPublishedDate(Date from, Date to, boolean fromInclusive, PublishedDateKeyset after, int limit) {
+        if (after.isEnd()) {
+            return new ArrayList<>();
+        }
+        StringBuilder jpql = new StringBuilder("SELECT b FROM Book b WHERE b.publishedDate IS NOT NULL AND b.genre.deleted = false");
+        if (from != null) {
+            jpql.append(fromInclusive ? " AND b.publishedDate >= :from" : " AND b.publishedDate > :from");
+        }
+        if (to != null) {
+            jpql.append(" AND b.publishedDate <= :to");
+        }
+        if (!after.isFirst()) {
+            jpql.append(" AND (b.publishedDate > :afterDate OR (b.publishedDate = :afterDate AND b.id > :afterId))");
+        }
+        jpql.append(" ORDER BY b.publishedDate, b.id");
+
+        TypedQuery<Book> query = getEntityManager().createQuery(jpql.toString(), Book.class);
+        if (from != null) {
+            query.setParameter("from", from, TemporalType.DATE);
+        }
+        if (to != null) {
+            query.setParameter("to", to, TemporalType.DATE);
+        }
+        if (!after.isFirst()) {
+            query.setParameter("afterDate", after.getPublishedDate(), TemporalType.DATE);
+            query.setParameter("afterId", after.getBookId());
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public BookSearchResult search(BookSearch search) {
+        CriteriaBuilder builder = getEntityManager().getCriteriaBuilder();
+        CriteriaQuery<Integer> query = builder.createQuery(Integer.class);
+        Root<Book> book = query.from(Book.class);
+        Path<?> sortPath = search.getSortBy() == BookSearch.SortBy.PUBLISHED_DATE
+                ? book.get("publishedDate")
+                : book.get("name");
+        Order sortOrder = search.isDescending() ? builder.desc(sortPath) : builder.asc(sortPath);
+        Order idOrder = search.isDescending() ? builder.desc(book.get("id")) : builder.asc(book.get("id"));
+        query.select(book.get("id"))
+                .where(searchPredicates(builder, query, book, search))
+                .orderBy(sortOrder, idOrder);
+        List<Book> books = getWithGenreAndAuthors(getEntityManager().createQuery(query)
+                .setMaxResults(search.getLimit())
+                .getResultList());
+
+        if (!search.isWithFacets()) {
+            return new BookSearchResult(books);
+        }
+        return new BookSearchResult(books, genreFacets(search), authorFacets(search));
+    }
+
+    /**
+     * Books of a search page with their genres and authors, in the order of the ids. The page is selected
+     * by id first, as a row limit on a fetch join of the authors would be applied in memory.
+     */
+    private List<Book> getWithGenreAndAuthors(List<Integer> ids) {
+        Map<Integer, Book> fetched = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += SEARCH_FETCH_BATCH) {
+            getEntityManager()
+                    .createQuery("SELECT DISTINCT b FROM Book b JOIN FETCH b.genre LEFT JOIN FETCH b.authors " +
+                            "WHERE b.id IN :ids", Book.class)
+                    .setParameter("ids", ids.subList(from, Math.min(ids.size(), from + SEARCH_FETCH_BATCH)))
+                    .getResultList()
+                    .forEach(book -> fetched.put(book.getId(), book));
+        }
+        List<Book> books = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Book book = fetched.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    private Map<String, Long> genreFacets(BookSearch search) {
+        CriteriaBuilder builder = getEntityManager().getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+        Join<Book, Genre> genre = book.join("genre");
+        query.multiselect(genre.get("name"), builder.count(book))
+                .where(searchPredicates(builder, query, book, search))
+                .groupBy(genre.get("name"))
+                .orderBy(builder.desc(builder.count(book)), builder.asc(genre.get("name")));
+        Map<String, Long> facets = new LinkedHashMap<>();
+        getEntityManager().createQuery(query).getResultList()
+                .forEach(tuple -> facets.put(tuple.get(0, String.class), tuple.get(1, Long.class)));
+        return facets;
+    }
+
+    private Map<String, Long> authorFacets(BookSearch search) {
+        CriteriaBuilder builder = getEntityManager().getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Book> book = query.from(Book.class);
+        Join<Book, Author> author = book.join("authors");
+        query.multiselect(author.get("name"), author.get("surname"), builder.count(book))
+                .where(searchPredicates(builder, query, book, search))
+                .groupBy(author.get("name"), author.get("surname"))
+                .orderBy(builder.desc(builder.count(book)), builder.asc(author.get("surname")));
+        Map<String, Long> facets = new LinkedHashMap<>();
+        getEntityManager().createQuery(query).getResultList()
+                .forEach(tuple -> facets.put(
+                        tuple.get(0, String.class) + " " + tuple.get(1, String.class),
+                        tuple.get(2, Long.class)
+                ));
+        return facets;
+    }
+
+    private Predicate[] searchPredicates(CriteriaBuilder builder, CriteriaQuery<?> query, Root<Book> book, BookSearch search) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(builder.equal(book.get("genre").get("deleted"), false));
+        if (search.getGenreName() != null) {
+            predicates.add(builder.equal(book.get("genre").get("name"), search.getGenreName()));
+        }
+        if (search.getAuthorName() != null || search.getAuthorSurname() != null) {
+            Subquery<Integer> authored = query.subquery(Integer.class);
+            Root<Book> authoredBook = authored.correlate(book);
+            Join<Book, Author> author = authoredBook.join("authors");
+            List<Predicate> authorPredicates = new ArrayList<>();
+            authorPredicates.add(builder.equal(author.get("deleted"), false));
+            if (search.getAuthorName() != null) {
+                authorPredicates.add(builder.equal(author.get("name"), search.getAuthorName()));
+            }
+            if (search.getAuthorSurname() != null) {
+                authorPredicates.add(builder.equal(author.get("surname"), search.getAuthorSurname()));
+            }
+            authored.select(author.get("id")).where(authorPredicates.toArray(new Predicate[0]));
+            predicates.add(builder.exists(authored));
+        }
+        if (search.getNamePrefix() != null) {
+            predicates.add(builder.like(book.get("name"), escapeLike(search.getNamePrefix()) + "%", '\\'));
+        }
+        if (search.getPublishedFrom() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(book.get("publishedDate"), search.getPublishedFrom()));
+        }
+        if (search.getPublishedTo() != null) {
+            predicates.add(builder.lessThanOrEqualTo(book.get("publishedDate"), search.getPublishedTo()));
+        }
+        if (search.getHasComments() != null) {
+            Subquery<Integer> commented = query.subquery(Integer.class);
+            Root<Comment> comment = commented.from(Comment.class);
+            Join<Comment, Book> commentedBook = comment.join("books");
+            commented.select(comment.get("id")).where(builder.equal(commentedBook, book));
+            predicates.add(search.getHasComments() ? builder.exists(commented) : builder.not(builder.exists(commented)));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 }
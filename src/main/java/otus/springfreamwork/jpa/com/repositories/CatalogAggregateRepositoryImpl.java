@@ -0,0 +1,422 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Repository;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation;
+import otus.springfreamwork.jpa.com.application.invalidation.InvalidationBatch;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import otus.springfreamwork.jpa.domain.dao.CatalogAggregateRepository;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.AUTHOR;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.BOOK;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.GENRE;
+
+@Repository
+@Transactional
+public class CatalogAggregateRepositoryImpl implements CatalogAggregateRepository {
+
+    private static final String EXPECTED_BOOKS =
+            "SELECT 'BOOK', b.book_id, COUNT(cb.comment_id), MAX(cb.comment_id) " +
+            "FROM books b LEFT JOIN comment_book cb ON cb.book_id = b.book_id GROUP BY b.book_id";
+    private static final String EXPECTED_AUTHORS =
+            "SELECT 'AUTHOR', a.author_id, COUNT(ba.book_id), NULL " +
+            "FROM authors a LEFT JOIN book_author ba ON ba.author_id = a.author_id " +
+            "WHERE a.deleted = false GROUP BY a.author_id";
+    private static final String EXPECTED_GENRES =
+            "SELECT 'GENRE', g.genre_id, COUNT(b.book_id), NULL " +
+            "FROM genres g LEFT JOIN books b ON b.genre_id = g.genre_id " +
+            "WHERE g.deleted = false GROUP BY g.genre_id";
+
+    private static final int LEADERBOARD_SIZE = 100;
+
+    private final Map<Kind, Leaderboard> leaderboards = new EnumMap<>(Kind.class);
+    private final Object pendingChangesKey = new Object();
+    private final CacheInvalidator cacheInvalidator;
+    private volatile Boolean postgres;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CatalogAggregateRepositoryImpl(CacheInvalidator cacheInvalidator) {
+        for (Kind kind : Kind.values()) {
+            leaderboards.put(kind, new Leaderboard(LEADERBOARD_SIZE));
+        }
+        this.cacheInvalidator = cacheInvalidator;
+        cacheInvalidator.addListener(this::invalidated);
+    }
+
+    @Override
+    public CatalogAggregate get(Kind kind, int entityId) {
+        TypedQuery<CatalogAggregate> query = entityManager.createQuery(
+                "SELECT NEW otus.springfreamwork.jpa.domain.model.CatalogAggregate(a.kind, a.entityId, a.itemCount, a.lastCommentId) " +
+                        "FROM CatalogAggregate a WHERE a.kind = :kind AND a.entityId = :id"
+                , CatalogAggregate.class);
+        query.setParameter("kind", kind);
+        query.setParameter("id", entityId);
+        List<CatalogAggregate> aggregates = query.getResultList();
+        return aggregates.isEmpty() ? new CatalogAggregate(kind, entityId, 0, null) : aggregates.get(0);
+    }
+
+    @Override
+    public List<CatalogAggregate> getTop(Kind kind, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        Leaderboard leaderboard = leaderboards.get(kind);
+        if (limit > leaderboard.getCapacity() || hasPendingChanges()) {
+            return queryTop(kind, limit);
+        }
+        List<CatalogAggregate> top = leaderboard.top(limit);
+        if (top != null) {
+            return top;
+        }
+        long generation = leaderboard.generation();
+        List<CatalogAggregate> rows = queryTop(kind, leaderboard.getCapacity());
+        leaderboard.load(generation, rows);
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+
+    @Override
+    public void bookInserted(Book book) {
+        addCount(BOOK, book.getId(), 0);
+        if (book.getGenre() != null) {
+            addCount(GENRE, book.getGenre().getId(), 1);
+        }
+        if (book.getAuthors() != null) {
+            for (Author author : book.getAuthors()) {
+                addCount(AUTHOR, author.getId(), 1);
+            }
+        }
+    }
+
+    @Override
+    public void booksDeleting(Collection<Integer> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        entityManager.createNativeQuery(
+                "UPDATE catalog_aggregates SET item_count = item_count - " +
+                        "(SELECT COUNT(*) FROM books b WHERE b.genre_id = catalog_aggregates.entity_id AND b.book_id IN (:ids)) " +
+                        "WHERE aggregate_kind = 'GENRE' AND entity_id IN (SELECT genre_id FROM books WHERE book_id IN (:ids))")
+                .setParameter("ids", bookIds)
+                .executeUpdate();
+        entityManager.createNativeQuery(
+                "UPDATE catalog_aggregates SET item_count = item_count - " +
+                        "(SELECT COUNT(*) FROM book_author ba WHERE ba.author_id = catalog_aggregates.entity_id AND ba.book_id IN (:ids)) " +
+                        "WHERE aggregate_kind = 'AUTHOR' AND entity_id IN (SELECT author_id FROM book_author WHERE book_id IN (:ids))")
+                .setParameter("ids", bookIds)
+                .executeUpdate();
+        entityManager.createNativeQuery(
+                "DELETE FROM catalog_aggregates WHERE aggregate_kind = 'BOOK' AND entity_id IN (:ids)")
+                .setParameter("ids", bookIds)
+                .executeUpdate();
+        afterCommit(() -> leaderboards.values().forEach(Leaderboard::invalidate));
+        changed(Kind.values());
+    }
+
+    @Override
+    public void bookLinksChanged(Collection<Integer> oldGenreIds, Collection<Integer> oldAuthorIds,
+                                 Collection<Integer> newGenreIds, Collection<Integer> newAuthorIds) {
+        itemLinksChanged(GENRE, oldGenreIds, newGenreIds);
+        itemLinksChanged(AUTHOR, oldAuthorIds, newAuthorIds);
+    }
+
+    @Override
+    public void commentInserted(int commentId, int bookId) {
+        upsert(BOOK, bookId, 1, commentId);
+        incremented(BOOK, bookId);
+    }
+
+    @Override
+    public void commentLinksChanged(int commentId, Collection<Integer> oldBookIds, Collection<Integer> newBookIds) {
+        Set<Integer> removed = new HashSet<>(oldBookIds);
+        removed.removeAll(newBookIds);
+        for (Integer bookId : newBookIds) {
+            if (!oldBookIds.contains(bookId)) {
+                commentInserted(commentId, bookId);
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        entityManager.createNativeQuery(
+                "UPDATE catalog_aggregates SET item_count = item_count - 1, " +
+                        "last_comment_id = (SELECT MAX(cb.comment_id) FROM comment_book cb " +
+                        "WHERE cb.book_id = catalog_aggregates.entity_id) " +
+                        "WHERE aggregate_kind = 'BOOK' AND entity_id IN (:ids)")
+                .setParameter("ids", removed)
+                .executeUpdate();
+        afterCommit(leaderboards.get(BOOK)::invalidate);
+        changed(BOOK);
+    }
+
+    @Override
+    public void commentsDeleting(Collection<Integer> commentIds) {
+        if (commentIds.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        entityManager.createNativeQuery(
+                "UPDATE catalog_aggregates SET " +
+                        "item_count = item_count - (SELECT COUNT(*) FROM comment_book cb " +
+                        "WHERE cb.book_id = catalog_aggregates.entity_id AND cb.comment_id IN (:ids)), " +
+                        "last_comment_id = (SELECT MAX(cb.comment_id) FROM comment_book cb " +
+                        "WHERE cb.book_id = catalog_aggregates.entity_id AND cb.comment_id NOT IN (:ids)) " +
+                        "WHERE aggregate_kind = 'BOOK' AND entity_id IN (SELECT book_id FROM comment_book WHERE comment_id IN (:ids))")
+                .setParameter("ids", commentIds)
+                .executeUpdate();
+        afterCommit(leaderboards.get(BOOK)::invalidate);
+        changed(BOOK);
+    }
+
+    @Override
+    public void itemsMoved(Kind kind, int fromId, int toId, long count) {
+        if (count == 0 || fromId == toId) {
+            return;
+        }
+        addCount(kind, fromId, -count);
+        addCount(kind, toId, count);
+        afterCommit(leaderboards.get(kind)::invalidate);
+        changed(kind);
+    }
+
+    @Override
+    public void entityDeleting(Kind kind, int entityId) {
+        entityManager.createNativeQuery(
+                "DELETE FROM catalog_aggregates WHERE aggregate_kind = ?1 AND entity_id = ?2")
+                .setParameter(1, kind.name())
+                .setParameter(2, entityId)
+                .executeUpdate();
+        afterCommit(leaderboards.get(kind)::invalidate);
+        changed(kind);
+    }
+
+    @Override
+    public int check() {
+        entityManager.flush();
+        Map<CatalogAggregate.Key, CatalogAggregate> actual = new HashMap<>();
+        @SuppressWarnings("unchecked")
+        List<Object[]> actualRows = entityManager.createNativeQuery(
+                "SELECT aggregate_kind, entity_id, item_count, last_comment_id FROM catalog_aggregates")
+                .getResultList();
+        actualRows.forEach(row -> put(actual, row));
+
+        Map<CatalogAggregate.Key, CatalogAggregate> expected = new HashMap<>();
+        for (String sql : new String[]{EXPECTED_BOOKS, EXPECTED_AUTHORS, EXPECTED_GENRES}) {
+            @SuppressWarnings("unchecked")
+            List<Object[]> expectedRows = entityManager.createNativeQuery(sql).getResultList();
+            expectedRows.forEach(row -> put(expected, row));
+        }
+
+        Set<CatalogAggregate.Key> keys = new HashSet<>(actual.keySet());
+        keys.addAll(expected.keySet());
+        int mismatches = 0;
+        for (CatalogAggregate.Key key : keys) {
+            CatalogAggregate expectedAggregate = expected.get(key);
+            CatalogAggregate actualAggregate = actual.get(key);
+            boolean emptyAndMissing = actualAggregate == null && expectedAggregate.getItemCount() == 0;
+            if (!emptyAndMissing && !expectedAggregateMatches(expectedAggregate, actualAggregate)) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    @Override
+    public void rebuild() {
+        entityManager.flush();
+        entityManager.createNativeQuery("DELETE FROM catalog_aggregates").executeUpdate();
+        for (String sql : new String[]{EXPECTED_BOOKS, EXPECTED_AUTHORS, EXPECTED_GENRES}) {
+            entityManager.createNativeQuery(
+                    "INSERT INTO catalog_aggregates (aggregate_kind, entity_id, item_count, last_comment_id) " + sql)
+                    .executeUpdate();
+        }
+        afterCommit(() -> leaderboards.values().forEach(Leaderboard::invalidate));
+        changed(Kind.values());
+    }
+
+    private void addCount(Kind kind, int entityId, long delta) {
+        upsert(kind, entityId, delta, null);
+        if (delta > 0) {
+            incremented(kind, entityId);
+        }
+    }
+
+    private void itemLinksChanged(Kind kind, Collection<Integer> oldIds, Collection<Integer> newIds) {
+        Set<Integer> removed = new HashSet<>(oldIds);
+        removed.removeAll(newIds);
+        for (Integer id : removed) {
+            addCount(kind, id, -1);
+        }
+        for (Integer id : newIds) {
+            if (!oldIds.contains(id)) {
+                addCount(kind, id, 1);
+            }
+        }
+        if (!removed.isEmpty()) {
+            afterCommit(leaderboards.get(kind)::invalidate);
+            changed(kind);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the row's count, creating the row if there is none, in one statement: an UPDATE
+     * followed by an INSERT lets two first increments of the same row both insert. The last comment id only
+     * grows; {@code null} leaves it as it is.
+     */
+    private void upsert(Kind kind, int entityId, long delta, Integer lastCommentId) {
+        String lastComment = lastCommentId == null ? "CAST(NULL AS INTEGER)" : "?4";
+        Query query = entityManager.createNativeQuery(isPostgres()
+                ? "INSERT INTO catalog_aggregates (aggregate_kind, entity_id, item_count, last_comment_id) " +
+                        "VALUES (?1, ?2, ?3, " + lastComment + ") " +
+                        "ON CONFLICT (aggregate_kind, entity_id) DO UPDATE SET " +
+                        "item_count = catalog_aggregates.item_count + EXCLUDED.item_count, " +
+                        "last_comment_id = GREATEST(catalog_aggregates.last_comment_id, EXCLUDED.last_comment_id)"
+                : "MERGE INTO catalog_aggregates a USING (SELECT CAST(?1 AS VARCHAR(10)) aggregate_kind, " +
+                        "CAST(?2 AS INTEGER) entity_id, CAST(?3 AS BIGINT) item_count, " + lastComment + " last_comment_id) d " +
+                        "ON (a.aggregate_kind = d.aggregate_kind AND a.entity_id = d.entity_id) " +
+                        "WHEN MATCHED THEN UPDATE SET item_count = a.item_count + d.item_count, " +
+                        "last_comment_id = GREATEST(a.last_comment_id, d.last_comment_id) " +
+                        "WHEN NOT MATCHED THEN INSERT (aggregate_kind, entity_id, item_count, last_comment_id) " +
+                        "VALUES (d.aggregate_kind, d.entity_id, d.item_count, d.last_comment_id)");
+        query.setParameter(1, kind.name())
+                .setParameter(2, entityId)
+                .setParameter(3, delta);
+        if (lastCommentId != null) {
+            query.setParameter(4, lastCommentId);
+        }
+        query.executeUpdate();
+    }
+
+    /**
+     * Production runs on PostgreSQL, which upserts with {@code ON CONFLICT}; the H2 test database has
+     * {@code MERGE} instead.
+     */
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+        }
+        return postgres;
+    }
+
+    private List<CatalogAggregate> queryTop(Kind kind, int limit) {
+        TypedQuery<CatalogAggregate> query = entityManager.createQuery(
+                "SELECT NEW otus.springfreamwork.jpa.domain.model.CatalogAggregate(a.kind, a.entityId, a.itemCount, a.lastCommentId) " +
+                        "FROM CatalogAggregate a WHERE a.kind = :kind AND a.itemCount > 0 " +
+                        "ORDER BY a.itemCount DESC, a.entityId"
+                , CatalogAggregate.class);
+        query.setParameter("kind", kind);
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+
+    /**
+     * The row is read back only while the leaderboard is loaded: the updated row is locked until commit, so the
+     * value seen here is the one this transaction commits. An unloaded board picks the change up on its next load.
+     */
+    private void incremented(Kind kind, int entityId) {
+        Leaderboard leaderboard = leaderboards.get(kind);
+        CatalogAggregate observed = leaderboard.isLoaded() ? get(kind, entityId) : null;
+        afterCommit(() -> {
+            if (observed != null) {
+                leaderboard.offer(observed);
+            } else if (leaderboard.isLoaded()) {
+                leaderboard.invalidate();
+            }
+        });
+        changed(kind);
+    }
+
+    /**
+     * Other nodes cannot replay an increment into their leaderboards, so they reload the changed kinds.
+     */
+    private void changed(Kind... kinds) {
+        List<Invalidation> invalidations = new ArrayList<>(kinds.length);
+        for (Kind kind : kinds) {
+            invalidations.add(Invalidation.naturalKey(Invalidation.Region.CATALOG_AGGREGATE, kind.name()));
+        }
+        cacheInvalidator.invalidate(invalidations);
+    }
+
+    private void invalidated(InvalidationBatch batch, boolean remote) {
+        if (!remote) {
+            return;
+        }
+        if (batch.isWholeRegion(Invalidation.Region.CATALOG_AGGREGATE)) {
+            leaderboards.values().forEach(Leaderboard::invalidate);
+        } else {
+            batch.getKeys(Invalidation.Region.CATALOG_AGGREGATE)
+                    .forEach(kind -> leaderboards.get(Kind.valueOf(kind)).invalidate());
+        }
+    }
+
+    private boolean hasPendingChanges() {
+        return TransactionSynchronizationManager.hasResource(pendingChangesKey);
+    }
+
+    /**
+     * Leaderboards must not see changes that may still roll back, so they are queued on the transaction
+     * and applied once it commits.
+     */
+    @SuppressWarnings("unchecked")
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        List<Runnable> changes = (List<Runnable>) TransactionSynchronizationManager.getResource(pendingChangesKey);
+        if (changes == null) {
+            List<Runnable> newChanges = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(pendingChangesKey, newChanges);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingChangesKey);
+                    if (status == STATUS_COMMITTED) {
+                        newChanges.forEach(Runnable::run);
+                    }
+                }
+            });
+            changes = newChanges;
+        }
+        changes.add(change);
+    }
+
+    private static boolean expectedAggregateMatches(CatalogAggregate expected, CatalogAggregate actual) {
+        return expected != null && expected.equals(actual);
+    }
+
+    private static void put(Map<CatalogAggregate.Key, CatalogAggregate> aggregates, Object[] row) {
+        Kind kind = Kind.valueOf(((String) row[0]).trim());
+        int entityId = ((Number) row[1]).intValue();
+        Integer lastCommentId = row[3] == null ? null : ((Number) row[3]).intValue();
+        aggregates.put(
+                new CatalogAggregate.Key(kind, entityId),
+                new CatalogAggregate(kind, entityId, ((Number) row[2]).longValue(), lastCommentId)
+        );
+    }
+}
@@ -0,0 +1,263 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import org.springframework.stereotype.Repository;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region;
+import otus.springfreamwork.jpa.com.application.invalidation.InvalidationBatch;
+import otus.springfreamwork.jpa.domain.dao.CatalogGraphRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps {@code book_author}, {@code comment_book} and comment users as {@link AdjacencyIndex adjacency indexes},
+ * so link queries walk int arrays and intersect bitsets.
+ * Committed changes only mark rows stale; they are read again by the next query, in its transaction.
+ */
+@Repository
+@Transactional
+public class CatalogGraphRepositoryImpl implements CatalogGraphRepository {
+
+    private static final int MAX_IN = 1000;
+
+    /**
+     * Book to its visible authors.
+     */
+    private final AdjacencyIndex bookAuthors = new AdjacencyIndex();
+    /**
+     * Comment to its books of visible genres.
+     */
+    private final AdjacencyIndex commentBooks = new AdjacencyIndex();
+    /**
+     * Comment to its user.
+     */
+    private final AdjacencyIndex commentReaders = new AdjacencyIndex();
+    private boolean loaded;
+
+    private final Object pendingLock = new Object();
+    private final Set<Integer> staleBooks = new HashSet<>();
+    private final Set<Integer> staleComments = new HashSet<>();
+    private boolean reloadNeeded;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CatalogGraphRepositoryImpl(CacheInvalidator cacheInvalidator) {
+        cacheInvalidator.addListener(this::invalidated);
+    }
+
+    @Override
+    public List<Integer> getCoAuthorIds(int authorId) {
+        refresh();
+        BitSet coAuthors = coAuthors(authorId);
+        coAuthors.clear(authorId);
+        return toList(coAuthors);
+    }
+
+    @Override
+    public int getAuthorDistance(int fromAuthorId, int toAuthorId, int maxDepth) {
+        refresh();
+        if (fromAuthorId == toAuthorId) {
+            return 0;
+        }
+        BitSet visited = new BitSet();
+        visited.set(fromAuthorId);
+        BitSet frontier = new BitSet();
+        frontier.set(fromAuthorId);
+        for (int depth = 1; depth <= maxDepth && !frontier.isEmpty(); depth++) {
+            BitSet next = new BitSet();
+            for (int author = frontier.nextSetBit(0); author >= 0; author = frontier.nextSetBit(author + 1)) {
+                next.or(coAuthors(author));
+            }
+            next.andNot(visited);
+            if (next.get(toAuthorId)) {
+                return depth;
+            }
+            visited.or(next);
+            frontier = next;
+        }
+        return -1;
+    }
+
+    @Override
+    public List<Integer> getBookIdsSharingAuthors(int bookId) {
+        refresh();
+        BitSet books = new BitSet();
+        for (int author : bookAuthors.targets(bookId)) {
+            set(books, bookAuthors.sources(author));
+        }
+        books.clear(bookId);
+        return toList(books);
+    }
+
+    @Override
+    public Map<Integer, Integer> getAlsoCommentedBookIds(int bookId, int limit) {
+        refresh();
+        BitSet bookReaders = readersOf(bookId);
+        BitSet candidates = new BitSet();
+        for (int reader = bookReaders.nextSetBit(0); reader >= 0; reader = bookReaders.nextSetBit(reader + 1)) {
+            for (int comment : commentReaders.sources(reader)) {
+                set(candidates, commentBooks.targets(comment));
+            }
+        }
+        candidates.clear(bookId);
+
+        List<int[]> scores = new ArrayList<>();
+        for (int candidate = candidates.nextSetBit(0); candidate >= 0; candidate = candidates.nextSetBit(candidate + 1)) {
+            BitSet shared = readersOf(candidate);
+            shared.and(bookReaders);
+            scores.add(new int[]{candidate, shared.cardinality()});
+        }
+        scores.sort((left, right) -> left[1] != right[1] ? Integer.compare(right[1], left[1]) : Integer.compare(left[0], right[0]));
+
+        Map<Integer, Integer> result = new LinkedHashMap<>();
+        for (int[] score : scores.subList(0, Math.min(Math.max(limit, 0), scores.size()))) {
+            result.put(score[0], score[1]);
+        }
+        return result;
+    }
+
+    private BitSet coAuthors(int authorId) {
+        BitSet coAuthors = new BitSet();
+        for (int book : bookAuthors.sources(authorId)) {
+            set(coAuthors, bookAuthors.targets(book));
+        }
+        return coAuthors;
+    }
+
+    private BitSet readersOf(int bookId) {
+        BitSet bookReaders = new BitSet();
+        for (int comment : commentBooks.sources(bookId)) {
+            set(bookReaders, commentReaders.targets(comment));
+        }
+        return bookReaders;
+    }
+
+    private void invalidated(InvalidationBatch batch, boolean remote) {
+        synchronized (pendingLock) {
+            // Hiding a genre invalidates all books, so genre keys alone never change a link.
+            if (batch.isWholeRegion(Region.BOOK) || batch.isWholeRegion(Region.AUTHOR) || batch.isWholeRegion(Region.COMMENT)) {
+                reloadNeeded = true;
+                return;
+            }
+            batch.getKeys(Region.BOOK).forEach(key -> staleBooks.add(Integer.valueOf(key)));
+            batch.getKeys(Region.COMMENT).forEach(key -> staleComments.add(Integer.valueOf(key)));
+            batch.getKeys(Region.AUTHOR).forEach(key -> {
+                for (int book : bookAuthors.sources(Integer.parseInt(key))) {
+                    staleBooks.add(book);
+                }
+            });
+            for (String key : batch.getKeys(Region.BOOK)) {
+                for (int comment : commentBooks.sources(Integer.parseInt(key))) {
+                    staleComments.add(comment);
+                }
+            }
+        }
+    }
+
+    private synchronized void refresh() {
+        Set<Integer> books;
+        Set<Integer> comments;
+        synchronized (pendingLock) {
+            if (reloadNeeded) {
+                loaded = false;
+                reloadNeeded = false;
+            }
+            books = new HashSet<>(staleBooks);
+            comments = new HashSet<>(staleComments);
+            staleBooks.clear();
+            staleComments.clear();
+        }
+        if (!loaded) {
+            loadAll();
+            loaded = true;
+            return;
+        }
+        if (!books.isEmpty()) {
+            Map<Integer, List<Integer>> authors = links(
+                    "SELECT b.id, a.id FROM Book b JOIN b.authors a " +
+                            "WHERE a.deleted = false AND b.genre.deleted = false AND b.id IN :ids", books);
+            books.forEach(book -> bookAuthors.replace(book, toArray(authors.get(book))));
+        }
+        if (!comments.isEmpty()) {
+            Map<Integer, List<Integer>> linkedBooks = links(
+                    "SELECT c.id, b.id FROM Comment c JOIN c.books b " +
+                            "WHERE b.genre.deleted = false AND c.id IN :ids", comments);
+            Map<Integer, List<Integer>> users = links(
+                    "SELECT c.id, c.user.id FROM Comment c WHERE c.user IS NOT NULL AND c.id IN :ids", comments);
+            for (Integer comment : comments) {
+                commentBooks.replace(comment, toArray(linkedBooks.get(comment)));
+                commentReaders.replace(comment, toArray(users.get(comment)));
+            }
+        }
+    }
+
+    private void loadAll() {
+        List<Object[]> bookRows = entityManager.createQuery(
+                "SELECT b.id, a.id FROM Book b JOIN b.authors a WHERE a.deleted = false AND b.genre.deleted = false",
+                Object[].class).getResultList();
+        bookAuthors.load(column(bookRows, 0), column(bookRows, 1));
+
+        List<Object[]> commentRows = entityManager.createQuery(
+                "SELECT c.id, b.id FROM Comment c JOIN c.books b WHERE b.genre.deleted = false",
+                Object[].class).getResultList();
+        commentBooks.load(column(commentRows, 0), column(commentRows, 1));
+
+        List<Object[]> readerRows = entityManager.createQuery(
+                "SELECT c.id, c.user.id FROM Comment c WHERE c.user IS NOT NULL", Object[].class).getResultList();
+        commentReaders.load(column(readerRows, 0), column(readerRows, 1));
+    }
+
+    private Map<Integer, List<Integer>> links(String jpql, Collection<Integer> ids) {
+        Map<Integer, List<Integer>> links = new HashMap<>();
+        for (Object[] row : select(jpql, ids)) {
+            links.computeIfAbsent((Integer) row[0], id -> new ArrayList<>()).add((Integer) row[1]);
+        }
+        return links;
+    }
+
+    private List<Object[]> select(String jpql, Collection<Integer> ids) {
+        List<Integer> idList = new ArrayList<>(ids);
+        List<Object[]> rows = new ArrayList<>();
+        for (int from = 0; from < idList.size(); from += MAX_IN) {
+            rows.addAll(entityManager.createQuery(jpql, Object[].class)
+                    .setParameter("ids", idList.subList(from, Math.min(from + MAX_IN, idList.size())))
+                    .getResultList());
+        }
+        return rows;
+    }
+
+    private static int[] column(List<Object[]> rows, int column) {
+        int[] values = new int[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (Integer) rows.get(i)[column];
+        }
+        return values;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        return ids == null ? AdjacencyIndex.NO_IDS : ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void set(BitSet bits, int[] ids) {
+        for (int id : ids) {
+            bits.set(id);
+        }
+    }
+
+    private static List<Integer> toList(BitSet bits) {
+        List<Integer> ids = new ArrayList<>(bits.cardinality());
+        bits.stream().forEach(ids::add);
+        return ids;
+    }
+}
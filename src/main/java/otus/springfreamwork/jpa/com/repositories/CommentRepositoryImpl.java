@@ -1,45 +1,155 @@
 package otus.springfreamwork.jpa.com.repositories;
 
 import org.springframework.stereotype.Repository;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation;
+import otus.springfreamwork.jpa.domain.dao.CatalogAggregateRepository;
 import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.dao.UserRepository;
+import otus.springfreamwork.jpa.domain.model.Book;
 import otus.springfreamwork.jpa.domain.model.Comment;
 
-import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public class CommentRepositoryImpl extends AbstractDataRepository<Comment> implements CommentRepository {
 
-    public CommentRepositoryImpl() {
-        super(Comment.class);
+    private final CatalogAggregateRepository aggregateRepository;
+    private final UserRepository userRepository;
+
+    public CommentRepositoryImpl(
+            CatalogAggregateRepository aggregateRepository,
+            UserRepository userRepository,
+            CacheInvalidator cacheInvalidator
+    ) {
+        super(Comment.class, Invalidation.Region.COMMENT, cacheInvalidator);
+        this.aggregateRepository = aggregateRepository;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public void insert(Comment comment) {
+        super.insert(comment);
+        if (comment.getBooks() != null) {
+            for (Book book : comment.getBooks()) {
+                aggregateRepository.commentInserted(comment.getId(), book.getId());
+            }
+        }
+    }
+
+    /**
+     * Comment sketches count only inserted comments, other changes invalidate comments too.
+     */
+    @Override
+    List<Invalidation> insertInvalidations(Comment comment) {
+        List<Invalidation> invalidations = new ArrayList<>(invalidations(comment));
+        invalidations.add(Invalidation.entity(Invalidation.Region.COMMENT_INSERTED, comment.getId()));
+        return invalidations;
+    }
+
+    /**
+     * The aggregates count the comment for its books, so relinking it moves the counts.
+     */
+    @Override
+    public Comment update(Comment comment) {
+        List<Integer> bookIds = bookIdsOf(comment.getId());
+        Comment updated = super.update(comment);
+        aggregateRepository.commentLinksChanged(comment.getId(), bookIds, bookIdsOf(comment.getId()));
+        return updated;
+    }
+
+    @Override
+    public Comment update(int id, long expectedVersion, Consumer<Comment> changes) {
+        List<Integer> bookIds = bookIdsOf(id);
+        Comment updated = super.update(id, expectedVersion, changes);
+        if (updated != null) {
+            aggregateRepository.commentLinksChanged(id, bookIds, bookIdsOf(id));
+        }
+        return updated;
+    }
+
+    private List<Integer> bookIdsOf(int commentId) {
+        return getEntityManager()
+                .createQuery("SELECT b.id FROM Comment c JOIN c.books b WHERE c.id = :id", Integer.class)
+                .setParameter("id", commentId)
+                .getResultList();
+    }
+
+    @Override
+    public void insertForBook(Comment comment, int bookId) {
+        Book book = getEntityManager().getReference(Book.class, bookId);
+        comment.setBooks(Collections.singleton(book));
+        insert(comment);
     }
 
     @Override
     public List<Comment> getByUsername(String username) {
+        Integer userId = userRepository.getIdByName(username);
+        if (userId == null) {
+            return new ArrayList<>();
+        }
+        return getByUserId(userId);
+    }
+
+    @Override
+    public List<Comment> getByUserId(int userId) {
         TypedQuery<Comment> query = getEntityManager()
-                .createQuery("SELECT c FROM Comment c WHERE c.username = :username", Comment.class);
-        query.setParameter("username", username);
+                .createQuery("SELECT c FROM Comment c WHERE c.user.id = :userId", Comment.class);
+        query.setParameter("userId", userId);
         return query.getResultList();
     }
 
     @Override
     public void deleteById(int id) {
         Comment comment = getById(id);
+        aggregateRepository.commentsDeleting(Collections.singleton(id));
         delete(comment);
     }
 
+    @Override
+    public int deleteByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        aggregateRepository.commentsDeleting(ids);
+        return deleteAll(EntityFilter.in("id", ids));
+    }
+
     @Override
     public void deleteByUsername(String username) {
-        Query query = getEntityManager().createQuery("DELETE FROM Comment c WHERE c.username = :username");
-        query.setParameter("username", username);
-        query.executeUpdate();
+        Integer userId = userRepository.getIdByName(username);
+        if (userId == null) {
+            return;
+        }
+        TypedQuery<Integer> idsQuery = getEntityManager()
+                .createQuery("SELECT c.id FROM Comment c WHERE c.user.id = :userId", Integer.class);
+        idsQuery.setParameter("userId", userId);
+        aggregateRepository.commentsDeleting(idsQuery.getResultList());
+        deleteAll(EntityFilter.equal("user.id", userId));
+    }
+
+    /**
+     * Users are never renamed: the comments move to the user of the new name, which is created if needed.
+     */
+    @Override
+    public int renameUsername(String username, String newUsername) {
+        Integer userId = userRepository.getIdByName(username);
+        if (userId == null) {
+            return 0;
+        }
+        return updateAll(EntityFilter.equal("user.id", userId),
+                Collections.singletonMap("user", userRepository.getOrCreate(newUsername)));
     }
 
     @Override
     public List<Comment> getByBookName(String bookName) {
         TypedQuery<Comment> query = getEntityManager().createQuery(
-                "SELECT c FROM Comment c LEFT JOIN c.books b WHERE b.name = :name"
+                "SELECT c FROM Comment c LEFT JOIN c.books b WHERE b.name = :name AND b.genre.deleted = false"
                 , Comment.class
         );
         query.setParameter("name", bookName);
@@ -0,0 +1,83 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PersistEvent;
+import org.hibernate.event.spi.PersistEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+import otus.springfreamwork.jpa.domain.dao.UserRepository;
+import otus.springfreamwork.jpa.domain.model.Comment;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Points a comment persisted with only a username at the user of that name, whichever way it is persisted,
+ * so the stored comment never loses its author. Comments reaching a flush without a user are refused by
+ * {@link Comment} itself. The listener is registered while the entity manager factory is built, which asks
+ * for this bean even when application beans are lazy.
+ */
+@Component
+public class CommentUserResolver implements PersistEventListener, HibernatePropertiesCustomizer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ObjectProvider<UserRepository> userRepository;
+
+    public CommentUserResolver(ObjectProvider<UserRepository> userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Collections.singletonList(new Registration(this)));
+    }
+
+    @Override
+    public void onPersist(PersistEvent event) {
+        resolve(event.getObject());
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void onPersist(PersistEvent event, Map createdAlready) {
+        resolve(event.getObject());
+    }
+
+    private void resolve(Object entity) {
+        if (!(entity instanceof Comment)) {
+            return;
+        }
+        Comment comment = (Comment) entity;
+        if (comment.getUser() == null && comment.getUsername() != null) {
+            comment.setUser(userRepository.getObject().getOrCreate(comment.getUsername()));
+        }
+    }
+
+    private static final class Registration implements Integrator {
+
+        private final PersistEventListener listener;
+
+        private Registration(PersistEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            serviceRegistry.getService(EventListenerRegistry.class).prependListeners(EventType.PERSIST, listener);
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import java.util.Collection;
+
+/**
+ * Condition of a bulk update or delete. Attributes are JPA attribute names; a dotted name such as
+ * {@code "genre.id"} follows a to-one association without joining it.
+ */
+@FunctionalInterface
+public interface EntityFilter<T> {
+
+    Predicate toPredicate(From<?, T> root, CriteriaBuilder builder);
+
+    default EntityFilter<T> and(EntityFilter<T> other) {
+        return (root, builder) -> builder.and(toPredicate(root, builder), other.toPredicate(root, builder));
+    }
+
+    static <T> EntityFilter<T> equal(String attribute, Object value) {
+        return (root, builder) -> builder.equal(path(root, attribute), value);
+    }
+
+    static <T> EntityFilter<T> in(String attribute, Collection<?> values) {
+        return (root, builder) -> path(root, attribute).in(values);
+    }
+
+    static <T> EntityFilter<T> isNull(String attribute) {
+        return (root, builder) -> builder.isNull(path(root, attribute));
+    }
+
+    static <Y> Path<Y> path(From<?, ?> root, String attribute) {
+        Path<?> path = root;
+        for (String name : attribute.split("\\.")) {
+            path = path.get(name);
+        }
+        @SuppressWarnings("unchecked")
+        Path<Y> typed = (Path<Y>) path;
+        return typed;
+    }
+}
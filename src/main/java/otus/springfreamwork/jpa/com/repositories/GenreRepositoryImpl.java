@@ -1,26 +1,35 @@
 package otus.springfreamwork.jpa.com.repositories;
 
 import org.springframework.stereotype.Repository;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation;
+import otus.springfreamwork.jpa.domain.dao.CatalogAggregateRepository;
 import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
 import otus.springfreamwork.jpa.domain.model.Genre;
 
+import javax.persistence.LockModeType;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 
 @Repository
 @Transactional
 public class GenreRepositoryImpl extends AbstractDataRepository<Genre> implements GenreRepository {
 
-    public GenreRepositoryImpl() {
-        super(Genre.class);
+    private final CatalogAggregateRepository aggregateRepository;
+
+    public GenreRepositoryImpl(CatalogAggregateRepository aggregateRepository, CacheInvalidator cacheInvalidator) {
+        super(Genre.class, Invalidation.Region.GENRE, cacheInvalidator);
+        this.aggregateRepository = aggregateRepository;
     }
 
     @Override
     public Genre getByName(String name) {
         TypedQuery<Genre> query = getEntityManager().createQuery(
-                "SELECT g FROM Genre g WHERE g.name = :name"
+                "SELECT g FROM Genre g WHERE g.name = :name AND g.deleted = false"
                 , Genre.class);
         query.setParameter("name", name);
         List<Genre> genres = query.getResultList();
@@ -30,15 +39,127 @@ public class GenreRepositoryImpl extends AbstractDataRepository<Genre> implement
     @Override
     public void deleteById(int id) {
         Genre genre = getById(id);
+        genreDeleting(id);
         delete(genre);
     }
 
     @Override
     public void deleteByName(String name) {
+        Genre genre = getByName(name);
+        if (genre != null) {
+            genreDeleting(genre.getId());
+            getCacheInvalidator().invalidate(invalidations(genre));
+        }
         Query query = getEntityManager().createQuery(
                 "DELETE FROM Genre g WHERE g.name = :name"
         );
         query.setParameter("name", name);
         query.executeUpdate();
     }
+
+    @Override
+    public boolean tombstoneByName(String name) {
+        Genre genre = getByName(name);
+        if (genre == null) {
+            return false;
+        }
+        aggregateRepository.entityDeleting(CatalogAggregate.Kind.GENRE, genre.getId());
+        genre.setDeleted(true);
+        List<Invalidation> invalidations = new ArrayList<>(invalidations(genre));
+        invalidations.add(Invalidation.all(Invalidation.Region.BOOK));
+        invalidations.add(Invalidation.all(Invalidation.Region.BOOK_NAME));
+        getCacheInvalidator().invalidate(invalidations);
+        return true;
+    }
+
+    @Override
+    public List<Integer> getTombstonedIds() {
+        return getEntityManager()
+                .createQuery("SELECT g.id FROM Genre g WHERE g.deleted = true ORDER BY g.id", Integer.class)
+                .getResultList();
+    }
+
+    @Override
+    public long countDependents(int id) {
+        return getEntityManager()
+                .createQuery("SELECT COUNT(b) FROM Book b WHERE b.genre.id = :id", Long.class)
+                .setParameter("id", id)
+                .getSingleResult();
+    }
+
+    /**
+     * Deletes a chunk of books with their author and comment links explicitly, instead of one cascade
+     * over the whole genre.
+     */
+    @Override
+    public int purgeChunk(int id, int limit) {
+        Genre genre = getEntityManager().find(Genre.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (genre == null || !genre.isDeleted()) {
+            return 0;
+        }
+        TypedQuery<Object[]> query = getEntityManager().createQuery(
+                "SELECT b.id, b.name FROM Book b WHERE b.genre.id = :id ORDER BY b.id", Object[].class);
+        query.setParameter("id", id);
+        List<Object[]> books = query.setMaxResults(limit).getResultList();
+        if (books.isEmpty()) {
+            delete(genre);
+            return 0;
+        }
+
+        List<Integer> bookIds = new ArrayList<>(books.size());
+        List<Invalidation> invalidations = new ArrayList<>();
+        for (Object[] book : books) {
+            bookIds.add((Integer) book[0]);
+            invalidations.add(Invalidation.entity(Invalidation.Region.BOOK, (Integer) book[0]));
+            invalidations.add(Invalidation.naturalKey(Invalidation.Region.BOOK_NAME, (String) book[1]));
+        }
+        TypedQuery<Integer> commentIds = getEntityManager().createQuery(
+                "SELECT DISTINCT c.id FROM Comment c JOIN c.books b WHERE b.id IN :ids", Integer.class);
+        commentIds.setParameter("ids", bookIds);
+        commentIds.getResultList()
+                .forEach(commentId -> invalidations.add(Invalidation.entity(Invalidation.Region.COMMENT, commentId)));
+
+        aggregateRepository.booksDeleting(bookIds);
+        for (String table : new String[]{"comment_book", "book_author", "books"}) {
+            getEntityManager().createNativeQuery("DELETE FROM " + table + " WHERE book_id IN (:ids)")
+                    .setParameter("ids", bookIds)
+                    .executeUpdate();
+        }
+        getCacheInvalidator().invalidate(invalidations);
+        return bookIds.size();
+    }
+
+    @Override
+    EntityFilter<Genre> visible() {
+        return EntityFilter.equal("deleted", false);
+    }
+
+    @Override
+    boolean isVisible(Genre genre) {
+        return !genre.isDeleted();
+    }
+
+    @Override
+    List<Invalidation> invalidations(Genre genre) {
+        List<Invalidation> invalidations = new ArrayList<>(super.invalidations(genre));
+        invalidations.add(Invalidation.naturalKey(Invalidation.Region.GENRE_NAME, genre.getName()));
+        return invalidations;
+    }
+
+    /**
+     * Books of the genre go away with it through ON DELETE CASCADE, so their counters are released first.
+     * The cascade reaches books, their names and the comments on them, so those regions are invalidated whole.
+     */
+    private void genreDeleting(int genreId) {
+        TypedQuery<Integer> bookIds = getEntityManager()
+                .createQuery("SELECT b.id FROM Book b WHERE b.genre.id = :id", Integer.class);
+        bookIds.setParameter("id", genreId);
+        aggregateRepository.booksDeleting(bookIds.getResultList());
+        aggregateRepository.entityDeleting(CatalogAggregate.Kind.GENRE, genreId);
+        getCacheInvalidator().invalidate(
+                Invalidation.all(Invalidation.Region.BOOK),
+                Invalidation.all(Invalidation.Region.BOOK_NAME),
+                Invalidation.all(Invalidation.Region.COMMENT)
+        );
+    }
 }
@@ -0,0 +1,111 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Top-K of one aggregate kind kept in memory. The weakest member sits at the head of a min-heap, so an increment
+ * is admitted or rejected in O(log K) without touching the database. Decrements can let an unknown row overtake
+ * a member, so they {@link #invalidate()} the board and the next read reloads it with one indexed query.
+ */
+public class Leaderboard {
+
+    static final Comparator<CatalogAggregate> RANKING = Comparator
+            .comparingLong(CatalogAggregate::getItemCount).reversed()
+            .thenComparingInt(CatalogAggregate::getEntityId);
+
+    private final int capacity;
+    private final Map<Integer, CatalogAggregate> members = new HashMap<>();
+    private final PriorityQueue<CatalogAggregate> weakestFirst = new PriorityQueue<>(RANKING.reversed());
+    private boolean loaded;
+    private long generation;
+
+    public Leaderboard(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return best {@code limit} members, or {@code null} when the board has to be loaded first
+     */
+    public synchronized List<CatalogAggregate> top(int limit) {
+        if (!loaded) {
+            return null;
+        }
+        List<CatalogAggregate> top = new ArrayList<>(members.values());
+        top.sort(RANKING);
+        return top.size() > limit ? new ArrayList<>(top.subList(0, limit)) : top;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Installs rows read from the database unless the board changed since {@code generation} was taken,
+     * in which case the rows may already be stale and are dropped.
+     */
+    public synchronized boolean load(long generation, List<CatalogAggregate> rows) {
+        if (this.generation != generation) {
+            return false;
+        }
+        clear();
+        rows.stream().limit(capacity).forEach(this::add);
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Applies a committed increment. {@code observed} is the row as the incrementing transaction saw it after
+     * its update; counts only grow between invalidations, so the larger of two observations is the current one.
+     */
+    public synchronized void offer(CatalogAggregate observed) {
+        generation++;
+        if (!loaded) {
+            return;
+        }
+        CatalogAggregate member = members.get(observed.getEntityId());
+        if (member != null) {
+            if (observed.getItemCount() >= member.getItemCount()) {
+                weakestFirst.remove(member);
+                add(observed);
+            }
+        } else if (observed.getItemCount() > 0) {
+            if (members.size() < capacity) {
+                add(observed);
+            } else if (RANKING.compare(observed, weakestFirst.peek()) < 0) {
+                members.remove(weakestFirst.poll().getEntityId());
+                add(observed);
+            }
+        }
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        loaded = false;
+        clear();
+    }
+
+    private void add(CatalogAggregate aggregate) {
+        members.put(aggregate.getEntityId(), aggregate);
+        weakestFirst.add(aggregate);
+    }
+
+    private void clear() {
+        members.clear();
+        weakestFirst.clear();
+    }
+}
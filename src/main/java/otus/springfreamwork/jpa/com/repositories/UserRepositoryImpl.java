@@ -0,0 +1,97 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import otus.springfreamwork.jpa.domain.dao.UserRepository;
+import otus.springfreamwork.jpa.domain.model.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the id of every name it has seen. Users are never renamed or removed, so a remembered id stays
+ * right on every node without any invalidation. An id is remembered only once the transaction that read or
+ * created it commits, so a rolled back insert never leaves a dangling id behind.
+ */
+@Repository
+@Transactional
+public class UserRepositoryImpl implements UserRepository {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Boolean postgres;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Integer getIdByName(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        List<Integer> found = entityManager
+                .createQuery("SELECT u.id FROM User u WHERE u.name = :name", Integer.class)
+                .setParameter("name", name)
+                .getResultList();
+        if (found.isEmpty()) {
+            return null;
+        }
+        rememberAfterCommit(name, found.get(0));
+        return found.get(0);
+    }
+
+    @Override
+    public User getOrCreate(String name) {
+        Integer id = getIdByName(name);
+        if (id == null) {
+            id = create(name);
+        }
+        return entityManager.getReference(User.class, id);
+    }
+
+    /**
+     * Inserts the name in the caller's transaction unless it is already there, so no second connection is
+     * taken from the pool. Another node may create the same name meanwhile; then the insert waits for it
+     * and its row is used.
+     */
+    private int create(String name) {
+        entityManager.createNativeQuery(isPostgres()
+                ? "INSERT INTO users (user_name) VALUES (?1) ON CONFLICT (user_name) DO NOTHING"
+                : "MERGE INTO users (user_name) KEY (user_name) VALUES (?1)")
+                .setParameter(1, name)
+                .executeUpdate();
+        Integer id = getIdByName(name);
+        if (id == null) {
+            throw new IllegalStateException("User " + name + " was not created");
+        }
+        return id;
+    }
+
+    private void rememberAfterCommit(String name, int id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.put(name, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                ids.put(name, id);
+            }
+        });
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+        }
+        return postgres;
+    }
+}
@@ -0,0 +1,20 @@
+package otus.springfreamwork.jpa.com.repositories.converters;
+
+import otus.springfreamwork.jpa.domain.model.BookParts;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+@Converter(autoApply = true)
+public class BookPartsConverter implements AttributeConverter<BookParts, String> {
+
+    @Override
+    public String convertToDatabaseColumn(BookParts parts) {
+        return parts == null ? null : parts.getEncoded();
+    }
+
+    @Override
+    public BookParts convertToEntityAttribute(String encoded) {
+        return BookParts.fromEncoded(encoded);
+    }
+}
@@ -0,0 +1,28 @@
+package otus.springfreamwork.jpa.com.repositories.converters;
+
+import otus.springfreamwork.jpa.domain.model.CodedEnum;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * Stores a {@link CodedEnum} as its code in a {@code smallint} column. JPA needs a concrete converter per
+ * enum; it only has to name the enum class.
+ */
+public abstract class CodedEnumConverter<E extends Enum<E> & CodedEnum> implements AttributeConverter<E, Short> {
+
+    private final EnumCodes<E> codes;
+
+    protected CodedEnumConverter(Class<E> enumClass) {
+        this.codes = new EnumCodes<>(enumClass);
+    }
+
+    @Override
+    public Short convertToDatabaseColumn(E constant) {
+        return constant == null ? null : constant.getCode();
+    }
+
+    @Override
+    public E convertToEntityAttribute(Short code) {
+        return codes.byCode(code);
+    }
+}
@@ -0,0 +1,13 @@
+package otus.springfreamwork.jpa.com.repositories.converters;
+
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import javax.persistence.Converter;
+
+@Converter(autoApply = true)
+public class ConutryConverter extends CodedEnumConverter<Conutry> {
+
+    public ConutryConverter() {
+        super(Conutry.class);
+    }
+}
@@ -0,0 +1,45 @@
+package otus.springfreamwork.jpa.com.repositories.converters;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import otus.springfreamwork.jpa.domain.model.CodedEnum;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Constants of a {@link CodedEnum} by code. A code this build does not know, written by a newer one that
+ * added a constant, reads as {@code null} instead of failing the whole load.
+ */
+public final class EnumCodes<E extends Enum<E> & CodedEnum> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EnumCodes.class);
+
+    private final Class<E> enumClass;
+    private final Map<Short, E> constants = new HashMap<>();
+    private final Set<Short> reportedUnknown = ConcurrentHashMap.newKeySet();
+
+    public EnumCodes(Class<E> enumClass) {
+        this.enumClass = enumClass;
+        for (E constant : enumClass.getEnumConstants()) {
+            E previous = constants.put(constant.getCode(), constant);
+            if (previous != null) {
+                throw new IllegalStateException(enumClass.getSimpleName() + "." + previous + " and "
+                        + constant + " share code " + constant.getCode());
+            }
+        }
+    }
+
+    public E byCode(Short code) {
+        if (code == null) {
+            return null;
+        }
+        E constant = constants.get(code);
+        if (constant == null && reportedUnknown.add(code)) {
+            LOGGER.warn("Unknown {} code {} is read as null", enumClass.getSimpleName(), code);
+        }
+        return constant;
+    }
+}
@@ -0,0 +1,85 @@
+package otus.springfreamwork.jpa.com.repositories.migrations;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.SetupException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Points every comment at the user of its username, one range of comment ids per transaction, so that a large
+ * table is never locked or rewritten in one go. Ranges already done are skipped when the change is run again
+ * after a failure.
+ */
+public class CommentUsersMigration implements CustomTaskChange {
+
+    private static final String UPDATE = "UPDATE comments SET user_id ="
+            + " (SELECT u.user_id FROM users u WHERE u.user_name = comments.username)"
+            + " WHERE user_id IS NULL AND username IS NOT NULL AND comment_id BETWEEN ? AND ?";
+
+    private Integer batchSize = 10_000;
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        try {
+            long minId;
+            long maxId;
+            try (Statement statement = connection.createStatement();
+                 ResultSet bounds = statement.executeQuery("SELECT MIN(comment_id), MAX(comment_id) FROM comments")) {
+                bounds.next();
+                minId = bounds.getLong(1);
+                maxId = bounds.getLong(2);
+                if (bounds.wasNull()) {
+                    return;
+                }
+            }
+            try (PreparedStatement update = connection.prepareStatement(UPDATE)) {
+                for (long from = minId; from <= maxId; from += batchSize) {
+                    update.setLong(1, from);
+                    update.setLong(2, from + batchSize - 1);
+                    update.executeUpdate();
+                    if (!connection.getAutoCommit()) {
+                        connection.commit();
+                    }
+                }
+            }
+        } catch (SQLException | DatabaseException e) {
+            throw new CustomChangeException("Comments are not linked to users", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Comments linked to users by username";
+    }
+
+    @Override
+    public void setUp() throws SetupException {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (batchSize == null || batchSize <= 0) {
+            errors.addError("batchSize must be positive");
+        }
+        return errors;
+    }
+}
@@ -11,4 +11,11 @@ public interface AuthorService {
     String getAuthor(String name, String surname);
 
     String deleteAuthor(String name, String surname);
+
+    /**
+     * Updates only the given values; {@code null} arguments keep the stored ones.
+     *
+     * @throws otus.springfreamwork.jpa.domain.dao.StaleEntityException if a version is given and the author is at another one
+     */
+    String patchAuthor(int id, String name, String surname, Long version);
 }
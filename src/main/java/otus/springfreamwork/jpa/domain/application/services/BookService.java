@@ -1,5 +1,10 @@
 package otus.springfreamwork.jpa.domain.application.services;
 
+import otus.springfreamwork.jpa.domain.dao.BookSearch;
+
+import java.util.Date;
+import java.util.List;
+
 public interface BookService {
     String createBookByNameAndAuthorAndGenre(String boonName, String name, String surname, String genreName);
 
@@ -9,11 +14,27 @@ public interface BookService {
 
     String deleteBook(String name);
 
+    /**
+     * @throws otus.springfreamwork.jpa.domain.dao.StaleEntityException if the book is no longer at {@code version}
+     */
+    String renameBook(String name, String newName, long version);
+
+    /**
+     * Updates only the given values; {@code null} arguments keep the stored ones.
+     *
+     * @throws otus.springfreamwork.jpa.domain.dao.StaleEntityException if a version is given and the book is at another one
+     */
+    String patchBook(int id, String name, Date publishedDate, Long version);
+
     String getBook(String name);
 
+    String getBooksByIds(List<Integer> ids);
+
     String getBooksByAuthorNameAndSurname(String name, String surname);
 
     String getBooksByGenreName(String name);
 
     String getCommentsOnBook(String name);
+
+    String searchBooks(BookSearch search);
 }
@@ -0,0 +1,12 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+public interface CatalogGraphService {
+
+    String getCoAuthors(String name, String surname);
+
+    String getAuthorDistance(String name, String surname, String otherName, String otherSurname, int maxDepth);
+
+    String getBooksSharingAuthors(String bookName);
+
+    String getAlsoCommented(String bookName, int limit);
+}
@@ -0,0 +1,16 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+public interface CatalogStatisticsService {
+
+    String getBookStatistics(String bookName);
+
+    String getAuthorStatistics(String name, String surname);
+
+    String getGenreStatistics(String name);
+
+    String getTopBooks(int limit);
+
+    String getTopAuthors(int limit);
+
+    String checkAggregates(boolean rebuild);
+}
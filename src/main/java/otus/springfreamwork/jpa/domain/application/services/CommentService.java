@@ -9,5 +9,17 @@ public interface CommentService {
 
     String deleteUsernameComments(String usernanme);
 
+    /**
+     * @throws otus.springfreamwork.jpa.domain.dao.StaleEntityException if the comment is no longer at {@code version}
+     */
+    String editComment(int id, long version, String commentText);
+
+    String renameUsername(String username, String newUsername);
+
     String getUsernameComments(String username);
+
+    /**
+     * Lists near-duplicate comments, each with the earliest comment it copies, or deletes them keeping that one.
+     */
+    String dedupeComments(boolean delete);
 }
@@ -10,5 +10,7 @@ public interface GenreService {
 
     String deleteGenre(String name);
 
+    String mergeGenres(String fromName, String intoName);
+
     String getGenre(String name);
 }
@@ -0,0 +1,9 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+public interface PurgeService {
+
+    /**
+     * Report of background removals of deleted genres and authors, running and recently finished.
+     */
+    String getPurgeProgress();
+}
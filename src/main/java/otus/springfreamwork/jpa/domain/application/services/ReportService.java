@@ -0,0 +1,15 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+public interface ReportService {
+
+    /**
+     * @param genre {@code null} for all genres
+     * @param fromYear {@code null} for no lower bound
+     * @param toYear {@code null} for no upper bound
+     */
+    String getBooksByGenreAndYear(String genre, Integer fromYear, Integer toYear);
+
+    String getAuthorsByCountry();
+
+    String getTopCommenters(int limit);
+}
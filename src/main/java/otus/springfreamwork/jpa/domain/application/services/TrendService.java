@@ -0,0 +1,11 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+/**
+ * Approximate comment statistics; counts may be slightly off in exchange for constant memory.
+ */
+public interface TrendService {
+
+    String getTrendingBooks(int minutes, int limit);
+
+    String getDistinctCommenters(String bookName);
+}
@@ -0,0 +1,22 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+public class AuthorPatch extends EntityPatch<AuthorPatch> {
+
+    public static final String NAME = "name";
+    public static final String SURNAME = "surname";
+    public static final String CONUTRY = "conutry";
+
+    public AuthorPatch name(String name) {
+        return set(NAME, name);
+    }
+
+    public AuthorPatch surname(String surname) {
+        return set(SURNAME, surname);
+    }
+
+    public AuthorPatch conutry(Conutry conutry) {
+        return set(CONUTRY, conutry);
+    }
+}
@@ -2,14 +2,34 @@ package otus.springfreamwork.jpa.domain.dao;
 
 import otus.springfreamwork.jpa.domain.model.Author;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
-public interface AuthorRepository {
+public interface AuthorRepository extends TombstoneRepository {
 
     void insert(Author author);
 
+    /**
+     * @return updated author, or {@code null} if there is none with this id
+     * @throws StaleEntityException if the author is no longer at {@code expectedVersion}
+     */
+    Author update(int id, long expectedVersion, Consumer<Author> changes);
+
+    /**
+     * Updates the set attributes with one statement, without loading the author.
+     *
+     * @return {@code false} if there is no author with this id
+     * @throws StaleEntityException if the patch has an expected version and the author is at another one
+     */
+    boolean patch(int id, AuthorPatch patch);
+
     Author getById(int id);
 
+    List<Author> getAllByIds(Collection<Integer> ids);
+
+    Author getReference(int id);
+
     Author getByNameAndSurname(String name, String surname);
 
     List<Author> getAll();
@@ -18,5 +38,12 @@ public interface AuthorRepository {
 
     void deleteByNameAndSurname(String name, String surname);
 
+    /**
+     * Hides the author from every finder; links to books are removed later by {@link #purgeChunk}.
+     *
+     * @return {@code false} if there is no visible author with this name and surname
+     */
+    boolean tombstoneByNameAndSurname(String name, String surname);
+
     long count();
 }
@@ -0,0 +1,30 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+/**
+ * Ids of a book, an author and a genre resolved by their natural keys in one statement.
+ * An id is {@code null} when no row with that natural key exists.
+ */
+public class BookCatalogKeys {
+
+    private final Integer bookId;
+    private final Integer authorId;
+    private final Integer genreId;
+
+    public BookCatalogKeys(Integer bookId, Integer authorId, Integer genreId) {
+        this.bookId = bookId;
+        this.authorId = authorId;
+        this.genreId = genreId;
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public Integer getAuthorId() {
+        return authorId;
+    }
+
+    public Integer getGenreId() {
+        return genreId;
+    }
+}
@@ -0,0 +1,17 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import java.util.Date;
+
+public class BookPatch extends EntityPatch<BookPatch> {
+
+    public static final String NAME = "name";
+    public static final String PUBLISHED_DATE = "publishedDate";
+
+    public BookPatch name(String name) {
+        return set(NAME, name);
+    }
+
+    public BookPatch publishedDate(Date publishedDate) {
+        return set(PUBLISHED_DATE, publishedDate);
+    }
+}
@@ -2,16 +2,42 @@ package otus.springfreamwork.jpa.domain.dao;
 
 import otus.springfreamwork.jpa.domain.model.Book;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface BookRepository {
 
     void insert(Book book);
 
+    /**
+     * @return updated book, or {@code null} if there is none with this id
+     * @throws StaleEntityException if the book is no longer at {@code expectedVersion}
+     */
+    Book update(int id, long expectedVersion, Consumer<Book> changes);
+
+    /**
+     * Updates the set attributes with one statement, without loading the book.
+     *
+     * @return {@code false} if there is no book with this id
+     * @throws StaleEntityException if the patch has an expected version and the book is at another one
+     */
+    boolean patch(int id, BookPatch patch);
+
     Book getById(int id);
 
+    List<Book> getAllByIds(Collection<Integer> ids);
+
     Book getByName(String name);
 
+    Book getReference(int id);
+
+    Integer getIdByName(String name);
+
+    Map<String, Integer> getIdsByNames(Collection<String> names);
+
     List<Book> getAll();
 
     long count();
@@ -20,7 +46,28 @@ public interface BookRepository {
 
     void deleteByName(String name);
 
+    /**
+     * Moves all books of one genre to another with a single statement.
+     *
+     * @return number of moved books
+     */
+    int moveToGenre(int fromGenreId, int toGenreId);
+
     List<Book> getByAuthorId(int authorId);
 
     List<Book> getByGenreId(int genreId);
+
+    List<Book> getByAuthorNameAndSurname(String name, String surname);
+
+    List<Book> getByGenreName(String genreName);
+
+    BookCatalogKeys resolveKeys(String bookName, String authorName, String authorSurname, String genreName);
+
+    List<Book> getPublishedBetween(Date from, Date to, PublishedDateKeyset after, int limit);
+
+    List<Book> getOlderThan(int years, PublishedDateKeyset after, int limit);
+
+    List<Book> getNewerThan(int years, PublishedDateKeyset after, int limit);
+
+    BookSearchResult search(BookSearch search);
 }
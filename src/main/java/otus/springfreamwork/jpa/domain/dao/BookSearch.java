@@ -0,0 +1,119 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import java.util.Date;
+
+/**
+ * Combined book search criteria. Every criterion is optional; the ones that are set are joined with AND.
+ */
+public class BookSearch {
+
+    public enum SortBy {
+        NAME,
+        PUBLISHED_DATE
+    }
+
+    private String genreName;
+    private String authorName;
+    private String authorSurname;
+    private String namePrefix;
+    private Date publishedFrom;
+    private Date publishedTo;
+    private Boolean hasComments;
+    private SortBy sortBy = SortBy.NAME;
+    private boolean descending;
+    private int limit = 100;
+    private boolean withFacets;
+
+    public BookSearch genre(String genreName) {
+        this.genreName = genreName;
+        return this;
+    }
+
+    public BookSearch author(String name, String surname) {
+        this.authorName = name;
+        this.authorSurname = surname;
+        return this;
+    }
+
+    public BookSearch namePrefix(String namePrefix) {
+        this.namePrefix = namePrefix;
+        return this;
+    }
+
+    public BookSearch publishedBetween(Date from, Date to) {
+        this.publishedFrom = from;
+        this.publishedTo = to;
+        return this;
+    }
+
+    public BookSearch hasComments(Boolean hasComments) {
+        this.hasComments = hasComments;
+        return this;
+    }
+
+    public BookSearch sortBy(SortBy sortBy, boolean descending) {
+        this.sortBy = sortBy;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public BookSearch limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Search limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public BookSearch withFacets(boolean withFacets) {
+        this.withFacets = withFacets;
+        return this;
+    }
+
+    public String getGenreName() {
+        return genreName;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public String getAuthorSurname() {
+        return authorSurname;
+    }
+
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    public Date getPublishedFrom() {
+        return publishedFrom;
+    }
+
+    public Date getPublishedTo() {
+        return publishedTo;
+    }
+
+    public Boolean getHasComments() {
+        return hasComments;
+    }
+
+    public SortBy getSortBy() {
+        return sortBy;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isWithFacets() {
+        return withFacets;
+    }
+}
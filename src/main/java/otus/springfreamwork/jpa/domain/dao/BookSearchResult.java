@@ -0,0 +1,36 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import otus.springfreamwork.jpa.domain.model.Book;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class BookSearchResult {
+
+    private final List<Book> books;
+    private final Map<String, Long> genreFacets;
+    private final Map<String, Long> authorFacets;
+
+    public BookSearchResult(List<Book> books) {
+        this(books, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    public BookSearchResult(List<Book> books, Map<String, Long> genreFacets, Map<String, Long> authorFacets) {
+        this.books = books;
+        this.genreFacets = genreFacets;
+        this.authorFacets = authorFacets;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public Map<String, Long> getGenreFacets() {
+        return genreFacets;
+    }
+
+    public Map<String, Long> getAuthorFacets() {
+        return authorFacets;
+    }
+}
@@ -0,0 +1,51 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface CatalogAggregateRepository {
+
+    CatalogAggregate get(CatalogAggregate.Kind kind, int entityId);
+
+    /**
+     * @return rows of the given kind with a positive count, biggest first, ties broken by entity id
+     */
+    List<CatalogAggregate> getTop(CatalogAggregate.Kind kind, int limit);
+
+    void bookInserted(Book book);
+
+    void booksDeleting(Collection<Integer> bookIds);
+
+    /**
+     * Moves the book's count from the genre and authors it had to the ones it has now.
+     */
+    void bookLinksChanged(Collection<Integer> oldGenreIds, Collection<Integer> oldAuthorIds,
+                          Collection<Integer> newGenreIds, Collection<Integer> newAuthorIds);
+
+    void commentInserted(int commentId, int bookId);
+
+    /**
+     * Moves the comment's count from the books it was linked to to the ones it is linked to now;
+     * expects the new links to be flushed.
+     */
+    void commentLinksChanged(int commentId, Collection<Integer> oldBookIds, Collection<Integer> newBookIds);
+
+    void commentsDeleting(Collection<Integer> commentIds);
+
+    /**
+     * Moves {@code count} items counted for one entity to another, e.g. books moved between genres.
+     */
+    void itemsMoved(CatalogAggregate.Kind kind, int fromId, int toId, long count);
+
+    void entityDeleting(CatalogAggregate.Kind kind, int entityId);
+
+    /**
+     * @return number of aggregate rows that differ from the catalog
+     */
+    int check();
+
+    void rebuild();
+}
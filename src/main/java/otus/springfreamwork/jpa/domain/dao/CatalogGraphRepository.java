@@ -0,0 +1,32 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Links between authors, books and commenters, answered from an in-memory index
+ * instead of loading entity graphs. Hidden genres and authors are left out.
+ */
+public interface CatalogGraphRepository {
+
+    /**
+     * @return ids of authors sharing at least one book with the author, ascending
+     */
+    List<Integer> getCoAuthorIds(int authorId);
+
+    /**
+     * @return number of co-authorship steps from one author to the other, or -1 if more than {@code maxDepth}
+     */
+    int getAuthorDistance(int fromAuthorId, int toAuthorId, int maxDepth);
+
+    /**
+     * @return ids of other books sharing at least one author with the book, ascending
+     */
+    List<Integer> getBookIdsSharingAuthors(int bookId);
+
+    /**
+     * @return ids of other books commented on by people who commented on the book, mapped to the number of such
+     * people, most shared first
+     */
+    Map<Integer, Integer> getAlsoCommentedBookIds(int bookId, int limit);
+}
@@ -2,24 +2,50 @@ package otus.springfreamwork.jpa.domain.dao;
 
 import otus.springfreamwork.jpa.domain.model.Comment;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface CommentRepository {
 
     void insert(Comment comment);
 
+    /**
+     * @return updated comment, or {@code null} if there is none with this id
+     * @throws StaleEntityException if the comment is no longer at {@code expectedVersion}
+     */
+    Comment update(int id, long expectedVersion, Consumer<Comment> changes);
+
+    void insertForBook(Comment comment, int bookId);
+
     Comment getById(int id);
 
+    List<Comment> getAllByIds(Collection<Integer> ids);
+
     List<Comment> getByUsername(String username);
 
+    List<Comment> getByUserId(int userId);
+
     List<Comment> getAll();
 
     long count();
 
     void deleteById(int id);
 
+    /**
+     * Ids without a comment are skipped.
+     *
+     * @return number of deleted comments
+     */
+    int deleteByIds(Collection<Integer> ids);
+
     void deleteByUsername(String username);
 
+    /**
+     * @return number of comments moved to the new username
+     */
+    int renameUsername(String username, String newUsername);
+
     List<Comment> getByBookName(String bookName);
 
 }
@@ -0,0 +1,52 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Attributes to overwrite on one entity, written with a single UPDATE of just these columns.
+ * Attributes that are not set keep their stored values.
+ */
+public abstract class EntityPatch<P extends EntityPatch<P>> {
+
+    private final Map<String, Object> changes = new LinkedHashMap<>();
+    private Long expectedVersion;
+
+    /**
+     * Applies the patch only if the entity is still at this version.
+     */
+    public P expectedVersion(Long expectedVersion) {
+        this.expectedVersion = expectedVersion;
+        return self();
+    }
+
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * @return attribute names mapped to their new values, in the order they were set
+     */
+    public Map<String, Object> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public boolean changes(String attribute) {
+        return changes.containsKey(attribute);
+    }
+
+    protected P set(String attribute, Object value) {
+        changes.put(attribute, value);
+        return self();
+    }
+
+    @SuppressWarnings("unchecked")
+    private P self() {
+        return (P) this;
+    }
+}
@@ -2,14 +2,26 @@ package otus.springfreamwork.jpa.domain.dao;
 
 import otus.springfreamwork.jpa.domain.model.Genre;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
-public interface GenreRepository {
+public interface GenreRepository extends TombstoneRepository {
 
     void insert(Genre genre);
 
+    /**
+     * @return updated genre, or {@code null} if there is none with this id
+     * @throws StaleEntityException if the genre is no longer at {@code expectedVersion}
+     */
+    Genre update(int id, long expectedVersion, Consumer<Genre> changes);
+
     Genre getById(int id);
 
+    List<Genre> getAllByIds(Collection<Integer> ids);
+
+    Genre getReference(int id);
+
     Genre getByName(String name);
 
     List<Genre> getAll();
@@ -18,5 +30,12 @@ public interface GenreRepository {
 
     void deleteByName(String name);
 
+    /**
+     * Hides the genre and its books from every finder; the rows are removed later by {@link #purgeChunk}.
+     *
+     * @return {@code false} if there is no visible genre with this name
+     */
+    boolean tombstoneByName(String name);
+
     long count();
 }
@@ -0,0 +1,58 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import otus.springfreamwork.jpa.domain.model.Book;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Position in a list of books ordered by publication date and id.
+ * The next page starts right after this position, so no rows are skipped by OFFSET.
+ * Paging starts at {@link #first()} and stops at {@link #isEnd() the end}, after which pages are empty.
+ */
+public final class PublishedDateKeyset {
+
+    private static final PublishedDateKeyset FIRST = new PublishedDateKeyset(null, 0, false);
+    private static final PublishedDateKeyset END = new PublishedDateKeyset(null, 0, true);
+
+    private final Date publishedDate;
+    private final int bookId;
+    private final boolean end;
+
+    private PublishedDateKeyset(Date publishedDate, int bookId, boolean end) {
+        this.publishedDate = publishedDate;
+        this.bookId = bookId;
+        this.end = end;
+    }
+
+    public static PublishedDateKeyset first() {
+        return FIRST;
+    }
+
+    public static PublishedDateKeyset after(Book book) {
+        return new PublishedDateKeyset(book.getPublishedDate(), book.getId(), false);
+    }
+
+    /**
+     * Position after the last book of the page, or the end when the page is empty.
+     */
+    public static PublishedDateKeyset next(List<Book> page) {
+        return page.isEmpty() ? END : after(page.get(page.size() - 1));
+    }
+
+    public boolean isFirst() {
+        return publishedDate == null && !end;
+    }
+
+    public boolean isEnd() {
+        return end;
+    }
+
+    public Date getPublishedDate() {
+        return publishedDate;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+}
@@ -0,0 +1,33 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+/**
+ * Thrown when an update was based on a version of the entity that another writer has already replaced.
+ * The transaction is rolled back; re-read the entity and apply the change again.
+ */
+public class StaleEntityException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String entityName;
+    private final int id;
+    private final long expectedVersion;
+
+    public StaleEntityException(String entityName, int id, long expectedVersion, Throwable cause) {
+        super(entityName + " " + id + " was modified concurrently, expected version " + expectedVersion, cause);
+        this.entityName = entityName;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+}
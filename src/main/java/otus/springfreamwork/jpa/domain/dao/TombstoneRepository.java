@@ -0,0 +1,28 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import java.util.List;
+
+/**
+ * Entities deleted in two steps: a tombstone hides the entity from all finders at once, and its dependent
+ * rows are purged later in small transactions, so a large subtree never locks the tables for long.
+ */
+public interface TombstoneRepository {
+
+    /**
+     * @return ids of hidden entities that are not purged yet
+     */
+    List<Integer> getTombstonedIds();
+
+    /**
+     * @return number of dependent rows the purge of this hidden entity still has to remove
+     */
+    long countDependents(int id);
+
+    /**
+     * Removes up to {@code limit} dependent rows of a hidden entity, and the entity itself once none are left.
+     * Chunks of one entity are serialized by a row lock, so several nodes may purge at the same time.
+     *
+     * @return number of removed dependent rows; {@code 0} once the entity is gone
+     */
+    int purgeChunk(int id, int limit);
+}
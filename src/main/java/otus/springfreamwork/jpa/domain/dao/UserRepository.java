@@ -0,0 +1,19 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import otus.springfreamwork.jpa.domain.model.User;
+
+public interface UserRepository {
+
+    /**
+     * @return id of the user, or {@code null} if nobody ever commented under this name
+     */
+    Integer getIdByName(String name);
+
+    /**
+     * Creates the user if there is none yet; the new row is committed at once, even if the current
+     * transaction rolls back, so that its id can be remembered.
+     *
+     * @return reference to the user, not loaded
+     */
+    User getOrCreate(String name);
+}
@@ -1,12 +1,12 @@
 package otus.springfreamwork.jpa.domain.model;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.Access;
 import javax.persistence.AttributeOverride;
 import javax.persistence.AttributeOverrides;
 import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.EnumType;
-import javax.persistence.Enumerated;
 import javax.persistence.ManyToMany;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
@@ -16,6 +16,7 @@ import java.util.Set;
 import static javax.persistence.AccessType.PROPERTY;
 
 @Entity
+@DynamicUpdate
 @Table(
         name = "AUTHORS",
         uniqueConstraints =
@@ -30,6 +31,7 @@ public class Author extends SuperEntity {
 
     private String surname;
     private Conutry conutry;
+    private boolean deleted;
 
     public Author() {}
 
@@ -54,7 +56,6 @@ public class Author extends SuperEntity {
     }
 
     @Column(name = "AUTHOR_COUNTRY")
-    @Enumerated(value = EnumType.STRING)
     public Conutry getConutry() {
         return conutry;
     }
@@ -63,6 +64,18 @@ public class Author extends SuperEntity {
         this.conutry = conutry;
     }
 
+    /**
+     * Tombstone: a deleted author is hidden at once, its links to books are removed in the background.
+     */
+    @Column(name = "deleted", nullable = false)
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -83,6 +96,7 @@ public class Author extends SuperEntity {
     public String toString() {
         return "Author{" +
                 "id=" + getId() +
+                ", version=" + getVersion() +
                 ", name='" + getName() + '\'' +
                 ", surname='" + surname + '\'' +
                 ", conutry=" + conutry +
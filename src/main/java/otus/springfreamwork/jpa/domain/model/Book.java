@@ -1,20 +1,18 @@
 package otus.springfreamwork.jpa.domain.model;
 
-import otus.springfreamwork.jpa.com.repositories.listeners.BookAgeCalculationListener;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Where;
 
 import javax.persistence.Access;
 import javax.persistence.AttributeOverride;
 import javax.persistence.AttributeOverrides;
-import javax.persistence.CollectionTable;
 import javax.persistence.Column;
-import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
-import javax.persistence.EntityListeners;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
-import javax.persistence.MapKeyColumn;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
@@ -26,32 +24,51 @@ import java.util.Objects;
 import java.util.Set;
 
 import static javax.persistence.AccessType.PROPERTY;
-import static javax.persistence.CascadeType.ALL;
-import static javax.persistence.FetchType.LAZY;
+import static javax.persistence.CascadeType.PERSIST;
 import static javax.persistence.TemporalType.DATE;
 import static otus.springfreamwork.jpa.domain.model.Book.GET_BY_AUTHOR_ID;
+import static otus.springfreamwork.jpa.domain.model.Book.GET_BY_AUTHOR_NAME_AND_SURNAME;
 import static otus.springfreamwork.jpa.domain.model.Book.GET_BY_GENRE_ID;
+import static otus.springfreamwork.jpa.domain.model.Book.GET_BY_GENRE_NAME;
 
 @Entity
-@Table(name = "BOOKS")
+@DynamicUpdate
+@Table(name = "BOOKS", indexes = {
+        @Index(name = "books_published_date_idx", columnList = "published_date, book_id"),
+        @Index(name = "books_genre_idx", columnList = "genre_id")
+})
 @Access(PROPERTY)
 @AttributeOverrides({
         @AttributeOverride(name = "id", column = @Column(name = "book_id")),
         @AttributeOverride(name = "name", column = @Column(name = "book_name", nullable = false, length = 200))
 })
 @NamedQueries({
-        @NamedQuery(name = GET_BY_AUTHOR_ID, query = "SELECT b FROM Book b LEFT JOIN b.authors a WHERE a.id = :id"),
-        @NamedQuery(name = GET_BY_GENRE_ID, query = "SELECT b FROM Book b WHERE b.genre.id = :id")
+        @NamedQuery(name = GET_BY_AUTHOR_ID, query = "SELECT b FROM Book b LEFT JOIN b.authors a " +
+                "WHERE a.id = :id AND a.deleted = false AND b.genre.deleted = false"),
+        @NamedQuery(name = GET_BY_GENRE_ID, query = "SELECT b FROM Book b " +
+                "WHERE b.genre.id = :id AND b.genre.deleted = false"),
+        @NamedQuery(
+                name = GET_BY_AUTHOR_NAME_AND_SURNAME,
+                query = "SELECT b FROM Book b JOIN FETCH b.genre g JOIN b.authors a " +
+                        "WHERE a.name = :name AND a.surname = :surname AND a.deleted = false AND g.deleted = false " +
+                        "ORDER BY b.id"
+        ),
+        @NamedQuery(
+                name = GET_BY_GENRE_NAME,
+                query = "SELECT b FROM Book b JOIN FETCH b.genre g WHERE g.name = :name AND g.deleted = false ORDER BY b.id"
+        )
 })
-@EntityListeners({BookAgeCalculationListener.class})
 public class Book extends SuperEntity {
 
     public static final String GET_BY_AUTHOR_ID = "GET_BY_AUTHOR_ID";
     public static final String GET_BY_GENRE_ID = "GET_BY_GENRE_ID";
+    public static final String GET_BY_AUTHOR_NAME_AND_SURNAME = "GET_BY_AUTHOR_NAME_AND_SURNAME";
+    public static final String GET_BY_GENRE_NAME = "GET_BY_GENRE_NAME";
 
     private Date publishedDate;
     private int ageYears;
-    private Map<Integer,String> parts;
+    private int ageCalculatedOn = Integer.MIN_VALUE;
+    private BookParts parts;
     private Set<Author> authors;
     private Genre genre;
 
@@ -60,7 +77,7 @@ public class Book extends SuperEntity {
     public Book(String name, Date publishedDate, Map<Integer, String> parts, Set<Author> authors, Genre genre) {
         setName(name);
         this.publishedDate = publishedDate;
-        this.parts = parts;
+        this.parts = BookParts.of(parts);
         this.authors = authors;
         this.genre = genre;
     }
@@ -73,30 +90,42 @@ public class Book extends SuperEntity {
 
     public void setPublishedDate(Date publishedDate) {
         this.publishedDate = publishedDate;
+        this.ageCalculatedOn = Integer.MIN_VALUE;
     }
 
     @Transient
     public int getAgeYears() {
+        int today = PublicationAge.todayEpochDay();
+        if (ageCalculatedOn != today) {
+            ageYears = PublicationAge.yearsSince(publishedDate, today);
+            ageCalculatedOn = today;
+        }
         return ageYears;
     }
 
-    public void setAgeYears(int ageYears) {
-        this.ageYears = ageYears;
+    @Transient
+    public Map<Integer, String> getParts() {
+        return parts == null ? null : parts.asMap();
     }
 
-    @ElementCollection(fetch = LAZY)
-    @CollectionTable(name = "PARTS")
-    @MapKeyColumn(name = "PART")
-    @Column(name = "PART_NAME")
-    public Map<Integer, String> getParts() {
+    public void setParts(Map<Integer, String> parts) {
+        this.parts = BookParts.of(parts);
+    }
+
+    @Column(name = "book_parts", columnDefinition = "text")
+    protected BookParts getCompactParts() {
         return parts;
     }
 
-    public void setParts(Map<Integer, String> parts) {
+    protected void setCompactParts(BookParts parts) {
         this.parts = parts;
     }
 
-    @ManyToMany(cascade = ALL)
+    /**
+     * Tombstoned authors are left out at once, before their links are removed in the background.
+     */
+    @ManyToMany(cascade = PERSIST)
+    @Where(clause = "deleted = false")
     @JoinTable(
             name = "BOOK_AUTHOR",
             joinColumns = @JoinColumn(name = "book_id", referencedColumnName = "book_id"),
@@ -110,7 +139,7 @@ public class Book extends SuperEntity {
         this.authors = authors;
     }
 
-    @ManyToOne(cascade = ALL, optional = false)
+    @ManyToOne(cascade = PERSIST, optional = false)
     @JoinColumn(name = "genre_id")
     public Genre getGenre() {
         return genre;
@@ -142,9 +171,10 @@ public class Book extends SuperEntity {
     public String toString() {
         return "Book{" +
                 "id=" + getId() +
+                ", version=" + getVersion() +
                 ", name=" + getName() +
                 ", publishedDate=" + publishedDate +
-                ", ageYears=" + ageYears +
+                ", ageYears=" + getAgeYears() +
                 ", parts=" + parts +
                 ", author=" + authors +
                 ", genre=" + genre +
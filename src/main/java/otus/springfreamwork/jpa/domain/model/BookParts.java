@@ -0,0 +1,99 @@
+package otus.springfreamwork.jpa.domain.model;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Ordered book parts packed into a single string, stored in the book row.
+ * Each part is written as {@code <number>:<length>:<name>}, so names need no escaping. The length counts
+ * code points, as {@code char_length} does in the migration that packed the existing parts.
+ * The string is decoded only when the parts are actually read.
+ */
+public final class BookParts {
+
+    private static final char SEPARATOR = ':';
+
+    private final String encoded;
+    private Map<Integer, String> decoded;
+
+    private BookParts(String encoded) {
+        this.encoded = encoded;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a part has no number or no name
+     */
+    public static BookParts of(Map<Integer, String> parts) {
+        if (parts == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        parts.forEach((number, name) -> {
+            if (number == null || name == null) {
+                throw new IllegalArgumentException("Book part " + number + " has no name");
+            }
+        });
+        new TreeMap<>(parts).forEach((number, name) -> builder
+                .append(number).append(SEPARATOR)
+                .append(name.codePointCount(0, name.length())).append(SEPARATOR)
+                .append(name));
+        BookParts bookParts = new BookParts(builder.toString());
+        bookParts.decoded = Collections.unmodifiableSortedMap(new TreeMap<>(parts));
+        return bookParts;
+    }
+
+    public static BookParts fromEncoded(String encoded) {
+        return encoded == null ? null : new BookParts(encoded);
+    }
+
+    public String getEncoded() {
+        return encoded;
+    }
+
+    public Map<Integer, String> asMap() {
+        if (decoded == null) {
+            decoded = decode(encoded);
+        }
+        return decoded;
+    }
+
+    private static Map<Integer, String> decode(String encoded) {
+        SortedMap<Integer, String> parts = new TreeMap<>();
+        int position = 0;
+        while (position < encoded.length()) {
+            int numberEnd = encoded.indexOf(SEPARATOR, position);
+            int lengthEnd = encoded.indexOf(SEPARATOR, numberEnd + 1);
+            if (numberEnd < 0 || lengthEnd < 0) {
+                throw new IllegalArgumentException("Malformed book parts: " + encoded);
+            }
+            int number = Integer.parseInt(encoded.substring(position, numberEnd));
+            int length = Integer.parseInt(encoded.substring(numberEnd + 1, lengthEnd));
+            try {
+                position = encoded.offsetByCodePoints(lengthEnd + 1, length);
+            } catch (IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Malformed book parts: " + encoded, e);
+            }
+            parts.put(number, encoded.substring(lengthEnd + 1, position));
+        }
+        return Collections.unmodifiableSortedMap(parts);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BookParts)) return false;
+        return encoded.equals(((BookParts) o).encoded);
+    }
+
+    @Override
+    public int hashCode() {
+        return encoded.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+}
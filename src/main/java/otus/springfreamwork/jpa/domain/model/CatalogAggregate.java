@@ -0,0 +1,159 @@
+package otus.springfreamwork.jpa.domain.model;
+
+import javax.persistence.Access;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.util.Objects;
+
+import static javax.persistence.AccessType.PROPERTY;
+
+/**
+ * Denormalized counter kept next to the catalog: comments per book, books per author and books per genre.
+ * Rows are maintained with set-based SQL by the repositories, in the same transaction as the change itself.
+ */
+@Entity
+@Table(
+        name = "catalog_aggregates",
+        indexes = @Index(name = "catalog_aggregates_top_idx", columnList = "aggregate_kind, item_count")
+)
+@IdClass(CatalogAggregate.Key.class)
+@Access(PROPERTY)
+public class CatalogAggregate {
+
+    public enum Kind {
+        BOOK,
+        AUTHOR,
+        GENRE
+    }
+
+    private Kind kind;
+    private int entityId;
+    private long itemCount;
+    private Integer lastCommentId;
+
+    public CatalogAggregate() {}
+
+    public CatalogAggregate(Kind kind, int entityId, long itemCount, Integer lastCommentId) {
+        this.kind = kind;
+        this.entityId = entityId;
+        this.itemCount = itemCount;
+        this.lastCommentId = lastCommentId;
+    }
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "aggregate_kind", length = 10)
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    @Id
+    @Column(name = "entity_id")
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    @Column(name = "item_count", nullable = false)
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(long itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    @Column(name = "last_comment_id")
+    public Integer getLastCommentId() {
+        return lastCommentId;
+    }
+
+    public void setLastCommentId(Integer lastCommentId) {
+        this.lastCommentId = lastCommentId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CatalogAggregate)) return false;
+        CatalogAggregate aggregate = (CatalogAggregate) o;
+        return entityId == aggregate.entityId &&
+                itemCount == aggregate.itemCount &&
+                kind == aggregate.kind &&
+                Objects.equals(lastCommentId, aggregate.lastCommentId);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(kind, entityId, itemCount, lastCommentId);
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogAggregate{" +
+                "kind=" + kind +
+                ", entityId=" + entityId +
+                ", itemCount=" + itemCount +
+                ", lastCommentId=" + lastCommentId +
+                '}';
+    }
+
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Kind kind;
+        private int entityId;
+
+        public Key() {}
+
+        public Key(Kind kind, int entityId) {
+            this.kind = kind;
+            this.entityId = entityId;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public void setKind(Kind kind) {
+            this.kind = kind;
+        }
+
+        public int getEntityId() {
+            return entityId;
+        }
+
+        public void setEntityId(int entityId) {
+            this.entityId = entityId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return entityId == key.entityId && kind == key.kind;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, entityId);
+        }
+    }
+}
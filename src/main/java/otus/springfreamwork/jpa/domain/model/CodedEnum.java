@@ -0,0 +1,10 @@
+package otus.springfreamwork.jpa.domain.model;
+
+/**
+ * Enum stored as a small number chosen once per constant, so that constants can be added or reordered
+ * without touching stored rows. Codes of one enum must be distinct and are never reused.
+ */
+public interface CodedEnum {
+
+    short getCode();
+}
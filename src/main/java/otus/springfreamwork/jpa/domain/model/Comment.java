@@ -1,5 +1,7 @@
 package otus.springfreamwork.jpa.domain.model;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.Access;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -7,23 +9,30 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
-import javax.persistence.OneToMany;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 
 import java.util.Objects;
 import java.util.Set;
 
 import static javax.persistence.AccessType.PROPERTY;
-import static javax.persistence.CascadeType.ALL;
 import static javax.persistence.GenerationType.IDENTITY;
 
 @Entity
+@DynamicUpdate
 @Table(name = "comments")
 @Access(PROPERTY)
-public class Comment {
+public class Comment implements Versioned {
 
     private int id;
+    private long version;
     private String username;
+    private User user;
     private String comment;
     private Set<Book> books;
 
@@ -40,6 +49,7 @@ public class Comment {
         this.comment = comment;
     }
 
+    @Override
     @Id
     @GeneratedValue(strategy = IDENTITY)
     @Column(name = "comment_id")
@@ -51,15 +61,54 @@ public class Comment {
         this.id = id;
     }
 
-    @Column(name = "username", length = 200)
+    @Override
+    @Version
+    @Column(name = "version", nullable = false)
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Name of the {@link #getUser() user}, or the name given to a comment not yet inserted.
+     */
+    @Transient
     public String getUsername() {
-        return username;
+        return user != null ? user.getName() : username;
     }
 
+    /**
+     * Takes effect when the comment is inserted; stored comments change users by a bulk rename.
+     */
     public void setUsername(String username) {
         this.username = username;
     }
 
+    @ManyToOne
+    @JoinColumn(name = "user_id")
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    /**
+     * The username is not stored, only the id of its user, which is resolved when the comment is persisted;
+     * a comment reaching the database any other way would lose its author, so it is refused here instead.
+     */
+    @PrePersist
+    @PreUpdate
+    void checkUser() {
+        if (user == null) {
+            throw new IllegalStateException("Comment " + id + " has no user");
+        }
+    }
+
     @Column(name = "comment", length = 400)
     public String getComment() {
         return comment;
@@ -69,7 +118,7 @@ public class Comment {
         this.comment = comment;
     }
 
-    @OneToMany(cascade = ALL)
+    @ManyToMany
     @JoinTable(
             name = "COMMENT_BOOK",
             joinColumns = @JoinColumn(name = "comment_id", referencedColumnName = "comment_id"),
@@ -103,7 +152,8 @@ public class Comment {
     public String toString() {
         return "Comment{" +
                 "id=" + id +
-                ", username='" + username + '\'' +
+                ", version=" + version +
+                ", username='" + getUsername() + '\'' +
                 ", comment='" + comment + '\'' +
                 ", books=" + books +
                 '}';
@@ -1,6 +1,18 @@
 package otus.springfreamwork.jpa.domain.model;
 
-public enum Conutry {
+public enum Conutry implements CodedEnum {
 
-    RUSSIA,
+    RUSSIA(1),
+    ;
+
+    private final short code;
+
+    Conutry(int code) {
+        this.code = (short) code;
+    }
+
+    @Override
+    public short getCode() {
+        return code;
+    }
 }
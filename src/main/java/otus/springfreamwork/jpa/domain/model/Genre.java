@@ -1,5 +1,7 @@
 package otus.springfreamwork.jpa.domain.model;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.Access;
 import javax.persistence.AttributeOverride;
 import javax.persistence.AttributeOverrides;
@@ -13,6 +15,7 @@ import java.util.Set;
 import static javax.persistence.AccessType.PROPERTY;
 
 @Entity
+@DynamicUpdate
 @Table(name = "GENRES")
 @Access(PROPERTY)
 @AttributeOverrides({
@@ -21,6 +24,8 @@ import static javax.persistence.AccessType.PROPERTY;
 })
 public class Genre extends SuperEntity {
 
+    private boolean deleted;
+
     public Genre() {}
 
     public Genre(String name) {
@@ -32,6 +37,18 @@ public class Genre extends SuperEntity {
         setId(id);
     }
 
+    /**
+     * Tombstone: a deleted genre is hidden at once, its books are removed in the background.
+     */
+    @Column(name = "deleted", nullable = false)
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -50,6 +67,7 @@ public class Genre extends SuperEntity {
     public String toString() {
         return "Genre{" +
                 "id=" + getId() +
+                ", version=" + getVersion() +
                 ", name=" + getName() +
                 '}';
     }
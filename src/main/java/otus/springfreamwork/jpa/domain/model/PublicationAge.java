@@ -0,0 +1,108 @@
+package otus.springfreamwork.jpa.domain.model;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation-free age arithmetic for publication dates.
+ * "Today" is kept as a shared epoch day and recomputed only once the next local midnight has passed.
+ */
+public final class PublicationAge {
+
+    public static final int UNKNOWN = -1;
+
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+    private static final TimeZone ZONE = TimeZone.getDefault();
+
+    private static volatile Today today = Today.at(System.currentTimeMillis());
+
+    private PublicationAge() {}
+
+    public static int yearsSince(Date publishedDate) {
+        return yearsSince(publishedDate, todayEpochDay());
+    }
+
+    public static int yearsSince(Date publishedDate, int todayEpochDay) {
+        if (publishedDate == null) {
+            return UNKNOWN;
+        }
+        return yearsBetween(toEpochDay(publishedDate.getTime()), todayEpochDay);
+    }
+
+    /**
+     * The latest publication date of books that are at least {@code years} old today.
+     */
+    public static Date publishedYearsAgo(int years) {
+        Calendar calendar = Calendar.getInstance(ZONE);
+        calendar.setTimeInMillis(System.currentTimeMillis());
+        calendar.add(Calendar.YEAR, -years);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    public static int todayEpochDay() {
+        Today current = today;
+        long now = System.currentTimeMillis();
+        if (now >= current.nextMidnight) {
+            current = Today.at(now);
+            today = current;
+        }
+        return current.epochDay;
+    }
+
+    static int yearsBetween(int fromEpochDay, int toEpochDay) {
+        int from = civilDate(fromEpochDay);
+        int to = civilDate(toEpochDay);
+        int years = year(to) - year(from);
+        return monthDay(to) < monthDay(from) ? years - 1 : years;
+    }
+
+    static int toEpochDay(long millis) {
+        return (int) Math.floorDiv(millis + ZONE.getOffset(millis), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Converts an epoch day to a proleptic Gregorian date packed as {@code year * 10000 + month * 100 + day}.
+     */
+    static int civilDate(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static int year(int civilDate) {
+        return Math.floorDiv(civilDate, 10000);
+    }
+
+    private static int monthDay(int civilDate) {
+        return Math.floorMod(civilDate, 10000);
+    }
+
+    private static final class Today {
+        private final int epochDay;
+        private final long nextMidnight;
+
+        private Today(int epochDay, long nextMidnight) {
+            this.epochDay = epochDay;
+            this.nextMidnight = nextMidnight;
+        }
+
+        private static Today at(long millis) {
+            int epochDay = toEpochDay(millis);
+            long nextMidnightUtc = (epochDay + 1L) * MILLIS_PER_DAY;
+            return new Today(epochDay, nextMidnightUtc - ZONE.getOffset(nextMidnightUtc));
+        }
+    }
+}
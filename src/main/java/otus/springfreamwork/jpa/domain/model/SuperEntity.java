@@ -1,10 +1,12 @@
 package otus.springfreamwork.jpa.domain.model;
 
 import javax.persistence.Access;
+import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 
 import static javax.persistence.AccessType.PROPERTY;
 import static javax.persistence.GenerationType.IDENTITY;
@@ -13,10 +15,11 @@ import static javax.persistence.InheritanceType.JOINED;
 @MappedSuperclass
 @Inheritance(strategy = JOINED)
 @Access(PROPERTY)
-abstract class SuperEntity {
+abstract class SuperEntity implements Versioned {
 
     private int id;
     private String name;
+    private long version;
 
     @Id
     @GeneratedValue(strategy = IDENTITY)
@@ -35,4 +38,15 @@ abstract class SuperEntity {
     public void setName(String name) {
         this.name = name;
     }
+
+    @Override
+    @Version
+    @Column(name = "version", nullable = false)
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
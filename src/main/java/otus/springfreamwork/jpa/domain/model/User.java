@@ -0,0 +1,78 @@
+package otus.springfreamwork.jpa.domain.model;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Access;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Objects;
+
+import static javax.persistence.AccessType.PROPERTY;
+import static javax.persistence.GenerationType.IDENTITY;
+
+/**
+ * Author of comments. A name is stored once here and comments refer to it by id; rows are never renamed
+ * or removed, so a name always maps to the same id.
+ */
+@Entity
+@Immutable
+@BatchSize(size = 64)
+@Table(name = "users")
+@Access(PROPERTY)
+public class User {
+
+    private int id;
+    private String name;
+
+    public User() {}
+
+    public User(String name) {
+        this.name = name;
+    }
+
+    @Id
+    @GeneratedValue(strategy = IDENTITY)
+    @Column(name = "user_id")
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    @Column(name = "user_name", nullable = false, unique = true, length = 200)
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof User)) return false;
+        User user = (User) o;
+        return Objects.equals(getName(), user.getName());
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(getName());
+    }
+
+    @Override
+    public String toString() {
+        return "User{" +
+                "id=" + id +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
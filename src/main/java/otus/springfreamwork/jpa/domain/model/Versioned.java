@@ -0,0 +1,11 @@
+package otus.springfreamwork.jpa.domain.model;
+
+/**
+ * Entity guarded by an optimistic lock: every committed update increments its version.
+ */
+public interface Versioned {
+
+    int getId();
+
+    long getVersion();
+}
@@ -0,0 +1,96 @@
+package otus.springfreamwork.jpa.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import otus.springfreamwork.jpa.domain.model.Book;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Calendar.DAY_OF_YEAR;
+import static java.util.Calendar.YEAR;
+
+/**
+ * Simulates hydration of a page of books: the baseline computes the age eagerly
+ * with two {@link Calendar} instances per book, as the former {@code @PostLoad} listener did.
+ * Run from the IDE via {@link #main(String[])}; it is not picked up by surefire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookAgeBenchmark {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private Date[] publishedDates;
+
+    @Setup
+    public void init() {
+        publishedDates = new Date[PAGE_SIZE];
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            calendar.set(1800 + i % 220, i % 12, 1 + i % 28);
+            publishedDates[i] = calendar.getTime();
+        }
+    }
+
+    @Benchmark
+    public void loadWithEagerCalendarAge(Blackhole blackhole) {
+        for (Date publishedDate : publishedDates) {
+            Book book = new Book();
+            book.setPublishedDate(publishedDate);
+            blackhole.consume(book);
+            blackhole.consume(calendarAge(publishedDate));
+        }
+    }
+
+    @Benchmark
+    public void loadWithLazyAge(Blackhole blackhole) {
+        for (Date publishedDate : publishedDates) {
+            Book book = new Book();
+            book.setPublishedDate(publishedDate);
+            blackhole.consume(book);
+        }
+    }
+
+    @Benchmark
+    public void loadAndReadLazyAge(Blackhole blackhole) {
+        for (Date publishedDate : publishedDates) {
+            Book book = new Book();
+            book.setPublishedDate(publishedDate);
+            blackhole.consume(book);
+            blackhole.consume(book.getAgeYears());
+        }
+    }
+
+    private static int calendarAge(Date publishedDate) {
+        Calendar published = Calendar.getInstance();
+        published.setTime(publishedDate);
+        Calendar now = Calendar.getInstance();
+        int adjust = 0;
+        if (now.get(DAY_OF_YEAR) - published.get(DAY_OF_YEAR) < 0) {
+            adjust = -1;
+        }
+        return now.get(YEAR) - published.get(YEAR) + adjust;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BookAgeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
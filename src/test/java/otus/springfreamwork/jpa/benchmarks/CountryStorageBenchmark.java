@@ -0,0 +1,119 @@
+package otus.springfreamwork.jpa.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import otus.springfreamwork.jpa.com.repositories.converters.ConutryConverter;
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Simulates reading the country of a page of authors: the baseline decodes the column as the former
+ * {@code EnumType.STRING} mapping did, the other one through {@link ConutryConverter}. Given a PostgreSQL
+ * JDBC url, user and password, {@link #main(String[])} also fills a temporary table per layout and prints the
+ * measured {@code pg_column_size} and {@code pg_relation_size}, row alignment included. Run from the IDE;
+ * it is not picked up by surefire.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CountryStorageBenchmark {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int STORED_ROWS = 100_000;
+
+    private final ConutryConverter converter = new ConutryConverter();
+
+    private String[] names;
+    private Short[] codes;
+
+    @Setup
+    public void init() {
+        Conutry[] countries = Conutry.values();
+        names = new String[PAGE_SIZE];
+        codes = new Short[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Conutry country = countries[i % countries.length];
+            // A fresh string, as a result set hands it out.
+            names[i] = new String(country.name().toCharArray());
+            codes[i] = country.getCode();
+        }
+    }
+
+    @Benchmark
+    public void readAsString(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(Enum.valueOf(Conutry.class, name));
+        }
+    }
+
+    @Benchmark
+    public void readAsCode(Blackhole blackhole) {
+        for (Short code : codes) {
+            blackhole.consume(converter.convertToEntityAttribute(code));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, SQLException {
+        if (args.length == 3) {
+            try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+                printStorage(connection, "author_country", "varchar(255)", Conutry::name);
+                printStorage(connection, "author_country_code", "smallint", Conutry::getCode);
+            }
+        }
+        new Runner(new OptionsBuilder().include(CountryStorageBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static void printStorage(
+            Connection connection,
+            String column,
+            String type,
+            Function<Conutry, Object> value
+    ) throws SQLException {
+        String table = "stored_" + column;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE " + table + " (author_id integer NOT NULL, " + column + " " + type + ")");
+        }
+        Conutry[] countries = Conutry.values();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " VALUES (?, ?)")) {
+            for (int id = 1; id <= STORED_ROWS; id++) {
+                insert.setInt(1, id);
+                insert.setObject(2, value.apply(countries[id % countries.length]));
+                insert.addBatch();
+                if (id % PAGE_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet sizes = statement.executeQuery("SELECT avg(pg_column_size(t.*)), avg(pg_column_size(" + column
+                     + ")), pg_relation_size('" + table + "') FROM " + table + " t")) {
+            sizes.next();
+            System.out.printf("%s %s: %.1f bytes per row, %.1f bytes per value, %d bytes for %d rows%n",
+                    column, type, sizes.getDouble(1), sizes.getDouble(2), sizes.getLong(3), STORED_ROWS);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.dao.TestSpringBootConfiguration;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
+
+@SpringBootTest(classes = TestSpringBootConfiguration.class)
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+public class CatalogAnalyticsTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void analyticsShouldCountBooksByGenreAndYearWithinBounds() {
+        seed();
+        CatalogAnalytics analytics = new CatalogAnalytics(entityManagerFactory, cacheInvalidator);
+
+        assertEquals(Arrays.asList("novel 1869: 1", "novel 1877: 1", "poem null: 1", "poem 1833: 1"),
+                counts(analytics.countBooksByGenreAndYear(null, null, null)));
+        assertEquals(Arrays.asList("poem null: 1", "poem 1833: 1"),
+                counts(analytics.countBooksByGenreAndYear("poem", null, null)));
+        assertEquals(Collections.emptyList(), counts(analytics.countBooksByGenreAndYear("drama", null, null)));
+        assertEquals(Arrays.asList("novel 1869: 1", "poem 1833: 1"),
+                counts(analytics.countBooksByGenreAndYear(null, 1800, 1870)));
+        assertEquals(Collections.singletonList("novel 1877: 1"),
+                counts(analytics.countBooksByGenreAndYear(null, 1870, null)));
+        assertEquals(Collections.singletonList("poem 1833: 1"),
+                counts(analytics.countBooksByGenreAndYear("poem", null, 1850)));
+        assertEquals(Collections.emptyList(), counts(analytics.countBooksByGenreAndYear(null, 1900, 2000)));
+    }
+
+    @Test
+    public void analyticsShouldRefreshRowsChangedAfterTheFirstReport() {
+        seed();
+        CatalogAnalytics analytics = new CatalogAnalytics(entityManagerFactory, cacheInvalidator);
+        analytics.countBooksByGenreAndYear(null, null, null);
+
+        inTransaction(() -> {
+            bookRepository.insert(book("Resurrection", year(1877), genreRepository.getByName("novel")));
+            return null;
+        });
+        assertEquals(Arrays.asList("novel 1869: 1", "novel 1877: 2", "poem null: 1", "poem 1833: 1"),
+                counts(analytics.countBooksByGenreAndYear(null, null, null)));
+
+        inTransaction(() -> {
+            Book book = bookRepository.getByName("War And Piece");
+            return bookRepository.update(book.getId(), book.getVersion(), changed -> changed.setPublishedDate(year(1877)));
+        });
+        assertEquals(Arrays.asList("novel 1877: 3", "poem null: 1", "poem 1833: 1"),
+                counts(analytics.countBooksByGenreAndYear(null, null, null)));
+
+        inTransaction(() -> genreRepository.tombstoneByName("poem"));
+        assertEquals(Collections.singletonList("novel 1877: 3"),
+                counts(analytics.countBooksByGenreAndYear(null, null, null)));
+        assertEquals(Collections.emptyList(), counts(analytics.countBooksByGenreAndYear("poem", null, null)));
+    }
+
+    private void seed() {
+        inTransaction(() -> {
+            Genre novel = new Genre("novel");
+            Genre poem = new Genre("poem");
+            bookRepository.insert(book("War And Piece", year(1869), novel));
+            bookRepository.insert(book("Anna Karenina", year(1877), novel));
+            bookRepository.insert(book("Eugene Onegin", year(1833), poem));
+            bookRepository.insert(book("Poltava", null, poem));
+            return null;
+        });
+    }
+
+    private <R> R inTransaction(Supplier<R> work) {
+        return new TransactionTemplate(transactionManager).execute(status -> work.get());
+    }
+
+    private static Book book(String name, Date publishedDate, Genre genre) {
+        return new Book(name, publishedDate, Collections.singletonMap(1, "partOne"),
+                Collections.singleton(new Author(name, "Author", RUSSIA)), genre);
+    }
+
+    private static Date year(int year) {
+        return new GregorianCalendar(year, 5, 15).getTime();
+    }
+
+    private static List<String> counts(List<GenreYearCount> counts) {
+        return counts.stream()
+                .map(count -> count.getGenre() + " " + count.getYear() + ": " + count.getCount())
+                .collect(Collectors.toList());
+    }
+}
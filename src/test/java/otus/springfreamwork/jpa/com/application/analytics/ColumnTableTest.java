@@ -0,0 +1,45 @@
+package otus.springfreamwork.jpa.com.application.analytics;
+
+import org.junit.Test;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ColumnTableTest {
+
+    @Test
+    public void mergeShouldReplaceAddAndRemoveRowsInIdOrder() {
+        SortedMap<Integer, int[]> rows = new TreeMap<>();
+        rows.put(1, new int[]{10, 100});
+        rows.put(3, new int[]{30, 300});
+        rows.put(5, new int[]{50, 500});
+        ColumnTable table = ColumnTable.of(rows, 2);
+
+        SortedMap<Integer, int[]> changed = new TreeMap<>();
+        changed.put(2, new int[]{20, 200});
+        changed.put(3, null);
+        changed.put(5, new int[]{55, 555});
+        changed.put(7, null);
+        ColumnTable merged = table.merge(changed, 2);
+
+        assertArrayEquals(new int[]{1, 2, 5}, merged.ids);
+        assertArrayEquals(new int[]{10, 20, 55}, merged.columns[0]);
+        assertArrayEquals(new int[]{100, 200, 555}, merged.columns[1]);
+        assertArrayEquals(new int[]{1, 3, 5}, table.ids);
+    }
+
+    @Test
+    public void scanShouldCountGroupsAcrossTasks() {
+        SortedMap<Integer, int[]> rows = new TreeMap<>();
+        for (int id = 0; id < 100_000; id++) {
+            rows.put(id, new int[]{id % 3});
+        }
+        ColumnTable table = ColumnTable.of(rows, 1);
+
+        long[] counts = ColumnScan.count(table, 3, (scanned, row) -> row % 2 == 0 ? scanned.column(0, row) : -1);
+
+        assertArrayEquals(new long[]{16_667, 16_666, 16_667}, counts);
+    }
+}
@@ -0,0 +1,60 @@
+package otus.springfreamwork.jpa.com.application.dedupe;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class LshIndexTest {
+
+    private static final String SPAM = "Best prices for rare books only today, visit our shop and get a discount";
+
+    private final MinHash minHash = new MinHash(128, 5);
+
+    @Test
+    public void minHashShouldIgnoreCaseAndPunctuation() {
+        assertEquals("best prices for rare books", MinHash.normalize("  BEST prices -- for rare books!!!"));
+        assertEquals(1.0, MinHash.similarity(signature(SPAM), signature(SPAM.toUpperCase() + "!!!")), 0);
+    }
+
+    @Test
+    public void minHashShouldSkipShortTexts() {
+        assertNull(minHash.signature("great book", 20));
+    }
+
+    @Test
+    public void indexShouldFindNearDuplicateOnly() {
+        LshIndex index = new LshIndex(16, 8);
+        index.put(1, signature(SPAM));
+        index.put(2, signature("The translation of the second volume is much better than the first one"));
+
+        assertEquals(Integer.valueOf(1), index.find(signature(SPAM.replace("today", "tonight")), 0.8));
+        assertNull(index.find(signature("I did not expect the ending, the last chapter changes everything"), 0.8));
+
+        index.remove(1);
+        assertNull(index.find(signature(SPAM), 0.8));
+    }
+
+    @Test
+    public void duplicatesShouldPointToEarliestOriginal() {
+        LshIndex index = new LshIndex(16, 8);
+        index.put(3, signature(SPAM + " 1"));
+        index.put(1, signature(SPAM));
+        index.put(2, signature("The translation of the second volume is much better than the first one"));
+        index.put(4, signature(SPAM + "!"));
+
+        Map<Integer, Integer> duplicates = index.duplicates(0.8);
+
+        assertEquals(2, duplicates.size());
+        assertEquals(Integer.valueOf(1), duplicates.get(3));
+        assertEquals(Integer.valueOf(1), duplicates.get(4));
+        assertFalse(duplicates.containsKey(2));
+    }
+
+    private int[] signature(String text) {
+        return minHash.signature(text, 20);
+    }
+}
@@ -0,0 +1,249 @@
+package otus.springfreamwork.jpa.com.application.faststart;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import otus.springfreamwork.jpa.JpaOtusSpringfreamworkApplication;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.dao.TestSpringBootConfiguration;
+import otus.springfreamwork.jpa.domain.model.Comment;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class FastStartTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastStartTest.class);
+    private static final String STARTUP_MARKER = "startup-ms=";
+    private static final int STARTUP_ROUNDS = 3;
+    private static final int STARTUP_TIMEOUT_SECONDS = 120;
+    /**
+     * Forking the JVMs takes a while, so the timing runs only when asked for: {@code -Dfaststart.timing=true}.
+     */
+    private static final String TIMING_PROPERTY = "faststart.timing";
+
+    @Test
+    public void fastStartShouldCreateApplicationBeansOnFirstUse() {
+        try (ConfigurableApplicationContext context = start(TestSpringBootConfiguration.class)) {
+            assertTrue(context.getBeanFactory().containsSingleton("commentRepositoryImpl"));
+        }
+
+        try (ConfigurableApplicationContext context = start(TestSpringBootConfiguration.class, LazyApplicationBeans.class)) {
+            assertTrue(context.getBeanFactory().containsSingleton("entityManagerFactory"));
+            assertFalse(context.getBeanFactory().containsSingleton("commentRepositoryImpl"));
+
+            context.getBean("commentRepositoryImpl");
+            assertTrue(context.getBeanFactory().containsSingleton("commentRepositoryImpl"));
+        }
+    }
+
+    @Test
+    public void fastStartShouldResolveCommentUsers() {
+        try (ConfigurableApplicationContext context = start(TestSpringBootConfiguration.class, LazyApplicationBeans.class)) {
+            CommentRepository commentRepository = context.getBean(CommentRepository.class);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            transactionTemplate.execute(status -> {
+                commentRepository.insert(new Comment("user", "so good"));
+                return null;
+            });
+
+            List<Comment> comments = transactionTemplate.execute(status -> commentRepository.getByUsername("user"));
+            assertEquals(1, comments.size());
+            assertEquals("user", comments.get(0).getUsername());
+        }
+    }
+
+    /**
+     * Each start runs in a fresh JVM, so neither mode profits from classes loaded and JIT-compiled by the other;
+     * the modes alternate so that neither always runs on a warmer disk cache, and the medians are compared.
+     */
+    @Test
+    public void fastStartShouldBeTimedInFreshJvms() throws Exception {
+        assumeTrue(Boolean.getBoolean(TIMING_PROPERTY));
+        List<Long> defaultStarts = new ArrayList<>();
+        List<Long> fastStarts = new ArrayList<>();
+        for (int round = 0; round < STARTUP_ROUNDS; round++) {
+            boolean lazyFirst = round % 2 == 1;
+            (lazyFirst ? fastStarts : defaultStarts).add(startInFreshJvm(lazyFirst));
+            (lazyFirst ? defaultStarts : fastStarts).add(startInFreshJvm(!lazyFirst));
+        }
+        long defaultStart = median(defaultStarts);
+        long fastStart = median(fastStarts);
+        LOGGER.info("Startup medians of {} fresh JVMs: {} ms by default, {} ms with lazy application beans, {} ms saved",
+                STARTUP_ROUNDS, defaultStart, fastStart, defaultStart - fastStart);
+    }
+
+    @Test
+    public void commandShouldStartAtFirstNonOptionArgument() {
+        assertEquals(Arrays.asList("addBook", "--name", "Война и мир"), SingleCommandRunner.command(
+                new DefaultApplicationArguments(new String[]{"--spring.profiles.active=fast-start", "addBook", "--name", "Война и мир"})));
+        assertEquals(Collections.emptyList(), SingleCommandRunner.command(
+                new DefaultApplicationArguments(new String[]{"--spring.profiles.active=fast-start"})));
+        assertEquals(Collections.emptyList(), SingleCommandRunner.command(
+                new DefaultApplicationArguments(new String[]{"@commands.txt"})));
+    }
+
+    @Test
+    public void stampShouldChangeWithChangelogAndAppliedChangesets() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:fast-start;DB_CLOSE_DELAY=-1");
+        Resource changeLog = changeLog("databaseChangeLog: []");
+
+        SchemaStamp unmigrated = SchemaStamp.read(dataSource, changeLog, null, FastStartTest.class);
+        execute(dataSource, "CREATE TABLE databasechangelog (id VARCHAR(255), dateexecuted TIMESTAMP)");
+        execute(dataSource, "INSERT INTO databasechangelog VALUES ('1', CURRENT_TIMESTAMP)");
+        SchemaStamp migrated = SchemaStamp.read(dataSource, changeLog, null, FastStartTest.class);
+
+        assertFalse(unmigrated.sameSchema(migrated));
+        assertTrue(migrated.sameSchema(SchemaStamp.read(dataSource, changeLog, null, FastStartTest.class)));
+        assertFalse(migrated.sameSchema(SchemaStamp.read(dataSource, changeLog("databaseChangeLog: [{}]"), null, FastStartTest.class)));
+
+        Path file = Files.createTempDirectory("fast-start").resolve("schema.stamp");
+        migrated.withManagedClassNames(Arrays.asList("a.Book", "a.Author")).save(file);
+        SchemaStamp saved = SchemaStamp.load(file);
+        assertTrue(saved.sameSchema(migrated));
+        assertEquals(Arrays.asList("a.Book", "a.Author"), saved.getManagedClassNames());
+    }
+
+    @Test
+    public void postProcessorShouldSkipChecksWhileSavedStampMatches() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:fast-start-skip;DB_CLOSE_DELAY=-1");
+        Path directory = Files.createTempDirectory("fast-start");
+        Path changeLog = Files.write(directory.resolve("changelog.yaml"),
+                "databaseChangeLog: []".getBytes(StandardCharsets.UTF_8));
+        Path stamp = directory.resolve("schema.stamp");
+        SchemaStamp.read(dataSource, new FileSystemResource(changeLog.toFile()), null, JpaOtusSpringfreamworkApplication.class)
+                .withManagedClassNames(Collections.singletonList("a.Book"))
+                .save(stamp);
+        FastStartProperties properties = new FastStartProperties();
+        properties.setStamp(stamp.toString());
+
+        RecordingLiquibase liquibase = liquibase(dataSource, changeLog);
+        LocalContainerEntityManagerFactoryBean entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        FastStartPostProcessor postProcessor = new FastStartPostProcessor(properties);
+        postProcessor.postProcessBeforeInitialization(liquibase, "liquibase");
+        postProcessor.postProcessBeforeInitialization(entityManagerFactory, "entityManagerFactory");
+        assertFalse(liquibase.runs());
+        assertEquals("none", entityManagerFactory.getJpaPropertyMap().get("hibernate.hbm2ddl.auto"));
+
+        Files.write(changeLog, "databaseChangeLog: [{}]".getBytes(StandardCharsets.UTF_8));
+        liquibase = liquibase(dataSource, changeLog);
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        postProcessor = new FastStartPostProcessor(properties);
+        postProcessor.postProcessBeforeInitialization(liquibase, "liquibase");
+        postProcessor.postProcessBeforeInitialization(entityManagerFactory, "entityManagerFactory");
+        assertTrue(liquibase.runs());
+        assertNull(entityManagerFactory.getJpaPropertyMap().get("hibernate.hbm2ddl.auto"));
+    }
+
+    /**
+     * Started by {@link #startInFreshJvm(boolean)}: prints the startup time and whether application beans
+     * were created eagerly.
+     */
+    public static void main(String[] args) {
+        boolean lazy = Boolean.parseBoolean(args[0]);
+        long started = System.nanoTime();
+        try (ConfigurableApplicationContext context = lazy
+                ? start(TestSpringBootConfiguration.class, LazyApplicationBeans.class)
+                : start(TestSpringBootConfiguration.class)) {
+            long elapsed = (System.nanoTime() - started) / 1_000_000;
+            System.out.println(STARTUP_MARKER + elapsed + " " + context.getBeanFactory().containsSingleton("commentRepositoryImpl"));
+        }
+    }
+
+    /**
+     * @return startup time in milliseconds
+     */
+    private static long startInFreshJvm(boolean lazy) throws Exception {
+        Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                FastStartTest.class.getName(),
+                String.valueOf(lazy))
+                .redirectErrorStream(true)
+                .start();
+        String result = null;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = output.readLine(); line != null; line = output.readLine()) {
+                if (line.startsWith(STARTUP_MARKER)) {
+                    result = line.substring(STARTUP_MARKER.length());
+                }
+            }
+        }
+        assertTrue(process.waitFor(STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue());
+        assertNotNull(result);
+        String[] timeAndEager = result.split(" ");
+        assertEquals(!lazy, Boolean.parseBoolean(timeAndEager[1]));
+        return Long.parseLong(timeAndEager[0]);
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static ConfigurableApplicationContext start(Class<?>... sources) {
+        return new SpringApplicationBuilder(sources).web(WebApplicationType.NONE).run();
+    }
+
+    private static RecordingLiquibase liquibase(JdbcDataSource dataSource, Path changeLog) {
+        RecordingLiquibase liquibase = new RecordingLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.setChangeLog(changeLog.toUri().toString());
+        return liquibase;
+    }
+
+    private static Resource changeLog(String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void execute(JdbcDataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static final class RecordingLiquibase extends SpringLiquibase {
+
+        boolean runs() {
+            return shouldRun;
+        }
+    }
+}
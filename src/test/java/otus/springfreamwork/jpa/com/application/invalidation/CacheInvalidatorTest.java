@@ -0,0 +1,98 @@
+package otus.springfreamwork.jpa.com.application.invalidation;
+
+import org.junit.Before;
+import org.junit.Test;
+import otus.springfreamwork.jpa.com.application.invalidation.Invalidation.Region;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheInvalidatorTest {
+
+    private CacheInvalidator node;
+    private CacheInvalidator otherNode;
+    private List<InvalidationBatch> local;
+    private List<InvalidationBatch> remote;
+
+    @Before
+    public void init() {
+        LoopbackInvalidationBus.Hub hub = new LoopbackInvalidationBus.Hub();
+        node = new CacheInvalidator(new LoopbackInvalidationBus(hub), 2);
+        otherNode = new CacheInvalidator(new LoopbackInvalidationBus(hub), 2);
+        local = new ArrayList<>();
+        remote = new ArrayList<>();
+        node.addListener((batch, isRemote) -> (isRemote ? remote : local).add(batch));
+        otherNode.addListener((batch, isRemote) -> (isRemote ? remote : local).add(batch));
+    }
+
+    @Test
+    public void cacheInvalidatorShouldDeliverLocallyAndToOtherNodesOnly() {
+        node.invalidate(Invalidation.entity(Region.BOOK, 1), Invalidation.naturalKey(Region.BOOK_NAME, "War And Piece"));
+
+        assertEquals(1, local.size());
+        assertEquals(1, remote.size());
+        assertEquals(node.getNodeId(), remote.get(0).getOrigin());
+        assertEquals(Collections.singleton("1"), remote.get(0).getKeys(Region.BOOK));
+        assertEquals(Collections.singleton("War And Piece"), remote.get(0).getKeys(Region.BOOK_NAME));
+    }
+
+    @Test
+    public void batchShouldCollapseRegionWithTooManyKeys() {
+        InvalidationBatch batch = InvalidationBatch.of("node", Arrays.asList(
+                Invalidation.entity(Region.BOOK, 1),
+                Invalidation.entity(Region.BOOK, 2),
+                Invalidation.entity(Region.BOOK, 2),
+                Invalidation.entity(Region.AUTHOR, 1),
+                Invalidation.entity(Region.AUTHOR, 2),
+                Invalidation.entity(Region.AUTHOR, 3),
+                Invalidation.entity(Region.GENRE, 1),
+                Invalidation.all(Region.GENRE)
+        ), 2);
+
+        assertEquals(new HashSet<>(Arrays.asList("1", "2")), batch.getKeys(Region.BOOK));
+        assertTrue(batch.isWholeRegion(Region.AUTHOR));
+        assertTrue(batch.getKeys(Region.AUTHOR).isEmpty());
+        assertTrue(batch.isWholeRegion(Region.GENRE));
+        assertFalse(batch.isWholeRegion(Region.BOOK));
+    }
+
+    @Test
+    public void postgresPayloadShouldRoundTripAndSplitAtSizeLimit() {
+        InvalidationBatch batch = InvalidationBatch.of("node", Arrays.asList(
+                Invalidation.entity(Region.BOOK, 1),
+                Invalidation.naturalKey(Region.AUTHOR_NAME, "Leo", "Tolstoy"),
+                Invalidation.all(Region.COMMENT)
+        ), 10);
+
+        List<String> payloads = PostgresInvalidationBus.encode(batch, PostgresInvalidationBus.MAX_PAYLOAD_BYTES);
+        assertEquals(1, payloads.size());
+        InvalidationBatch decoded = PostgresInvalidationBus.decode(payloads.get(0), 10);
+        assertEquals("node", decoded.getOrigin());
+        assertEquals(new HashSet<>(batch.toInvalidations()), new HashSet<>(decoded.toInvalidations()));
+
+        List<String> small = PostgresInvalidationBus.encode(batch, 20);
+        assertEquals(3, small.size());
+        InvalidationBatch merged = PostgresInvalidationBus.decode(small.get(0), 10);
+        for (String payload : small.subList(1, small.size())) {
+            merged = merged.merge(PostgresInvalidationBus.decode(payload, 10), 10);
+        }
+        assertTrue(merged.isWholeRegion(Region.AUTHOR_NAME));
+        assertEquals(Collections.singleton("1"), merged.getKeys(Region.BOOK));
+    }
+
+    @Test
+    public void postgresPayloadShouldBeSkippedWhenUnreadable() {
+        assertNull(PostgresInvalidationBus.decodeOrSkip("node\nPUBLISHER\tMQ==", 10));
+        assertNull(PostgresInvalidationBus.decodeOrSkip("node\nBOOK\t%%%", 10));
+        assertNotNull(PostgresInvalidationBus.decodeOrSkip("node\nBOOK\tMQ==", 10));
+    }
+}
@@ -0,0 +1,91 @@
+package otus.springfreamwork.jpa.com.application.purge;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.dao.TombstoneRepository;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TombstonePurgerTest {
+
+    @Mock
+    private GenreRepository genreRepository;
+    @Mock
+    private AuthorRepository authorRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TombstonePurger purger;
+
+    @Before
+    public void init() {
+        TombstonePurgeProperties properties = new TombstonePurgeProperties();
+        properties.setChunkSize(2);
+        properties.setPauseMs(0);
+        Map<PurgeProgress.Kind, TombstoneRepository> repositories = new EnumMap<>(PurgeProgress.Kind.class);
+        repositories.put(PurgeProgress.Kind.GENRE, genreRepository);
+        repositories.put(PurgeProgress.Kind.AUTHOR, authorRepository);
+        purger = new TombstonePurger(repositories, transactionManager, properties);
+
+        when(genreRepository.getTombstonedIds()).thenReturn(Collections.singletonList(7));
+        when(genreRepository.countDependents(7)).thenReturn(3L);
+        when(authorRepository.getTombstonedIds()).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void purgerShouldRemoveDependentsInChunksAndReportProgress() {
+        when(genreRepository.purgeChunk(7, 2)).thenReturn(2, 1, 0);
+
+        purger.purgeAll();
+
+        verify(genreRepository, times(3)).purgeChunk(7, 2);
+        verify(transactionManager, times(3)).commit(any());
+        List<PurgeProgress> progress = purger.getProgress();
+        assertEquals(1, progress.size());
+        assertEquals(PurgeProgress.Kind.GENRE, progress.get(0).getKind());
+        assertEquals(7, progress.get(0).getId());
+        assertEquals(3, progress.get(0).getTotal());
+        assertEquals(3, progress.get(0).getRemoved());
+        assertTrue(progress.get(0).isFinished());
+    }
+
+    @Test
+    public void purgerShouldContinueAfterFailedChunk() {
+        when(genreRepository.purgeChunk(7, 2))
+                .thenReturn(2)
+                .thenThrow(new IllegalStateException("lock timeout"))
+                .thenReturn(1, 0);
+
+        purger.purgeAll();
+
+        PurgeProgress progress = purger.getProgress().get(0);
+        assertEquals(2, progress.getRemoved());
+        assertFalse(progress.isFinished());
+        verify(transactionManager, times(1)).rollback(any());
+
+        purger.purgeAll();
+
+        assertEquals(1, purger.getProgress().size());
+        assertEquals(3, progress.getRemoved());
+        assertTrue(progress.isFinished());
+        verify(genreRepository, times(1)).countDependents(7);
+    }
+}
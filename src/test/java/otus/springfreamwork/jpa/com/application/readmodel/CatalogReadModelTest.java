@@ -0,0 +1,285 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionTemplate;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.com.application.services.AuthorServiceImpl;
+import otus.springfreamwork.jpa.com.application.services.BookServiceImpl;
+import otus.springfreamwork.jpa.com.application.services.GenreServiceImpl;
+import otus.springfreamwork.jpa.com.application.services.ReadModelAuthorService;
+import otus.springfreamwork.jpa.com.application.services.ReadModelBookService;
+import otus.springfreamwork.jpa.com.application.services.ReadModelGenreService;
+import otus.springfreamwork.jpa.domain.application.services.AuthorService;
+import otus.springfreamwork.jpa.domain.application.services.BookService;
+import otus.springfreamwork.jpa.domain.application.services.GenreService;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.dao.TestSpringBootConfiguration;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.Comment;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
+
+@SpringBootTest(classes = TestSpringBootConfiguration.class)
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+public class CatalogReadModelTest {
+
+    private static final String[] BOOK_NAMES = {"War And Piece", "War And Peace", "Anna Karenina", "Eugene Onegin", "Resurrection"};
+    private static final String[] GENRE_NAMES = {"novel", "poem"};
+    private static final String[][] AUTHOR_NAMES = {{"Leo", "Tolstoy"}, {"Alexander", "Pushkin"}, {"Fyodor", "Dostoevsky"}};
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private AuthorRepository authorRepository;
+    @Autowired
+    private GenreRepository genreRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CatalogReadModel readModel;
+
+    @After
+    public void shutdown() {
+        if (readModel != null) {
+            readModel.stop();
+        }
+    }
+
+    @Test
+    public void readModelShouldFollowCommittedChanges() {
+        seed();
+        startReadModel();
+        assertSameAsRepositories();
+
+        inTransaction(() -> {
+            // The new author is inserted by cascade and comes without an invalidation of its own.
+            bookRepository.insert(book("Resurrection", new Author("Fyodor", "Dostoevsky", RUSSIA), genreRepository.getByName("novel")));
+            return null;
+        });
+        assertSameAsRepositories();
+
+        inTransaction(() -> {
+            Book book = bookRepository.getByName("War And Piece");
+            return bookRepository.update(book.getId(), book.getVersion(), changed -> changed.setName("War And Peace"));
+        });
+        assertSameAsRepositories();
+
+        inTransaction(() -> {
+            commentRepository.insertForBook(new Comment("user3", "so so"), bookRepository.getIdByName("Anna Karenina"));
+            return null;
+        });
+        assertSameAsRepositories();
+
+        inTransaction(() -> {
+            bookRepository.deleteByName("Eugene Onegin");
+            return null;
+        });
+        assertSameAsRepositories();
+
+        inTransaction(() -> authorRepository.tombstoneByNameAndSurname("Fyodor", "Dostoevsky"));
+        assertSameAsRepositories();
+
+        inTransaction(() -> genreRepository.tombstoneByName("novel"));
+        assertSameAsRepositories();
+        assertEquals(0, readModel.countBooks());
+    }
+
+    @Test
+    public void readModelServicesShouldAnswerLikeDatabaseServices() {
+        seed();
+        startReadModel();
+        BookService bookService = new BookServiceImpl(bookRepository, authorRepository, genreRepository, commentRepository);
+        AuthorService authorService = new AuthorServiceImpl(authorRepository, null);
+        GenreService genreService = new GenreServiceImpl(genreRepository, bookRepository, null);
+        BookService readModelBookService = new ReadModelBookService(bookService, readModel);
+        AuthorService readModelAuthorService = new ReadModelAuthorService(authorService, readModel);
+        GenreService readModelGenreService = new ReadModelGenreService(genreService, readModel);
+        List<Integer> ids = inTransaction(() -> Arrays.asList(
+                bookRepository.getIdByName("Eugene Onegin"), -1, bookRepository.getIdByName("War And Piece")));
+
+        inTransaction(() -> {
+            assertEquals(bookService.getAllBooks(), readModelBookService.getAllBooks());
+            assertEquals(bookService.countBooks(), readModelBookService.countBooks());
+            assertEquals(bookService.getBook("War And Piece"), readModelBookService.getBook("War And Piece"));
+            assertEquals(bookService.getBook("Resurrection"), readModelBookService.getBook("Resurrection"));
+            assertEquals(bookService.getBooksByIds(ids), readModelBookService.getBooksByIds(ids));
+            assertEquals(bookService.getBooksByAuthorNameAndSurname("Leo", "Tolstoy"),
+                    readModelBookService.getBooksByAuthorNameAndSurname("Leo", "Tolstoy"));
+            assertEquals(bookService.getBooksByAuthorNameAndSurname("Fyodor", "Dostoevsky"),
+                    readModelBookService.getBooksByAuthorNameAndSurname("Fyodor", "Dostoevsky"));
+            assertEquals(bookService.getBooksByGenreName("novel"), readModelBookService.getBooksByGenreName("novel"));
+            assertEquals(bookService.getBooksByGenreName("drama"), readModelBookService.getBooksByGenreName("drama"));
+            assertEquals(bookService.getCommentsOnBook("War And Piece"), readModelBookService.getCommentsOnBook("War And Piece"));
+            assertEquals(bookService.getCommentsOnBook("Anna Karenina"), readModelBookService.getCommentsOnBook("Anna Karenina"));
+
+            assertEquals(authorService.getAllAuthors(), readModelAuthorService.getAllAuthors());
+            assertEquals(authorService.countAuthors(), readModelAuthorService.countAuthors());
+            assertEquals(authorService.getAuthor("Alexander", "Pushkin"), readModelAuthorService.getAuthor("Alexander", "Pushkin"));
+            assertEquals(authorService.getAuthor("Fyodor", "Dostoevsky"), readModelAuthorService.getAuthor("Fyodor", "Dostoevsky"));
+
+            assertEquals(genreService.getAllGenres(), readModelGenreService.getAllGenres());
+            assertEquals(genreService.countGenres(), readModelGenreService.countGenres());
+            assertEquals(genreService.getGenre("poem"), readModelGenreService.getGenre("poem"));
+            assertEquals(genreService.getGenre("drama"), readModelGenreService.getGenre("drama"));
+            return null;
+        });
+    }
+
+    @Test
+    public void readModelServicesShouldSeeTheirOwnWrites() {
+        seed();
+        startReadModel();
+        BookService bookService = transactional(
+                new BookServiceImpl(bookRepository, authorRepository, genreRepository, commentRepository), BookService.class);
+        AuthorService authorService = transactional(new AuthorServiceImpl(authorRepository, null), AuthorService.class);
+        GenreService genreService = transactional(new GenreServiceImpl(genreRepository, bookRepository, null), GenreService.class);
+        BookService readModelBookService = new ReadModelBookService(bookService, readModel);
+        AuthorService readModelAuthorService = new ReadModelAuthorService(authorService, readModel);
+        GenreService readModelGenreService = new ReadModelGenreService(genreService, readModel);
+
+        readModelGenreService.createGenreByName("drama");
+        assertEquals(genreService.getGenre("drama"), readModelGenreService.getGenre("drama"));
+        readModelAuthorService.createAuthorByNameAndSurname("Fyodor", "Dostoevsky");
+        assertEquals(authorService.getAuthor("Fyodor", "Dostoevsky"), readModelAuthorService.getAuthor("Fyodor", "Dostoevsky"));
+        readModelBookService.deleteBook("Anna Karenina");
+        assertEquals(bookService.getBook("Anna Karenina"), readModelBookService.getBook("Anna Karenina"));
+        assertEquals(bookService.countBooks(), readModelBookService.countBooks());
+    }
+
+    /**
+     * Services are created by hand here, so they get the transaction proxy Spring would put around them.
+     */
+    private <S> S transactional(S service, Class<S> type) {
+        ProxyFactory proxyFactory = new ProxyFactory(service);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        return type.cast(proxyFactory.getProxy());
+    }
+
+    private void startReadModel() {
+        readModel = new CatalogReadModel(entityManagerFactory, cacheInvalidator, new CatalogReadModelProperties());
+        readModel.start();
+    }
+
+    private void seed() {
+        inTransaction(() -> {
+            Genre novel = new Genre("novel");
+            Genre poem = new Genre("poem");
+            Author tolstoy = new Author("Leo", "Tolstoy", RUSSIA);
+            Author pushkin = new Author("Alexander", "Pushkin", RUSSIA);
+            Book war = book("War And Piece", tolstoy, novel);
+            Book anna = book("Anna Karenina", tolstoy, novel);
+            Book onegin = book("Eugene Onegin", pushkin, poem);
+            bookRepository.insert(war);
+            bookRepository.insert(anna);
+            bookRepository.insert(onegin);
+            commentRepository.insertForBook(new Comment("user", "so good"), war.getId());
+            commentRepository.insertForBook(new Comment("user2", "so bad"), war.getId());
+            commentRepository.insertForBook(new Comment("user", "so so"), onegin.getId());
+            return null;
+        });
+    }
+
+    private void assertSameAsRepositories() {
+        readModel.awaitUpdates();
+        inTransaction(() -> {
+            assertEquals(books(bookRepository.getAll()), books(readModel.getAllBooks()));
+            assertEquals(bookRepository.count(), readModel.countBooks());
+            assertEquals(authorRepository.count(), readModel.countAuthors());
+            assertEquals(genreRepository.count(), readModel.countGenres());
+            assertEquals(authors(authorRepository.getAll()), authors(readModel.getAllAuthors()));
+            assertEquals(genres(genreRepository.getAll()), genres(readModel.getAllGenres()));
+            for (String name : BOOK_NAMES) {
+                assertEquals(books(nullable(bookRepository.getByName(name))), books(nullable(readModel.getBookByName(name))));
+                assertEquals(comments(commentRepository.getByBookName(name)), comments(readModel.getCommentsOnBook(name)));
+            }
+            for (String name : GENRE_NAMES) {
+                assertEquals(books(bookRepository.getByGenreName(name)), books(readModel.getBooksByGenreName(name)));
+                assertEquals(genres(nullable(genreRepository.getByName(name))), genres(nullable(readModel.getGenreByName(name))));
+            }
+            for (String[] name : AUTHOR_NAMES) {
+                assertEquals(books(bookRepository.getByAuthorNameAndSurname(name[0], name[1])),
+                        books(readModel.getBooksByAuthor(name[0], name[1])));
+                assertEquals(authors(nullable(authorRepository.getByNameAndSurname(name[0], name[1]))),
+                        authors(nullable(readModel.getAuthor(name[0], name[1]))));
+            }
+            return null;
+        });
+    }
+
+    private <R> R inTransaction(Supplier<R> work) {
+        return new TransactionTemplate(transactionManager).execute(status -> work.get());
+    }
+
+    private static Book book(String name, Author author, Genre genre) {
+        return new Book(name, new GregorianCalendar(1869, 0, 1).getTime(), Collections.singletonMap(1, "partOne"),
+                Collections.singleton(author), genre);
+    }
+
+    private static <T> List<T> nullable(T entity) {
+        return entity == null ? Collections.emptyList() : Collections.singletonList(entity);
+    }
+
+    private static List<String> books(List<Book> books) {
+        return books.stream()
+                .sorted(Comparator.comparingInt(Book::getId))
+                .map(book -> book.getId() + "|" + book.getName() + "|" + book.getVersion() + "|" + book.getGenre().getId()
+                        + "|" + book.getAuthors().stream().map(Author::getId).sorted().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> authors(List<Author> authors) {
+        return authors.stream()
+                .sorted(Comparator.comparingInt(Author::getId))
+                .map(author -> author.getId() + "|" + author.getName() + "|" + author.getSurname() + "|" + author.getVersion())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> genres(List<Genre> genres) {
+        return genres.stream()
+                .sorted(Comparator.comparingInt(Genre::getId))
+                .map(genre -> genre.getId() + "|" + genre.getName() + "|" + genre.getVersion())
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> comments(List<Comment> comments) {
+        return comments.stream()
+                .sorted(Comparator.comparingInt(Comment::getId))
+                .map(comment -> comment.getId() + "|" + comment.getUsername() + "|" + comment.getComment() + "|"
+                        + comment.getVersion() + "|"
+                        + comment.getBooks().stream().map(Book::getId).sorted().collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+}
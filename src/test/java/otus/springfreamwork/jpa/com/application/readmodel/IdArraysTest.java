@@ -0,0 +1,32 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+public class IdArraysTest {
+
+    @Test
+    public void withKeepsIdsSortedAndDistinct() {
+        int[] ids = IdArrays.with(IdArrays.with(IdArrays.with(IdArrays.EMPTY, 5), 1), 3);
+
+        assertArrayEquals(new int[]{1, 3, 5}, ids);
+        assertSame(ids, IdArrays.with(ids, 3));
+    }
+
+    @Test
+    public void withoutLeavesTheGivenArrayUnchanged() {
+        int[] ids = {1, 3, 5};
+
+        assertArrayEquals(new int[]{1, 5}, IdArrays.without(ids, 3));
+        assertArrayEquals(new int[]{1, 3, 5}, ids);
+        assertSame(ids, IdArrays.without(ids, 4));
+    }
+
+    @Test
+    public void unionMergesSortedArrays() {
+        assertArrayEquals(new int[]{1, 2, 3, 7}, IdArrays.union(new int[]{1, 3}, new int[]{2, 3, 7}, IdArrays.EMPTY));
+        assertArrayEquals(IdArrays.EMPTY, IdArrays.union());
+    }
+}
@@ -0,0 +1,88 @@
+package otus.springfreamwork.jpa.com.application.readmodel;
+
+import org.junit.Test;
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ReadModelSnapshotTest {
+
+    @Test
+    public void snapshotShouldBeReadBackAsWritten() throws IOException {
+        ReadModelSnapshot written = snapshot();
+        Path file = Files.createTempDirectory("read-model").resolve("catalog.snapshot");
+        written.write(file);
+
+        ReadModelSnapshot read = ReadModelSnapshot.read(file);
+
+        assertArrayEquals(written.stamp, read.stamp);
+        assertEquals("Роман", read.genres.get(0).name);
+        AuthorRow author = read.authors.get(0);
+        assertEquals("Лев", author.name);
+        assertEquals(Conutry.RUSSIA, author.conutry);
+        assertNull(read.authors.get(1).conutry);
+        BookRow book = read.books.get(0);
+        assertEquals("Война и мир", book.name);
+        assertEquals(BookRow.NO_DATE, book.publishedDate);
+        assertNull(book.encodedParts);
+        assertArrayEquals(new int[]{1, 2}, book.authorIds);
+        CommentRow comment = read.comments.get(0);
+        assertNull(comment.username);
+        assertEquals("Длинно, но 👍", comment.comment);
+        assertArrayEquals(new int[]{3}, comment.bookIds);
+        assertFalse(Files.exists(file.resolveSibling("catalog.snapshot.tmp")));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedSnapshotShouldNotBeRead() throws IOException {
+        Path file = Files.createTempDirectory("read-model").resolve("catalog.snapshot");
+        snapshot().write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 6));
+
+        ReadModelSnapshot.read(file);
+    }
+
+    @Test
+    public void stampShouldChangeWithVersionsAndLinks() {
+        ReadModelSnapshot snapshot = snapshot();
+        BookRow book = snapshot.books.get(0);
+        BookRow updated = new BookRow(book.id, book.version + 1, book.name, book.publishedDate, book.encodedParts,
+                book.genreId, book.authorIds);
+        BookRow relinked = new BookRow(book.id, book.version, book.name, book.publishedDate, book.encodedParts,
+                book.genreId, new int[]{1});
+
+        assertFalse(Arrays.equals(snapshot.stamp, stamp(snapshot, updated)));
+        assertFalse(Arrays.equals(snapshot.stamp, stamp(snapshot, relinked)));
+    }
+
+    private static ReadModelSnapshot snapshot() {
+        ReadModelSnapshot rows = new ReadModelSnapshot(
+                null,
+                Collections.singletonList(new GenreRow(1, 0, "Роман", false)),
+                Arrays.asList(
+                        new AuthorRow(1, 2, "Лев", "Толстой", Conutry.RUSSIA, false),
+                        new AuthorRow(2, 0, "Anonymous", "", null, true)
+                ),
+                Collections.singletonList(new BookRow(3, 1, "Война и мир", BookRow.NO_DATE, null, 1, new int[]{1, 2})),
+                Collections.singletonList(new CommentRow(4, 0, null, "Длинно, но 👍", new int[]{3}))
+        );
+        return new ReadModelSnapshot(
+                ReadModelSnapshot.stamp(rows.genres, rows.authors, rows.books, rows.comments),
+                rows.genres, rows.authors, rows.books, rows.comments
+        );
+    }
+
+    private static long[] stamp(ReadModelSnapshot snapshot, BookRow book) {
+        return ReadModelSnapshot.stamp(snapshot.genres, snapshot.authors, Collections.singletonList(book), snapshot.comments);
+    }
+}
@@ -0,0 +1,128 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import otus.springfreamwork.jpa.com.application.invalidation.CacheInvalidator;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.dao.TestSpringBootConfiguration;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.Comment;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
+
+@SpringBootTest(classes = TestSpringBootConfiguration.class)
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+public class CommentSketchesTest {
+
+    private static final long FEED_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private CommentSketches sketches;
+
+    @After
+    public void stopSketches() {
+        if (sketches != null) {
+            sketches.stop();
+        }
+    }
+
+    @Test
+    public void deletingBookShouldNotCountItsCommentsAgain() {
+        sketches = new CommentSketches(entityManagerFactory, cacheInvalidator, new CommentSketchProperties());
+        sketches.start();
+        Genre novel = new Genre("novel");
+        int warAndPiece = insertBook("War And Piece", novel);
+        int annaKarenina = insertBook("Anna Karenina", novel);
+        int resurrection = insertBook("Resurrection", novel);
+        inTransaction(() -> {
+            Comment comment = new Comment("user", "so good");
+            comment.setBooks(new HashSet<>(Arrays.asList(
+                    bookRepository.getReference(warAndPiece), bookRepository.getReference(annaKarenina))));
+            commentRepository.insert(comment);
+            return null;
+        });
+        Map<Integer, Long> counted = new TreeMap<>();
+        counted.put(warAndPiece, 1L);
+        counted.put(annaKarenina, 1L);
+        awaitTrending(counted);
+
+        inTransaction(() -> {
+            bookRepository.deleteById(warAndPiece);
+            return null;
+        });
+        // The feed is one thread: once the later insert is counted, the delete has been seen as well.
+        inTransaction(() -> {
+            commentRepository.insertForBook(new Comment("user2", "so so"), resurrection);
+            return null;
+        });
+        counted.put(resurrection, 1L);
+        awaitTrending(counted);
+    }
+
+    private int insertBook(String name, Genre genre) {
+        return inTransaction(() -> {
+            Book book = new Book(name, null, Collections.singletonMap(1, "partOne"),
+                    Collections.singleton(new Author(name, "Author", RUSSIA)), genre);
+            bookRepository.insert(book);
+            return book.getId();
+        });
+    }
+
+    private void awaitTrending(Map<Integer, Long> expected) {
+        long deadline = System.currentTimeMillis() + FEED_TIMEOUT_MS;
+        Map<Integer, Long> trending = trending();
+        while (trending.size() < expected.size() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted while waiting for the sketches");
+            }
+            trending = trending();
+        }
+        assertEquals(expected, trending);
+    }
+
+    private Map<Integer, Long> trending() {
+        Map<Integer, Long> trending = new TreeMap<>();
+        sketches.getTrendingBooks(60, 10).forEach(book -> trending.put((int) book[0], book[1]));
+        return trending;
+    }
+
+    private <R> R inTransaction(Supplier<R> work) {
+        return new TransactionTemplate(transactionManager).execute(status -> work.get());
+    }
+}
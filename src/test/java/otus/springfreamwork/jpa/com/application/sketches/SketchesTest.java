@@ -0,0 +1,88 @@
+package otus.springfreamwork.jpa.com.application.sketches;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SketchesTest {
+
+    @Test
+    public void hyperLogLogShouldEstimateDistinctValuesWithinError() {
+        HyperLogLog left = new HyperLogLog(10);
+        HyperLogLog right = new HyperLogLog(10);
+        for (int i = 0; i < 20_000; i++) {
+            left.add("user" + i);
+            right.add("user" + (i + 10_000));
+            left.add("user" + i);
+        }
+        assertEquals(20_000, left.estimate(), 20_000 * 0.1);
+
+        left.merge(right);
+        assertEquals(30_000, left.estimate(), 30_000 * 0.1);
+    }
+
+    @Test
+    public void hyperLogLogShouldCountSmallSetsExactly() {
+        HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 3; i++) {
+            sketch.add("user" + i);
+        }
+        assertEquals(3, sketch.estimate());
+    }
+
+    @Test
+    public void countMinShouldNeverUndercount() {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        for (int key = 0; key < 1000; key++) {
+            sketch.add(key, key % 7 + 1);
+        }
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(sketch.estimate(key) >= key % 7 + 1);
+        }
+    }
+
+    @Test
+    public void spaceSavingShouldKeepHeavyHittersAfterMerge() {
+        SpaceSaving left = new SpaceSaving(10);
+        SpaceSaving right = new SpaceSaving(10);
+        for (int key = 100; key < 200; key++) {
+            left.offer(key, 1);
+            right.offer(key + 100, 1);
+        }
+        left.offer(1, 50);
+        right.offer(1, 30);
+        right.offer(2, 60);
+
+        left.merge(right);
+        List<long[]> top = left.top(2);
+
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0)[0]);
+        assertTrue(top.get(0)[1] >= 80);
+        assertEquals(2, top.get(1)[0]);
+        assertTrue(top.get(1)[1] >= 60);
+    }
+
+    @Test
+    public void windowShouldCountOnlyBucketsInPeriod() {
+        CommentWindow window = new CommentWindow(1000, 10, 20, 4, 256);
+        window.add(1, 500);
+        window.add(1, 600);
+        window.add(2, 5_500);
+        window.add(2, 5_600);
+        window.add(2, 5_700);
+        window.add(3, 9_500);
+
+        List<long[]> lastFive = window.top(9_900, 5_000, 10);
+        assertEquals(2, lastFive.size());
+        assertArrayEquals(new long[]{2, 3}, lastFive.get(0));
+        assertArrayEquals(new long[]{3, 1}, lastFive.get(1));
+
+        List<long[]> all = window.top(9_900, 10_000, 1);
+        assertArrayEquals(new long[]{2, 3}, all.get(0));
+    }
+}
@@ -0,0 +1,77 @@
+package otus.springfreamwork.jpa.com.application.warmup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CatalogWarmupTest {
+
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private AuthorRepository authorRepository;
+    @Mock
+    private GenreRepository genreRepository;
+    @Mock
+    private CommentRepository commentRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CatalogWarmup warmup;
+
+    @Before
+    public void init() {
+        WarmupProperties properties = new WarmupProperties();
+        properties.setConnections(3);
+        properties.setRounds(5);
+        warmup = new CatalogWarmup(bookRepository, authorRepository, genreRepository, commentRepository,
+                transactionManager, properties);
+    }
+
+    @Test
+    public void warmupShouldRunEveryFinderInRolledBackTransactionPerConnection() throws Exception {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+
+        warmup.run(null);
+
+        verify(transactionManager, times(3)).getTransaction(any());
+        ArgumentCaptor<TransactionStatus> statuses = ArgumentCaptor.forClass(TransactionStatus.class);
+        verify(transactionManager, times(3)).commit(statuses.capture());
+        statuses.getAllValues().forEach(status -> assertTrue(status.isRollbackOnly()));
+        // Two more to time the lookup before and after.
+        verify(bookRepository, times(3 * 5 + 2)).getByName("");
+        verify(bookRepository, times(3 * 5)).getByAuthorId(-1);
+        verify(bookRepository, times(3 * 5)).getByGenreName("");
+        verify(authorRepository, times(3 * 5)).getByNameAndSurname("", "");
+        verify(genreRepository, times(3 * 5)).getById(-1);
+        verify(commentRepository, times(3 * 5)).getByUsername("");
+        verify(commentRepository, times(3 * 5)).getByUserId(-1);
+    }
+
+    @Test
+    public void warmupShouldNotFailStart() throws Exception {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(authorRepository.count()).thenThrow(new IllegalStateException("connection refused"));
+
+        warmup.run(null);
+
+        verify(bookRepository, times(2)).getByName("");
+    }
+}
@@ -0,0 +1,157 @@
+package otus.springfreamwork.jpa.com.application.writebehind;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CommentRepository;
+import otus.springfreamwork.jpa.domain.model.Comment;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CommentWriteBehindBufferTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private CommentRepository commentRepository;
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CommentWriteBehindProperties properties;
+    private CommentWriteBehindBuffer buffer;
+
+    @Before
+    public void init() {
+        properties = new CommentWriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setCapacity(3);
+        properties.setBatchSize(2);
+        properties.setFlushIntervalMs(60_000);
+        properties.setOfferTimeoutMs(10);
+    }
+
+    @After
+    public void shutdown() {
+        if (buffer != null) {
+            buffer.stop();
+        }
+    }
+
+    @Test
+    public void bufferShouldWriteAcceptedCommentsInBatches() {
+        when(bookRepository.getIdsByNames(anyCollection())).thenReturn(Collections.singletonMap("War And Piece", 1));
+        buffer = new CommentWriteBehindBuffer(commentRepository, bookRepository, transactionManager, properties);
+        buffer.start();
+
+        assertTrue(buffer.submit("user", "so good", "War And Piece"));
+        assertTrue(buffer.submit("user2", "so bad", "War And Piece"));
+        assertTrue(buffer.submit("user3", "so so", "War And Piece"));
+        buffer.flush();
+
+        assertEquals(0, buffer.pending());
+        verify(commentRepository, times(1)).insertForBook(eq(new Comment("user", "so good")), eq(1));
+        verify(commentRepository, times(1)).insertForBook(eq(new Comment("user2", "so bad")), eq(1));
+        verify(commentRepository, times(1)).insertForBook(eq(new Comment("user3", "so so")), eq(1));
+    }
+
+    @Test
+    public void bufferShouldRejectCommentsWhenFull() {
+        when(bookRepository.getIdsByNames(anyCollection())).thenThrow(new IllegalStateException("database is down"));
+        buffer = new CommentWriteBehindBuffer(commentRepository, bookRepository, transactionManager, properties);
+        buffer.start();
+
+        assertTrue(buffer.submit("user", "so good", "War And Piece"));
+        assertTrue(buffer.submit("user2", "so bad", "War And Piece"));
+        assertTrue(buffer.submit("user3", "so so", "War And Piece"));
+        assertFlushFails();
+
+        assertFalse(buffer.submit("user4", "again", "War And Piece"));
+    }
+
+    @Test
+    public void bufferShouldDropCommentThatFailsAloneAfterLastAttempt() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("comments.journal");
+        properties.setJournal(path.toString());
+        properties.setBatchSize(10);
+        properties.setMaxAttempts(2);
+        when(bookRepository.getIdsByNames(anyCollection())).thenReturn(Collections.singletonMap("War And Piece", 1));
+        doThrow(new IllegalStateException("value too long for type character varying(400)"))
+                .when(commentRepository).insertForBook(eq(new Comment("user2", "too long")), eq(1));
+        buffer = new CommentWriteBehindBuffer(commentRepository, bookRepository, transactionManager, properties);
+        buffer.start();
+
+        assertTrue(buffer.submit("user", "so good", "War And Piece"));
+        assertTrue(buffer.submit("user2", "too long", "War And Piece"));
+        assertFlushFails();
+        buffer.flush();
+
+        assertTrue(buffer.submit("user3", "so so", "War And Piece"));
+        assertTrue(buffer.submit("user4", "so so", "War And Piece"));
+        assertTrue(buffer.submit("user5", "so so", "War And Piece"));
+        buffer.flush();
+
+        // Twice in the failed batch, then once alone.
+        verify(commentRepository, times(3)).insertForBook(eq(new Comment("user", "so good")), eq(1));
+        verify(commentRepository, times(1)).insertForBook(eq(new Comment("user5", "so so")), eq(1));
+        CommentJournal rejected = new CommentJournal(path.resolveSibling("comments.journal.rejected"), true);
+        List<PendingComment> dropped = rejected.open();
+        rejected.close();
+        assertEquals(1, dropped.size());
+        assertEquals("too long", dropped.get(0).getComment());
+    }
+
+    @Test
+    public void journalShouldReplayOnlyUncommittedComments() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("comments.journal");
+        CommentJournal journal = new CommentJournal(path, true);
+        journal.open();
+        journal.append(new PendingComment(1, "user", "so good", "War And Piece"));
+        journal.append(new PendingComment(2, "user2", "so\tbad\n", "War And Piece"));
+        journal.append(new PendingComment(3, "user3", null, "Anna Karenina"));
+        journal.commit(1);
+        journal.close();
+
+        CommentJournal reopened = new CommentJournal(path, true);
+        List<PendingComment> replayed = reopened.open();
+        reopened.close();
+
+        assertEquals(2, replayed.size());
+        assertEquals(2, replayed.get(0).getSequence());
+        assertEquals("so\tbad\n", replayed.get(0).getComment());
+        assertEquals(null, replayed.get(1).getComment());
+        assertEquals("Anna Karenina", replayed.get(1).getBookName());
+    }
+
+    private void assertFlushFails() {
+        try {
+            buffer.flush();
+            fail("Flush should fail while a batch waits for its retry");
+        } catch (IllegalStateException expected) {
+            // The failed batch is retried by the next flush.
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class AdjacencyIndexTest {
+
+    @Test
+    public void indexShouldAnswerBothDirectionsAfterLoad() {
+        AdjacencyIndex index = new AdjacencyIndex();
+
+        index.load(new int[]{1, 1, 2, 4}, new int[]{7, 5, 5, 7});
+
+        assertArrayEquals(new int[]{5, 7}, index.targets(1));
+        assertArrayEquals(new int[]{5}, index.targets(2));
+        assertArrayEquals(new int[0], index.targets(3));
+        assertArrayEquals(new int[0], index.targets(100));
+        assertArrayEquals(new int[]{1, 2}, index.sources(5));
+        assertArrayEquals(new int[]{1, 4}, index.sources(7));
+    }
+
+    @Test
+    public void replaceShouldUpdateTheReverseDirection() {
+        AdjacencyIndex index = new AdjacencyIndex();
+        index.load(new int[]{1, 1, 2}, new int[]{5, 7, 5});
+
+        index.replace(1, new int[]{9, 5, 9});
+        index.replace(2, new int[0]);
+        index.replace(30, new int[]{7});
+
+        assertArrayEquals(new int[]{5, 9}, index.targets(1));
+        assertArrayEquals(new int[0], index.targets(2));
+        assertArrayEquals(new int[]{1}, index.sources(5));
+        assertArrayEquals(new int[]{30}, index.sources(7));
+        assertArrayEquals(new int[]{1}, index.sources(9));
+    }
+
+    @Test
+    public void compactionShouldKeepReplacedRows() {
+        AdjacencyIndex index = new AdjacencyIndex();
+        index.load(new int[]{0}, new int[]{1});
+
+        for (int source = 1; source <= 200; source++) {
+            index.replace(source, new int[]{source % 3});
+        }
+
+        assertArrayEquals(new int[]{1}, index.targets(0));
+        assertArrayEquals(new int[]{2}, index.targets(200));
+        assertArrayEquals(new int[]{0, 1, 4}, Arrays.copyOf(index.sources(1), 3));
+        assertArrayEquals(new int[]{3, 6}, Arrays.copyOf(index.sources(0), 2));
+    }
+}
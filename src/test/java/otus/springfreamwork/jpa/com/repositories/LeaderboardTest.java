@@ -0,0 +1,76 @@
+package otus.springfreamwork.jpa.com.repositories;
+
+import org.junit.Test;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.BOOK;
+
+public class LeaderboardTest {
+
+    @Test
+    public void leaderboardShouldBeEmptyUntilLoaded() {
+        Leaderboard leaderboard = new Leaderboard(2);
+
+        leaderboard.offer(book(1, 5));
+
+        assertNull(leaderboard.top(2));
+    }
+
+    @Test
+    public void leaderboardShouldAdmitOnlyIncrementsThatBeatTheWeakestMember() {
+        Leaderboard leaderboard = new Leaderboard(2);
+        leaderboard.load(leaderboard.generation(), Arrays.asList(book(1, 5), book(2, 3)));
+
+        leaderboard.offer(book(3, 3));
+        assertEquals(Arrays.asList(book(1, 5), book(2, 3)), leaderboard.top(2));
+
+        leaderboard.offer(book(3, 4));
+        assertEquals(Arrays.asList(book(1, 5), book(3, 4)), leaderboard.top(2));
+
+        leaderboard.offer(book(3, 6));
+        assertEquals(Collections.singletonList(book(3, 6)), leaderboard.top(1));
+    }
+
+    @Test
+    public void leaderboardShouldKeepTheLargestObservationOfAMember() {
+        Leaderboard leaderboard = new Leaderboard(2);
+        leaderboard.load(leaderboard.generation(), Collections.singletonList(book(1, 5)));
+
+        leaderboard.offer(book(1, 7));
+        leaderboard.offer(book(1, 6));
+
+        assertEquals(Collections.singletonList(book(1, 7)), leaderboard.top(2));
+    }
+
+    @Test
+    public void leaderboardShouldDropLoadsThatRacedWithAChange() {
+        Leaderboard leaderboard = new Leaderboard(2);
+        long generation = leaderboard.generation();
+
+        leaderboard.offer(book(1, 1));
+
+        assertFalse(leaderboard.load(generation, Collections.singletonList(book(2, 1))));
+        assertNull(leaderboard.top(2));
+    }
+
+    @Test
+    public void leaderboardShouldForgetMembersOnInvalidate() {
+        Leaderboard leaderboard = new Leaderboard(2);
+        leaderboard.load(leaderboard.generation(), Collections.singletonList(book(1, 5)));
+
+        leaderboard.invalidate();
+
+        assertFalse(leaderboard.isLoaded());
+        assertNull(leaderboard.top(2));
+    }
+
+    private static CatalogAggregate book(int id, long comments) {
+        return new CatalogAggregate(BOOK, id, comments, null);
+    }
+}
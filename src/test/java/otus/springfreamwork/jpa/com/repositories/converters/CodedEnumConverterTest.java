@@ -0,0 +1,41 @@
+package otus.springfreamwork.jpa.com.repositories.converters;
+
+import org.junit.Test;
+import otus.springfreamwork.jpa.domain.model.CodedEnum;
+import otus.springfreamwork.jpa.domain.model.Conutry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CodedEnumConverterTest {
+
+    private final ConutryConverter converter = new ConutryConverter();
+
+    @Test
+    public void converterShouldStoreStableCode() {
+        assertEquals(Short.valueOf((short) 1), converter.convertToDatabaseColumn(Conutry.RUSSIA));
+        assertEquals(Conutry.RUSSIA, converter.convertToEntityAttribute((short) 1));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+    @Test
+    public void converterShouldReadUnknownCodeAsNull() {
+        assertNull(converter.convertToEntityAttribute((short) 999));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void codesShouldRejectSharedCode() {
+        new EnumCodes<>(Clashing.class);
+    }
+
+    private enum Clashing implements CodedEnum {
+        FIRST,
+        SECOND;
+
+        @Override
+        public short getCode() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package otus.springfreamwork.jpa.com.repositories.migrations;
+
+import liquibase.database.Database;
+import liquibase.database.core.H2Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CommentUsersMigrationTest {
+
+    private static final int COMMENTS = 7;
+
+    private Connection connection;
+
+    @Before
+    public void createTables() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:comment_users;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE users (user_id INTEGER AUTO_INCREMENT PRIMARY KEY, "
+                    + "user_name VARCHAR(200) NOT NULL UNIQUE)");
+            statement.execute("CREATE TABLE comments (comment_id INTEGER PRIMARY KEY, username VARCHAR(200), "
+                    + "user_id INTEGER)");
+            for (int id = 1; id <= COMMENTS; id++) {
+                String username = id == COMMENTS ? "NULL" : "'user" + id % 3 + "'";
+                statement.execute("INSERT INTO comments (comment_id, username) VALUES (" + id + ", " + username + ")");
+            }
+            statement.execute("INSERT INTO users (user_name) SELECT DISTINCT username FROM comments "
+                    + "WHERE username IS NOT NULL");
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @After
+    public void dropTables() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void migrationShouldLinkEveryCommentInBatches() throws Exception {
+        migrate(connection, 2);
+
+        assertLinked();
+    }
+
+    @Test
+    public void migrationShouldFinishAfterPartialRun() throws Exception {
+        try {
+            migrate(failingOnSecondBatch(connection), 2);
+            fail("Second batch should have failed");
+        } catch (CustomChangeException expected) {
+            connection.rollback();
+        }
+        Map<Integer, Integer> partial = userIds();
+        assertTrue(partial.get(1) != null && partial.get(2) != null);
+        assertTrue(partial.get(3) == null && partial.get(4) == null);
+
+        migrate(connection, 2);
+        assertLinked();
+        migrate(connection, 3);
+        assertLinked();
+    }
+
+    private void assertLinked() throws SQLException {
+        Map<Integer, Integer> userIds = userIds();
+        Map<String, Integer> users = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT user_name, user_id FROM users")) {
+            while (rows.next()) {
+                users.put(rows.getString(1), rows.getInt(2));
+            }
+        }
+        for (int id = 1; id < COMMENTS; id++) {
+            assertEquals(users.get("user" + id % 3), userIds.get(id));
+        }
+        assertEquals(null, userIds.get(COMMENTS));
+    }
+
+    private Map<Integer, Integer> userIds() throws SQLException {
+        Map<Integer, Integer> userIds = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT comment_id, user_id FROM comments")) {
+            while (rows.next()) {
+                int userId = rows.getInt(2);
+                userIds.put(rows.getInt(1), rows.wasNull() ? null : userId);
+            }
+        }
+        return userIds;
+    }
+
+    private static void migrate(Connection connection, int batchSize) throws Exception {
+        Database database = new H2Database();
+        database.setConnection(new JdbcConnection(connection));
+        CommentUsersMigration migration = new CommentUsersMigration();
+        migration.setBatchSize(batchSize);
+        assertTrue(migration.validate(database).getErrorMessages().isEmpty());
+        migration.execute(database);
+    }
+
+    /**
+     * Lets the first batch of the update through and fails the second one, as a lost connection would.
+     */
+    private static Connection failingOnSecondBatch(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (!method.getName().equals("prepareStatement")) {
+                        return result;
+                    }
+                    PreparedStatement statement = (PreparedStatement) result;
+                    int[] updates = {0};
+                    return Proxy.newProxyInstance(
+                            PreparedStatement.class.getClassLoader(),
+                            new Class<?>[]{PreparedStatement.class},
+                            (statementProxy, statementMethod, statementArgs) -> {
+                                if (statementMethod.getName().equals("executeUpdate") && ++updates[0] == 2) {
+                                    throw new SQLException("Connection lost");
+                                }
+                                return invoke(statement, statementMethod, statementArgs);
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -5,7 +5,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import otus.springfreamwork.jpa.com.application.purge.TombstonePurger;
 import otus.springfreamwork.jpa.com.application.services.AuthorServiceImpl;
+import otus.springfreamwork.jpa.domain.dao.AuthorPatch;
 import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
 import otus.springfreamwork.jpa.domain.model.Author;
 
@@ -25,10 +27,12 @@ public class AuthorServiceTest {
 
     @Mock
     private AuthorRepository authorRepository;
+    @Mock
+    private TombstonePurger tombstonePurger;
 
     @Before
     public void init() {
-        authorService = new AuthorServiceImpl(authorRepository);
+        authorService = new AuthorServiceImpl(authorRepository, tombstonePurger);
     }
 
     @Test
@@ -94,14 +98,14 @@ public class AuthorServiceTest {
 
     @Test
     public void authorRepositoryShouldReturnWarningCauseNoAuthorInDBForDelete() {
-        when(authorRepository.getByNameAndSurname(anyString(), anyString())).thenReturn(null);
+        when(authorRepository.tombstoneByNameAndSurname(anyString(), anyString())).thenReturn(false);
         String expected = "Не найдено автора в базе для удаления";
 
         String result = authorService.deleteAuthor("Leo", "Tolstoy");
 
         assertEquals(expected, result);
-        verify(authorRepository, times(1)).getByNameAndSurname(eq("Leo"), eq("Tolstoy"));
-        verify(authorRepository, never()).deleteByNameAndSurname(anyString(), anyString());
+        verify(authorRepository, times(1)).tombstoneByNameAndSurname(eq("Leo"), eq("Tolstoy"));
+        verify(tombstonePurger, never()).wakeUp();
     }
 
     @Test
@@ -133,14 +137,35 @@ public class AuthorServiceTest {
     public void authorRepositoryShouldDeleteAuthorByNameAndSurname() {
         String name = "Leo";
         String surname = "Tolstoy";
-        Author author = new Author(name, surname, RUSSIA);
-        when(authorRepository.getByNameAndSurname(eq(name), eq(surname))).thenReturn(author);
+        when(authorRepository.tombstoneByNameAndSurname(eq(name), eq(surname))).thenReturn(true);
         String expected = "Автор успешно удален";
 
         String result = authorService.deleteAuthor(name, surname);
 
         assertEquals(expected, result);
-        verify(authorRepository, times(1)).getByNameAndSurname(eq(name), eq(surname));
-        verify(authorRepository, times(1)).deleteByNameAndSurname(eq(name), eq(surname));
+        verify(authorRepository, times(1)).tombstoneByNameAndSurname(eq(name), eq(surname));
+        verify(authorRepository, never()).deleteByNameAndSurname(anyString(), anyString());
+        verify(tombstonePurger, times(1)).wakeUp();
+    }
+
+    @Test
+    public void authorServiceShouldPatchOnlyGivenValues() {
+        when(authorRepository.patch(eq(1), any(AuthorPatch.class))).thenReturn(true);
+
+        String result = authorService.patchAuthor(1, null, "Tolstoi", 2L);
+
+        assertEquals("Автор изменён", result);
+        verify(authorRepository).patch(eq(1), argThat(patch ->
+                patch.getChanges().equals(Collections.singletonMap(AuthorPatch.SURNAME, "Tolstoi"))
+                        && Long.valueOf(2).equals(patch.getExpectedVersion())
+        ));
+    }
+
+    @Test
+    public void authorServiceShouldNotPatchWithoutValues() {
+        String result = authorService.patchAuthor(1, null, null, null);
+
+        assertEquals("Не указано, что изменить", result);
+        verify(authorRepository, never()).patch(anyInt(), any(AuthorPatch.class));
     }
-}
\ No newline at end of file
+}
@@ -7,9 +7,13 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import otus.springfreamwork.jpa.com.application.services.BookServiceImpl;
 import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookCatalogKeys;
 import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.BookSearch;
+import otus.springfreamwork.jpa.domain.dao.BookSearchResult;
 import otus.springfreamwork.jpa.domain.dao.CommentRepository;
 import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.dao.StaleEntityException;
 import otus.springfreamwork.jpa.domain.model.Author;
 import otus.springfreamwork.jpa.domain.model.Book;
 import otus.springfreamwork.jpa.domain.model.Comment;
@@ -54,15 +58,17 @@ public class BookServiceTest {
         Genre genre = new Genre("novel");
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
         Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
-        when(genreRepository.getByName(genre.getName())).thenReturn(genre);
-        when(authorRepository.getByNameAndSurname(author.getName(), author.getSurname())).thenReturn(author);
+        when(bookRepository.resolveKeys(book.getName(), author.getName(), author.getSurname(), genre.getName()))
+                .thenReturn(new BookCatalogKeys(null, 1, 2));
+        when(authorRepository.getReference(1)).thenReturn(author);
+        when(genreRepository.getReference(2)).thenReturn(genre);
         String result = bookService.createBookByNameAndAuthorAndGenre(book.getName(), author.getName(), author.getSurname(), genre.getName());
 
         assertEquals("Книга успешно создана", result);
         verify(bookRepository, times(1)).insert(eq(book));
-        verify(bookRepository, times(1)).getByName(eq(book.getName()));
-        verify(genreRepository, times(1)).getByName(eq(genre.getName()));
-        verify(authorRepository, times(1)).getByNameAndSurname(eq(author.getName()), eq(author.getSurname()));
+        verify(bookRepository, times(1)).resolveKeys(eq(book.getName()), eq(author.getName()), eq(author.getSurname()), eq(genre.getName()));
+        verify(authorRepository, times(1)).getReference(anyInt());
+        verify(genreRepository, times(1)).getReference(anyInt());
     }
 
     @Test
@@ -71,15 +77,16 @@ public class BookServiceTest {
         Genre genre = new Genre("novel");
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
         Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
-        when(genreRepository.getByName(genre.getName())).thenReturn(null);
-        when(authorRepository.getByNameAndSurname(author.getName(), author.getSurname())).thenReturn(author);
+        when(bookRepository.resolveKeys(book.getName(), author.getName(), author.getSurname(), genre.getName()))
+                .thenReturn(new BookCatalogKeys(null, 1, null));
+        when(authorRepository.getReference(1)).thenReturn(author);
         String result = bookService.createBookByNameAndAuthorAndGenre(book.getName(), author.getName(), author.getSurname(), genre.getName());
 
         assertEquals("Создан жанр\nКнига успешно создана", result);
         verify(bookRepository, times(1)).insert(eq(book));
-        verify(bookRepository, times(1)).getByName(eq(book.getName()));
-        verify(genreRepository, times(1)).getByName(eq(genre.getName()));
-        verify(authorRepository, times(1)).getByNameAndSurname(eq(author.getName()), eq(author.getSurname()));
+        verify(bookRepository, times(1)).resolveKeys(eq(book.getName()), eq(author.getName()), eq(author.getSurname()), eq(genre.getName()));
+        verify(authorRepository, times(1)).getReference(anyInt());
+        verify(genreRepository, never()).getReference(anyInt());
     }
 
     @Test
@@ -88,15 +95,16 @@ public class BookServiceTest {
         Genre genre = new Genre("novel");
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
         Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
-        when(genreRepository.getByName(genre.getName())).thenReturn(genre);
-        when(authorRepository.getByNameAndSurname(author.getName(), author.getSurname())).thenReturn(null);
+        when(bookRepository.resolveKeys(book.getName(), author.getName(), author.getSurname(), genre.getName()))
+                .thenReturn(new BookCatalogKeys(null, null, 2));
+        when(genreRepository.getReference(2)).thenReturn(genre);
         String result = bookService.createBookByNameAndAuthorAndGenre(book.getName(), author.getName(), author.getSurname(), genre.getName());
 
         assertEquals("Создан автор\nКнига успешно создана", result);
         verify(bookRepository, times(1)).insert(eq(book));
-        verify(bookRepository, times(1)).getByName(eq(book.getName()));
-        verify(genreRepository, times(1)).getByName(eq(genre.getName()));
-        verify(authorRepository, times(1)).getByNameAndSurname(eq(author.getName()), eq(author.getSurname()));
+        verify(bookRepository, times(1)).resolveKeys(eq(book.getName()), eq(author.getName()), eq(author.getSurname()), eq(genre.getName()));
+        verify(authorRepository, never()).getReference(anyInt());
+        verify(genreRepository, times(1)).getReference(anyInt());
     }
 
     @Test
@@ -105,15 +113,15 @@ public class BookServiceTest {
         Genre genre = new Genre("novel");
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
         Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
-        when(genreRepository.getByName(genre.getName())).thenReturn(null);
-        when(authorRepository.getByNameAndSurname(author.getName(), author.getSurname())).thenReturn(null);
+        when(bookRepository.resolveKeys(book.getName(), author.getName(), author.getSurname(), genre.getName()))
+                .thenReturn(new BookCatalogKeys(null, null, null));
         String result = bookService.createBookByNameAndAuthorAndGenre(book.getName(), author.getName(), author.getSurname(), genre.getName());
 
         assertEquals("Создан автор\nСоздан жанр\nКнига успешно создана", result);
         verify(bookRepository, times(1)).insert(eq(book));
-        verify(bookRepository, times(1)).getByName(eq(book.getName()));
-        verify(genreRepository, times(1)).getByName(eq(genre.getName()));
-        verify(authorRepository, times(1)).getByNameAndSurname(eq(author.getName()), eq(author.getSurname()));
+        verify(bookRepository, times(1)).resolveKeys(eq(book.getName()), eq(author.getName()), eq(author.getSurname()), eq(genre.getName()));
+        verify(authorRepository, never()).getReference(anyInt());
+        verify(genreRepository, never()).getReference(anyInt());
     }
 
     @Test
@@ -122,14 +130,15 @@ public class BookServiceTest {
         Genre genre = new Genre("novel");
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
         Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
-        when(bookRepository.getByName(eq(book.getName()))).thenReturn(book);
+        when(bookRepository.resolveKeys(book.getName(), author.getName(), author.getSurname(), genre.getName()))
+                .thenReturn(new BookCatalogKeys(3, 1, 2));
         String result = bookService.createBookByNameAndAuthorAndGenre(book.getName(), author.getName(), author.getSurname(), genre.getName());
 
         assertEquals("Книга уже в базе", result);
         verify(bookRepository, never()).insert(eq(book));
-        verify(bookRepository, times(1)).getByName(eq(book.getName()));
-        verify(genreRepository, never()).getByName(eq(genre.getName()));
-        verify(authorRepository, never()).getByNameAndSurname(eq(author.getName()), eq(author.getSurname()));
+        verify(bookRepository, times(1)).resolveKeys(eq(book.getName()), eq(author.getName()), eq(author.getSurname()), eq(genre.getName()));
+        verify(genreRepository, never()).getReference(anyInt());
+        verify(authorRepository, never()).getReference(anyInt());
     }
 
     @Test
@@ -231,41 +240,43 @@ public class BookServiceTest {
         Genre genre = new Genre("novel");
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
         Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
-        when(authorRepository.getByNameAndSurname(eq(author.getName()), eq(author.getSurname()))).thenReturn(author);
-        when(bookRepository.getByAuthorId(author.getId())).thenReturn(Collections.singletonList(book));
+        when(bookRepository.getByAuthorNameAndSurname(eq(author.getName()), eq(author.getSurname())))
+                .thenReturn(Collections.singletonList(book));
         String expected = "Список книг для автора:\n" + book;
 
         String result = bookService.getBooksByAuthorNameAndSurname(author.getName(), author.getSurname());
 
         assertEquals(expected, result);
-        verify(authorRepository, times(1)).getByNameAndSurname(eq(author.getName()), eq(author.getSurname()));
-        verify(bookRepository, times(1)).getByAuthorId(eq(author.getId()));
+        verify(bookRepository, times(1)).getByAuthorNameAndSurname(eq(author.getName()), eq(author.getSurname()));
+        verify(authorRepository, never()).getByNameAndSurname(anyString(), anyString());
     }
 
     @Test
     public void bookRepositoryShouldReturnOnAuthorNameAndSurnameEmptyListWarning() {
         Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        when(bookRepository.getByAuthorNameAndSurname(eq(author.getName()), eq(author.getSurname())))
+                .thenReturn(Collections.emptyList());
         when(authorRepository.getByNameAndSurname(eq(author.getName()), eq(author.getSurname()))).thenReturn(author);
-        when(bookRepository.getByAuthorId(author.getId())).thenReturn(Collections.emptyList());
         String expected = "Список книг для выбранного автора пуст";
 
         String result = bookService.getBooksByAuthorNameAndSurname(author.getName(), author.getSurname());
 
         assertEquals(expected, result);
+        verify(bookRepository, times(1)).getByAuthorNameAndSurname(eq(author.getName()), eq(author.getSurname()));
         verify(authorRepository, times(1)).getByNameAndSurname(eq(author.getName()), eq(author.getSurname()));
-        verify(bookRepository, times(1)).getByAuthorId(eq(author.getId()));
     }
 
     @Test
     public void bookRepositoryShouldReturnOnAuthorNameAndSurnameWarningCauseNoAuthorInDB() {
+        when(bookRepository.getByAuthorNameAndSurname(eq("Leo"), eq("Tolstoy"))).thenReturn(Collections.emptyList());
         when(authorRepository.getByNameAndSurname(eq("Leo"), eq("Tolstoy"))).thenReturn(null);
         String expected = "В базе нет такого автора";
 
         String result = bookService.getBooksByAuthorNameAndSurname("Leo", "Tolstoy");
 
         assertEquals(expected, result);
+        verify(bookRepository, times(1)).getByAuthorNameAndSurname(eq("Leo"), eq("Tolstoy"));
         verify(authorRepository, times(1)).getByNameAndSurname(eq("Leo"), eq("Tolstoy"));
-        verify(bookRepository, never()).getByAuthorId(anyInt());
     }
 
     @Test
@@ -274,41 +285,41 @@ public class BookServiceTest {
         Genre genre = new Genre("novel");
         Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
         Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
-        when(genreRepository.getByName(eq(genre.getName()))).thenReturn(genre);
-        when(bookRepository.getByGenreId(author.getId())).thenReturn(Collections.singletonList(book));
+        when(bookRepository.getByGenreName(eq(genre.getName()))).thenReturn(Collections.singletonList(book));
         String expected = "Список книг для жанра:\n" + book;
 
         String result = bookService.getBooksByGenreName(genre.getName());
 
         assertEquals(expected, result);
-        verify(genreRepository, times(1)).getByName(eq(genre.getName()));
-        verify(bookRepository, times(1)).getByGenreId(eq(author.getId()));
+        verify(bookRepository, times(1)).getByGenreName(eq(genre.getName()));
+        verify(genreRepository, never()).getByName(anyString());
     }
 
     @Test
     public void bookRepositoryShouldReturnOnGenreNameEmptyListWarning() {
         Genre genre = new Genre("novel");
+        when(bookRepository.getByGenreName(eq(genre.getName()))).thenReturn(Collections.emptyList());
         when(genreRepository.getByName(eq(genre.getName()))).thenReturn(genre);
-        when(bookRepository.getByGenreId(genre.getId())).thenReturn(Collections.emptyList());
         String expected = "Список книг для выбранного жанра пуст";
 
         String result = bookService.getBooksByGenreName(genre.getName());
 
         assertEquals(expected, result);
+        verify(bookRepository, times(1)).getByGenreName(eq(genre.getName()));
         verify(genreRepository, times(1)).getByName(eq(genre.getName()));
-        verify(bookRepository, times(1)).getByGenreId(eq(genre.getId()));
     }
 
     @Test
     public void bookRepositoryShouldReturnOnGenreNameWarningCauseNoAuthorInDB() {
+        when(bookRepository.getByGenreName(eq("novel"))).thenReturn(Collections.emptyList());
         when(genreRepository.getByName(eq("novel"))).thenReturn(null);
         String expected = "В базе нет такого жанра";
 
         String result = bookService.getBooksByGenreName("novel");
 
         assertEquals(expected, result);
+        verify(bookRepository, times(1)).getByGenreName(eq("novel"));
         verify(genreRepository, times(1)).getByName(eq("novel"));
-        verify(bookRepository, never()).getByGenreId(anyInt());
     }
 
     @Test
@@ -339,4 +350,63 @@ public class BookServiceTest {
         verify(commentRepository, times(1)).getByBookName("War And Piece");
     }
 
+
+    @Test
+    public void bookServiceShouldReturnSearchResultWithFacets() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
+        BookSearch search = new BookSearch().genre("novel").withFacets(true);
+        when(bookRepository.search(search)).thenReturn(new BookSearchResult(
+                Collections.singletonList(book),
+                Collections.singletonMap("novel", 1L),
+                Collections.singletonMap("Leo Tolstoy", 1L)
+        ));
+        String expected = "Найденные книги:\n" + book + "\nПо жанрам:\nnovel: 1\nПо авторам:\nLeo Tolstoy: 1";
+
+        String result = bookService.searchBooks(search);
+
+        assertEquals(expected, result);
+        verify(bookRepository, times(1)).search(eq(search));
+    }
+
+    @Test
+    public void bookServiceShouldReturnBooksByIds() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
+        when(bookRepository.getAllByIds(Arrays.asList(2, 1))).thenReturn(Collections.singletonList(book));
+        String expected = "Список книг:\n" + book;
+
+        String result = bookService.getBooksByIds(Arrays.asList(2, 1));
+
+        assertEquals(expected, result);
+        verify(bookRepository, times(1)).getAllByIds(eq(Arrays.asList(2, 1)));
+    }
+
+    @Test
+    public void bookServiceShouldRenameBookAtGivenVersion() {
+        Book book = new Book("Anna Karenina", new Date(2018, 4, 10), Collections.emptyMap(), Collections.emptySet(), null);
+        book.setVersion(4);
+        when(bookRepository.getIdByName("War And Piece")).thenReturn(1);
+        when(bookRepository.getIdByName("Anna Karenina")).thenReturn(null);
+        when(bookRepository.update(eq(1), eq(3L), any())).thenReturn(book);
+
+        String result = bookService.renameBook("War And Piece", "Anna Karenina", 3);
+
+        assertEquals("Книга переименована, версия: 4", result);
+        verify(bookRepository, times(1)).update(eq(1), eq(3L), any());
+    }
+
+    @Test(expected = StaleEntityException.class)
+    public void bookServiceShouldPropagateConcurrentModificationOnRename() {
+        when(bookRepository.getIdByName("War And Piece")).thenReturn(1);
+        when(bookRepository.getIdByName("Anna Karenina")).thenReturn(null);
+        when(bookRepository.update(eq(1), eq(3L), any()))
+                .thenThrow(new StaleEntityException("Book", 1, 3, null));
+
+        bookService.renameBook("War And Piece", "Anna Karenina", 3);
+    }
 }
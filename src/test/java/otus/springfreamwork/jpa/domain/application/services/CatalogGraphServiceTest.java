@@ -0,0 +1,72 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import otus.springfreamwork.jpa.com.application.services.CatalogGraphServiceImpl;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CatalogGraphRepository;
+import otus.springfreamwork.jpa.domain.model.Author;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CatalogGraphServiceTest {
+
+    private CatalogGraphService graphService;
+
+    @Mock
+    private CatalogGraphRepository graphRepository;
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private AuthorRepository authorRepository;
+
+    @Before
+    public void init() {
+        graphService = new CatalogGraphServiceImpl(graphRepository, bookRepository, authorRepository);
+    }
+
+    @Test
+    public void graphServiceShouldListCoAuthors() {
+        when(authorRepository.getByNameAndSurname(eq("Leo"), eq("Tolstoy")))
+                .thenReturn(new Author(1, "Leo", "Tolstoy", RUSSIA));
+        when(graphRepository.getCoAuthorIds(1)).thenReturn(Collections.singletonList(2));
+        when(authorRepository.getAllByIds(Collections.singletonList(2)))
+                .thenReturn(Collections.singletonList(new Author(2, "Anton", "Chekhov", RUSSIA)));
+
+        String result = graphService.getCoAuthors("Leo", "Tolstoy");
+
+        assertEquals("Соавторы:\nAnton Chekhov", result);
+    }
+
+    @Test
+    public void graphServiceShouldReportUnconnectedAuthors() {
+        when(authorRepository.getByNameAndSurname(eq("Leo"), eq("Tolstoy")))
+                .thenReturn(new Author(1, "Leo", "Tolstoy", RUSSIA));
+        when(authorRepository.getByNameAndSurname(eq("Anton"), eq("Chekhov")))
+                .thenReturn(new Author(2, "Anton", "Chekhov", RUSSIA));
+        when(graphRepository.getAuthorDistance(1, 2, 6)).thenReturn(-1);
+
+        String result = graphService.getAuthorDistance("Leo", "Tolstoy", "Anton", "Chekhov", 6);
+
+        assertEquals("Авторы не связаны общими книгами", result);
+    }
+
+    @Test
+    public void graphServiceShouldReturnWarningCauseNoBookInDB() {
+        when(bookRepository.getIdByName(eq("War And Piece"))).thenReturn(null);
+
+        String result = graphService.getAlsoCommented("War And Piece", 10);
+
+        assertEquals("Не найдено книги в базе", result);
+    }
+}
@@ -0,0 +1,132 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import otus.springfreamwork.jpa.com.application.services.CatalogStatisticsServiceImpl;
+import otus.springfreamwork.jpa.domain.dao.AuthorRepository;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.dao.CatalogAggregateRepository;
+import otus.springfreamwork.jpa.domain.dao.GenreRepository;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.AUTHOR;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.BOOK;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.GENRE;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CatalogStatisticsServiceTest {
+
+    private CatalogStatisticsService statisticsService;
+
+    @Mock
+    private CatalogAggregateRepository aggregateRepository;
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private AuthorRepository authorRepository;
+    @Mock
+    private GenreRepository genreRepository;
+
+    @Before
+    public void init() {
+        statisticsService = new CatalogStatisticsServiceImpl(
+                aggregateRepository, bookRepository, authorRepository, genreRepository
+        );
+    }
+
+    @Test
+    public void statisticsServiceShouldReturnBookCommentCount() {
+        when(bookRepository.getIdByName(eq("War And Piece"))).thenReturn(1);
+        when(aggregateRepository.get(BOOK, 1)).thenReturn(new CatalogAggregate(BOOK, 1, 3, 7));
+
+        String result = statisticsService.getBookStatistics("War And Piece");
+
+        assertEquals("Количество комментариев к книге: 3, последний комментарий: 7", result);
+    }
+
+    @Test
+    public void statisticsServiceShouldReturnWarningCauseNoBookInDB() {
+        when(bookRepository.getIdByName(eq("War And Piece"))).thenReturn(null);
+
+        String result = statisticsService.getBookStatistics("War And Piece");
+
+        assertEquals("Не найдено книги в базе", result);
+    }
+
+    @Test
+    public void statisticsServiceShouldReturnAuthorAndGenreBookCounts() {
+        Author author = new Author(1, "Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre(2, "novel");
+        when(authorRepository.getByNameAndSurname("Leo", "Tolstoy")).thenReturn(author);
+        when(genreRepository.getByName("novel")).thenReturn(genre);
+        when(aggregateRepository.get(AUTHOR, 1)).thenReturn(new CatalogAggregate(AUTHOR, 1, 5, null));
+        when(aggregateRepository.get(GENRE, 2)).thenReturn(new CatalogAggregate(GENRE, 2, 8, null));
+
+        assertEquals("Количество книг автора: 5", statisticsService.getAuthorStatistics("Leo", "Tolstoy"));
+        assertEquals("Количество книг жанра: 8", statisticsService.getGenreStatistics("novel"));
+    }
+
+    @Test
+    public void statisticsServiceShouldListTopBooksInLeaderboardOrder() {
+        Book book = new Book("War And Piece", new Date(), Collections.emptyMap(), Collections.emptySet(), null);
+        book.setId(1);
+        Book book_2 = new Book("Anna Karenina", new Date(), Collections.emptyMap(), Collections.emptySet(), null);
+        book_2.setId(2);
+        when(aggregateRepository.getTop(BOOK, 2)).thenReturn(Arrays.asList(
+                new CatalogAggregate(BOOK, 2, 7, 15),
+                new CatalogAggregate(BOOK, 1, 3, 9)
+        ));
+        when(bookRepository.getAllByIds(Arrays.asList(2, 1))).thenReturn(Arrays.asList(book_2, book));
+
+        String result = statisticsService.getTopBooks(2);
+
+        assertEquals("Книги с наибольшим числом комментариев:\n1. Anna Karenina: 7\n2. War And Piece: 3", result);
+    }
+
+    @Test
+    public void statisticsServiceShouldListTopAuthors() {
+        Author author = new Author(1, "Leo", "Tolstoy", RUSSIA);
+        when(aggregateRepository.getTop(AUTHOR, 100))
+                .thenReturn(Collections.singletonList(new CatalogAggregate(AUTHOR, 1, 5, null)));
+        when(authorRepository.getAllByIds(Collections.singletonList(1))).thenReturn(Collections.singletonList(author));
+
+        String result = statisticsService.getTopAuthors(100);
+
+        assertEquals("Авторы с наибольшим числом книг:\n1. Leo Tolstoy: 5", result);
+    }
+
+    @Test
+    public void statisticsServiceShouldReturnWarningCauseNoCommentedBooks() {
+        when(aggregateRepository.getTop(BOOK, 100)).thenReturn(Collections.emptyList());
+
+        assertEquals("Нет книг с комментариями", statisticsService.getTopBooks(100));
+    }
+
+    @Test
+    public void statisticsServiceShouldRebuildAggregatesOnlyWhenAsked() {
+        when(aggregateRepository.check()).thenReturn(2);
+
+        assertEquals("Расхождений в агрегатах: 2", statisticsService.checkAggregates(false));
+        verify(aggregateRepository, never()).rebuild();
+
+        assertEquals("Расхождений в агрегатах: 2, агрегаты перестроены", statisticsService.checkAggregates(true));
+        verify(aggregateRepository, times(1)).rebuild();
+    }
+}
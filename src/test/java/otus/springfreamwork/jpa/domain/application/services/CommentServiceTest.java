@@ -5,17 +5,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import otus.springfreamwork.jpa.com.application.dedupe.CommentDuplicateIndex;
 import otus.springfreamwork.jpa.com.application.services.CommentServiceImpl;
 import otus.springfreamwork.jpa.domain.dao.BookRepository;
 import otus.springfreamwork.jpa.domain.dao.CommentRepository;
-import otus.springfreamwork.jpa.domain.model.Author;
-import otus.springfreamwork.jpa.domain.model.Book;
 import otus.springfreamwork.jpa.domain.model.Comment;
-import otus.springfreamwork.jpa.domain.model.Genre;
 
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,7 +23,6 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CommentServiceTest {
@@ -36,40 +33,81 @@ public class CommentServiceTest {
     private CommentRepository commentRepository;
     @Mock
     private BookRepository bookRepository;
+    @Mock
+    private CommentDuplicateIndex duplicateIndex;
 
     @Before
     public void init() {
-        commentService = new CommentServiceImpl(commentRepository, bookRepository);
+        commentService = new CommentServiceImpl(commentRepository, bookRepository, duplicateIndex);
     }
 
     @Test
     public void commentServiceShouldCreateCommentByNameAndSurusername() {
         String username = "user";
         String commentText = "so good";
-        Author author = new Author("Leo", "Tolstoy", RUSSIA);
-        Genre genre = new Genre("novel");
-        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
-        Book book = new Book("War And Piece", new Date(2018, 4, 10), parts, Collections.singleton(author), genre);
+        String bookName = "War And Piece";
         Comment comment = new Comment(username, commentText);
-        comment.setBooks(Collections.singleton(book));
-        when(bookRepository.getByName(eq(book.getName()))).thenReturn(book);
+        when(bookRepository.getIdByName(eq(bookName))).thenReturn(1);
 
-        String result = commentService.createComment(comment.getUsername(), comment.getComment(), book.getName());
+        String result = commentService.createComment(comment.getUsername(), comment.getComment(), bookName);
 
         assertEquals("Комментарий создан", result);
-        verify(commentRepository, times(1)).insert(eq(comment));
-        verify(bookRepository, times(1)).getByName(eq(book.getName()));
+        verify(commentRepository, times(1)).insertForBook(eq(comment), eq(1));
+        verify(bookRepository, times(1)).getIdByName(eq(bookName));
+        verify(bookRepository, never()).getByName(anyString());
+    }
+
+    @Test
+    public void commentServiceShouldRejectNearDuplicateComment() {
+        when(bookRepository.getIdByName(anyString())).thenReturn(1);
+        when(duplicateIndex.findDuplicate("Buy cheap books at example.com!!")).thenReturn(7);
+        when(duplicateIndex.rejectsDuplicates()).thenReturn(true);
+
+        String result = commentService.createComment("spammer", "Buy cheap books at example.com!!", "War And Piece");
+
+        assertEquals("Похожий комментарий уже есть, комментарий не создан", result);
+        verify(commentRepository, never()).insertForBook(any(), anyInt());
+    }
+
+    @Test
+    public void commentServiceShouldListNearDuplicates() {
+        Map<Integer, Integer> duplicates = new LinkedHashMap<>();
+        duplicates.put(5, 2);
+        duplicates.put(9, 2);
+        when(duplicateIndex.isLoaded()).thenReturn(true);
+        when(duplicateIndex.findAllDuplicates()).thenReturn(duplicates);
+
+        String result = commentService.dedupeComments(false);
+
+        assertEquals("Похожие комментарии:\n5 похож на 2\n9 похож на 2", result);
+        verify(commentRepository, never()).deleteById(anyInt());
+        verify(commentRepository, never()).deleteByIds(any());
+    }
+
+    @Test
+    public void commentServiceShouldDeleteNearDuplicatesAtOnce() {
+        Map<Integer, Integer> duplicates = new LinkedHashMap<>();
+        duplicates.put(5, 2);
+        duplicates.put(9, 2);
+        when(duplicateIndex.isLoaded()).thenReturn(true);
+        when(duplicateIndex.findAllDuplicates()).thenReturn(duplicates);
+        when(commentRepository.deleteByIds(duplicates.keySet())).thenReturn(1);
+
+        String result = commentService.dedupeComments(true);
+
+        assertEquals("Удалено похожих комментариев: 1", result);
+        verify(commentRepository, never()).deleteById(anyInt());
     }
 
     @Test
     public void commentServiceShouldNotCreateCommentCauseNoBookInDB() {
-        when(bookRepository.getByName(anyString())).thenReturn(null);
+        when(bookRepository.getIdByName(anyString())).thenReturn(null);
 
         String result = commentService.createComment("username", "comment text", "War And Piece");
 
         assertEquals("Не найдено книги, комментарий не создан", result);
-        verify(commentRepository, never()).insert(any());
-        verify(bookRepository, times(1)).getByName(eq("War And Piece"));
+        verify(commentRepository, never()).insertForBook(any(), anyInt());
+        verify(bookRepository, times(1)).getIdByName(eq("War And Piece"));
     }
 
     @Test
@@ -159,4 +197,24 @@ public class CommentServiceTest {
         verify(commentRepository, times(1)).getByUsername(eq(username));
         verify(commentRepository, times(1)).deleteByUsername(eq(username));
     }
+
+    @Test
+    public void commentServiceShouldEditCommentAtGivenVersion() {
+        Comment comment = new Comment(1, "user", "so bad");
+        comment.setVersion(2);
+        when(commentRepository.update(eq(1), eq(1L), any())).thenReturn(comment);
+
+        String result = commentService.editComment(1, 1, "so bad");
+
+        assertEquals("Комментарий изменён, версия: 2", result);
+    }
+
+    @Test
+    public void commentServiceShouldNotEditMissingComment() {
+        when(commentRepository.update(eq(1), eq(1L), any())).thenReturn(null);
+
+        String result = commentService.editComment(1, 1, "so bad");
+
+        assertEquals("Не найдено комментария в базе", result);
+    }
 }
@@ -5,7 +5,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import otus.springfreamwork.jpa.com.application.purge.TombstonePurger;
 import otus.springfreamwork.jpa.com.application.services.GenreServiceImpl;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
 import otus.springfreamwork.jpa.domain.dao.GenreRepository;
 import otus.springfreamwork.jpa.domain.model.Genre;
 
@@ -26,10 +28,14 @@ public class GenreServiceTest {
 
     @Mock
     private GenreRepository genreRepository;
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private TombstonePurger tombstonePurger;
 
     @Before
     public void init() {
-        genreService = new GenreServiceImpl(genreRepository);
+        genreService = new GenreServiceImpl(genreRepository, bookRepository, tombstonePurger);
     }
 
     @Test
@@ -93,14 +99,14 @@ public class GenreServiceTest {
 
     @Test
     public void genreRepositoryShouldReturnWarningCauseNoGenreInDBForDelete() {
-        when(genreRepository.getByName(anyString())).thenReturn(null);
+        when(genreRepository.tombstoneByName(anyString())).thenReturn(false);
         String expected = "Не найдено жанра в базе для удаления";
 
         String result = genreService.deleteGenre("fantasy");
 
         assertEquals(expected, result);
-        verify(genreRepository, times(1)).getByName(eq("fantasy"));
-        verify(genreRepository, never()).deleteByName(anyString());
+        verify(genreRepository, times(1)).tombstoneByName(eq("fantasy"));
+        verify(tombstonePurger, never()).wakeUp();
     }
 
     @Test
@@ -130,15 +136,37 @@ public class GenreServiceTest {
     @Test
     public void genreRepositoryShouldDeleteGenreByNameAndSurname() {
         String name = "fantasy";
-        Genre genre = new Genre(name);
-        when(genreRepository.getByName(eq(name))).thenReturn(genre);
+        when(genreRepository.tombstoneByName(eq(name))).thenReturn(true);
         String expected = "Жанр успешно удален";
 
         String result = genreService.deleteGenre(name);
 
         assertEquals(expected, result);
-        verify(genreRepository, times(1)).getByName(eq(name));
-        verify(genreRepository, times(1)).deleteByName(eq(name));
+        verify(genreRepository, times(1)).tombstoneByName(eq(name));
+        verify(genreRepository, never()).deleteByName(anyString());
+        verify(tombstonePurger, times(1)).wakeUp();
     }
 
+
+    @Test
+    public void genreServiceShouldMoveBooksAndDeleteMergedGenre() {
+        when(genreRepository.getByName("novel")).thenReturn(new Genre(1, "novel"));
+        when(genreRepository.getByName("prose")).thenReturn(new Genre(2, "prose"));
+        when(bookRepository.moveToGenre(1, 2)).thenReturn(3);
+
+        String result = genreService.mergeGenres("novel", "prose");
+
+        assertEquals("Перенесено книг: 3, жанр novel удален", result);
+        verify(genreRepository, times(1)).deleteById(1);
+    }
+
+    @Test
+    public void genreServiceShouldNotMergeMissingGenre() {
+        when(genreRepository.getByName("novel")).thenReturn(null);
+
+        String result = genreService.mergeGenres("novel", "prose");
+
+        assertEquals("Не найдено жанра в базе", result);
+        verify(bookRepository, never()).moveToGenre(anyInt(), anyInt());
+    }
 }
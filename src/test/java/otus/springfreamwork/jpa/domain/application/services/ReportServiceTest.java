@@ -0,0 +1,51 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import otus.springfreamwork.jpa.com.application.analytics.CatalogAnalytics;
+import otus.springfreamwork.jpa.com.application.services.ReportServiceImpl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReportServiceTest {
+
+    private ReportService reportService;
+
+    @Mock
+    private CatalogAnalytics analytics;
+
+    @Before
+    public void init() {
+        reportService = new ReportServiceImpl(analytics);
+    }
+
+    @Test
+    public void reportServiceShouldListTopCommenters() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put("user", 3L);
+        counts.put("user2", 1L);
+        when(analytics.countCommentsByUser(2)).thenReturn(counts);
+
+        String result = reportService.getTopCommenters(2);
+
+        assertEquals("Пользователи с наибольшим числом комментариев:\n1. user: 3\n2. user2: 1", result);
+    }
+
+    @Test
+    public void reportServiceShouldReturnWarningCauseNoBooksInDB() {
+        when(analytics.countBooksByGenreAndYear(null, 1800, 1900)).thenReturn(Collections.emptyList());
+
+        String result = reportService.getBooksByGenreAndYear(null, 1800, 1900);
+
+        assertEquals("Не найдено книг в базе", result);
+    }
+}
@@ -0,0 +1,59 @@
+package otus.springfreamwork.jpa.domain.application.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import otus.springfreamwork.jpa.com.application.services.TrendServiceImpl;
+import otus.springfreamwork.jpa.com.application.sketches.CommentSketches;
+import otus.springfreamwork.jpa.domain.dao.BookRepository;
+import otus.springfreamwork.jpa.domain.model.Book;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TrendServiceTest {
+
+    private TrendService trendService;
+
+    @Mock
+    private CommentSketches commentSketches;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Before
+    public void init() {
+        trendService = new TrendServiceImpl(commentSketches, bookRepository);
+    }
+
+    @Test
+    public void trendServiceShouldListTrendingBooksInOrder() {
+        Book first = new Book();
+        first.setId(1);
+        first.setName("Война и мир");
+        Book second = new Book();
+        second.setId(2);
+        second.setName("Анна Каренина");
+        when(commentSketches.getTrendingBooks(60, 2)).thenReturn(Arrays.asList(new long[]{2, 5}, new long[]{1, 3}));
+        when(bookRepository.getAllByIds(Arrays.asList(2, 1))).thenReturn(Arrays.asList(first, second));
+
+        String result = trendService.getTrendingBooks(60, 2);
+
+        assertEquals("Книги с наибольшим числом новых комментариев:\n1. Анна Каренина: ~5\n2. Война и мир: ~3", result);
+    }
+
+    @Test
+    public void trendServiceShouldReturnWarningCauseNoNewComments() {
+        when(commentSketches.getTrendingBooks(60, 10)).thenReturn(Collections.emptyList());
+
+        String result = trendService.getTrendingBooks(60, 10);
+
+        assertEquals("Нет новых комментариев", result);
+    }
+}
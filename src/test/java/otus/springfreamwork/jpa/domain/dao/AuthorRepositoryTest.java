@@ -7,12 +7,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.Genre;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.transaction.Transactional;
 
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -28,6 +32,9 @@ public class AuthorRepositoryTest {
     @Autowired
     private AuthorRepository authorRepository;
 
+    @Autowired
+    private BookRepository bookRepository;
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -128,4 +135,58 @@ public class AuthorRepositoryTest {
 
         assertEquals(2, count);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void authorRepositoryShouldPatchOnlyGivenAttributes() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        entityManager.persist(author);
+        entityManager.flush();
+        long version = author.getVersion();
+
+        boolean patched = authorRepository.patch(author.getId(), new AuthorPatch().surname("Tolstoi"));
+
+        assertTrue(patched);
+        assertEquals("Tolstoi", author.getSurname());
+        assertEquals("Leo", author.getName());
+        assertEquals(version + 1, author.getVersion());
+    }
+
+    @Test(expected = StaleEntityException.class)
+    public void authorRepositoryShouldRejectPatchAtStaleVersion() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        entityManager.persist(author);
+        entityManager.flush();
+
+        authorRepository.patch(author.getId(), new AuthorPatch().surname("Tolstoi").expectedVersion(author.getVersion() + 1));
+    }
+
+    @Test
+    public void authorRepositoryShouldNotPatchMissingAuthor() {
+        assertFalse(authorRepository.patch(42, new AuthorPatch().surname("Tolstoi").expectedVersion(0L)));
+    }
+
+    @Test
+    public void authorRepositoryShouldHideTombstonedAuthorAndPurgeItsLinks() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Book book = new Book("War And Piece", new Date(), Collections.singletonMap(1, "partOne"),
+                Collections.singleton(author), new Genre("novel"));
+        bookRepository.insert(book);
+        entityManager.flush();
+        int id = author.getId();
+
+        assertTrue(authorRepository.tombstoneByNameAndSurname("Leo", "Tolstoy"));
+        assertNull(authorRepository.getByNameAndSurname("Leo", "Tolstoy"));
+        assertTrue(bookRepository.getByAuthorNameAndSurname("Leo", "Tolstoy").isEmpty());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(1, authorRepository.countDependents(id));
+        assertEquals(1, authorRepository.purgeChunk(id, 10));
+        assertEquals(0, authorRepository.purgeChunk(id, 10));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertNull(entityManager.find(Author.class, id));
+        assertTrue(bookRepository.getByName("War And Piece").getAuthors().isEmpty());
+    }
+}
@@ -8,16 +8,23 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 import otus.springfreamwork.jpa.domain.model.Author;
 import otus.springfreamwork.jpa.domain.model.Book;
-import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.Comment;
 import otus.springfreamwork.jpa.domain.model.Genre;
+import otus.springfreamwork.jpa.domain.model.PublicationAge;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
 import javax.persistence.TypedQuery;
 import javax.transaction.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +41,9 @@ public class BookRepositoryTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private AuthorRepository authorRepository;
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -179,4 +189,284 @@ public class BookRepositoryTest {
         assertEquals(book, books.get(0));
         assertTrue(books.contains(book));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void bookRepositoryShouldGetBookIdByName() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+
+        entityManager.persist(book);
+
+        assertEquals(Integer.valueOf(book.getId()), bookRepository.getIdByName(book.getName()));
+        assertNull(bookRepository.getIdByName("Anna Karenina"));
+    }
+
+    @Test
+    public void bookRepositoryShouldStoreAllPartsInBookRow() {
+        Map<Integer, String> parts = new HashMap<>();
+        parts.put(2, "part: two");
+        parts.put(1, "partOne");
+        parts.put(10, "");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+
+        bookRepository.insert(book);
+        entityManager.flush();
+        entityManager.clear();
+
+        Book bookFromRepo = bookRepository.getById(book.getId());
+
+        assertEquals(parts, bookFromRepo.getParts());
+        assertEquals(Arrays.asList(1, 2, 10), new ArrayList<>(bookFromRepo.getParts().keySet()));
+    }
+
+    @Test
+    public void bookRepositoryShouldCalculateAgeOfLoadedBook() {
+        Calendar published = Calendar.getInstance();
+        published.add(Calendar.YEAR, -10);
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("War And Piece", published.getTime(), parts, Collections.singleton(author), genre);
+        Book bookWithoutDate = new Book("Anna Karenina", null, parts, Collections.singleton(author), genre);
+
+        entityManager.persist(book);
+        entityManager.persist(bookWithoutDate);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(10, bookRepository.getById(book.getId()).getAgeYears());
+        assertEquals(-1, bookRepository.getById(bookWithoutDate.getId()).getAgeYears());
+    }
+
+    @Test
+    public void bookRepositoryShouldPageBooksPublishedBetweenDates() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("Childhood", new Date(52, 0, 1), parts, Collections.singleton(author), genre);
+        Book book_2 = new Book("War And Piece", new Date(69, 0, 1), parts, Collections.singleton(author), genre);
+        Book book_3 = new Book("Anna Karenina", new Date(69, 0, 1), parts, Collections.singleton(author), genre);
+        Book book_4 = new Book("Resurrection", new Date(99, 0, 1), parts, Collections.singleton(author), genre);
+        entityManager.persist(book);
+        entityManager.persist(book_2);
+        entityManager.persist(book_3);
+        entityManager.persist(book_4);
+
+        List<Book> firstPage = bookRepository.getPublishedBetween(
+                new Date(60, 0, 1), new Date(100, 0, 1), PublishedDateKeyset.first(), 2);
+        List<Book> secondPage = bookRepository.getPublishedBetween(
+                new Date(60, 0, 1), new Date(100, 0, 1), PublishedDateKeyset.next(firstPage), 2);
+        List<Book> thirdPage = bookRepository.getPublishedBetween(
+                new Date(60, 0, 1), new Date(100, 0, 1), PublishedDateKeyset.next(secondPage), 2);
+        PublishedDateKeyset end = PublishedDateKeyset.next(thirdPage);
+
+        assertEquals(Arrays.asList(book_2, book_3), firstPage);
+        assertEquals(Collections.singletonList(book_4), secondPage);
+        assertTrue(thirdPage.isEmpty());
+        assertTrue(end.isEnd());
+        assertFalse(end.isFirst());
+        assertTrue(bookRepository.getPublishedBetween(new Date(60, 0, 1), new Date(100, 0, 1), end, 2).isEmpty());
+    }
+
+    @Test
+    public void bookRepositoryShouldGetBooksOlderAndNewerThanYears() {
+        Calendar published = Calendar.getInstance();
+        published.add(Calendar.YEAR, -20);
+        Calendar publishedRecently = Calendar.getInstance();
+        publishedRecently.add(Calendar.YEAR, -1);
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book oldBook = new Book("War And Piece", published.getTime(), parts, Collections.singleton(author), genre);
+        Book newBook = new Book("Anna Karenina", publishedRecently.getTime(), parts, Collections.singleton(author), genre);
+        entityManager.persist(oldBook);
+        entityManager.persist(newBook);
+
+        assertEquals(Collections.singletonList(oldBook), bookRepository.getOlderThan(10, PublishedDateKeyset.first(), 10));
+        assertEquals(Collections.singletonList(newBook), bookRepository.getNewerThan(10, PublishedDateKeyset.first(), 10));
+    }
+
+    @Test
+    public void bookRepositoryShouldSearchBooksByCombinedCriteria() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author tolstoy = new Author("Leo", "Tolstoy", RUSSIA);
+        Author dostoevsky = new Author("Fedor", "Dostoevsky", RUSSIA);
+        Genre novel = new Genre("novel");
+        Genre story = new Genre("story");
+        Book book = new Book("War And Piece", new Date(69, 0, 1), parts, Collections.singleton(tolstoy), novel);
+        Book book_2 = new Book("Anna Karenina", new Date(77, 0, 1), parts, Collections.singleton(tolstoy), novel);
+        Book book_3 = new Book("Idiot", new Date(69, 0, 1), parts, Collections.singleton(dostoevsky), novel);
+        Book book_4 = new Book("After the Ball", new Date(11, 0, 1), parts, Collections.singleton(tolstoy), story);
+        entityManager.persist(book);
+        entityManager.persist(book_2);
+        entityManager.persist(book_3);
+        entityManager.persist(book_4);
+        Comment comment = new Comment("user", "so good");
+        comment.setBooks(Collections.singleton(book_2));
+        entityManager.persist(comment);
+
+        BookSearchResult byAuthorAndGenre = bookRepository.search(new BookSearch()
+                .author("Leo", "Tolstoy")
+                .genre("novel")
+                .sortBy(BookSearch.SortBy.PUBLISHED_DATE, true)
+                .withFacets(true));
+        BookSearchResult commented = bookRepository.search(new BookSearch().hasComments(true));
+        BookSearchResult byPrefixAndDate = bookRepository.search(new BookSearch()
+                .namePrefix("A")
+                .publishedBetween(new Date(0, 0, 1), new Date(50, 0, 1)));
+
+        assertEquals(Arrays.asList(book_2, book), byAuthorAndGenre.getBooks());
+        assertEquals(Long.valueOf(2), byAuthorAndGenre.getGenreFacets().get("novel"));
+        assertEquals(Long.valueOf(2), byAuthorAndGenre.getAuthorFacets().get("Leo Tolstoy"));
+        assertEquals(Collections.singletonList(book_2), commented.getBooks());
+        assertEquals(Collections.singletonList(book_4), byPrefixAndDate.getBooks());
+    }
+
+    @Test
+    public void bookSearchShouldLoadGenresAndAuthorsOfThePage() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author tolstoy = new Author("Leo", "Tolstoy", RUSSIA);
+        Author tolstaya = new Author("Sophia", "Tolstaya", RUSSIA);
+        Genre novel = new Genre("novel");
+        Book book = new Book("War And Piece", new Date(69, 0, 1), parts, new HashSet<>(Arrays.asList(tolstoy, tolstaya)), novel);
+        Book book_2 = new Book("Anna Karenina", new Date(77, 0, 1), parts, Collections.singleton(tolstoy), novel);
+        Book book_3 = new Book("Idiot", new Date(69, 0, 1), parts, Collections.singleton(tolstoy), novel);
+        entityManager.persist(book);
+        entityManager.persist(book_2);
+        entityManager.persist(book_3);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Book> books = bookRepository.search(new BookSearch().limit(2)).getBooks();
+
+        assertEquals(Arrays.asList(book_2, book_3), books);
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        for (Book found : books) {
+            assertTrue(persistenceUnitUtil.isLoaded(found, "authors"));
+            assertTrue(persistenceUnitUtil.isLoaded(found.getGenre()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bookSearchShouldRejectNonPositiveLimit() {
+        new BookSearch().limit(0);
+    }
+
+    @Test
+    public void bookRepositoryShouldGetBooksByAuthorAndGenreNaturalKeys() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+        entityManager.persist(book);
+
+        assertEquals(Collections.singletonList(book), bookRepository.getByAuthorNameAndSurname("Leo", "Tolstoy"));
+        assertEquals(Collections.singletonList(book), bookRepository.getByGenreName("novel"));
+        assertTrue(bookRepository.getByGenreName("story").isEmpty());
+    }
+
+    @Test
+    public void bookRepositoryShouldResolveCatalogKeysInOneQuery() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+        entityManager.persist(book);
+        entityManager.flush();
+
+        BookCatalogKeys existing = bookRepository.resolveKeys("War And Piece", "Leo", "Tolstoy", "novel");
+        BookCatalogKeys missing = bookRepository.resolveKeys("Anna Karenina", "Fedor", "Dostoevsky", "story");
+
+        assertEquals(Integer.valueOf(book.getId()), existing.getBookId());
+        assertEquals(Integer.valueOf(author.getId()), existing.getAuthorId());
+        assertEquals(Integer.valueOf(genre.getId()), existing.getGenreId());
+        assertNull(missing.getBookId());
+        assertNull(missing.getAuthorId());
+        assertNull(missing.getGenreId());
+    }
+
+    @Test
+    public void bookRepositoryShouldGetBooksByIdsInRequestedOrder() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+        Book book_2 = new Book("Anna Karenina", new Date(), parts, Collections.singleton(author), genre);
+        Book book_3 = new Book("Resurrection", new Date(), parts, Collections.singleton(author), genre);
+        entityManager.persist(book);
+        entityManager.persist(book_2);
+        entityManager.persist(book_3);
+        entityManager.flush();
+        entityManager.detach(book);
+        entityManager.detach(book_3);
+
+        List<Book> books = bookRepository.getAllByIds(Arrays.asList(book_3.getId(), -1, book_2.getId(), book.getId()));
+
+        assertEquals(Arrays.asList(book_3, book_2, book), books);
+        assertSame(book_2, books.get(1));
+    }
+
+    @Test
+    public void bookRepositoryShouldPatchNameAndPublishedDateInOneStatement() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+        entityManager.persist(book);
+        entityManager.flush();
+        entityManager.clear();
+        Date publishedDate = PublicationAge.publishedYearsAgo(10);
+
+        boolean patched = bookRepository.patch(book.getId(),
+                new BookPatch().name("Anna Karenina").publishedDate(publishedDate).expectedVersion(book.getVersion()));
+
+        assertTrue(patched);
+        Book patchedBook = bookRepository.getById(book.getId());
+        assertEquals("Anna Karenina", patchedBook.getName());
+        assertEquals(10, patchedBook.getAgeYears());
+        assertEquals(book.getVersion() + 1, patchedBook.getVersion());
+        assertEquals(parts, patchedBook.getParts());
+    }
+
+    @Test
+    public void bookRepositoryShouldMoveAllBooksOfGenre() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Genre genre_2 = new Genre("prose");
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+        Book book_2 = new Book("Anna Karenina", new Date(), parts, Collections.singleton(author), genre);
+        bookRepository.insert(book);
+        bookRepository.insert(book_2);
+        entityManager.persist(genre_2);
+        entityManager.flush();
+
+        int moved = bookRepository.moveToGenre(genre.getId(), genre_2.getId());
+
+        assertEquals(2, moved);
+        assertEquals(genre_2.getId(), book.getGenre().getId());
+        assertEquals(2, bookRepository.getByGenreId(genre_2.getId()).size());
+        assertTrue(bookRepository.getByGenreId(genre.getId()).isEmpty());
+    }
+
+    @Test
+    public void bookShouldHideTombstonedAuthors() {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Author coauthor = new Author("Sophia", "Tolstaya", RUSSIA);
+        Genre genre = new Genre("novel");
+        Book book = new Book("War And Piece", new Date(), parts, new HashSet<>(Arrays.asList(author, coauthor)), genre);
+        bookRepository.insert(book);
+
+        authorRepository.tombstoneByNameAndSurname("Sophia", "Tolstaya");
+        entityManager.flush();
+        entityManager.clear();
+
+        Book bookFromRepo = bookRepository.getByName("War And Piece");
+        assertEquals(Collections.singleton(author), bookFromRepo.getAuthors());
+    }
+}
@@ -0,0 +1,183 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.CatalogAggregate;
+import otus.springfreamwork.jpa.domain.model.Comment;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.AUTHOR;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.BOOK;
+import static otus.springfreamwork.jpa.domain.model.CatalogAggregate.Kind.GENRE;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+@Transactional
+public class CatalogAggregateRepositoryTest {
+
+    @Autowired
+    private CatalogAggregateRepository aggregateRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    public void aggregatesShouldFollowBookAndCommentInserts() {
+        Book book = insertBook("War And Piece");
+        Book book_2 = insertBook("Anna Karenina");
+        Comment comment = new Comment("user", "so good");
+        Comment comment_2 = new Comment("user2", "so bad");
+        commentRepository.insertForBook(comment, book.getId());
+        commentRepository.insertForBook(comment_2, book.getId());
+
+        assertEquals(2, aggregateRepository.get(GENRE, book.getGenre().getId()).getItemCount());
+        assertEquals(2, aggregateRepository.get(AUTHOR, book.getAuthors().iterator().next().getId()).getItemCount());
+        assertEquals(
+                new CatalogAggregate(BOOK, book.getId(), 2, comment_2.getId()),
+                aggregateRepository.get(BOOK, book.getId())
+        );
+        assertEquals(0, aggregateRepository.get(BOOK, book_2.getId()).getItemCount());
+        assertEquals(0, aggregateRepository.check());
+    }
+
+    @Test
+    public void aggregatesShouldFollowDeletes() {
+        Book book = insertBook("War And Piece");
+        Book book_2 = insertBook("Anna Karenina");
+        Comment comment = new Comment("user", "so good");
+        Comment comment_2 = new Comment("user2", "so bad");
+        commentRepository.insertForBook(comment, book.getId());
+        commentRepository.insertForBook(comment_2, book.getId());
+
+        commentRepository.deleteById(comment_2.getId());
+        bookRepository.deleteById(book_2.getId());
+
+        CatalogAggregate bookAggregate = aggregateRepository.get(BOOK, book.getId());
+        assertEquals(1, bookAggregate.getItemCount());
+        assertEquals(Integer.valueOf(comment.getId()), bookAggregate.getLastCommentId());
+        assertEquals(1, aggregateRepository.get(GENRE, book.getGenre().getId()).getItemCount());
+        assertEquals(0, aggregateRepository.check());
+
+        commentRepository.deleteByUsername("user");
+
+        bookAggregate = aggregateRepository.get(BOOK, book.getId());
+        assertEquals(0, bookAggregate.getItemCount());
+        assertNull(bookAggregate.getLastCommentId());
+    }
+
+    @Test
+    public void aggregatesShouldFollowUpdatedLinks() {
+        Book book = insertBook("War And Piece");
+        Book book_2 = insertBook("Anna Karenina");
+        Comment comment = new Comment("user", "so good");
+        commentRepository.insertForBook(comment, book.getId());
+        Author tolstoy = book.getAuthors().iterator().next();
+        Genre novel = book.getGenre();
+        Author pushkin = new Author("Alexander", "Pushkin", RUSSIA);
+        Genre poem = new Genre("poem");
+        entityManager.persist(pushkin);
+        entityManager.persist(poem);
+
+        bookRepository.update(book.getId(), book.getVersion(), changed -> {
+            changed.setGenre(poem);
+            changed.setAuthors(new HashSet<>(Arrays.asList(tolstoy, pushkin)));
+        });
+        commentRepository.update(comment.getId(), comment.getVersion(),
+                changed -> changed.setBooks(new HashSet<>(Collections.singleton(book_2))));
+
+        assertEquals(1, aggregateRepository.get(GENRE, novel.getId()).getItemCount());
+        assertEquals(1, aggregateRepository.get(GENRE, poem.getId()).getItemCount());
+        assertEquals(2, aggregateRepository.get(AUTHOR, tolstoy.getId()).getItemCount());
+        assertEquals(1, aggregateRepository.get(AUTHOR, pushkin.getId()).getItemCount());
+        assertEquals(new CatalogAggregate(BOOK, book.getId(), 0, null), aggregateRepository.get(BOOK, book.getId()));
+        assertEquals(
+                new CatalogAggregate(BOOK, book_2.getId(), 1, comment.getId()),
+                aggregateRepository.get(BOOK, book_2.getId())
+        );
+        assertEquals(0, aggregateRepository.check());
+    }
+
+    @Test
+    public void checkShouldFindDriftAndRebuildShouldRepairIt() {
+        Book book = insertBook("War And Piece");
+        commentRepository.insertForBook(new Comment("user", "so good"), book.getId());
+        entityManager.createNativeQuery("UPDATE catalog_aggregates SET item_count = 42").executeUpdate();
+
+        assertTrue(aggregateRepository.check() > 0);
+
+        aggregateRepository.rebuild();
+
+        assertEquals(0, aggregateRepository.check());
+        assertEquals(1, aggregateRepository.get(BOOK, book.getId()).getItemCount());
+    }
+
+    @Test
+    public void getTopShouldRankByCountAndSkipEmptyRows() {
+        Book book = insertBook("War And Piece");
+        Book book_2 = insertBook("Anna Karenina");
+        insertBook("Resurrection");
+        commentRepository.insertForBook(new Comment("user", "so good"), book.getId());
+        commentRepository.insertForBook(new Comment("user", "so bad"), book_2.getId());
+        commentRepository.insertForBook(new Comment("user2", "so so"), book_2.getId());
+
+        List<CatalogAggregate> top = aggregateRepository.getTop(BOOK, 10);
+
+        assertEquals(Arrays.asList(book_2.getId(), book.getId()), entityIds(top));
+        assertEquals(2, top.get(0).getItemCount());
+        assertEquals(Collections.singletonList(book_2.getId()), entityIds(aggregateRepository.getTop(BOOK, 1)));
+        assertEquals(1, aggregateRepository.getTop(AUTHOR, 10).size());
+        assertEquals(3, aggregateRepository.getTop(AUTHOR, 10).get(0).getItemCount());
+    }
+
+    private static List<Integer> entityIds(List<CatalogAggregate> aggregates) {
+        return aggregates.stream().map(CatalogAggregate::getEntityId).collect(Collectors.toList());
+    }
+
+    private Book insertBook(String name) {
+        Author author = getOrCreateAuthor();
+        Genre genre = getOrCreateGenre();
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Book book = new Book(name, new Date(), parts, Collections.singleton(author), genre);
+        bookRepository.insert(book);
+        return book;
+    }
+
+    private Author getOrCreateAuthor() {
+        return entityManager.createQuery("SELECT a FROM Author a", Author.class).getResultList().stream()
+                .findFirst()
+                .orElseGet(() -> new Author("Leo", "Tolstoy", RUSSIA));
+    }
+
+    private Genre getOrCreateGenre() {
+        return entityManager.createQuery("SELECT g FROM Genre g", Genre.class).getResultList().stream()
+                .findFirst()
+                .orElseGet(() -> new Genre("novel"));
+    }
+}
@@ -0,0 +1,91 @@
+package otus.springfreamwork.jpa.domain.dao;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
+import otus.springfreamwork.jpa.domain.model.Comment;
+import otus.springfreamwork.jpa.domain.model.Genre;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Transactional;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
+
+@SpringBootTest
+@RunWith(SpringRunner.class)
+@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+@Transactional
+public class CatalogGraphRepositoryTest {
+
+    @Autowired
+    private CatalogGraphRepository graphRepository;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Genre genre = new Genre("novel");
+    private final Author tolstoy = new Author("Leo", "Tolstoy", RUSSIA);
+    private final Author chekhov = new Author("Anton", "Chekhov", RUSSIA);
+    private final Author gogol = new Author("Nikolai", "Gogol", RUSSIA);
+
+    @Test
+    public void graphShouldFindCoAuthorsAndDistances() {
+        Book first = insertBook("War And Piece", tolstoy, chekhov);
+        insertBook("Anna Karenina", chekhov, gogol);
+        entityManager.flush();
+
+        List<Integer> coAuthorIds = Arrays.asList(tolstoy.getId(), gogol.getId());
+        coAuthorIds.sort(null);
+        assertEquals(coAuthorIds, graphRepository.getCoAuthorIds(chekhov.getId()));
+        assertEquals(2, graphRepository.getAuthorDistance(tolstoy.getId(), gogol.getId(), 6));
+        assertEquals(-1, graphRepository.getAuthorDistance(tolstoy.getId(), gogol.getId(), 1));
+        assertEquals(0, graphRepository.getAuthorDistance(gogol.getId(), gogol.getId(), 6));
+        assertEquals(1, graphRepository.getBookIdsSharingAuthors(first.getId()).size());
+    }
+
+    @Test
+    public void graphShouldRankBooksBySharedCommenters() {
+        Book first = insertBook("War And Piece", tolstoy);
+        Book second = insertBook("Anna Karenina", tolstoy);
+        Book third = insertBook("Dead Souls", gogol);
+        for (String username : Arrays.asList("user", "user2")) {
+            commentRepository.insertForBook(new Comment(username, "so good"), first.getId());
+            commentRepository.insertForBook(new Comment(username, "so good"), second.getId());
+        }
+        commentRepository.insertForBook(new Comment("user2", "so bad"), third.getId());
+        commentRepository.insertForBook(new Comment("user3", "so bad"), third.getId());
+        entityManager.flush();
+
+        Map<Integer, Integer> alsoCommented = graphRepository.getAlsoCommentedBookIds(first.getId(), 10);
+
+        assertEquals(Arrays.asList(second.getId(), third.getId()), Arrays.asList(alsoCommented.keySet().toArray()));
+        assertEquals(Integer.valueOf(2), alsoCommented.get(second.getId()));
+        assertEquals(Integer.valueOf(1), alsoCommented.get(third.getId()));
+        assertEquals(Collections.singleton(second.getId()), graphRepository.getAlsoCommentedBookIds(first.getId(), 1).keySet());
+    }
+
+    private Book insertBook(String name, Author... authors) {
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Book book = new Book(name, new Date(), parts, new HashSet<>(Arrays.asList(authors)), genre);
+        bookRepository.insert(book);
+        return book;
+    }
+}
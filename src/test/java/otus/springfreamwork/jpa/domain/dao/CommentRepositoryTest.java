@@ -16,6 +16,7 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.transaction.Transactional;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -44,7 +45,7 @@ public class CommentRepositoryTest {
 
         TypedQuery<Comment> query = entityManager
                 .createQuery(
-                        "SELECT c FROM Comment c WHERE c.username = :username AND c.comment = :comment"
+                        "SELECT c FROM Comment c WHERE c.user.name = :username AND c.comment = :comment"
                         , Comment.class
                 );
         query.setParameter("username", comment.getUsername());
@@ -69,7 +70,7 @@ public class CommentRepositoryTest {
     public void commentRepositoryShouldGetCommentByUsername() {
         Comment comment = new Comment("user", "so good");
 
-        entityManager.persist(comment);
+        commentRepository.insert(comment);
 
         List<Comment> comments = commentRepository.getByUsername(comment.getUsername());
 
@@ -105,10 +106,30 @@ public class CommentRepositoryTest {
     }
 
     @Test
-    public void commentRepositoryShouldDeleteCommentByName() {
+    public void commentRepositoryShouldDeleteCommentsByIdsSkippingMissingOnes() {
         Comment comment = new Comment("user", "so good");
+        Comment comment_2 = new Comment("user2", "so bad");
+        Comment comment_3 = new Comment("user3", "so so");
 
         entityManager.persist(comment);
+        entityManager.persist(comment_2);
+        entityManager.persist(comment_3);
+        entityManager.flush();
+
+        int deleted = commentRepository.deleteByIds(Arrays.asList(comment.getId(), comment_2.getId(), -1));
+
+        assertEquals(2, deleted);
+        assertNull(commentRepository.getById(comment.getId()));
+        assertNull(commentRepository.getById(comment_2.getId()));
+        assertEquals(comment_3, commentRepository.getById(comment_3.getId()));
+    }
+
+    @Test
+    public void commentRepositoryShouldDeleteCommentByName() {
+        Comment comment = new Comment("user", "so good");
+
+        commentRepository.insert(comment);
+        entityManager.flush();
         entityManager.detach(comment);
 
         commentRepository.deleteByUsername(comment.getUsername());
@@ -150,4 +171,108 @@ public class CommentRepositoryTest {
         assertFalse(comments.isEmpty());
         assertTrue(comments.contains(comment));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void commentRepositoryShouldInsertCommentForBookId() {
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        Genre genre = new Genre("novel");
+        Map<Integer, String> parts = Collections.singletonMap(1, "partOne");
+        Book book = new Book("War And Piece", new Date(), parts, Collections.singleton(author), genre);
+        entityManager.persist(book);
+        entityManager.flush();
+        entityManager.clear();
+
+        Comment comment = new Comment("user", "so good");
+        commentRepository.insertForBook(comment, book.getId());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Comment> comments = commentRepository.getByBookName(book.getName());
+
+        assertEquals(1, comments.size());
+        assertEquals(comment.getId(), comments.get(0).getId());
+    }
+
+    @Test
+    public void commentRepositoryShouldUpdateCommentAtExpectedVersion() {
+        Comment comment = new Comment("user", "so good");
+        commentRepository.insert(comment);
+        entityManager.flush();
+        long version = comment.getVersion();
+
+        Comment updated = commentRepository.update(comment.getId(), version, c -> c.setComment("so bad"));
+
+        assertEquals("so bad", updated.getComment());
+        assertEquals(version + 1, updated.getVersion());
+    }
+
+    @Test(expected = StaleEntityException.class)
+    public void commentRepositoryShouldRejectUpdateAtStaleVersion() {
+        Comment comment = new Comment("user", "so good");
+        commentRepository.insert(comment);
+        entityManager.flush();
+        long version = comment.getVersion();
+        commentRepository.update(comment.getId(), version, c -> c.setComment("so bad"));
+
+        commentRepository.update(comment.getId(), version, c -> c.setComment("so so"));
+    }
+
+    @Test
+    public void commentRepositoryShouldReturnNullWhenUpdatingMissingComment() {
+        assertNull(commentRepository.update(42, 0, c -> c.setComment("so bad")));
+    }
+
+    @Test
+    public void commentRepositoryShouldRenameUsernameOfAllComments() {
+        Comment comment = new Comment("user", "so good");
+        Comment comment_2 = new Comment("user", "so bad");
+        Comment comment_3 = new Comment("user2", "so so");
+        commentRepository.insert(comment);
+        commentRepository.insert(comment_2);
+        commentRepository.insert(comment_3);
+        entityManager.flush();
+
+        int renamed = commentRepository.renameUsername("user", "reader");
+
+        assertEquals(2, renamed);
+        assertEquals("reader", comment.getUsername());
+        assertEquals(1, comment.getVersion());
+        assertTrue(commentRepository.getByUsername("user").isEmpty());
+        assertEquals(2, commentRepository.getByUsername("reader").size());
+    }
+
+    @Test
+    public void commentRepositoryShouldStoreUsernameOnce() {
+        Comment comment = new Comment("user", "so good");
+        Comment comment_2 = new Comment("user", "so bad");
+        commentRepository.insert(comment);
+        commentRepository.insert(comment_2);
+        entityManager.flush();
+
+        assertEquals(comment.getUser().getId(), comment_2.getUser().getId());
+        long users = entityManager
+                .createQuery("SELECT COUNT(u) FROM User u WHERE u.name = 'user'", Long.class)
+                .getSingleResult();
+        assertEquals(1, users);
+    }
+
+    @Test
+    public void commentPersistedDirectlyShouldGetItsUser() {
+        Comment comment = new Comment("user", "so good");
+        entityManager.persist(comment);
+        entityManager.flush();
+        entityManager.clear();
+
+        String username = entityManager
+                .createQuery("SELECT c.user.name FROM Comment c WHERE c.id = :id", String.class)
+                .setParameter("id", comment.getId())
+                .getSingleResult();
+        assertEquals("user", username);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void commentWithoutUserShouldBeRefused() {
+        entityManager.persist(new Comment(null, "so good"));
+        entityManager.flush();
+    }
+}
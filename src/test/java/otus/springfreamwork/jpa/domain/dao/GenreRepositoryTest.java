@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
+import otus.springfreamwork.jpa.domain.model.Author;
+import otus.springfreamwork.jpa.domain.model.Book;
 import otus.springfreamwork.jpa.domain.model.Genre;
 
 import javax.persistence.EntityManager;
@@ -14,10 +16,12 @@ import javax.persistence.TypedQuery;
 import javax.transaction.Transactional;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.*;
 import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+import static otus.springfreamwork.jpa.domain.model.Conutry.RUSSIA;
 
 @SpringBootTest
 @RunWith(SpringRunner.class)
@@ -28,6 +32,9 @@ public class GenreRepositoryTest {
     @Autowired
     private GenreRepository genreRepository;
 
+    @Autowired
+    private BookRepository bookRepository;
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -123,4 +130,50 @@ public class GenreRepositoryTest {
 
         assertEquals(2, count);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void genreRepositoryShouldHideTombstonedGenreWithItsBooks() {
+        Genre genre = new Genre("novel");
+        Book book = newBook("War And Piece", new Author("Leo", "Tolstoy", RUSSIA), genre);
+        bookRepository.insert(book);
+        entityManager.flush();
+
+        assertTrue(genreRepository.tombstoneByName("novel"));
+
+        assertNull(genreRepository.getByName("novel"));
+        assertNull(genreRepository.getById(genre.getId()));
+        assertEquals(0, genreRepository.count());
+        assertNull(bookRepository.getByName("War And Piece"));
+        assertNull(bookRepository.getById(book.getId()));
+        assertEquals(Collections.singletonList(genre.getId()), genreRepository.getTombstonedIds());
+        assertFalse(genreRepository.tombstoneByName("novel"));
+    }
+
+    @Test
+    public void genreRepositoryShouldPurgeTombstonedGenreInChunks() {
+        Genre genre = new Genre("novel");
+        Author author = new Author("Leo", "Tolstoy", RUSSIA);
+        bookRepository.insert(newBook("War And Piece", author, genre));
+        bookRepository.insert(newBook("Anna Karenina", author, genre));
+        bookRepository.insert(newBook("Resurrection", author, genre));
+        genreRepository.tombstoneByName("novel");
+        entityManager.flush();
+        entityManager.clear();
+        int id = genre.getId();
+
+        assertEquals(3, genreRepository.countDependents(id));
+        assertEquals(2, genreRepository.purgeChunk(id, 2));
+        assertEquals(1, genreRepository.purgeChunk(id, 2));
+        assertEquals(0, genreRepository.purgeChunk(id, 2));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertNull(entityManager.find(Genre.class, id));
+        assertEquals(0L, (long) entityManager.createQuery("SELECT COUNT(b) FROM Book b", Long.class).getSingleResult());
+        assertTrue(genreRepository.getTombstonedIds().isEmpty());
+    }
+
+    private static Book newBook(String name, Author author, Genre genre) {
+        return new Book(name, new Date(), Collections.singletonMap(1, "partOne"), Collections.singleton(author), genre);
+    }
+}
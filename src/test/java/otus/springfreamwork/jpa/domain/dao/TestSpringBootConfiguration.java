@@ -17,8 +17,12 @@ import org.springframework.shell.standard.commands.StandardCommandsAutoConfigura
         })
 @ComponentScan(basePackages = {
         "otus.springfreamwork.jpa.domain",
-        "otus.springfreamwork.jpa.com.repositories"
+        "otus.springfreamwork.jpa.com.repositories",
+        "otus.springfreamwork.jpa.com.application.invalidation"
+})
+@EntityScan(basePackages = {
+        "otus.springfreamwork.jpa.domain.model",
+        "otus.springfreamwork.jpa.com.repositories.converters"
 })
-@EntityScan(basePackages = "otus.springfreamwork.jpa.domain.model")
 public class TestSpringBootConfiguration {
 }
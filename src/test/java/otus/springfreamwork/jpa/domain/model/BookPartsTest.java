@@ -0,0 +1,34 @@
+package otus.springfreamwork.jpa.domain.model;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class BookPartsTest {
+
+    @Test
+    public void partsShouldCountLengthInCodePoints() {
+        Map<Integer, String> parts = new HashMap<>();
+        parts.put(2, "Том 𝔊");
+        parts.put(1, "a:b");
+
+        BookParts bookParts = BookParts.of(parts);
+
+        assertEquals("1:3:a:b2:5:Том 𝔊", bookParts.getEncoded());
+        assertEquals(parts, BookParts.fromEncoded(bookParts.getEncoded()).asMap());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partsShouldRejectPartWithoutName() {
+        BookParts.of(Collections.singletonMap(1, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partsShouldRejectTruncatedName() {
+        BookParts.fromEncoded("1:5:abc").asMap();
+    }
+}